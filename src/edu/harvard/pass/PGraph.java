@@ -34,8 +34,10 @@ package edu.harvard.pass;
 import edu.harvard.pass.filter.AncestryFilter;
 import edu.harvard.pass.job.ProvRankJob;
 import edu.harvard.pass.job.SubRankJob;
+import edu.harvard.pass.parser.BulkParserHandler;
 import edu.harvard.pass.parser.ParserHandler;
 import edu.harvard.pass.parser.RDFParser;
+import edu.harvard.pass.parser.TripleBatch;
 import edu.harvard.util.filter.*;
 import edu.harvard.util.graph.*;
 import edu.harvard.util.graph.algorithm.BetweennessCentrality;
@@ -54,7 +56,13 @@ import java.util.*;
 import java.util.Map.Entry;
 import java.io.*;
 
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
 
 import org.openrdf.model.Resource;
 import org.openrdf.model.URI;
@@ -90,6 +98,27 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	
 	private static final boolean ENABLE_FORKPARENT_FIX = false;
 	
+	public static boolean mappedAttributeStore = false;
+	
+	/*
+	 * Binary columnar format: section tags and record layouts
+	 */
+	private static final int BINARY_SECTION_GRAPH = 0x47524150;		// "GRAP"
+	private static final int BINARY_SECTION_OBJECTS = 0x4F424A53;	// "OBJS"
+	private static final int BINARY_SECTION_NODES = 0x4E4F4445;		// "NODE"
+	private static final int BINARY_SECTION_EDGES = 0x45444745;		// "EDGE"
+	private static final int BINARY_SECTION_SUMMARIES = 0x53554D4D;	// "SUMM"
+	private static final int BINARY_SECTION_LAYOUTS = 0x4C41594F;	// "LAYO"
+	private static final int BINARY_SECTION_REACHABILITY = 0x52454143;	// "REAC", since version 2
+	
+	private static final int BINARY_NODE_INTS = 6;		// index, ver, ID, visible, public ID, label
+	private static final int BINARY_NODE_DOUBLES = 4;	// time, freeze time, SubRank, ProvRank
+	private static final int BINARY_EDGE_INTS = 5;		// index, from, to, type, label
+	private static final int BINARY_SUMMARY_INTS = 4;	// ID, index, visible, label
+	
+	private static final int BINARY_SUMMARY_BEGIN = -1;
+	private static final int BINARY_SUMMARY_END = -2;
+	
 	protected HashMap<Integer, PObject> fdToObject;
 	protected HashMap<String, PNode> idToNode;
 	protected int lastNegativeFD;
@@ -97,6 +126,7 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 
 	protected PGraphStat stat;
 	protected PMeta meta;
+	protected AttributeStore attributeStore;
 	
 	protected PGraph parent;
 	protected TreeMap<String, PGraph> derivedGraphs;
@@ -106,6 +136,9 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	protected boolean hasProvRank;
 	
 	private ParserHandler parserHandler;
+	private transient PNodeColumns nodeColumns;
+	private transient PNodeTextIndex textIndex;
+	private transient Thread textIndexBuilder;
 	
 	
 	/**
@@ -192,6 +225,47 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	}
 	
 	
+	/**
+	 * Get the indices of the nodes in a comparison node set. The IDs
+	 * that do not correspond to any node in the graph are ignored.
+	 * 
+	 * @param index the comparison node set index
+	 * @return the bitset of node indices
+	 */
+	private BitSet getComparisonNodeKeys(int index) {
+		
+		BitSet b = new BitSet(getNodes().size());
+		
+		for (String s : comparisonNodeSets.get(index).getFirst()) {
+			PNode n = idToNode.get(s);
+			if (n != null) b.set(n.getIndex());
+		}
+		
+		return b;
+	}
+	
+	
+	/**
+	 * Return the index of the node in this graph that corresponds to the
+	 * given node, which is either the node itself, its original, or the node
+	 * with the same FD and version
+	 * 
+	 * @param node the node, possibly from a different graph
+	 * @return the node index, or -1 if the node does not belong to the graph
+	 */
+	@Override
+	protected int getCorrespondingNodeIndex(PNode node) {
+		
+		int index = super.getCorrespondingNodeIndex(node);
+		if (index >= 0) return index;
+		
+		PObject o = fdToObject.get(node.getObject().getFD());
+		if (o == null) return -1;
+		PNode p = o.getNode(node.getVersion());
+		return p == null ? -1 : p.getIndex();
+	}
+	
+	
 	/**
 	 * Derive a new PGraph that is a result of a lineage query
 	 * 
@@ -233,13 +307,11 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 			throw new IllegalStateException("The comparison node-sets are not set");
 		}
 		
-		HashSet<PNode> set = new HashSet<PNode>();
-		for (Pair<Set<String>, String> x : comparisonNodeSets) {
-			for (String s : x.getFirst()) set.add(idToNode.get(s));
-		}
+		BitSet set = getComparisonNodeKeys(0);
+		set.or(getComparisonNodeKeys(1));
 		
 		SetFilter<PNode> filter = new SetFilter<PNode>("Union of the Node-Sets");
-		filter.set(set);
+		filter.set(getNodeUniverse(), set);
 		
 		PGraph p = createSummaryGraph(filter, "Comparison", false);
 		p.type = Type.COMPARISON;
@@ -268,20 +340,11 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 			throw new IllegalStateException("The comparison node-sets are not set");
 		}
 		
-		HashSet<String> set1 = new HashSet<String>();
-		set1.addAll(comparisonNodeSets.get(0).getFirst());
-		set1.removeAll(comparisonNodeSets.get(1).getFirst());
-		
-		HashSet<String> set2 = new HashSet<String>();
-		set2.addAll(comparisonNodeSets.get(1).getFirst());
-		set2.removeAll(comparisonNodeSets.get(0).getFirst());
-		
-		HashSet<PNode> set = new HashSet<PNode>();
-		for (String s : set1) set.add(idToNode.get(s));
-		for (String s : set2) set.add(idToNode.get(s));
+		BitSet set = getComparisonNodeKeys(0);
+		set.xor(getComparisonNodeKeys(1));
 		
 		SetFilter<PNode> filter = new SetFilter<PNode>("XOR of the Node-Sets");
-		filter.set(set);
+		filter.set(getNodeUniverse(), set);
 		
 		PGraph p = createSummaryGraph(filter, "Difference", false);
 		p.type = Type.COMPARISON;
@@ -335,7 +398,12 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 		
 		stat = new PGraphStat();
 		
+		if (attributeStore != null) attributeStore.close();
+		attributeStore = new AttributeStore(mappedAttributeStore);
+		
 		hasProvRank = false;
+		nodeColumns = null;
+		textIndex = null;
 		
 		type = Type.GENERIC;
 		lineageQuery = null;
@@ -416,17 +484,59 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	}
 	
 	
+	/**
+	 * Get the store of the extended attributes of the nodes and the objects
+	 * 
+	 * @return the attribute store
+	 */
+	public AttributeStore getAttributeStore() {
+		return attributeStore;
+	}
+	
+	
 	/**
 	 * Get parser handler that creates this graph
 	 * 
 	 * @return the handler for parsing
 	 */
 	public ParserHandler getParserHandler() {
-		if (parserHandler == null) parserHandler = new PGraphParserHandler();
+		if (parserHandler == null) parserHandler = new PGraphParserHandler(false);
 		return parserHandler;
 	}
 	
 	
+	/**
+	 * Get parser handler that appends the parsed triples to this graph instead
+	 * of replacing its contents. The summarization and the layouts are
+	 * discarded when parsing begins, and the graph metadata is preserved.
+	 * 
+	 * @return the handler for incremental parsing
+	 */
+	public ParserHandler getAppendingParserHandler() {
+		return new PGraphParserHandler(true);
+	}
+	
+	
+	/**
+	 * Prepare the graph for appending more nodes and edges. This discards
+	 * the caches computed from the previous contents of the graph, such as
+	 * the node columns and the text index. The ranks are kept, so that they
+	 * can be used as a warm start when they are recomputed.
+	 */
+	protected synchronized void beginAppending() {
+		
+		clearSummaries();
+		
+		nodeColumns = null;
+		textIndex = null;
+		
+		lastNegativeFD = 0;
+		for (Integer fd : fdToObject.keySet()) {
+			if (fd < lastNegativeFD) lastNegativeFD = fd;
+		}
+	}
+	
+	
 	/**
 	 * Determine whether the SubRank has been computed
 	 * 
@@ -444,6 +554,7 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	 */
 	public void setWasSubRankComputed(boolean v) {
 		hasSubRank = v;
+		invalidateRankColumns();
 	}
 	
 	
@@ -496,6 +607,111 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	 */
 	public void setWasProvRankComputed(boolean v) {
 		hasProvRank = v;
+		invalidateRankColumns();
+	}
+	
+	
+	/**
+	 * Return the node properties stored as primitive columns, which can be
+	 * used to evaluate filters over the entire graph at once. The snapshot
+	 * is cached and rebuilt if the graph changes.
+	 * 
+	 * @return the node columns
+	 */
+	public synchronized PNodeColumns getNodeColumns() {
+		if (nodeColumns == null || !nodeColumns.isCurrent()) {
+			nodeColumns = new PNodeColumns(this);
+		}
+		return nodeColumns;
+	}
+	
+	
+	/**
+	 * Return the full-text index of the node properties, building it if
+	 * necessary. If another thread is already building the index, wait for
+	 * it to finish. The index of a derived graph is derived from the index
+	 * of its parent, if it is available, without tokenizing the values again.
+	 * 
+	 * @return the text index
+	 */
+	public PNodeTextIndex getTextIndex() {
+		
+		Thread builder;
+		synchronized (this) {
+			if (textIndex != null && textIndex.isCurrent()) return textIndex;
+			builder = textIndexBuilder;
+		}
+		
+		if (builder != null && builder != Thread.currentThread()) {
+			try {
+				builder.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			synchronized (this) {
+				if (textIndex != null && textIndex.isCurrent()) return textIndex;
+			}
+		}
+		
+		
+		// Derive the index from the closest ancestor that has one
+		
+		PNodeTextIndex index = null;
+		
+		for (PGraph p = parent; p != null && index == null; p = p.parent) {
+			PNodeTextIndex source;
+			synchronized (p) {
+				source = p.textIndex;
+			}
+			if (source != null && source.isCurrent()) index = source.derive(this);
+		}
+		
+		if (index == null) index = new PNodeTextIndex(this);
+		
+		synchronized (this) {
+			textIndex = index;
+		}
+		
+		return index;
+	}
+	
+	
+	/**
+	 * Start building the full-text index in a background thread, unless it
+	 * has already been built or it is being built
+	 */
+	public synchronized void buildTextIndexInBackground() {
+		
+		if (textIndexBuilder != null) return;
+		if (textIndex != null && textIndex.isCurrent()) return;
+		
+		textIndexBuilder = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getTextIndex();
+				}
+				catch (Throwable t) {
+					t.printStackTrace();
+				}
+				finally {
+					synchronized (PGraph.this) {
+						textIndexBuilder = null;
+					}
+				}
+			}
+		}, "PGraph text index builder");
+		textIndexBuilder.setDaemon(true);
+		textIndexBuilder.start();
+	}
+	
+	
+	/**
+	 * Discard the cached rank columns after the ranks have been recomputed
+	 */
+	private synchronized void invalidateRankColumns() {
+		if (nodeColumns != null) nodeColumns.invalidateRanks();
 	}
 	
 	
@@ -1221,39 +1437,131 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	
 	
 	/**
-	 * Add edges from the given node to the list to the downstream nodes that satisfy the filter
+	 * For each non-accepted node that is reachable from an accepted node through
+	 * non-accepted nodes, compute the set of accepted nodes that are reachable from
+	 * it through only non-accepted nodes. The sets are computed once per strongly
+	 * connected component of the non-accepted nodes, in the reverse topological
+	 * order produced by Tarjan's algorithm, so that the non-accepted parts of the
+	 * graph are never traversed more than once. Components with a single successor
+	 * and no accepted targets share the set of their successor.
 	 * 
-	 * @param node the current node
-	 * @param start the start node
-	 * @param nodes the selected nodes
-	 * @param visited the set of visited nodes
-	 * @param graph the result graph that is being constructed
-	 * @param connected true if the nodes are connected
-	 * @return the number of edges added to the result set
+	 * @param a the compact adjacency
+	 * @param accepted the accepted nodes, indexed by the node index
+	 * @return the array of the sets of accepted node indices, indexed by the node index
 	 */
-	private int createSummaryGraphHelper(PNode node, PNode start, Set<PNode> nodes,
-			Set<PNode> visited, PGraph graph, boolean connected) {
-		
-		visited.add(node);
-		
-		int count  = 0;
-		
-		for (PEdge e : node.getOutgoingEdges()) {
-			PNode target = e.getTo();
-			
-			if (nodes.contains(target)) {
-				visited.add(target);
-				PEdge.Type type = node == start ? e.getType() : PEdge.Type.COMPOUND;
-				graph.addEdge(new PEdge(graph.getNodeByID(start.getID()), graph.getNodeByID(target.getID()), type));
-				count++;
-			}
-			else if (!connected) {
-				if (visited.contains(target)) continue;
-				count += createSummaryGraphHelper(e.getTo(), start, nodes, visited, graph, connected);
+	private static int[][] computeHiddenFrontiers(CompactAdjacency a, boolean[] accepted) {
+		
+		int numNodes = a.getNumNodes();
+		int[] offsets = a.getOutOffsets();
+		int[] targets = a.getOutTargets();
+		
+		int[][] frontiers = new int[numNodes][];
+		int[] index = new int[numNodes];
+		int[] low = new int[numNodes];
+		int[] sccStack = new int[numNodes];
+		int[] callStack = new int[numNodes];
+		int[] cursor = new int[numNodes];
+		boolean[] done = new boolean[numNodes];
+		Arrays.fill(index, -1);
+		
+		int[] stamp = new int[numNodes];
+		int generation = 0;
+		IntColumn union = new IntColumn();
+		
+		int counter = 0;
+		int sccTop = 0;
+		int callTop = 0;
+		
+		for (int x = 0; x < numNodes; x++) {
+			if (!accepted[x]) continue;
+			for (int j = offsets[x]; j < offsets[x + 1]; j++) {
+				int s = targets[j];
+				if (accepted[s] || index[s] >= 0) continue;
+				
+				index[s] = low[s] = counter++;
+				sccStack[sccTop++] = s;
+				callStack[callTop] = s;
+				cursor[callTop] = offsets[s];
+				callTop++;
+				
+				while (callTop > 0) {
+					int v = callStack[callTop - 1];
+					
+					
+					// Descend to the next unvisited non-accepted neighbor
+					
+					if (cursor[callTop - 1] < offsets[v + 1]) {
+						int w = targets[cursor[callTop - 1]++];
+						if (accepted[w]) continue;
+						if (index[w] < 0) {
+							index[w] = low[w] = counter++;
+							sccStack[sccTop++] = w;
+							callStack[callTop] = w;
+							cursor[callTop] = offsets[w];
+							callTop++;
+						}
+						else if (!done[w]) {
+							if (index[w] < low[v]) low[v] = index[w];
+						}
+						continue;
+					}
+					
+					
+					// Finish the node
+					
+					callTop--;
+					if (callTop > 0) {
+						int u = callStack[callTop - 1];
+						if (low[v] < low[u]) low[u] = low[v];
+					}
+					if (low[v] != index[v]) continue;
+					
+					
+					// Pop the component and compute its frontier from the accepted
+					// targets and from the frontiers of the finished successors
+					
+					int first = sccTop;
+					do {
+						done[sccStack[--first]] = true;
+					}
+					while (sccStack[first] != v);
+					
+					generation++;
+					union.clear();
+					int[] single = null;
+					int numSources = 0;
+					
+					for (int k = first; k < sccTop; k++) {
+						int y = sccStack[k];
+						for (int i = offsets[y]; i < offsets[y + 1]; i++) {
+							int t = targets[i];
+							if (accepted[t]) {
+								numSources = 2;
+								if (stamp[t] != generation) {
+									stamp[t] = generation;
+									union.add(t);
+								}
+							}
+							else if (frontiers[t] != null && frontiers[t] != single) {
+								if (numSources++ == 0) single = frontiers[t];
+								for (int f : frontiers[t]) {
+									if (stamp[f] != generation) {
+										stamp[f] = generation;
+										union.add(f);
+									}
+								}
+							}
+						}
+					}
+					
+					int[] frontier = numSources == 1 ? single : Arrays.copyOf(union.array(), union.size());
+					for (int k = first; k < sccTop; k++) frontiers[sccStack[k]] = frontier;
+					sccTop = first;
+				}
 			}
 		}
 		
-		return count;
+		return frontiers;
 	}
 	
 	
@@ -1270,25 +1578,50 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 		// Initialize
 		
 		PGraph graph = new PGraph();
-		HashSet<PNode> accepted = new HashSet<PNode>();
+		CompactAdjacency a = getAdjacency();
+		boolean[] accepted = new boolean[a.getNumNodes()];
+		PNode[] imported = new PNode[a.getNumNodes()];
 		
 		
-		// Keep only the requested nodes
+		// Keep only the requested nodes, evaluating the filter over the entire graph at once
 		
-		for (PNode p : getNodes()) {
-			if (filter.accept(p)) {
-				graph.importNode(p);
-				accepted.add(p);
-			}
+		BitSet keys = filter.evaluate(getNodeUniverse());
+		
+		for (int x = keys.nextSetBit(0); x >= 0 && x < accepted.length; x = keys.nextSetBit(x + 1)) {
+			PNode p = getNode(x);
+			if (p == null) continue;
+			imported[x] = graph.importNode(p);
+			accepted[x] = true;
 		}
 		
 		
-		// Now add the edges
+		// Now add the edges: the direct edges keep their types, and the nodes
+		// connected through one or more non-accepted nodes get a compound edge
 		
-		HashSet<PNode> visited = new HashSet<PNode>();
-		for (PNode n : accepted) {
-			visited.clear();
-			createSummaryGraphHelper(n, n, accepted, visited, graph, connected);
+		int[] offsets = a.getOutOffsets();
+		int[] targets = a.getOutTargets();
+		int[] edgeIndices = a.getOutEdges();
+		
+		int[][] frontiers = connected ? null : computeHiddenFrontiers(a, accepted);
+		int[] stamp = connected ? null : new int[a.getNumNodes()];
+		
+		for (int x = 0; x < accepted.length; x++) {
+			if (!accepted[x]) continue;
+			
+			for (int i = offsets[x]; i < offsets[x + 1]; i++) {
+				int t = targets[i];
+				
+				if (accepted[t]) {
+					graph.addEdge(new PEdge(imported[x], imported[t], getEdge(edgeIndices[i]).getType()));
+				}
+				else if (!connected) {
+					for (int f : frontiers[t]) {
+						if (stamp[f] == x + 1) continue;
+						stamp[f] = x + 1;
+						graph.addEdge(new PEdge(imported[x], imported[f], PEdge.Type.COMPOUND));
+					}
+				}
+			}
 		}
 		
 		
@@ -1383,13 +1716,39 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	 * 
 	 * @author Peter Macko
 	 */
-	private class PGraphParserHandler implements WithPMeta, ParserHandler {
+	private class PGraphParserHandler implements WithPMeta, BulkParserHandler {
+		
+		private boolean append;
+		
+		private ArrayList<String> internedIDs = new ArrayList<String>();
+		private ArrayList<PNode> internedNodes = new ArrayList<PNode>();
+		private ArrayList<PMeta.Predicate> internedPredicates = new ArrayList<PMeta.Predicate>();
+		
+		
+		/**
+		 * Create an instance of class PGraphParserHandler
+		 * 
+		 * @param append whether to append to the existing graph
+		 */
+		public PGraphParserHandler(boolean append) {
+			this.append = append;
+		}
+		
 		
 		/**
 		 * Start loading the graph
 		 */
 		public void beginParsing() {
-			clear();
+			if (append) {
+				beginAppending();
+			}
+			else {
+				clear();
+			}
+			
+			internedIDs.clear();
+			internedNodes.clear();
+			internedPredicates.clear();
 		}
 		
 		
@@ -1404,14 +1763,8 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 
 			// Source node (silently skip over bad input)
 			
-			PNode n;
-			try {
-				n = getNode(s_pnode);
-			}
-			catch (IllegalStateException e) { throw e; }
-			catch (UnsupportedOperationException e) { throw e; }
-			catch (IllegalArgumentException e) { throw e; }
-			catch (Exception e) { return; }
+			PNode n = getSourceNode(s_pnode);
+			if (n == null) return;
 			
 			
 			// Target node
@@ -1419,10 +1772,130 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 			PNode t = getNode(s_value);
 			
 			
-			// Edge type
+			// Add the edge
+			
+			addAncestry(n, t, meta.getEdgeType(s_edge), s_edge);
+		}
+		
+		
+		/**
+		 * Process an attribute triple
+		 * 
+		 * @param s_pnode the string version of a p-node
+		 * @param s_edge the string version of an edge
+		 * @param s_value the string version of the second p-node
+		 */
+		public void loadTripleAttribute(String s_pnode, String s_edge, String s_value) {
+
+			// Source node (silently skip over bad input)
+			
+			PNode n = getSourceNode(s_pnode);
+			if (n == null) return;
+			
 			
-			PEdge.Type type = meta.getEdgeType(s_edge);
+			// Set the attribute
+			
+			addAttribute(n, meta.getPredicate(s_edge), s_value);
+		}
+		
+		
+		/**
+		 * Intern a p-node ID. Each call returns a new handle, so the caller
+		 * is responsible for reusing the handles of the IDs it has seen
+		 * 
+		 * @param s_pnode the string version of a p-node
+		 * @return the node handle
+		 */
+		public int internNode(String s_pnode) {
+			internedIDs.add(s_pnode);
+			internedNodes.add(null);
+			return internedIDs.size() - 1;
+		}
+		
+		
+		/**
+		 * Resolve an edge or an attribute label using the current metadata
+		 * 
+		 * @param s_edge the string version of an edge
+		 * @return the predicate handle
+		 */
+		public int internPredicate(String s_edge) {
+			internedPredicates.add(meta.getPredicate(s_edge));
+			return internedPredicates.size() - 1;
+		}
+		
+		
+		/**
+		 * Process a batch of triples
+		 * 
+		 * @param batch the batch of triples
+		 */
+		public void loadTriples(TripleBatch batch) {
 			
+			int size = batch.size();
+			for (int i = 0; i < size; i++) {
+				
+				// Source node (silently skip over bad input)
+				
+				int h = batch.getSubject(i);
+				PNode n = internedNodes.get(h);
+				if (n == null) {
+					n = getSourceNode(internedIDs.get(h));
+					if (n == null) continue;
+					internedNodes.set(h, n);
+				}
+				
+				PMeta.Predicate p = internedPredicates.get(batch.getPredicate(i));
+				
+				
+				// Attribute triple
+				
+				if (!batch.isAncestry(i)) {
+					addAttribute(n, p, batch.getValue(i));
+					continue;
+				}
+				
+				
+				// Ancestry triple
+				
+				h = batch.getObject(i);
+				PNode t = internedNodes.get(h);
+				if (t == null) {
+					t = getNode(internedIDs.get(h));
+					internedNodes.set(h, t);
+				}
+				
+				addAncestry(n, t, p.getEdgeType(), p.getLabel());
+			}
+		}
+		
+		
+		/**
+		 * Get the source node of a triple
+		 * 
+		 * @param s_pnode the string version of a p-node
+		 * @return the node, or null if the input should be skipped
+		 */
+		private PNode getSourceNode(String s_pnode) {
+			try {
+				return getNode(s_pnode);
+			}
+			catch (IllegalStateException e) { throw e; }
+			catch (UnsupportedOperationException e) { throw e; }
+			catch (IllegalArgumentException e) { throw e; }
+			catch (Exception e) { return null; }
+		}
+		
+		
+		/**
+		 * Add an ancestry edge
+		 * 
+		 * @param n the source node
+		 * @param t the target node
+		 * @param type the edge type
+		 * @param s_edge the string version of an edge
+		 */
+		private void addAncestry(PNode n, PNode t, PEdge.Type type, String s_edge) {
 			
 			// PASS-specific control-flow (FORKPARENT) handling
 
@@ -1449,31 +1922,18 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 		
 		
 		/**
-		 * Process an attribute triple
+		 * Set a node or an object attribute
 		 * 
-		 * @param s_pnode the string version of a p-node
-		 * @param s_edge the string version of an edge
-		 * @param s_value the string version of the second p-node
+		 * @param n the node
+		 * @param p the precomputed predicate codes
+		 * @param s_value the string version of a value
 		 */
-		public void loadTripleAttribute(String s_pnode, String s_edge, String s_value) {
-
-			// Source node (silently skip over bad input)
-			
-			PNode n;
-			try {
-				n = getNode(s_pnode);
-			}
-			catch (IllegalStateException e) { throw e; }
-			catch (UnsupportedOperationException e) { throw e; }
-			catch (IllegalArgumentException e) { throw e; }
-			catch (Exception e) { return; }
-			
+		private void addAttribute(PNode n, PMeta.Predicate p, String s_value) {
 			
 			// Process the node properties
 
-			PNode.Attribute pna = meta.getNodeAttributeCode(s_edge);
-			if (pna != PNode.Attribute.OTHER) {
-				n.setAttribute(s_edge, s_value);
+			if (p.getNodeAttribute() != PNode.Attribute.OTHER) {
+				n.setAttribute(p.getNodeAttribute(), s_value);
 				updateStatistics(n);
 				return;
 			}
@@ -1482,10 +1942,15 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 			// Process the object / node properties
 
 			if (n.getVersion() == 0) {
-				n.getObject().setAttribute(s_edge, s_value);
+				if (p.getObjectAttribute() != PObject.Attribute.OTHER) {
+					n.getObject().setAttribute(p.getObjectAttribute(), s_value);
+				}
+				else {
+					n.getObject().setExtendedAttribute(p.getLabel(), s_value);
+				}
 			}
 			else {
-				n.setAttribute(s_edge, s_value);
+				n.setExtendedAttribute(p.getLabel(), s_value);
 			}
 		}
 		
@@ -1589,16 +2054,25 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 					n.setVisible(false);
 				}
 			}
+			
+			
+			// Switch to the compact adjacency representation; the reachability index
+			// is built on demand by the first lineage query that needs it
+			
+			compactAdjacency();
 		}
 		
 		
 		/**
-		 * Set the metadata that should be associated with the graph
+		 * Set the metadata that should be associated with the graph. This is
+		 * ignored when appending, since the existing graph already has its metadata
 		 * 
 		 * @param meta the new metadata
 		 */
 		public void setMeta(PMeta meta) {
+			if (append) return;
 			PGraph.this.setMeta(meta);
+			internedPredicates.clear();
 		}
 		
 		
@@ -1763,6 +2237,697 @@ public class PGraph extends Graph<PNode, PEdge, PSummaryNode, PGraph> implements
 	}
 	
 	
+	/**
+	 * Write the summary node and its descendants to the summary columns of
+	 * the binary format. The structure is stored as a stream of events in
+	 * the document order of the XML format, so that loading it replays the
+	 * same sequence of summarization operations
+	 * 
+	 * @param summary the summary node
+	 * @param w the columnar writer
+	 * @param rows the summary node properties (ID, index, visibility, label)
+	 * @param events the structure events
+	 */
+	private void writeSummaryNodeToBinary(PSummaryNode summary, ColumnarWriter w, IntColumn rows, IntColumn events) {
+		
+		events.add(BINARY_SUMMARY_BEGIN);
+		
+		rows.add(summary.getID());
+		rows.add(summary.getIndex());
+		rows.add(summary.isVisible() ? 1 : 0);
+		rows.add(w.intern(summary.getLabel()));
+		
+		for (BaseNode n : summary.getBaseChildren()) {
+			if (n instanceof PSummaryNode) {
+				writeSummaryNodeToBinary(Utils.<PSummaryNode>cast(n), w, rows, events);
+			}
+			else {
+				events.add(n.getIndex());
+			}
+		}
+		
+		events.add(BINARY_SUMMARY_END);
+	}
+	
+	
+	/**
+	 * Write the output of an XML writer to a byte array
+	 * 
+	 * @param meta the metadata to write, or null to write the algorithm instead 
+	 * @param algorithm the XML-serializable object to write
+	 * @return the XML document as a byte array
+	 * @throws IOException on I/O or XML error
+	 */
+	private static byte[] writeXMLBlob(PMeta meta, XMLSerializable algorithm) throws IOException {
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		try {
+			SAXTransformerFactory tf = (SAXTransformerFactory) SAXTransformerFactory.newInstance();
+			TransformerHandler hd = tf.newTransformerHandler();
+			hd.getTransformer().setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+			hd.setResult(new StreamResult(out));
+			
+			hd.startDocument();
+			if (meta != null) {
+				meta.writeToXML(hd);
+			}
+			else {
+				algorithm.writeToXML(hd);
+			}
+			hd.endDocument();
+		}
+		catch (TransformerConfigurationException e) {
+			throw new IOException(e.getMessage());
+		}
+		catch (SAXException e) {
+			throw new IOException(e.getMessage());
+		}
+		
+		return out.toByteArray();
+	}
+	
+	
+	/**
+	 * Parse an XML document stored in a byte array
+	 * 
+	 * @param blob the XML document
+	 * @return the document element
+	 * @throws ParserException on error
+	 */
+	private static Element parseXMLBlob(byte[] blob) throws ParserException {
+		
+		try {
+			DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			return db.parse(new ByteArrayInputStream(blob)).getDocumentElement();
+		}
+		catch (Exception e) {
+			throw new ParserException("Invalid embedded XML: " + e.getMessage(), e);
+		}
+	}
+	
+	
+	/**
+	 * Write the graph to a binary columnar file. The metadata and the
+	 * configuration of the layout algorithms are small, so they are
+	 * embedded as XML; everything else is stored in columns
+	 * 
+	 * @param w the columnar writer
+	 * @throws IOException on error
+	 */
+	public void writeToBinary(ColumnarWriter w) throws IOException {
+		
+		// Write the graph properties and the metadata
+		
+		w.beginSection(BINARY_SECTION_GRAPH);
+		w.writeString(description);
+		w.writeBoolean(hasProvRank);
+		
+		byte[] metaBlob = meta == null ? new byte[0] : writeXMLBlob(meta, null);
+		w.writeBytes(metaBlob, metaBlob.length);
+		
+		
+		// Write the objects and the nodes, grouped by object
+		
+		int numObjects = fdToObject.size();
+		int[] o_fd = new int[numObjects];
+		int[] o_parentFD = new int[numObjects];
+		int[] o_name = new int[numObjects];
+		int[] o_shortName = new int[numObjects];
+		int[] o_type = new int[numObjects];
+		int[] o_extType = new int[numObjects];
+		int[] o_numNodes = new int[numObjects];
+		int[] o_attrStart = new int[numObjects + 1];
+		IntColumn o_attrs = new IntColumn();
+		
+		IntColumn n_ints = new IntColumn();
+		DoubleColumn n_doubles = new DoubleColumn();
+		IntColumn n_attrStart = new IntColumn();
+		IntColumn n_attrs = new IntColumn();
+		
+		int row = 0;
+		for (PObject o : fdToObject.values()) {
+			
+			o_fd[row] = o.getFD();
+			o_parentFD[row] = o.getParentFD();
+			o_name[row] = w.intern(o.getName());
+			o_shortName[row] = w.intern(o.getStoredShortName());
+			o_type[row] = o.getType().ordinal();
+			o_extType[row] = w.intern(o.getExtendedType());
+			
+			o_attrStart[row] = o_attrs.size() / 2;
+			if (o.attributeHandle != AttributeStore.NO_HANDLE) {
+				for (Entry<String, String> e : o.getExtendedAttributes().entrySet()) {
+					o_attrs.add(w.intern(e.getKey()));
+					o_attrs.add(w.intern(e.getValue()));
+				}
+			}
+			
+			for (PNode n : o.versions) {
+				if (n == null) continue;
+				o_numNodes[row]++;
+				
+				n_ints.add(n.getIndex());
+				n_ints.add(n.ver);
+				n_ints.add(n.getID());
+				n_ints.add(n.isVisible() ? 1 : 0);
+				n_ints.add(w.intern(n.id));
+				n_ints.add(n.useComputedLabel ? ColumnarWriter.NULL_STRING : w.intern(n.getLabel()));
+				
+				n_doubles.add(n.getStoredTime());
+				n_doubles.add(n.getFreezeTime());
+				n_doubles.add(n.getSubRank());
+				n_doubles.add(n.getProvRank());
+				
+				n_attrStart.add(n_attrs.size() / 2);
+				if (n.attributeHandle != AttributeStore.NO_HANDLE) {
+					for (Entry<String, String> e : n.getExtendedAttributes().entrySet()) {
+						n_attrs.add(w.intern(e.getKey()));
+						n_attrs.add(w.intern(e.getValue()));
+					}
+				}
+			}
+			
+			row++;
+		}
+		o_attrStart[numObjects] = o_attrs.size() / 2;
+		n_attrStart.add(n_attrs.size() / 2);
+		
+		w.beginSection(BINARY_SECTION_OBJECTS);
+		w.writeInts(o_fd, numObjects);
+		w.writeInts(o_parentFD, numObjects);
+		w.writeInts(o_name, numObjects);
+		w.writeInts(o_shortName, numObjects);
+		w.writeInts(o_type, numObjects);
+		w.writeInts(o_extType, numObjects);
+		w.writeInts(o_numNodes, numObjects);
+		w.writeInts(o_attrStart, numObjects + 1);
+		w.writeInts(o_attrs.array(), o_attrs.size());
+		
+		w.beginSection(BINARY_SECTION_NODES);
+		w.writeInts(n_ints.array(), n_ints.size());
+		w.writeDoubles(n_doubles.array(), n_doubles.size());
+		w.writeInts(n_attrStart.array(), n_attrStart.size());
+		w.writeInts(n_attrs.array(), n_attrs.size());
+		
+		o_attrs = null;
+		n_ints = null;
+		n_doubles = null;
+		n_attrStart = null;
+		n_attrs = null;
+		
+		
+		// Write the edges
+		
+		IntColumn e_ints = new IntColumn();
+		
+		for (PEdge e : getEdges()) {
+			e_ints.add(e.getIndex());
+			e_ints.add(e.getFrom().getIndex());
+			e_ints.add(e.getTo().getIndex());
+			e_ints.add(e.getType().ordinal());
+			e_ints.add(w.intern(e.getLabel()));
+		}
+		
+		w.beginSection(BINARY_SECTION_EDGES);
+		w.writeInts(e_ints.array(), e_ints.size());
+		e_ints = null;
+		
+		
+		// Write the summary nodes
+		
+		IntColumn s_rows = new IntColumn();
+		IntColumn s_events = new IntColumn();
+		
+		if (getRootSummaryNode() != null) {
+			writeSummaryNodeToBinary(getRootSummaryNode(), w, s_rows, s_events);
+		}
+		
+		w.beginSection(BINARY_SECTION_SUMMARIES);
+		w.writeInts(s_rows.array(), s_rows.size());
+		w.writeInts(s_events.array(), s_events.size());
+		
+		
+		// Write the layouts
+		
+		w.beginSection(BINARY_SECTION_LAYOUTS);
+		w.writeInt(getLayouts().size());
+		
+		GraphLayout defaultLayout = getDefaultLayout(); 
+		for (GraphLayout l : getLayouts()) {
+			
+			if (!(l.getAlgorithm() instanceof XMLSerializable)) {
+				throw new IOException(l.getAlgorithm().getClass().getCanonicalName() + " is not XMLSerializable");
+			}
+			
+			w.writeString(l.getDescription());
+			w.writeBoolean(l == defaultLayout);
+			w.writeString(l.getAlgorithm().getClass().getName());
+			
+			byte[] algorithmBlob = writeXMLBlob(null, (XMLSerializable) l.getAlgorithm());
+			w.writeBytes(algorithmBlob, algorithmBlob.length);
+			
+			IntColumn ln_index = new IntColumn();
+			DoubleColumn ln_doubles = new DoubleColumn();
+			
+			for (GraphLayoutNode x : l.getLayoutNodes()) {
+				if (x == null) continue;
+				ln_index.add(x.getIndex());
+				ln_doubles.add(x.getX());
+				ln_doubles.add(x.getY());
+				ln_doubles.add(x.getWidth());
+				ln_doubles.add(x.getHeight());
+			}
+			
+			w.writeInts(ln_index.array(), ln_index.size());
+			w.writeDoubles(ln_doubles.array(), ln_doubles.size());
+			
+			IntColumn le_index = new IntColumn();
+			IntColumn le_start = new IntColumn();
+			DoubleColumn le_x = new DoubleColumn();
+			DoubleColumn le_y = new DoubleColumn();
+			
+			for (GraphLayoutEdge x : l.getLayoutEdges()) {
+				if (x == null) continue;
+				le_index.add(x.getIndex());
+				le_start.add(le_x.size());
+				for (double v : x.getX()) le_x.add(v);
+				for (double v : x.getY()) le_y.add(v);
+				if (le_x.size() != le_y.size()) {
+					throw new IOException("Layout edge with index " + x.getIndex()
+							+ " does not have x and y arrays of the same length");
+				}
+			}
+			le_start.add(le_x.size());
+			
+			w.writeInts(le_index.array(), le_index.size());
+			w.writeInts(le_start.array(), le_start.size());
+			w.writeDoubles(le_x.array(), le_x.size());
+			w.writeDoubles(le_y.array(), le_y.size());
+		}
+		
+		
+		// Write the reachability index, but only if it has already been computed
+		
+		w.beginSection(BINARY_SECTION_REACHABILITY);
+		ReachabilityIndex reachability = getReachabilityIndexIfAvailable();
+		if (reachability != null) {
+			reachability.writeToBinary(w);
+		}
+		else {
+			ReachabilityIndex.writeMissingToBinary(w);
+		}
+	}
+	
+	
+	/**
+	 * Load the graph from a binary columnar file written by writeToBinary()
+	 * 
+	 * @param r the columnar reader
+	 * @return the graph
+	 * @throws ParserException on error
+	 */
+	public static PGraph loadFromBinary(ColumnarReader r) throws ParserException {
+		
+		try {
+			return loadFromBinaryHelper(r);
+		}
+		catch (ParserException e) {
+			throw e;
+		}
+		catch (RuntimeException e) {
+			throw new ParserException("Corrupted project file: " + e.getMessage(), e);
+		}
+	}
+	
+	
+	/**
+	 * Load the graph from a binary columnar file written by writeToBinary()
+	 * 
+	 * @param r the columnar reader
+	 * @return the graph
+	 * @throws ParserException on error
+	 */
+	private static PGraph loadFromBinaryHelper(ColumnarReader r) throws ParserException {
+		
+		PGraph graph = new PGraph();
+		
+		
+		// Load the graph properties and the metadata
+		
+		r.expectSection(BINARY_SECTION_GRAPH);
+		graph.description = r.readString();
+		graph.hasProvRank = r.readBoolean();
+		
+		byte[] metaBlob = r.readBytes();
+		if (metaBlob.length > 0) {
+			graph.setMeta(PMeta.loadFromXML(parseXMLBlob(metaBlob)));
+		}
+		
+		
+		// Load the objects and the nodes
+		
+		r.expectSection(BINARY_SECTION_OBJECTS);
+		int[] o_fd = r.readInts();
+		int[] o_parentFD = r.readInts();
+		int[] o_name = r.readInts();
+		int[] o_shortName = r.readInts();
+		int[] o_type = r.readInts();
+		int[] o_extType = r.readInts();
+		int[] o_numNodes = r.readInts();
+		int[] o_attrStart = r.readInts();
+		int[] o_attrs = r.readInts();
+		
+		r.expectSection(BINARY_SECTION_NODES);
+		int[] n_ints = r.readInts();
+		double[] n_doubles = r.readDoubles();
+		int[] n_attrStart = r.readInts();
+		int[] n_attrs = r.readInts();
+		
+		PObject.Type[] objectTypes = PObject.Type.values();
+		PNode[] objectNodes = new PNode[0];
+		int nodeRow = 0;
+		
+		for (int row = 0; row < o_fd.length; row++) {
+			
+			PObject o = new PObject(graph, o_fd[row]);
+			o.setParentFD(o_parentFD[row]);
+			o.setStoredProperties(r.getString(o_name[row]), r.getString(o_shortName[row]),
+					objectTypes[o_type[row]], r.getString(o_extType[row]));
+			
+			for (int a = o_attrStart[row]; a < o_attrStart[row + 1]; a++) {
+				o.setExtendedAttribute(r.getString(o_attrs[2 * a]), r.getString(o_attrs[2 * a + 1]));
+			}
+			
+			if (objectNodes.length < o_numNodes[row]) objectNodes = new PNode[o_numNodes[row]];
+			
+			for (int k = 0; k < o_numNodes[row]; k++, nodeRow++) {
+				
+				int i = BINARY_NODE_INTS * nodeRow;
+				int d = BINARY_NODE_DOUBLES * nodeRow;
+				
+				PNode node = new PNode(n_ints[i], o, n_ints[i + 1], r.getString(n_ints[i + 4]));
+				node.setID(n_ints[i + 2]);
+				node.setVisible(n_ints[i + 3] != 0);
+				
+				String label = r.getString(n_ints[i + 5]);
+				if (label != null) {
+					node.useComputedLabel = false;
+					node.setLabel(label);
+				}
+				
+				node.setTime(n_doubles[d]);
+				node.setFreezeTime(n_doubles[d + 1]);
+				node.setSubRank(n_doubles[d + 2]);
+				node.setProvRank(n_doubles[d + 3]);
+				
+				for (int a = n_attrStart[nodeRow]; a < n_attrStart[nodeRow + 1]; a++) {
+					node.setExtendedAttribute(r.getString(n_attrs[2 * a]), r.getString(n_attrs[2 * a + 1]));
+				}
+				
+				objectNodes[k] = node;
+			}
+			
+			for (int k = 0; k < o_numNodes[row]; k++) {
+				graph.addNodeExt(objectNodes[k]);
+			}
+		}
+		
+		o_fd = o_parentFD = o_name = o_shortName = o_type = o_extType = o_numNodes = o_attrStart = o_attrs = null;
+		n_ints = n_attrStart = n_attrs = null;
+		n_doubles = null;
+		
+		
+		// Load the edges
+		
+		r.expectSection(BINARY_SECTION_EDGES);
+		int[] e_ints = r.readInts();
+		PEdge.Type[] edgeTypes = PEdge.Type.values();
+		
+		for (int i = 0; i < e_ints.length; i += BINARY_EDGE_INTS) {
+			PNode from = graph.getNode(e_ints[i + 1]);
+			PNode to = graph.getNode(e_ints[i + 2]);
+			if (from == null || to == null) {
+				throw new ParserException("Edge with index " + e_ints[i] + " refers to a nonexistent node");
+			}
+			graph.addEdgeExt(new PEdge(e_ints[i], from, to, edgeTypes[e_ints[i + 3]], r.getString(e_ints[i + 4])));
+		}
+		
+		e_ints = null;
+		
+		
+		// Load the summary nodes
+		
+		r.expectSection(BINARY_SECTION_SUMMARIES);
+		int[] s_rows = r.readInts();
+		int[] s_events = r.readInts();
+		
+		HashMap<Integer, Integer> summaryNodeIndexRemap = new HashMap<Integer, Integer>();
+		Stack<PSummaryNode> summaryNodes = new Stack<PSummaryNode>();
+		int summaryRow = 0;
+		
+		for (int event : s_events) {
+			
+			PSummaryNode parent = summaryNodes.isEmpty() ? null : summaryNodes.peek();
+			
+			if (event == BINARY_SUMMARY_BEGIN) {
+				
+				int i = BINARY_SUMMARY_INTS * summaryRow++;
+				
+				PSummaryNode s;
+				if (parent == null) {
+					graph.summarizationBegin();
+					s = graph.getRootSummaryNode();
+				}
+				else {
+					s = graph.newSummaryNode(parent);
+				}
+				s.setID(s_rows[i]);
+				s.setVisible(s_rows[i + 2] != 0);
+				s.setLabel(r.getString(s_rows[i + 3]));
+				
+				summaryNodes.push(s);
+				summaryNodeIndexRemap.put(s_rows[i + 1], s.getIndex());
+			}
+			
+			else if (event == BINARY_SUMMARY_END) {
+				
+				summaryNodes.pop();
+				if (summaryNodes.isEmpty()) graph.summarizationEnd();
+			}
+			
+			else {
+				
+				PNode n = graph.getNode(event);
+				if (parent == null || n == null) {
+					throw new ParserException("Invalid summary node reference to node " + event);
+				}
+				parent.moveNodeFromAncestor(n);
+			}
+		}
+		
+		if (!summaryNodes.isEmpty()) {
+			throw new ParserException("Unterminated summary node");
+		}
+		
+		s_rows = null;
+		s_events = null;
+		
+		
+		// Load the layouts
+		
+		r.expectSection(BINARY_SECTION_LAYOUTS);
+		int numLayouts = r.readInt();
+		
+		for (int l = 0; l < numLayouts; l++) {
+			
+			String layoutDescription = r.readString();
+			boolean layoutDefault = r.readBoolean();
+			String layoutAlgorithmClass = r.readString();
+			byte[] algorithmBlob = r.readBytes();
+			
+			
+			// Algorithm
+			
+			GraphLayoutAlgorithm algorithm;
+			try {
+				Object o = Class.forName(layoutAlgorithmClass).newInstance();
+				if (!(o instanceof GraphLayoutAlgorithm)) {
+					throw new ParserException(layoutAlgorithmClass + " is not a GraphLayoutAlgorithm");
+				}
+				if (!(o instanceof XMLSerializable)) {
+					throw new ParserException(layoutAlgorithmClass + " is not XMLSerializable");
+				}
+				((XMLSerializable) o).loadFromXML(parseXMLBlob(algorithmBlob));
+				algorithm = (GraphLayoutAlgorithm) o;
+			}
+			catch (ParserException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new ParserException("Cannot instantiate " + layoutAlgorithmClass + ": " + e.getMessage(), e);
+			}
+			
+			GraphLayout layout = new FastGraphLayout(graph, algorithm, layoutDescription);
+			
+			
+			// Layout nodes
+			
+			int[] ln_index = r.readInts();
+			double[] ln_doubles = r.readDoubles();
+			
+			for (int i = 0; i < ln_index.length; i++) {
+				
+				int index = ln_index[i];
+				Integer newIndex = summaryNodeIndexRemap.get(index);
+				if (newIndex != null) index = newIndex.intValue();
+				
+				BaseNode node = graph.getBaseNode(index);
+				if (node == null) {
+					throw new ParserException("Node with index " + index + " does not exist");
+				}
+				
+				GraphLayoutNode n = new GraphLayoutNode(node, ln_doubles[4 * i], ln_doubles[4 * i + 1]);
+				n.setSize(ln_doubles[4 * i + 2], ln_doubles[4 * i + 3]);
+				layout.addLayoutNode(n);
+			}
+			
+			
+			// Layout edges
+			
+			int[] le_index = r.readInts();
+			int[] le_start = r.readInts();
+			double[] le_x = r.readDoubles();
+			double[] le_y = r.readDoubles();
+			
+			for (int i = 0; i < le_index.length; i++) {
+				
+				BaseEdge edge = graph.getBaseEdge(le_index[i]);
+				if (edge == null) continue;		// Same as in GraphLayoutEdge.loadFromXML()
+				
+				GraphLayoutNode nf = layout.getLayoutNode(edge.getBaseFrom().getIndex());
+				GraphLayoutNode nt = layout.getLayoutNode(edge.getBaseTo().getIndex());
+				if (nf == null || nt == null) {
+					throw new ParserException("Layout edge with index " + le_index[i] + " refers to a nonexistent layout node");
+				}
+				
+				double[] x = Arrays.copyOfRange(le_x, le_start[i], le_start[i + 1]);
+				double[] y = Arrays.copyOfRange(le_y, le_start[i], le_start[i + 1]);
+				layout.addLayoutEdge(new GraphLayoutEdge(edge, nf, nt, x, y));
+			}
+			
+			
+			// Finish the layout
+			
+			GraphLayout dl = graph.getDefaultLayout();
+			graph.addLayout(layout);
+			if (layoutDefault || dl == null) dl = layout;
+			graph.setDefaultLayout(dl);
+		}
+		
+		
+		// Load the reachability index (it is rebuilt on demand if it is missing or stale)
+		
+		if (r.getVersion() >= 2) {
+			r.expectSection(BINARY_SECTION_REACHABILITY);
+			ReachabilityIndex index = ReachabilityIndex.loadFromBinary(graph, r);
+			if (index != null) graph.setReachabilityIndex(index);
+		}
+		
+		return graph;
+	}
+	
+	
+	/**
+	 * A growable column of integers
+	 */
+	private static class IntColumn {
+		
+		private int[] a = new int[16];
+		private int size = 0;
+		
+		
+		/**
+		 * Append a value
+		 * 
+		 * @param v the value
+		 */
+		public void add(int v) {
+			if (size == a.length) a = Arrays.copyOf(a, 2 * a.length);
+			a[size++] = v;
+		}
+		
+		
+		/**
+		 * Return the number of values
+		 * 
+		 * @return the size
+		 */
+		public int size() {
+			return size;
+		}
+		
+		
+		/**
+		 * Remove all values, keeping the backing array
+		 */
+		public void clear() {
+			size = 0;
+		}
+		
+		
+		/**
+		 * Return the backing array, which can be longer than the column
+		 * 
+		 * @return the array
+		 */
+		public int[] array() {
+			return a;
+		}
+	}
+	
+	
+	/**
+	 * A growable column of doubles
+	 */
+	private static class DoubleColumn {
+		
+		private double[] a = new double[16];
+		private int size = 0;
+		
+		
+		/**
+		 * Append a value
+		 * 
+		 * @param v the value
+		 */
+		public void add(double v) {
+			if (size == a.length) a = Arrays.copyOf(a, 2 * a.length);
+			a[size++] = v;
+		}
+		
+		
+		/**
+		 * Return the number of values
+		 * 
+		 * @return the size
+		 */
+		public int size() {
+			return size;
+		}
+		
+		
+		/**
+		 * Return the backing array, which can be longer than the column
+		 * 
+		 * @return the array
+		 */
+		public double[] array() {
+			return a;
+		}
+	}
+	
+	
 	/**
 	 * Return SAX XML parser that would create the document
 	 * 
@@ -344,6 +344,28 @@ public class PMeta {
 		return name == null ? "" : name;
 	}
 
+	
+	/**
+	 * Resolve all codes associated with a triple predicate at once, so that
+	 * bulk loaders do not need to look up the same label over and over again
+	 * 
+	 * @param label the predicate (edge or attribute) label
+	 * @return the precomputed predicate codes
+	 */
+	public Predicate getPredicate(String label) {
+		
+		String key = caseSensitive ? label : label.toLowerCase();
+		
+		PEdge.Type e = edgeTypes.get(key);
+		PNode.Attribute n = nodeAttributeCodes.get(key);
+		PObject.Attribute o = objectAttributeCodes.get(key);
+		
+		return new Predicate(label,
+				e == null ? PEdge.Type.OTHER : e,
+				n == null ? PNode.Attribute.OTHER : n,
+				o == null ? PObject.Attribute.OTHER : o);
+	}
+
 
 	/**
 	 * Write the metadata information to XML
@@ -521,4 +543,75 @@ public class PMeta {
 		
 		return meta;
 	}
+	
+	
+	/**
+	 * Precomputed codes of a triple predicate
+	 * 
+	 * @author Peter Macko
+	 */
+	public static class Predicate {
+		
+		private String label;
+		private PEdge.Type edgeType;
+		private PNode.Attribute nodeAttribute;
+		private PObject.Attribute objectAttribute;
+		
+		
+		/**
+		 * Create an instance of class Predicate
+		 * 
+		 * @param label the predicate label
+		 * @param edgeType the edge type
+		 * @param nodeAttribute the node attribute code
+		 * @param objectAttribute the object attribute code
+		 */
+		protected Predicate(String label, PEdge.Type edgeType,
+				PNode.Attribute nodeAttribute, PObject.Attribute objectAttribute) {
+			this.label = label;
+			this.edgeType = edgeType;
+			this.nodeAttribute = nodeAttribute;
+			this.objectAttribute = objectAttribute;
+		}
+		
+		
+		/**
+		 * Return the predicate label
+		 * 
+		 * @return the label as it appeared in the input
+		 */
+		public String getLabel() {
+			return label;
+		}
+		
+		
+		/**
+		 * Return the edge type
+		 * 
+		 * @return the edge type, or OTHER if the label is not a known edge label
+		 */
+		public PEdge.Type getEdgeType() {
+			return edgeType;
+		}
+		
+		
+		/**
+		 * Return the node attribute code
+		 * 
+		 * @return the node attribute code, or OTHER if not a standard attribute
+		 */
+		public PNode.Attribute getNodeAttribute() {
+			return nodeAttribute;
+		}
+		
+		
+		/**
+		 * Return the object attribute code
+		 * 
+		 * @return the object attribute code, or OTHER if not a standard attribute
+		 */
+		public PObject.Attribute getObjectAttribute() {
+			return objectAttribute;
+		}
+	}
 }
@@ -31,6 +31,7 @@
 
 package edu.harvard.pass;
 
+import edu.harvard.util.AttributeStore;
 import edu.harvard.util.ParserException;
 import edu.harvard.util.Utils;
 import edu.harvard.util.XMLUtils;
@@ -83,7 +84,7 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 	 * Node attributes
 	 */
 	private double time;
-	protected Map<String, String> attributes;
+	protected int attributeHandle;
 	
 	
 	/*
@@ -142,7 +143,7 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 		
 		this.freezeTime = 0;				// Not set
 		this.time = Double.MIN_VALUE;		// Not set
-		this.attributes = null;
+		this.attributeHandle = AttributeStore.NO_HANDLE;
 		
 		this.aux = 0;
 		this.subrank = Double.MIN_VALUE;	// Not set
@@ -190,6 +191,19 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 	}
 	
 	
+	/**
+	 * Get a key that identifies the node and its appearance independently of
+	 * its index. Unlike the node ID, the public ID does not depend on the order
+	 * in which the nodes were loaded.
+	 * 
+	 * @return the structural key
+	 */
+	@Override
+	public String getStructuralKey() {
+		return getPublicID() + ":" + getLabel();
+	}
+	
+	
 	/**
 	 * Compute the label of a node
 	 * 
@@ -325,6 +339,16 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 		time = t;
 	}
 
+	
+	/**
+	 * Get the timestamp as stored, which is Double.MIN_VALUE if not set
+	 * 
+	 * @return the stored time
+	 */
+	double getStoredTime() {
+		return time;
+	}
+
 
 	/**
 	 * Get the previous version of this node
@@ -375,13 +399,25 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 			setAttribute(code, value);
 		}
 		else {
-			if (key == null || "".equals(key)) throw new IllegalArgumentException("Invalid attribute name"); 
-			if (attributes == null) attributes = new HashMap<String, String>();
-			attributes.put(key, value);
+			setExtendedAttribute(key, value);
 		}
 	}
 
 
+	/**
+	 * Set an extended (non-standard) attribute without resolving its code
+	 * 
+	 * @param key the attribute name
+	 * @param value the attribute value
+	 */
+	void setExtendedAttribute(String key, String value) {
+		if (key == null || "".equals(key)) throw new IllegalArgumentException("Invalid attribute name"); 
+		AttributeStore store = object.graph.getAttributeStore();
+		if (attributeHandle == AttributeStore.NO_HANDLE) attributeHandle = store.newHandle();
+		store.put(attributeHandle, key, value);
+	}
+
+
 	/**
 	 * Return an attribute
 	 *
@@ -394,18 +430,23 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 		case TIME: return "" + getTime();
 		case FREEZETIME: return "" + getFreezeTime();
 		case LABEL: return getLabel();
-		default: return attributes == null ? null : attributes.get(key);
+		default:
+			if (attributeHandle == AttributeStore.NO_HANDLE) return null;
+			return object.graph.getAttributeStore().get(attributeHandle, key);
 		}
 	}
 	
 	
 	/**
-	 * Return a map of extended attributes
+	 * Return a map of extended attributes. The values are fetched from the
+	 * graph's attribute store, so the map is a snapshot that does not reflect
+	 * later changes
 	 * 
 	 * @return a map of extended attributes
 	 */
 	public Map<String, String> getExtendedAttributes() {
-		return attributes == null ? Utils.<Map<String, String>>cast(Collections.EMPTY_MAP) : attributes;
+		if (attributeHandle == AttributeStore.NO_HANDLE) return Utils.<Map<String, String>>cast(Collections.EMPTY_MAP);
+		return object.graph.getAttributeStore().getAll(attributeHandle);
 	}
 	
 	
@@ -744,10 +785,10 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 		
 		// Write the attributes
 		
-		if (attributes != null) {
+		if (attributeHandle != AttributeStore.NO_HANDLE) {
 			attrs.clear();
 			hd.startElement("", "", "node-attributes", attrs);
-			for (Entry<String, String> e : attributes.entrySet()) {
+			for (Entry<String, String> e : getExtendedAttributes().entrySet()) {
 				attrs.clear();
 				attrs.addAttribute("", "", "key", "CDATA", "" + e.getKey());
 				hd.startElement("", "", "node-attribute", attrs);
@@ -820,12 +861,11 @@ public class PNode extends Node<PNode, PEdge> implements Serializable, WithTimeI
 		
 		Element attrs = XMLUtils.getSingleOptionalElement(element, "node-attributes");
 		if (attrs != null) {
-			if (node.attributes == null) node.attributes = new HashMap<String, String>();
 			for (org.w3c.dom.Node n = attrs.getFirstChild(); n != null; n = n.getNextSibling()) {
 				if (n instanceof Element && "node-attribute".equals(n.getNodeName())) {
 					Element e = (Element) n;
 					String key = XMLUtils.getAttribute(e, "key");
-					node.attributes.put(key, e.getTextContent());
+					node.setExtendedAttribute(key, e.getTextContent());
 				}
 			}
 		}
@@ -0,0 +1,293 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2010
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass;
+
+import java.util.*;
+
+
+/**
+ * A snapshot of the node properties of a provenance graph, stored as
+ * primitive columns indexed by the node index. The filters use it to
+ * evaluate their conditions over the entire graph in tight loops, without
+ * calling the PNode getters for each node. The properties of the objects,
+ * such as the names and the types, are stored only once per object, and
+ * each node refers to its object by a dense object index.
+ * 
+ * @author Peter Macko
+ */
+public class PNodeColumns {
+	
+	private PGraph graph;
+	private int size;
+	private int adjacencyVersion;
+	private double timeBase;
+	
+	// The node columns
+	
+	private int[] fds;
+	private int[] versions;
+	private double[] times;
+	private int[] indegrees;
+	private int[] outdegrees;
+	private int[] objectIndices;
+	
+	// The objects
+	
+	private PObject[] objects;
+	
+	// The columns that are computed on demand
+	
+	private double[] logProvRanks;
+	private double[] logSubRanks;
+	
+	
+	/**
+	 * Create an instance of class PNodeColumns
+	 * 
+	 * @param graph the provenance graph
+	 */
+	PNodeColumns(PGraph graph) {
+		
+		this.graph = graph;
+		this.size = graph.getNodes().size();
+		this.adjacencyVersion = graph.getAdjacencyVersion();
+		this.timeBase = graph.getTimeBase();
+		
+		fds = new int[size];
+		versions = new int[size];
+		times = new double[size];
+		indegrees = new int[size];
+		outdegrees = new int[size];
+		objectIndices = new int[size];
+		
+		logProvRanks = null;
+		logSubRanks = null;
+		
+		IdentityHashMap<PObject, Integer> objectMap = new IdentityHashMap<PObject, Integer>();
+		ArrayList<PObject> objectList = new ArrayList<PObject>();
+		
+		for (int i = 0; i < size; i++) {
+			PNode n = graph.getNode(i);
+			if (n == null) {
+				objectIndices[i] = -1;
+				continue;
+			}
+			
+			PObject o = n.getObject();
+			Integer k = objectMap.get(o);
+			if (k == null) {
+				k = objectList.size();
+				objectMap.put(o, k);
+				objectList.add(o);
+			}
+			
+			fds[i] = n.getFD();
+			versions[i] = n.getVersion();
+			times[i] = n.getTime();
+			indegrees[i] = n.getIncomingEdges().size();
+			outdegrees[i] = n.getOutgoingEdges().size();
+			objectIndices[i] = k.intValue();
+		}
+		
+		objects = objectList.toArray(new PObject[objectList.size()]);
+	}
+	
+	
+	/**
+	 * Determine whether the snapshot still corresponds to the graph, including
+	 * the degrees of the nodes
+	 * 
+	 * @return true if it is up to date
+	 */
+	boolean isCurrent() {
+		return size == graph.getNodes().size() && adjacencyVersion == graph.getAdjacencyVersion()
+				&& timeBase == graph.getTimeBase();
+	}
+	
+	
+	/**
+	 * Discard the rank columns, so that they are recomputed on demand
+	 */
+	synchronized void invalidateRanks() {
+		logProvRanks = null;
+		logSubRanks = null;
+	}
+	
+	
+	/**
+	 * Return the provenance graph
+	 * 
+	 * @return the graph
+	 */
+	public PGraph getGraph() {
+		return graph;
+	}
+	
+	
+	/**
+	 * Return the number of rows, which is the size of the node universe of the graph
+	 * 
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+	
+	
+	/**
+	 * Return the column of file descriptors
+	 * 
+	 * @return the array of FDs
+	 */
+	public int[] getFDs() {
+		return fds;
+	}
+	
+	
+	/**
+	 * Return the column of versions
+	 * 
+	 * @return the array of versions
+	 */
+	public int[] getVersions() {
+		return versions;
+	}
+	
+	
+	/**
+	 * Return the column of times, relative to the time base of the graph
+	 * 
+	 * @return the array of times
+	 */
+	public double[] getTimes() {
+		return times;
+	}
+	
+	
+	/**
+	 * Return the column of indegrees
+	 * 
+	 * @return the array of indegrees
+	 */
+	public int[] getIndegrees() {
+		return indegrees;
+	}
+	
+	
+	/**
+	 * Return the column of outdegrees
+	 * 
+	 * @return the array of outdegrees
+	 */
+	public int[] getOutdegrees() {
+		return outdegrees;
+	}
+	
+	
+	/**
+	 * Return the column of logarithms of ProvRank, computing it if necessary
+	 * 
+	 * @return the array of log(ProvRank)
+	 */
+	public synchronized double[] getLogProvRanks() {
+		
+		if (logProvRanks == null) {
+			double[] a = new double[size];
+			for (int i = 0; i < size; i++) {
+				PNode n = graph.getNode(i);
+				if (n != null) a[i] = Math.log(n.getProvRank());
+			}
+			logProvRanks = a;
+		}
+		
+		return logProvRanks;
+	}
+	
+	
+	/**
+	 * Return the column of logarithms of SubRank, computing it if necessary
+	 * 
+	 * @return the array of log(SubRank)
+	 */
+	public synchronized double[] getLogSubRanks() {
+		
+		if (logSubRanks == null) {
+			double[] a = new double[size];
+			for (int i = 0; i < size; i++) {
+				PNode n = graph.getNode(i);
+				if (n != null) a[i] = Math.log(n.getSubRank());
+			}
+			logSubRanks = a;
+		}
+		
+		return logSubRanks;
+	}
+	
+	
+	/**
+	 * Return the distinct objects of the nodes
+	 * 
+	 * @return the array of objects, indexed by the object index
+	 */
+	public PObject[] getObjects() {
+		return objects;
+	}
+	
+	
+	/**
+	 * Return the column of object indices
+	 * 
+	 * @return the array of object indices, with -1 for the missing nodes
+	 */
+	public int[] getObjectIndices() {
+		return objectIndices;
+	}
+	
+	
+	/**
+	 * Select the nodes whose objects are accepted
+	 * 
+	 * @param accepted the accepted flags, indexed by the object index
+	 * @return the bitset of the indices of the nodes with the accepted objects
+	 */
+	public BitSet select(boolean[] accepted) {
+		
+		BitSet b = new BitSet(size);
+		
+		for (int i = 0; i < size; i++) {
+			int k = objectIndices[i];
+			if (k >= 0 && accepted[k]) b.set(i);
+		}
+		
+		return b;
+	}
+}
@@ -0,0 +1,605 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2010
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass;
+
+import java.util.*;
+
+
+/**
+ * An in-memory inverted index of the text properties of the nodes of a
+ * provenance graph: the node labels, the object names (which are usually
+ * the file paths), the object types, and the extended attributes of both
+ * the nodes and the objects. The values are split into lowercase tokens at
+ * the non-alphanumeric characters, and each token has a posting list of
+ * node indices for each field in which it occurs. The tokens are also
+ * indexed by their trigrams, so that the substring queries do not need to
+ * scan the entire dictionary.
+ * 
+ * A query consists of one or more words, all of which must match. A word
+ * matches the tokens that start with it, a word that starts with '*'
+ * matches the tokens that contain it, and a word of the form field:word
+ * matches only the values of the given field, such as name:libc or
+ * type:*file. The extended attributes are indexed under their names.
+ * 
+ * @author Peter Macko
+ */
+public class PNodeTextIndex {
+	
+	public static final String FIELD_LABEL = "label";
+	public static final String FIELD_NAME = "name";
+	public static final String FIELD_TYPE = "type";
+	
+	private PGraph graph;
+	private int size;
+	
+	// The dictionary of tokens, sorted, and of fields
+	
+	private String[] terms;
+	private String[] fields;
+	private HashMap<String, Integer> fieldMap;
+	
+	// The posting lists: for each term, the fields in which it occurs, and
+	// for each of these fields, the sorted array of node indices
+	
+	private int[][] termFields;
+	private int[][][] postings;
+	
+	// The trigram index: for each trigram, the sorted array of terms that contain it
+	
+	private HashMap<Long, int[]> trigrams;
+	
+	
+	/**
+	 * Create an instance of class PNodeTextIndex by indexing all nodes of the graph
+	 * 
+	 * @param graph the provenance graph
+	 */
+	PNodeTextIndex(PGraph graph) {
+		
+		this.graph = graph;
+		
+		PNodeColumns c = graph.getNodeColumns();
+		size = c.size();
+		
+		Builder b = new Builder();
+		
+		
+		// Index the node properties
+		
+		int[] one = new int[1];
+		
+		for (int i = 0; i < size; i++) {
+			PNode n = graph.getNode(i);
+			if (n == null) continue;
+			
+			one[0] = i;
+			b.add(FIELD_LABEL, n.getLabel(), one, 0, 1);
+			for (Map.Entry<String, String> e : n.getExtendedAttributes().entrySet()) {
+				b.add(e.getKey(), e.getValue(), one, 0, 1);
+			}
+		}
+		
+		
+		// Index the object properties once per object, adding all its nodes
+		
+		PObject[] objects = c.getObjects();
+		int[] objectIndices = c.getObjectIndices();
+		
+		int[] offsets = new int[objects.length + 1];
+		for (int i = 0; i < size; i++) {
+			if (objectIndices[i] >= 0) offsets[objectIndices[i] + 1]++;
+		}
+		for (int k = 0; k < objects.length; k++) offsets[k + 1] += offsets[k];
+		
+		int[] nodes = new int[offsets[objects.length]];
+		int[] cursor = Arrays.copyOf(offsets, objects.length);
+		for (int i = 0; i < size; i++) {
+			if (objectIndices[i] >= 0) nodes[cursor[objectIndices[i]]++] = i;
+		}
+		
+		for (int k = 0; k < objects.length; k++) {
+			PObject o = objects[k];
+			b.add(FIELD_NAME, o.getName(), nodes, offsets[k], offsets[k + 1]);
+			b.add(FIELD_TYPE, o.getExtendedType(), nodes, offsets[k], offsets[k + 1]);
+			for (Map.Entry<String, String> e : o.getExtendedAttributes().entrySet()) {
+				b.add(e.getKey(), e.getValue(), nodes, offsets[k], offsets[k + 1]);
+			}
+		}
+		
+		b.finish();
+	}
+	
+	
+	/**
+	 * Create an instance of class PNodeTextIndex for a derived graph, sharing
+	 * the dictionaries of another index
+	 * 
+	 * @param source the index of the graph from which the graph was derived
+	 * @param graph the derived graph
+	 * @param postings the posting lists
+	 */
+	private PNodeTextIndex(PNodeTextIndex source, PGraph graph, int[][][] postings) {
+		
+		this.graph = graph;
+		this.size = graph.getNodes().size();
+		
+		this.terms = source.terms;
+		this.fields = source.fields;
+		this.fieldMap = source.fieldMap;
+		this.termFields = source.termFields;
+		this.trigrams = source.trigrams;
+		
+		this.postings = postings;
+	}
+	
+	
+	/**
+	 * Derive the index of a graph whose nodes are copies of the nodes of this
+	 * graph, such as a summary graph or the result of a lineage query, without
+	 * tokenizing the values again. The derived index matches the properties of
+	 * the original nodes, including the extended attributes of the nodes, which
+	 * are not copied into the derived graphs.
+	 * 
+	 * @param derived the derived graph
+	 * @return the index of the derived graph
+	 */
+	PNodeTextIndex derive(PGraph derived) {
+		
+		// Map the nodes of this graph to the nodes of the derived graph
+		
+		int[] map = new int[size];
+		Arrays.fill(map, -1);
+		
+		for (PNode n : derived.getNodes()) {
+			if (n == null) continue;
+			int k = graph.getCorrespondingNodeIndex(n);
+			if (k >= 0 && k < size) map[k] = n.getIndex();
+		}
+		
+		
+		// Translate the posting lists
+		
+		int[][][] p = new int[postings.length][][];
+		
+		for (int t = 0; t < postings.length; t++) {
+			p[t] = new int[postings[t].length][];
+			
+			for (int f = 0; f < postings[t].length; f++) {
+				int[] source = postings[t][f];
+				int[] target = new int[source.length];
+				int length = 0;
+				boolean sorted = true;
+				
+				for (int x : source) {
+					int y = map[x];
+					if (y < 0) continue;
+					if (length > 0 && target[length - 1] > y) sorted = false;
+					target[length++] = y;
+				}
+				
+				target = Arrays.copyOf(target, length);
+				if (!sorted) Arrays.sort(target);
+				p[t][f] = target;
+			}
+		}
+		
+		return new PNodeTextIndex(this, derived, p);
+	}
+	
+	
+	/**
+	 * Determine whether the index still corresponds to the graph
+	 * 
+	 * @return true if it is up to date
+	 */
+	boolean isCurrent() {
+		return size == graph.getNodes().size();
+	}
+	
+	
+	/**
+	 * Return the provenance graph
+	 * 
+	 * @return the graph
+	 */
+	public PGraph getGraph() {
+		return graph;
+	}
+	
+	
+	/**
+	 * Return the names of the indexed fields
+	 * 
+	 * @return the array of field names
+	 */
+	public String[] getFields() {
+		return fields;
+	}
+	
+	
+	/**
+	 * Return the number of distinct tokens
+	 * 
+	 * @return the size of the dictionary
+	 */
+	public int getNumTerms() {
+		return terms.length;
+	}
+	
+	
+	/**
+	 * Find the nodes that match the query
+	 * 
+	 * @param query the query
+	 * @return the bitset of the indices of the matching nodes, or null if the query is empty
+	 */
+	public BitSet search(String query) {
+		
+		BitSet result = null;
+		
+		for (String word : query.trim().split("\\s+")) {
+			if (word.length() == 0) continue;
+			
+			
+			// Parse the field qualifier and the substring flag
+			
+			int field = -1;
+			int colon = word.indexOf(':');
+			if (colon > 0) {
+				Integer f = fieldMap.get(word.substring(0, colon).toLowerCase());
+				if (f != null) {
+					field = f.intValue();
+					word = word.substring(colon + 1);
+				}
+			}
+			
+			boolean substring = word.startsWith("*");
+			
+			
+			// Match each token of the word
+			
+			for (String token : tokenize(word)) {
+				BitSet b = new BitSet(size);
+				
+				if (substring) {
+					for (int t : findContaining(token)) collect(t, field, b);
+				}
+				else {
+					int t = Arrays.binarySearch(terms, token);
+					if (t < 0) t = -t - 1;
+					for ( ; t < terms.length && terms[t].startsWith(token); t++) collect(t, field, b);
+				}
+				
+				if (result == null) {
+					result = b;
+				}
+				else {
+					result.and(b);
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Add the nodes in the posting lists of a term to a bitset
+	 * 
+	 * @param t the term
+	 * @param field the field, or -1 for all fields
+	 * @param b the bitset
+	 */
+	private void collect(int t, int field, BitSet b) {
+		
+		int[] f = termFields[t];
+		
+		for (int i = 0; i < f.length; i++) {
+			if (field >= 0 && f[i] != field) continue;
+			for (int x : postings[t][i]) b.set(x);
+		}
+	}
+	
+	
+	/**
+	 * Find the terms that contain the given token
+	 * 
+	 * @param token the token
+	 * @return the array of terms
+	 */
+	private int[] findContaining(String token) {
+		
+		IntList r = new IntList();
+		
+		
+		// Short tokens: scan the dictionary
+		
+		if (token.length() < 3) {
+			for (int t = 0; t < terms.length; t++) {
+				if (terms[t].indexOf(token) >= 0) r.add(t);
+			}
+			return r.toArray();
+		}
+		
+		
+		// Otherwise intersect the term lists of the trigrams, starting with the
+		// shortest one, and then verify the candidates
+		
+		int[] shortest = null;
+		for (int i = 0; i + 3 <= token.length(); i++) {
+			int[] l = trigrams.get(trigram(token, i));
+			if (l == null) return new int[0];
+			if (shortest == null || l.length < shortest.length) shortest = l;
+		}
+		
+		for (int t : shortest) {
+			if (terms[t].indexOf(token) >= 0) r.add(t);
+		}
+		
+		return r.toArray();
+	}
+	
+	
+	/**
+	 * Return the key of the trigram at the given position
+	 * 
+	 * @param s the string
+	 * @param i the position
+	 * @return the trigram key
+	 */
+	private static long trigram(String s, int i) {
+		return (((long) s.charAt(i)) << 32) | (((long) s.charAt(i + 1)) << 16) | s.charAt(i + 2);
+	}
+	
+	
+	/**
+	 * Split a string into lowercase tokens at non-alphanumeric characters
+	 * 
+	 * @param s the string
+	 * @return the list of tokens
+	 */
+	static List<String> tokenize(String s) {
+		
+		ArrayList<String> tokens = new ArrayList<String>();
+		if (s == null) return tokens;
+		
+		StringBuilder b = new StringBuilder();
+		
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				b.append(Character.toLowerCase(c));
+			}
+			else if (b.length() > 0) {
+				tokens.add(b.toString());
+				b.setLength(0);
+			}
+		}
+		
+		if (b.length() > 0) tokens.add(b.toString());
+		return tokens;
+	}
+	
+	
+	/**
+	 * The builder of the dictionaries and of the posting lists
+	 */
+	private class Builder {
+		
+		private HashMap<String, Integer> termIds = new HashMap<String, Integer>();
+		private ArrayList<String> termList = new ArrayList<String>();
+		private ArrayList<String> fieldList = new ArrayList<String>();
+		private HashMap<Long, IntList> lists = new HashMap<Long, IntList>();
+		
+		
+		/**
+		 * Create an instance of class Builder
+		 */
+		public Builder() {
+			fieldMap = new HashMap<String, Integer>();
+		}
+		
+		
+		/**
+		 * Index a value
+		 * 
+		 * @param field the field name
+		 * @param value the value
+		 * @param nodes the array with the node indices
+		 * @param start the start of the range of nodes in the array
+		 * @param end the end of the range of nodes in the array (exclusive)
+		 */
+		public void add(String field, String value, int[] nodes, int start, int end) {
+			
+			if (value == null || start >= end) return;
+			
+			field = field.toLowerCase();
+			Integer f = fieldMap.get(field);
+			if (f == null) {
+				f = fieldList.size();
+				fieldMap.put(field, f);
+				fieldList.add(field);
+			}
+			
+			for (String token : tokenize(value)) {
+				Integer t = termIds.get(token);
+				if (t == null) {
+					t = termList.size();
+					termIds.put(token, t);
+					termList.add(token);
+				}
+				
+				Long key = (((long) t.intValue()) << 32) | f.intValue();
+				IntList l = lists.get(key);
+				if (l == null) {
+					l = new IntList();
+					lists.put(key, l);
+				}
+				for (int i = start; i < end; i++) l.add(nodes[i]);
+			}
+		}
+		
+		
+		/**
+		 * Sort the dictionary and create the final posting lists and the trigram index
+		 */
+		public void finish() {
+			
+			// Sort the terms
+			
+			terms = termList.toArray(new String[termList.size()]);
+			fields = fieldList.toArray(new String[fieldList.size()]);
+			
+			Arrays.sort(terms);
+			int[] remap = new int[terms.length];
+			for (int t = 0; t < terms.length; t++) remap[termIds.get(terms[t])] = t;
+			termIds = null;
+			termList = null;
+			
+			
+			// Create the posting lists, sorting the fields of each term
+			
+			int[] counts = new int[terms.length];
+			for (Long key : lists.keySet()) counts[remap[(int) (key.longValue() >>> 32)]]++;
+			
+			termFields = new int[terms.length][];
+			postings = new int[terms.length][][];
+			for (int t = 0; t < terms.length; t++) {
+				termFields[t] = new int[counts[t]];
+				postings[t] = new int[counts[t]][];
+				counts[t] = 0;
+			}
+			
+			ArrayList<Long> keys = new ArrayList<Long>(lists.keySet());
+			Collections.sort(keys);
+			
+			for (Long key : keys) {
+				int t = remap[(int) (key.longValue() >>> 32)];
+				int f = (int) (key.longValue() & 0xffffffffL);
+				
+				int i = counts[t]++;
+				termFields[t][i] = f;
+				postings[t][i] = lists.remove(key).toSortedSet();
+			}
+			
+			
+			// Index the terms by their trigrams
+			
+			HashMap<Long, IntList> m = new HashMap<Long, IntList>();
+			for (int t = 0; t < terms.length; t++) {
+				String s = terms[t];
+				for (int i = 0; i + 3 <= s.length(); i++) {
+					Long key = trigram(s, i);
+					IntList l = m.get(key);
+					if (l == null) {
+						l = new IntList();
+						m.put(key, l);
+					}
+					if (l.size() == 0 || l.get(l.size() - 1) != t) l.add(t);
+				}
+			}
+			
+			trigrams = new HashMap<Long, int[]>(m.size() * 2);
+			for (Map.Entry<Long, IntList> e : m.entrySet()) {
+				trigrams.put(e.getKey(), e.getValue().toArray());
+			}
+		}
+	}
+	
+	
+	/**
+	 * A growable array of integers
+	 */
+	private static class IntList {
+		
+		private int[] a = new int[4];
+		private int size = 0;
+		
+		
+		/**
+		 * Append an integer
+		 * 
+		 * @param x the integer
+		 */
+		public void add(int x) {
+			if (size == a.length) a = Arrays.copyOf(a, 2 * a.length);
+			a[size++] = x;
+		}
+		
+		
+		/**
+		 * Return the integer at the given position
+		 * 
+		 * @param i the position
+		 * @return the integer
+		 */
+		public int get(int i) {
+			return a[i];
+		}
+		
+		
+		/**
+		 * Return the number of integers
+		 * 
+		 * @return the size
+		 */
+		public int size() {
+			return size;
+		}
+		
+		
+		/**
+		 * Return a copy of the integers
+		 * 
+		 * @return the array
+		 */
+		public int[] toArray() {
+			return Arrays.copyOf(a, size);
+		}
+		
+		
+		/**
+		 * Return the integers sorted and without duplicates
+		 * 
+		 * @return the array
+		 */
+		public int[] toSortedSet() {
+			int[] r = Arrays.copyOf(a, size);
+			Arrays.sort(r);
+			int n = 0;
+			for (int i = 0; i < r.length; i++) {
+				if (n == 0 || r[n - 1] != r[i]) r[n++] = r[i];
+			}
+			return n == r.length ? r : Arrays.copyOf(r, n);
+		}
+	}
+}
@@ -41,6 +41,7 @@ import org.w3c.dom.Node;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
+import edu.harvard.util.AttributeStore;
 import edu.harvard.util.ParserException;
 import edu.harvard.util.Utils;
 import edu.harvard.util.XMLUtils;
@@ -106,7 +107,7 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 	private String name;
 	private Type type;
 	private String extType;
-	protected Map<String, String> attributes;
+	protected int attributeHandle;
 
 	private int parentFD;
 	private String shortName;
@@ -128,7 +129,7 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 		this.name = null;
 		this.type = Type.OTHER;
 		this.extType = null;
-		this.attributes = null;
+		this.attributeHandle = AttributeStore.NO_HANDLE;
 		
 		this.parentFD = INVALID_FD;
 		this.shortName = null;
@@ -152,9 +153,8 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 		o.type = type;
 		o.extType = extType;
 		
-		if (attributes != null) {
-			o.attributes = new HashMap<String, String>();
-			o.attributes.putAll(attributes);
+		for (Entry<String, String> e : getExtendedAttributes().entrySet()) {
+			o.setExtendedAttribute(e.getKey(), e.getValue());
 		}
 		
 		o.parentFD = parentFD;
@@ -306,13 +306,25 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 			setAttribute(code, value);
 		}
 		else {
-			if (key == null || "".equals(key)) throw new IllegalArgumentException("Invalid attribute name"); 
-			if (attributes == null) attributes = new HashMap<String, String>();
-			attributes.put(key, value);
+			setExtendedAttribute(key, value);
 		}
 	}
 
 
+	/**
+	 * Set an extended (non-standard) attribute without resolving its code
+	 * 
+	 * @param key the attribute name
+	 * @param value the attribute value
+	 */
+	void setExtendedAttribute(String key, String value) {
+		if (key == null || "".equals(key)) throw new IllegalArgumentException("Invalid attribute name"); 
+		AttributeStore store = graph.getAttributeStore();
+		if (attributeHandle == AttributeStore.NO_HANDLE) attributeHandle = store.newHandle();
+		store.put(attributeHandle, key, value);
+	}
+
+
 	/**
 	 * Return an attribute
 	 *
@@ -324,18 +336,23 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 		switch (graph.meta.getObjectAttributeCode(key)) {
 		case NAME: return getName();
 		case TYPE: return getExtendedType();
-		default: return attributes == null ? null : attributes.get(key);
+		default:
+			if (attributeHandle == AttributeStore.NO_HANDLE) return null;
+			return graph.getAttributeStore().get(attributeHandle, key);
 		}
 	}
 	
 	
 	/**
-	 * Return a map of extended attributes
+	 * Return a map of extended attributes. The values are fetched from the
+	 * graph's attribute store, so the map is a snapshot that does not reflect
+	 * later changes
 	 * 
 	 * @return a map of extended attributes
 	 */
 	public Map<String, String> getExtendedAttributes() {
-		return attributes == null ? Utils.<Map<String, String>>cast(Collections.EMPTY_MAP) : attributes;
+		if (attributeHandle == AttributeStore.NO_HANDLE) return Utils.<Map<String, String>>cast(Collections.EMPTY_MAP);
+		return graph.getAttributeStore().getAll(attributeHandle);
 	}
 
 
@@ -357,6 +374,35 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 	public void setParentFD(int pfd) {
 		this.parentFD = pfd;
 	}
+
+	
+	/**
+	 * Return the short name as stored, without substituting a placeholder
+	 * if it is not set
+	 * 
+	 * @return the short name, or null
+	 */
+	String getStoredShortName() {
+		return shortName;
+	}
+	
+	
+	/**
+	 * Set the basic properties directly, without deriving the short name
+	 * from the name. This is used only when loading a saved graph, before
+	 * any versions of the object are created
+	 * 
+	 * @param name the name
+	 * @param shortName the short name
+	 * @param type the type
+	 * @param extType the extended type
+	 */
+	void setStoredProperties(String name, String shortName, Type type, String extType) {
+		this.name = name;
+		this.shortName = shortName;
+		this.type = type;
+		this.extType = extType;
+	}
 	
 	
 	/**
@@ -525,10 +571,10 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 		
 		// Write the attributes
 		
-		if (attributes != null) {
+		if (attributeHandle != AttributeStore.NO_HANDLE) {
 			attrs.clear();
 			hd.startElement("", "", "object-attributes", attrs);
-			for (Entry<String, String> e : attributes.entrySet()) {
+			for (Entry<String, String> e : getExtendedAttributes().entrySet()) {
 				attrs.clear();
 				attrs.addAttribute("", "", "key", "CDATA", "" + e.getKey());
 				hd.startElement("", "", "object-attribute", attrs);
@@ -599,12 +645,11 @@ public class PObject implements Comparable<PObject>, java.io.Serializable {
 		
 		Element attrs = XMLUtils.getSingleOptionalElement(element, "object-attributes");
 		if (attrs != null) {
-			if (o.attributes == null) o.attributes = new HashMap<String, String>();
 			for (org.w3c.dom.Node n = attrs.getFirstChild(); n != null; n = n.getNextSibling()) {
 				if (n instanceof Element && "object-attribute".equals(n.getNodeName())) {
 					Element e = (Element) n;
 					String key = XMLUtils.getAttribute(e, "key");
-					o.attributes.put(key, e.getTextContent());
+					o.setExtendedAttribute(key, e.getTextContent());
 				}
 			}
 		}
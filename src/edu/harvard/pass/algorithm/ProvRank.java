@@ -32,8 +32,11 @@
 package edu.harvard.pass.algorithm;
 
 import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import edu.harvard.pass.*;
+import edu.harvard.util.graph.CompactAdjacency;
 import edu.harvard.util.job.JobObserver;
 
 
@@ -45,9 +48,20 @@ import edu.harvard.util.job.JobObserver;
 public class ProvRank {
 	
 	public static final boolean SCORE_TO_SELF = false;
+	
+	public static final int DEFAULT_MAX_ITERATIONS = 500;
+	public static final double DEFAULT_TOLERANCE = 1e-10;
+	
+	private static final int PARALLEL_GRAIN = 4096;
 
 	private PGraph graph;
 	private int iterations;
+	private double tolerance;
+	private boolean parallel;
+	private boolean warmStart;
+	
+	private int iterationsRun;
+	private double residual;
 	
 	
 	/**
@@ -57,18 +71,104 @@ public class ProvRank {
 	 */
 	public ProvRank(PGraph graph) {
 		this.graph = graph;
-		this.iterations = 500;
+		this.iterations = DEFAULT_MAX_ITERATIONS;
+		this.tolerance = DEFAULT_TOLERANCE;
+		this.parallel = true;
+		this.warmStart = false;
+		this.iterationsRun = 0;
+		this.residual = Double.NaN;
 	}
 	
 	
 	/**
-	 * Compute the rank
+	 * Set the maximum number of iterations
+	 * 
+	 * @param iterations the maximum number of iterations
+	 */
+	public void setMaxIterations(int iterations) {
+		this.iterations = iterations;
+	}
+	
+	
+	/**
+	 * Set the convergence tolerance, which is the L1 norm of the difference
+	 * between two consecutive iterations below which the computation stops.
+	 * Use 0 to always run the maximum number of iterations. This applies only
+	 * to the parallel mode.
+	 * 
+	 * @param tolerance the tolerance
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+	
+	
+	/**
+	 * Set whether to use the parallel engine that operates on a snapshot of
+	 * the graph in primitive arrays, or the original sequential algorithm
+	 * that uses the AUX field in PNode
+	 * 
+	 * @param parallel true to use the parallel engine
+	 */
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+	
+	
+	/**
+	 * Set whether to start the iteration from the previously computed ranks
+	 * (if any) instead of from the uniform distribution. This speeds up the
+	 * convergence after a small number of nodes and edges have been added to
+	 * the graph. This applies only to the parallel mode.
+	 * 
+	 * @param warmStart true to reuse the previously computed ranks
+	 */
+	public void setWarmStart(boolean warmStart) {
+		this.warmStart = warmStart;
+	}
+	
+	
+	/**
+	 * Get the number of iterations performed by the last run
 	 * 
-	 * Note: This method uses the AUX field in PNode
+	 * @return the number of iterations
+	 */
+	public int getIterationCount() {
+		return iterationsRun;
+	}
+	
+	
+	/**
+	 * Get the L1 residual of the last iteration of the last run
+	 * 
+	 * @return the residual, or NaN if it was not computed
+	 */
+	public double getResidual() {
+		return residual;
+	}
+	
+	
+	/**
+	 * Compute the rank
 	 * 
 	 * @param observer the job observer (can be null)
 	 */
 	public void run(JobObserver observer) {
+		if (parallel) {
+			runParallel(observer);
+		}
+		else {
+			runSequential(observer);
+		}
+	}
+	
+	
+	/**
+	 * Compute the rank using the sequential algorithm
+	 * 
+	 * @param observer the job observer (can be null)
+	 */
+	private void runSequential(JobObserver observer) {
 		
 		// Initialize
 		
@@ -78,20 +178,18 @@ public class ProvRank {
 		
 		if (observer != null) observer.setRange(0, iterations);
 		
+		iterationsRun = 0;
+		residual = Double.NaN;
 		
-		// Set the initial values
+		double[] aux = new double[graph.getMaxNodeIndexBase() + 1];
 		
 		
+		// Set the initial values
+		
 		double initial = 1.0 / (double) N;
 		
 		for (PNode n : nodes) {
-			if (!n.isVisible()) {
-				n.setProvRank(initial);
-				n.setAux(0);
-				continue;
-			}
 			n.setProvRank(initial);
-			n.setAux(0);
 		}
 		
 		
@@ -102,7 +200,7 @@ public class ProvRank {
 			if (observer != null) observer.setProgress(iteration);
 
 			
-			// Compute AUX
+			// Compute the contributions of the incoming edges
 
 			double X = 0;
 
@@ -118,10 +216,10 @@ public class ProvRank {
 				else {
 					double x = n.getProvRank();
 					for (PEdge e : edges) {
-						e.getTo().addAux(x);
+						aux[e.getTo().getIndex()] += x;
 					}
 					if (SCORE_TO_SELF) {
-						n.addAux(x);
+						aux[n.getIndex()] += x;
 					}
 				}
 			}
@@ -133,11 +231,11 @@ public class ProvRank {
 			for (PNode n : nodes) {
 				if (!n.isVisible()) continue;
 				
-				double r = X + n.getAux();
+				double r = X + aux[n.getIndex()];
 				sum += r;
 				
 				n.setProvRank(r);
-				n.setAux(0);
+				aux[n.getIndex()] = 0;
 			}
 
 
@@ -147,6 +245,8 @@ public class ProvRank {
 				if (!n.isVisible()) continue;
 				n.setProvRank(n.getProvRank() / sum);
 			}
+			
+			iterationsRun++;
 		}
 		
 		if (observer != null) observer.setProgress(iterations);
@@ -159,4 +259,249 @@ public class ProvRank {
 		graph.setWasProvRankComputed(true);
 		graph.updateProvRankStatistics();
 	}
+	
+	
+	/**
+	 * Compute the rank using the parallel engine. The graph is first copied
+	 * into primitive arrays, the nodes are then partitioned across the
+	 * fork-join pool, and the iteration stops when the L1 difference between
+	 * two consecutive iterations drops below the tolerance.
+	 * 
+	 * @param observer the job observer (can be null)
+	 */
+	private void runParallel(JobObserver observer) {
+		
+		// Take a snapshot of the graph
+		
+		CompactAdjacency adjacency = graph.getAdjacency();
+		Engine engine = new Engine(adjacency);
+		
+		int N = 0;
+		for (int i = 0; i < engine.numNodes; i++) {
+			PNode n = graph.getNode(i);
+			if (n != null && n.isVisible()) {
+				engine.visible[i] = true;
+				N++;
+			}
+		}
+		if (N <= 0) return;
+		
+		if (observer != null) observer.setRange(0, iterations);
+		
+		iterationsRun = 0;
+		residual = Double.NaN;
+		
+		
+		// Set the initial values
+		
+		double initial = 1.0 / (double) N;
+		
+		for (int i = 0; i < engine.numNodes; i++) {
+			engine.rank[i] = engine.visible[i] ? initial : 0;
+		}
+		
+		if (warmStart && graph.wasProvRankComputed()) {
+			
+			// Start from the previous ranks; the new nodes get the uniform value
+			
+			double total = 0;
+			for (int i = 0; i < engine.numNodes; i++) {
+				if (!engine.visible[i]) continue;
+				double r = graph.getNode(i).getProvRank();
+				if (r > 0 && !Double.isInfinite(r)) engine.rank[i] = r;
+				total += engine.rank[i];
+			}
+			
+			for (int i = 0; i < engine.numNodes; i++) {
+				engine.rank[i] /= total;
+			}
+		}
+		
+		
+		// Approximate the rank using the iterative algorithm
+		
+		ForkJoinPool pool = new ForkJoinPool();
+		
+		try {
+			engine.X = pool.invoke(engine.new Step(Engine.DANGLING, 0, engine.numNodes))[1] / N;
+			
+			for (int iteration = 0; iteration < iterations; iteration++) {
+				
+				if (observer != null) observer.setProgress(iteration);
+				
+				
+				// Compute the new values
+				
+				engine.sum = pool.invoke(engine.new Step(Engine.COMPUTE, 0, engine.numNodes))[0];
+				
+				
+				// Normalize, compute the residual, and the rank of the dangling nodes
+				
+				double[] r = pool.invoke(engine.new Step(Engine.NORMALIZE, 0, engine.numNodes));
+				
+				double[] t = engine.rank;
+				engine.rank = engine.next;
+				engine.next = t;
+				
+				engine.X = r[1] / N;
+				residual = r[0];
+				iterationsRun++;
+				
+				if (observer != null) {
+					observer.setStatus("Iteration " + iterationsRun + ", residual "
+							+ String.format("%.3g", residual));
+				}
+				
+				if (residual < tolerance) break;
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+		
+		if (observer != null) observer.setProgress(iterations);
+		
+		
+		// Copy the results back to the graph
+		
+		for (int i = 0; i < engine.numNodes; i++) {
+			PNode n = graph.getNode(i);
+			if (n == null) continue;
+			n.setProvRank(engine.visible[i] ? engine.rank[i] : initial);
+		}
+	
+		
+		// Finalize
+		
+		if (observer != null) observer.makeIndeterminate();
+		
+		graph.setWasProvRankComputed(true);
+		graph.updateProvRankStatistics();
+	}
+	
+	
+	/**
+	 * The state of the parallel engine
+	 */
+	private static class Engine {
+		
+		// Phases of an iteration; each phase computes a pair of sums
+		
+		static final int DANGLING  = 0;		// { -, sum of ranks of dangling nodes }
+		static final int COMPUTE   = 1;		// { sum of new ranks, - }
+		static final int NORMALIZE = 2;		// { L1 residual, sum of ranks of dangling nodes }
+		
+		int numNodes;
+		int[] outOffsets;
+		int[] inOffsets;
+		int[] inSources;
+		
+		boolean[] visible;
+		double[] rank;
+		double[] next;
+		
+		double X;
+		double sum;
+		
+		
+		/**
+		 * Create the engine state
+		 * 
+		 * @param adjacency the compact adjacency of the graph
+		 */
+		Engine(CompactAdjacency adjacency) {
+			
+			numNodes = adjacency.getNumNodes();
+			outOffsets = adjacency.getOutOffsets();
+			inOffsets = adjacency.getInOffsets();
+			inSources = adjacency.getInSources();
+			
+			visible = new boolean[numNodes];
+			rank = new double[numNodes];
+			next = new double[numNodes];
+		}
+		
+		
+		/**
+		 * One phase of an iteration over a range of nodes. The task returns
+		 * a pair of partial sums, the meaning of which depends on the phase.
+		 */
+		@SuppressWarnings("serial")
+		class Step extends RecursiveTask<double[]> {
+			
+			private int phase;
+			private int lo;
+			private int hi;
+			
+			
+			/**
+			 * Create the task
+			 * 
+			 * @param phase the phase
+			 * @param lo the first node index
+			 * @param hi the last node index + 1
+			 */
+			Step(int phase, int lo, int hi) {
+				this.phase = phase;
+				this.lo = lo;
+				this.hi = hi;
+			}
+			
+			
+			/**
+			 * Run the task
+			 * 
+			 * @return the pair of partial sums
+			 */
+			@Override
+			protected double[] compute() {
+				
+				if (hi - lo > PARALLEL_GRAIN) {
+					int mid = (lo + hi) >>> 1;
+					Step left = new Step(phase, lo, mid);
+					left.fork();
+					double[] b = new Step(phase, mid, hi).compute();
+					double[] a = left.join();
+					a[0] += b[0];
+					a[1] += b[1];
+					return a;
+				}
+				
+				double s0 = 0;
+				double s1 = 0;
+				
+				for (int v = lo; v < hi; v++) {
+					if (!visible[v]) continue;
+					boolean dangling = outOffsets[v + 1] == outOffsets[v];
+					
+					switch (phase) {
+					
+					case DANGLING:
+						if (dangling) s1 += rank[v];
+						break;
+						
+					case COMPUTE:
+						double r = X;
+						for (int p = inOffsets[v]; p < inOffsets[v + 1]; p++) {
+							int u = inSources[p];
+							if (visible[u]) r += rank[u];
+						}
+						if (SCORE_TO_SELF && !dangling) r += rank[v];
+						next[v] = r;
+						s0 += r;
+						break;
+						
+					case NORMALIZE:
+						double x = next[v] / sum;
+						next[v] = x;
+						s0 += Math.abs(x - rank[v]);
+						if (dangling) s1 += x;
+						break;
+					}
+				}
+				
+				return new double[] { s0, s1 };
+			}
+		}
+	}
 }
@@ -63,9 +63,8 @@ public class SubRank {
 	
 	
 	/**
-	 * Compute the rank
-	 * 
-	 * Note: This method uses the AUX field in PNode
+	 * Compute the rank. The method keeps its per-node state in local arrays,
+	 * so it can safely run concurrently with other read-only graph algorithms.
 	 * 
 	 * @param observer the job observer (can be null)
 	 */
@@ -126,8 +125,9 @@ public class SubRank {
 		 */
 		
 		
-		// Initialize the computation (AUX = count of unactivated incoming edges)
+		// Initialize the computation
 		
+		int[] pending = new int[graph.getMaxNodeIndexBase() + 1];	// unactivated incoming edges
 		HashMap<PNode, Set<PNode>> subgraphSets = new HashMap<PNode, Set<PNode>>();
 		Queue<PNode> active = new LinkedList<PNode>();
 		
@@ -139,7 +139,7 @@ public class SubRank {
 			}
 			
 			numNodes++;
-			n.setAux(n.getIncomingEdges().size());
+			pending[n.getIndex()] = n.getIncomingEdges().size();
 			
 			if (n.getIncomingEdges().isEmpty()) {
 				active.add(n);
@@ -166,7 +166,7 @@ public class SubRank {
 			
 			for (PEdge e : n.getOutgoingEdges()) {
 				PNode m = e.getTo();
-				m.addAux(-1);
+				pending[m.getIndex()]--;
 				if (n == m) {
 					throw new IllegalStateException("The graph contains a self-loop");
 				}
@@ -185,7 +185,7 @@ public class SubRank {
 					mSubgraphSet.addAll(nSubgraphSet);
 				}
 				
-				if (m.getAux() < 0.0001) {
+				if (pending[m.getIndex()] <= 0) {
 					active.add(m);
 				}
 			}
@@ -34,6 +34,8 @@ package edu.harvard.pass.filter;
 import edu.harvard.util.attribute.*;
 import edu.harvard.util.filter.Filter;
 import edu.harvard.util.filter.FilterListener;
+import edu.harvard.util.graph.CompactAdjacency;
+import edu.harvard.util.graph.GraphDirection;
 import edu.harvard.pass.*;
 
 import java.util.*;
@@ -197,41 +199,62 @@ public abstract class AncestryFilter extends PNodeSetFilter {
 		}
 		
 		
-		// Get the ancestors (via the breadth-first search)
+		// Without a stopping condition, get the ancestors from the reachability index
 		
-		LinkedList<PNode> queue = new LinkedList<PNode>();
-		HashSet<PNode> set = new HashSet<PNode>();
-		queue.add(n);
-		set.add(n);
+		GraphDirection direction = followOutgoing ? GraphDirection.DIRECTED : GraphDirection.INVERTED;
 		
-		while (!queue.isEmpty()) {
-			PNode x = queue.removeFirst();
+		if (traversalFilter == null && maxResultSize < 0) {
+			set(pass.getNodeUniverse(), pass.getReachabilityIndex().getReachableSet(n.getIndex(), direction));
+			return;
+		}
+		
+		
+		// Otherwise get the ancestors via the breadth-first search
+		
+		CompactAdjacency adjacency = pass.getAdjacency();
+		int[] offsets = adjacency.getOffsets(direction);
+		int[] neighbors = adjacency.getNeighbors(direction);
+		
+		int[] queue = new int[adjacency.getNumNodes()];
+		int head = 0;
+		int tail = 0;
+		
+		BitSet visited = new BitSet(adjacency.getNumNodes());
+		int size = 1;
+		queue[tail++] = n.getIndex();
+		visited.set(n.getIndex());
+		
+		while (head < tail) {
+			int x = queue[head++];
 			
-			for (PEdge e : (followOutgoing ? x.getOutgoingEdges() : x.getIncomingEdges())) {
-				PNode o = (followOutgoing ? e.getTo() : e.getFrom());
+			for (int i = offsets[x]; i < offsets[x + 1]; i++) {
+				int oi = neighbors[i];
 				
-				if (!set.contains(o)) {
+				if (!visited.get(oi)) {
+					PNode o = pass.getNode(oi);
 					if (traversalFilter == null
 							|| traversalFilter.accept(o.getOriginal())) {
 						
-						if (maxResultSize >= 0 && maxResultSize <= set.size()) break;
+						if (maxResultSize >= 0 && maxResultSize <= size) break;
 						
-						set.add(o);
-						queue.addLast(o);
+						visited.set(oi);
+						size++;
+						queue[tail++] = oi;
 					}
 					else if (includeStoppingNodes) {
 						
-						if (maxResultSize >= 0 && maxResultSize <= set.size()) break;
+						if (maxResultSize >= 0 && maxResultSize <= size) break;
 						
-						set.add(o);
+						visited.set(oi);
+						size++;
 					}
 				}
 			}
 			
-			if (maxResultSize >= 0 && maxResultSize <= set.size()) break;
+			if (maxResultSize >= 0 && maxResultSize <= size) break;
 		}
 		
-		set(set);
+		set(pass.getNodeUniverse(), visited);
 	}
 	
 	
@@ -32,8 +32,10 @@
 package edu.harvard.pass.filter;
 
 import java.text.DecimalFormat;
+import java.util.BitSet;
 
 import edu.harvard.util.attribute.*;
+import edu.harvard.util.filter.Universe;
 import edu.harvard.pass.*;
 
 
@@ -72,6 +74,18 @@ public class PASSFilter {
 			return a.compareLeft(node.getFD());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getFDs(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the file descriptor
 		 * 
@@ -127,6 +141,18 @@ public class PASSFilter {
 			return a.compareLeft(node.getVersion());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getVersions(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the version
 		 * 
@@ -164,6 +190,21 @@ public class PASSFilter {
 			return a.compareLeft(node.getObject().getName());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph, examining each object only once
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			if (c == null) return super.evaluate(universe);
+			PObject[] objects = c.getObjects();
+			boolean[] accepted = new boolean[objects.length];
+			for (int i = 0; i < objects.length; i++) accepted[i] = a.compareLeft(objects[i].getName());
+			return c.select(accepted);
+		}
+		
 		/**
 		 * Set the object name
 		 * 
@@ -201,6 +242,21 @@ public class PASSFilter {
 			return a.compareLeft(node.getObject().getExtendedType());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph, examining each object only once
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			if (c == null) return super.evaluate(universe);
+			PObject[] objects = c.getObjects();
+			boolean[] accepted = new boolean[objects.length];
+			for (int i = 0; i < objects.length; i++) accepted[i] = a.compareLeft(objects[i].getExtendedType());
+			return c.select(accepted);
+		}
+		
 		/**
 		 * Set the object type
 		 * 
@@ -212,6 +268,103 @@ public class PASSFilter {
 	}
 
 
+	/**
+	 * Class Text, which matches a full-text query against the text index of
+	 * the provenance graph. The query is evaluated only once, when the filter
+	 * is used for the first time after the query has changed.
+	 */
+	public static class Text extends PNodeFilter {
+
+		private Attribute<String> a;
+		private String query;
+		private PNodeTextIndex queryIndex;
+		private BitSet result;
+
+		/**
+		 * Create an instance of class PASSFilter.Text
+		 */
+		public Text() {
+			super("Text");
+			a = new Attribute<String>(getName(), true, "");
+			a.clearOperators();
+			a.addOperator("matches");
+			addAttribute(a);
+			
+			query = null;
+			queryIndex = null;
+			result = null;
+		}
+		
+		/**
+		 * Evaluate the current query, or return the cached result
+		 * 
+		 * @return the bitset of the indices of the matching nodes, or null if the query is empty
+		 */
+		private BitSet getResult() {
+			return getResult(a.get());
+		}
+		
+		/**
+		 * Evaluate the query, or return the cached result. This can be called
+		 * from a background thread before setting the query, so that setting
+		 * it does not need to wait for the evaluation.
+		 * 
+		 * @param q the query
+		 * @return the bitset of the indices of the matching nodes, or null if the query is empty
+		 */
+		public synchronized BitSet getResult(String q) {
+			
+			if (pass == null || q == null) return null;
+			
+			PNodeTextIndex index = pass.getTextIndex();
+			if (!q.equals(query) || index != queryIndex) {
+				result = index.search(q);
+				query = q;
+				queryIndex = index;
+			}
+			
+			return result;
+		}
+
+		/**
+		 * Determine whether to accept a PASS node
+		 * 
+		 * @param node the node to be examined
+		 * @return true if the value should be accepted
+		 */
+		public boolean accept(PNode node) {
+			BitSet b = getResult();
+			if (b == null) return true;
+			int k = pass.getNodeUniverse().getUniverseKey(node);
+			return k >= 0 && b.get(k);
+		}
+		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the query result
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			if (pass == null || universe != pass.getNodeUniverse()) return super.evaluate(universe);
+			BitSet b = getResult();
+			if (b != null) return (BitSet) b.clone();
+			b = new BitSet();
+			b.set(0, universe.getUniverseSize());
+			return b;
+		}
+		
+		/**
+		 * Set the query
+		 * 
+		 * @param query the query
+		 */
+		public void setQuery(String query) {
+			a.set(query);
+		}
+	}
+
+
 	/**
 	 * Class TypeCode
 	 */
@@ -238,6 +391,21 @@ public class PASSFilter {
 			return a.compareLeft(node.getObject().getType());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph, examining each object only once
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			if (c == null) return super.evaluate(universe);
+			PObject[] objects = c.getObjects();
+			boolean[] accepted = new boolean[objects.length];
+			for (int i = 0; i < objects.length; i++) accepted[i] = a.compareLeft(objects[i].getType());
+			return c.select(accepted);
+		}
+		
 		/**
 		 * Set the object type
 		 * 
@@ -277,6 +445,18 @@ public class PASSFilter {
 			return a.compareLeft(node.getTime());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getTimes(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the time
 		 * 
@@ -331,6 +511,18 @@ public class PASSFilter {
 			return a.compareLeft(Math.log(node.getProvRank()));
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getLogProvRanks(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the ProvRank
 		 * 
@@ -547,6 +739,18 @@ public class PASSFilter {
 			return a.compareLeft(Math.log(node.getSubRank()));
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getLogSubRanks(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the SubRank
 		 * 
@@ -762,6 +966,18 @@ public class PASSFilter {
 			return a.compareLeft(node.getIncomingEdges().size());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getIndegrees(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the degree
 		 * 
@@ -815,6 +1031,18 @@ public class PASSFilter {
 			return a.compareLeft(node.getOutgoingEdges().size());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			BitSet b = c == null ? null : evaluate(c.getOutdegrees(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the degree
 		 * 
@@ -868,6 +1096,19 @@ public class PASSFilter {
 			return a.compareLeft(node.getIncomingEdges().size() + node.getOutgoingEdges().size());
 		}
 		
+		/**
+		 * Evaluate the filter over all nodes of the graph using the node columns
+		 * 
+		 * @param universe the universe of nodes
+		 * @return the bitset of the indices of the accepted nodes
+		 */
+		public BitSet evaluate(Universe<PNode> universe) {
+			PNodeColumns c = getColumns(universe);
+			if (c == null) return super.evaluate(universe);
+			BitSet b = evaluate(c.getIndegrees(), c.getOutdegrees(), a);
+			return b != null ? b : super.evaluate(universe);
+		}
+		
 		/**
 		 * Set the degree
 		 * 
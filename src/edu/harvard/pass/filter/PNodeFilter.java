@@ -31,9 +31,12 @@
 
 package edu.harvard.pass.filter;
 
+import edu.harvard.util.attribute.*;
 import edu.harvard.util.filter.*;
 import edu.harvard.pass.*;
 
+import java.util.*;
+
 
 /**
  * A PNode filter
@@ -83,4 +86,141 @@ public abstract class PNodeFilter extends Filter<PNode> implements WithPGraph {
 	protected void graphChanged() {
 		// Nothing to do yet - override in order to do something useful
 	}
+	
+	
+	/**
+	 * Return the node columns for evaluating the filter over the given universe
+	 * 
+	 * @param universe the universe of values
+	 * @return the node columns, or null if the universe does not consist of the nodes of the provenance graph
+	 */
+	protected PNodeColumns getColumns(Universe<PNode> universe) {
+		if (pass == null || universe != pass.getNodeUniverse()) return null;
+		return pass.getNodeColumns();
+	}
+	
+	
+	/**
+	 * Evaluate an integer attribute over a column. This gives the same
+	 * result as calling compareLeft() on each value of the column.
+	 * 
+	 * @param column the column
+	 * @param a the attribute
+	 * @return the bitset of the indices of the accepted values, or null if the operator is not supported
+	 */
+	protected static BitSet evaluate(int[] column, Attribute<Integer> a) {
+		
+		String op = a.getOperator();
+		BitSet b = new BitSet(column.length);
+		if (a.get() == null) return b;
+		int v = a.get().intValue();
+		
+		if ("=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] == v) b.set(i);
+		}
+		else if ("!=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] != v) b.set(i);
+		}
+		else if ("<".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] <  v) b.set(i);
+		}
+		else if ("<=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] <= v) b.set(i);
+		}
+		else if (">".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] >  v) b.set(i);
+		}
+		else if (">=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (column[i] >= v) b.set(i);
+		}
+		else {
+			return null;
+		}
+		
+		return b;
+	}
+	
+	
+	/**
+	 * Evaluate an integer attribute over the element-wise sum of two columns,
+	 * without materializing the sum
+	 * 
+	 * @param x the first column
+	 * @param y the second column, which must have the same length
+	 * @param a the attribute
+	 * @return the bitset of the indices of the accepted values, or null if the operator is not supported
+	 */
+	protected static BitSet evaluate(int[] x, int[] y, Attribute<Integer> a) {
+		
+		String op = a.getOperator();
+		BitSet b = new BitSet(x.length);
+		if (a.get() == null) return b;
+		int v = a.get().intValue();
+		
+		if ("=".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] == v) b.set(i);
+		}
+		else if ("!=".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] != v) b.set(i);
+		}
+		else if ("<".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] <  v) b.set(i);
+		}
+		else if ("<=".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] <= v) b.set(i);
+		}
+		else if (">".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] >  v) b.set(i);
+		}
+		else if (">=".equals(op)) {
+			for (int i = 0; i < x.length; i++) if (x[i] + y[i] >= v) b.set(i);
+		}
+		else {
+			return null;
+		}
+		
+		return b;
+	}
+	
+	
+	/**
+	 * Evaluate a floating point attribute over a column. This gives the same
+	 * result as calling compareLeft() on each value of the column, since
+	 * Double.compare() agrees with both Double.equals() and Double.compareTo().
+	 * 
+	 * @param column the column
+	 * @param a the attribute
+	 * @return the bitset of the indices of the accepted values, or null if the operator is not supported
+	 */
+	protected static BitSet evaluate(double[] column, Attribute<Double> a) {
+		
+		String op = a.getOperator();
+		BitSet b = new BitSet(column.length);
+		if (a.get() == null) return b;
+		double v = a.get().doubleValue();
+		
+		if ("=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) == 0) b.set(i);
+		}
+		else if ("!=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) != 0) b.set(i);
+		}
+		else if ("<".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) <  0) b.set(i);
+		}
+		else if ("<=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) <= 0) b.set(i);
+		}
+		else if (">".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) >  0) b.set(i);
+		}
+		else if (">=".equals(op)) {
+			for (int i = 0; i < column.length; i++) if (Double.compare(column[i], v) >= 0) b.set(i);
+		}
+		else {
+			return null;
+		}
+		
+		return b;
+	}
 }
@@ -56,6 +56,7 @@ public class SupportedFilters extends FilterFactory<PNode> {
 		add("Name", PASSFilter.Name.class);
 		add("Type", PASSFilter.Type.class);
 		add("Time", PASSFilter.Time.class);
+		add("Text", PASSFilter.Text.class);
 		
 		add("SubRank", PASSFilter.SubRank.class);
 		add("SubRank.MaxLogJump", PASSFilter.SubRankMaxLogJump.class);
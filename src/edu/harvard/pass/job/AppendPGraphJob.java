@@ -0,0 +1,129 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2010
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.job;
+
+import java.net.URI;
+import java.util.*;
+
+import edu.harvard.pass.*;
+import edu.harvard.pass.parser.IncrementalParser;
+import edu.harvard.util.job.*;
+import edu.harvard.util.*;
+
+
+/**
+ * The job to append the data that were added to a provenance source since
+ * it was last loaded into an existing provenance graph
+ * 
+ * @author Peter Macko
+ */
+public class AppendPGraphJob extends AbstractJob implements DataflowJob {
+
+	private URI uri;
+	private IncrementalParser parser;
+	private String mark;
+	private Pointer<PGraph> graph;
+	private String highWaterMark;
+
+
+	/**
+	 * Constructor of class AppendPGraphJob
+	 *
+	 * @param uri the source URI
+	 * @param parser the parser
+	 * @param mark the high-water mark recorded when the source was last loaded
+	 * @param graph the graph to append to
+	 */
+	public AppendPGraphJob(URI uri, IncrementalParser parser, String mark, Pointer<PGraph> graph) {
+		super("Loading new data");
+		this.uri = uri;
+		this.parser = parser;
+		this.mark = mark;
+		this.graph = graph;
+		this.highWaterMark = null;
+	}
+
+
+	/**
+	 * Return the new high-water mark of the source
+	 *
+	 * @return the high-water mark, or null if the job has not finished
+	 */
+	public String getHighWaterMark() {
+		return highWaterMark;
+	}
+	
+	
+	/**
+	 * Run the job
+	 * 
+	 * @throws JobException if the job failed
+	 * @throws JobCanceledException if the job was canceled
+	 */
+	public void run() throws JobException {
+		
+		PGraph g = graph.get();
+		if (g == null) throw new JobException("No graph");
+		
+		if (observer != null) observer.makeIndeterminate();
+		
+		try {
+			highWaterMark = null;
+			parser.parseFrom(uri, g.getAppendingParserHandler(), mark);
+			highWaterMark = parser.getHighWaterMark();
+		}
+		catch (Throwable t) {
+			throw new JobException(t);
+		}
+	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Collections.<Object>singletonList(graph);
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		return Arrays.<Object>asList(graph, JobResource.of(graph, JobResource.GRAPH_SUMMARY),
+				JobResource.of(graph, JobResource.GRAPH_LAYOUT));
+	}
+}
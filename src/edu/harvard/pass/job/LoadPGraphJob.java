@@ -32,8 +32,10 @@
 package edu.harvard.pass.job;
 
 import java.net.URI;
+import java.util.*;
 
 import edu.harvard.pass.*;
+import edu.harvard.pass.parser.IncrementalParser;
 import edu.harvard.pass.parser.Parser;
 import edu.harvard.util.job.*;
 import edu.harvard.util.*;
@@ -44,12 +46,13 @@ import edu.harvard.util.*;
  * 
  * @author Peter Macko
  */
-public class LoadPGraphJob extends AbstractJob {
+public class LoadPGraphJob extends AbstractJob implements DataflowJob {
 
 	private URI uri;
 	private Parser parser;
 	private PGraph result;
 	private Pointer<PGraph> output;
+	private String highWaterMark;
 
 
 	/**
@@ -65,6 +68,7 @@ public class LoadPGraphJob extends AbstractJob {
 		this.parser = parser;
 		this.result = null;
 		this.output = output;
+		this.highWaterMark = null;
 	}
 
 
@@ -89,6 +93,17 @@ public class LoadPGraphJob extends AbstractJob {
 	}
 	
 	
+	/**
+	 * Return the high-water mark of the source after loading, which can be
+	 * used later to append only the new data using AppendPGraphJob
+	 *
+	 * @return the high-water mark, or null if the parser does not support incremental loading
+	 */
+	public String getHighWaterMark() {
+		return highWaterMark;
+	}
+	
+	
 	/**
 	 * Run the job
 	 * 
@@ -102,6 +117,10 @@ public class LoadPGraphJob extends AbstractJob {
 			PGraph g = new PGraph();
 			parser.parse(uri, g.getParserHandler());
 			result = g;
+			
+			if (parser instanceof IncrementalParser) {
+				highWaterMark = ((IncrementalParser) parser).getHighWaterMark();
+			}
 		}
 		catch (Throwable t) {
 			result = null;
@@ -111,4 +130,25 @@ public class LoadPGraphJob extends AbstractJob {
 		if (result == null) throw new JobException("Loaded a null PGraph");
 		if (output != null) output.set(result);
 	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Collections.<Object>emptyList();
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		if (output == null) return Collections.<Object>emptyList();
+		return Collections.<Object>singletonList(output);
+	}
 }
@@ -36,15 +36,21 @@ import edu.harvard.pass.*;
 import edu.harvard.util.job.*;
 import edu.harvard.util.*;
 
+import java.util.*;
+
 
 /**
  * The job to compute ProvRank
  * 
  * @author Peter Macko
  */
-public class ProvRankJob extends AbstractJob {
+public class ProvRankJob extends AbstractJob implements DataflowJob {
+
+	public static final String RESOURCE = "ProvRank";
 
 	private Pointer<PGraph> input;
+	private double tolerance;
+	private boolean warmStart;
 
 
 	/**
@@ -53,8 +59,33 @@ public class ProvRankJob extends AbstractJob {
 	 * @param input the input pointer
 	 */
 	public ProvRankJob(Pointer<PGraph> input) {
+		this(input, ProvRank.DEFAULT_TOLERANCE);
+	}
+
+
+	/**
+	 * Constructor of class ProvRankJob
+	 *
+	 * @param input the input pointer
+	 * @param tolerance the L1 convergence tolerance
+	 */
+	public ProvRankJob(Pointer<PGraph> input, double tolerance) {
+		this(input, tolerance, false);
+	}
+
+
+	/**
+	 * Constructor of class ProvRankJob
+	 *
+	 * @param input the input pointer
+	 * @param tolerance the L1 convergence tolerance
+	 * @param warmStart whether to start from the previously computed ranks
+	 */
+	public ProvRankJob(Pointer<PGraph> input, double tolerance, boolean warmStart) {
 		super("Computing ProvRank");
 		this.input = input;
+		this.tolerance = tolerance;
+		this.warmStart = warmStart;
 	}
 	
 	
@@ -77,10 +108,37 @@ public class ProvRankJob extends AbstractJob {
 		
 		try {
 			ProvRank A = new ProvRank(g);
+			A.setTolerance(tolerance);
+			A.setWarmStart(warmStart);
 			A.run(observer);
+			
+			if (observer != null) {
+				observer.setStatus(A.getIterationCount() + " iterations, residual "
+						+ String.format("%.3g", A.getResidual()));
+			}
 		}
 		catch (Throwable t) {
 			throw new JobException(t);
 		}
 	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Collections.<Object>singletonList(input);
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		return Collections.<Object>singletonList(JobResource.of(input, RESOURCE));
+	}
 }
@@ -36,13 +36,17 @@ import edu.harvard.pass.*;
 import edu.harvard.util.job.*;
 import edu.harvard.util.*;
 
+import java.util.*;
+
 
 /**
  * The job to compute SubRank
  * 
  * @author Peter Macko
  */
-public class SubRankJob extends AbstractJob {
+public class SubRankJob extends AbstractJob implements DataflowJob {
+
+	public static final String RESOURCE = "SubRank";
 
 	private Pointer<PGraph> input;
 
@@ -83,4 +87,24 @@ public class SubRankJob extends AbstractJob {
 			throw new JobException(t);
 		}
 	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Collections.<Object>singletonList(input);
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		return Collections.<Object>singletonList(JobResource.of(input, RESOURCE));
+	}
 }
@@ -0,0 +1,653 @@
+/*
+ * Provenance Map Orbiter: A visualization tool for large provenance graphs
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.orbiter;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.*;
+
+import edu.harvard.pass.*;
+import edu.harvard.pass.filter.SupportedFilters;
+import edu.harvard.pass.orbiter.document.Document;
+import edu.harvard.pass.orbiter.gui.PASSDecorator;
+import edu.harvard.util.*;
+import edu.harvard.util.attribute.*;
+import edu.harvard.util.filter.*;
+import edu.harvard.util.graph.layout.*;
+import edu.harvard.util.gui.GraphDisplay;
+import edu.harvard.util.job.*;
+
+
+/**
+ * Renders provenance graphs to images without a display. Each input is
+ * imported, summarized, and laid out using the job system, and then the
+ * graph display is rendered either into a single image per zoom level
+ * or into a grid of square tiles. Several documents can be processed in
+ * parallel.
+ *
+ * @author Peter Macko
+ */
+public class BatchRenderer {
+	
+	/**
+	 * The output image format
+	 */
+	public enum Format {
+		PNG, SVG
+	}
+	
+	public static final long MAX_IMAGE_PIXELS = 1L << 28;
+	
+	private File outputDirectory;
+	private Format format;
+	private int width;
+	private int height;
+	private int[] zoomLevels;
+	private int tileSize;
+	private List<String> filters;
+	private Document.ImportSettings importSettings;
+	
+	
+	/**
+	 * Create an instance of class BatchRenderer
+	 */
+	public BatchRenderer() {
+		
+		outputDirectory = new File(".");
+		format = Format.PNG;
+		width = 1600;
+		height = 1200;
+		zoomLevels = new int[] { 0 };
+		tileSize = 0;
+		filters = new ArrayList<String>();
+		importSettings = new Document.ImportSettings();
+	}
+	
+	
+	/**
+	 * Set the output directory
+	 *
+	 * @param dir the directory
+	 */
+	public void setOutputDirectory(File dir) {
+		outputDirectory = dir;
+	}
+	
+	
+	/**
+	 * Set the output format
+	 *
+	 * @param format the image format
+	 */
+	public void setFormat(Format format) {
+		this.format = format;
+	}
+	
+	
+	/**
+	 * Set the size of the image at zoom level 0, at which the entire graph
+	 * fits into the image
+	 *
+	 * @param width the width
+	 * @param height the height
+	 */
+	public void setSize(int width, int height) {
+		if (width <= 0 || height <= 0) throw new IllegalArgumentException("Invalid image size");
+		this.width = width;
+		this.height = height;
+	}
+	
+	
+	/**
+	 * Set the zoom levels to render
+	 *
+	 * @param levels the zoom levels
+	 */
+	public void setZoomLevels(int[] levels) {
+		if (levels.length == 0) throw new IllegalArgumentException("No zoom levels");
+		zoomLevels = levels.clone();
+	}
+	
+	
+	/**
+	 * Set the tile size
+	 *
+	 * @param size the size of the square tiles in pixels, or 0 to render a single image per zoom level
+	 */
+	public void setTileSize(int size) {
+		if (size < 0) throw new IllegalArgumentException("Invalid tile size");
+		tileSize = size;
+	}
+	
+	
+	/**
+	 * Add a node filter. The filter is given as an expression consisting
+	 * of the filter name, the operator, and the value, such as "Indegree >= 2"
+	 * or "Type = PROCESS". Only the nodes accepted by all filters are displayed.
+	 *
+	 * @param expression the filter expression
+	 */
+	public void addFilter(String expression) {
+		filters.add(expression);
+	}
+	
+	
+	/**
+	 * Return the import settings, which can be modified
+	 *
+	 * @return the import settings
+	 */
+	public Document.ImportSettings getImportSettings() {
+		return importSettings;
+	}
+	
+	
+	/**
+	 * Create a filter from an expression
+	 *
+	 * @param factory the filter factory
+	 * @param expression the filter expression
+	 * @return the filter
+	 * @throws IllegalArgumentException if the expression is not valid
+	 */
+	protected static Filter<PNode> createFilter(SupportedFilters factory, String expression) {
+		
+		String e = expression.trim();
+		
+		
+		// Find the filter name
+		
+		String name = null;
+		for (String n : factory.getFilterNames()) {
+			if (e.startsWith(n) && (name == null || n.length() > name.length())) name = n;
+		}
+		if (name == null) throw new IllegalArgumentException("Unknown filter: " + expression);
+		
+		Filter<PNode> filter;
+		try {
+			filter = factory.create(name);
+		}
+		catch (Exception ex) {
+			throw new IllegalArgumentException("Cannot create filter " + name + ": " + ex.getMessage());
+		}
+		
+		if (!(filter.getAttribute() instanceof Attribute<?>)) {
+			throw new IllegalArgumentException("Filter " + name + " cannot be configured from the command line");
+		}
+		Attribute<Object> a = Utils.<Attribute<Object>>cast(filter.getAttribute());
+		
+		
+		// Find the operator
+		
+		e = e.substring(name.length()).trim();
+		
+		String op = null;
+		for (String o : a.getOperators()) {
+			if (e.startsWith(o) && (op == null || o.length() > op.length())) op = o;
+		}
+		if (op == null) throw new IllegalArgumentException("Invalid operator in filter: " + expression
+				+ " (supported: " + a.getOperators() + ")");
+		
+		
+		// Parse the value
+		
+		String s = e.substring(op.length()).trim();
+		Class<?> c = a.valueClass();
+		Object value;
+		
+		try {
+			if (c == Integer.class) value = Integer.valueOf(s);
+			else if (c == Long.class) value = Long.valueOf(s);
+			else if (c == Double.class) value = Double.valueOf(s);
+			else if (c == Float.class) value = Float.valueOf(s);
+			else if (c == Boolean.class) value = Boolean.valueOf(s);
+			else if (c == String.class) value = s;
+			else {
+				if (!c.isEnum() && c.getSuperclass() != null && c.getSuperclass().isEnum()) c = c.getSuperclass();
+				if (!c.isEnum()) throw new IllegalArgumentException("Unsupported value type " + c.getName());
+				
+				value = null;
+				for (Object x : c.getEnumConstants()) {
+					if (x.toString().equalsIgnoreCase(s) || ((Enum<?>) x).name().equalsIgnoreCase(s)) value = x;
+				}
+				if (value == null) throw new IllegalArgumentException("Invalid value: " + s);
+			}
+		}
+		catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid value in filter: " + expression);
+		}
+		
+		a.setOperator(op);
+		try {
+			a.set(value);
+		}
+		catch (RuntimeException ex) {
+			throw new IllegalArgumentException("Invalid value in filter: " + expression + ": " + ex.getMessage());
+		}
+		
+		return filter;
+	}
+	
+	
+	/**
+	 * Return the base name for the output files of a document
+	 *
+	 * @param doc the document
+	 * @return the name without an extension
+	 */
+	protected static String getOutputName(Document doc) {
+		
+		String name = doc.getFile() != null ? doc.getFile().getName() : doc.getName();
+		
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) name = name.substring(0, dot);
+		
+		name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+		return "".equals(name) ? "graph" : name;
+	}
+	
+	
+	/**
+	 * Write an image
+	 *
+	 * @param display the graph display
+	 * @param file the output file
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 * @throws IOException on I/O error
+	 */
+	protected void writeImage(GraphDisplay<?, ?, ?, ?> display, File file, int width, int height) throws IOException {
+		
+		if (format == Format.SVG) {
+			SVGGraphics2D g = new SVGGraphics2D(width, height);
+			display.render(g, width, height);
+			g.write(file);
+		}
+		else {
+			BufferedImage b = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = b.createGraphics();
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			display.render(g, width, height);
+			g.dispose();
+			GraphicUtils.saveImage(file, b);
+		}
+	}
+	
+	
+	/**
+	 * Render a document
+	 *
+	 * @param doc the document with a laid out graph
+	 * @return the number of written images
+	 * @throws IOException on I/O error
+	 */
+	public int render(Document doc) throws IOException {
+		
+		PGraph graph = doc.getPGraph();
+		GraphLayout layout = graph.getDefaultLayout();
+		if (layout == null) throw new IllegalStateException("The graph does not have a layout");
+		
+		String name = getOutputName(doc);
+		String ext = format.name().toLowerCase();
+		int count = 0;
+		
+		
+		// Create the display
+		
+		GraphDisplay<PNode, PEdge, PSummaryNode, PGraph> display = new GraphDisplay<PNode, PEdge, PSummaryNode, PGraph>();
+		display.setUsingTileCache(false);
+		display.setSize(width, height);
+		display.setGraph(graph, layout);
+		display.setDecorator(new PASSDecorator(graph));
+		
+		SupportedFilters factory = new SupportedFilters();
+		factory.setPGraph(graph);
+		for (String f : filters) display.addFilter(createFilter(factory, f));
+		
+		
+		// Determine the extent of the graph
+		
+		GraphLayoutStat stat = layout.getStat();
+		double xMin = stat.xMin - stat.widthMax;
+		double xMax = stat.xMax + stat.widthMax;
+		double yMin = stat.yMin - stat.heightMax;
+		double yMax = stat.yMax + stat.heightMax;
+		
+		
+		// Render each zoom level
+		
+		for (int zoom : zoomLevels) {
+			
+			display.setZoom(zoom);
+			double scale = display.getScale();
+			
+			long w = zoom == 0 ? width  : (long) Math.ceil((xMax - xMin) * scale);
+			long h = zoom == 0 ? height : (long) Math.ceil((yMax - yMin) * scale);
+			if (w <= 0) w = 1;
+			if (h <= 0) h = 1;
+			
+			if (tileSize <= 0) {
+				
+				if (w > Integer.MAX_VALUE || h > Integer.MAX_VALUE || (format == Format.PNG && w * h > MAX_IMAGE_PIXELS)) {
+					throw new IOException("The image at zoom level " + zoom + " is too large (" + w + "x" + h
+							+ "); please render it as tiles");
+				}
+				
+				display.centerGraph();
+				display.setZoom(zoom);
+				writeImage(display, new File(outputDirectory, name + "-z" + zoom + "." + ext), (int) w, (int) h);
+				count++;
+			}
+			else {
+				
+				File dir = new File(new File(outputDirectory, name), "" + zoom);
+				if (!dir.isDirectory() && !dir.mkdirs()) {
+					throw new IOException("Cannot create directory " + dir);
+				}
+				
+				double cx = xMin + (xMax - xMin) / 2 - w / 2.0 / scale;
+				double cy = yMin + (yMax - yMin) / 2 - h / 2.0 / scale;
+				
+				for (long y = 0; y * tileSize < h; y++) {
+					for (long x = 0; x * tileSize < w; x++) {
+						display.setOffset(-(cx + (x * tileSize + tileSize / 2.0) / scale),
+										  -(cy + (y * tileSize + tileSize / 2.0) / scale));
+						writeImage(display, new File(dir, x + "_" + y + "." + ext), tileSize, tileSize);
+						count++;
+					}
+				}
+			}
+		}
+		
+		return count;
+	}
+	
+	
+	/**
+	 * Load a document without any user interaction and make sure it has a layout
+	 *
+	 * @param uri the input URI
+	 * @return the document
+	 * @throws IOException on I/O error
+	 * @throws JobException if a job failed
+	 */
+	public Document load(URI uri) throws IOException, JobException {
+		
+		Document doc = Document.load(uri, new DefaultJobMaster(), importSettings);
+		
+		if (doc.getPGraph().getDefaultLayout() == null) {
+			doc.recomputeLayout(Document.createLayoutAlgorithm(importSettings), new DefaultJobMaster());
+		}
+		
+		return doc;
+	}
+	
+	
+	/**
+	 * Load and render documents in parallel
+	 *
+	 * @param inputs the input URIs
+	 * @param threads the number of documents to process at the same time
+	 * @return the number of documents that failed
+	 */
+	public int renderAll(List<URI> inputs, int threads) {
+		
+		final LinkedList<URI> queue = new LinkedList<URI>(inputs);
+		final int[] failed = new int[1];
+		
+		Thread[] workers = new Thread[Math.max(1, Math.min(threads, inputs.size()))];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (true) {
+						
+						URI uri;
+						synchronized (queue) {
+							if (queue.isEmpty()) return;
+							uri = queue.removeFirst();
+						}
+						
+						try {
+							long t = System.currentTimeMillis();
+							int n = render(load(uri));
+							t = System.currentTimeMillis() - t;
+							System.err.println(uri + ": " + n + " image" + (n == 1 ? "" : "s") + " in " + t + " ms");
+						}
+						catch (Throwable e) {
+							System.err.println(uri + ": " + (e.getMessage() == null ? e.toString() : e.getMessage()));
+							if (!(e instanceof IOException || e instanceof JobException
+									|| e instanceof IllegalArgumentException)) {
+								e.printStackTrace();
+							}
+							synchronized (failed) {
+								failed[0]++;
+							}
+						}
+					}
+				}
+			}, "BatchRenderer-" + i);
+			workers[i].start();
+		}
+		
+		for (Thread w : workers) {
+			try {
+				w.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		
+		synchronized (failed) {
+			return failed[0];
+		}
+	}
+	
+	
+	/**
+	 * Print the usage information for the batch mode
+	 */
+	public static void usage() {
+		
+		System.err.println("Usage: java -jar Orbiter.jar --batch [OPTIONS] INPUT_FILE...");
+		System.err.println();
+		System.err.println("Options:");
+		System.err.println("  --output=DIR         Write the images to the given directory");
+		System.err.println("  --format=png|svg     Set the image format (default: png)");
+		System.err.println("  --size=WxH           Set the image size at zoom level 0 (default: 1600x1200)");
+		System.err.println("  --zoom=Z1,Z2,...     Render the given zoom levels (default: 0)");
+		System.err.println("  --tiles=SIZE         Split each zoom level into square tiles of the given size");
+		System.err.println("  --filter=EXPR        Display only the nodes that match, such as \"Indegree >= 2\"");
+		System.err.println("  --summarization=ALG  Set the summarization algorithm (default: Timestamps)");
+		System.err.println("  --provrank           Compute ProvRank");
+		System.err.println("  --subrank            Compute SubRank");
+		System.err.println("  --layered            Use the built-in layered layout instead of Graphviz");
+		System.err.println("  --threads=N          Process N documents at the same time");
+		System.err.println("  --mapped-attributes  Keep node attribute values in a memory-mapped file");
+	}
+	
+	
+	/**
+	 * The entry point for the batch mode
+	 *
+	 * @param args the command-line arguments, excluding --batch
+	 * @return the exit code
+	 */
+	public static int main(String[] args) {
+		
+		System.setProperty("java.awt.headless", "true");
+		
+		BatchRenderer r = new BatchRenderer();
+		List<URI> inputs = new ArrayList<URI>();
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		
+		
+		// Parse the command-line arguments
+		
+		try {
+			for (String s : args) {
+				
+				if (!s.startsWith("--")) {
+					try {
+						inputs.add(s.indexOf("://") > 0 ? new URI(s) : new File(s).toURI());
+					}
+					catch (URISyntaxException e) {
+						throw new IllegalArgumentException("Invalid URI: " + s);
+					}
+					continue;
+				}
+				
+				int eq = s.indexOf('=');
+				String flag = eq < 0 ? s : s.substring(0, eq);
+				String value = eq < 0 ? null : s.substring(eq + 1);
+				
+				if ("--help".equals(flag)) {
+					usage();
+					return 0;
+				}
+				
+				else if ("--provrank".equals(flag)) {
+					r.importSettings.provRank = true;
+				}
+				
+				else if ("--subrank".equals(flag)) {
+					r.importSettings.subRank = true;
+				}
+				
+				else if ("--layered".equals(flag)) {
+					r.importSettings.layeredLayout = true;
+				}
+				
+				else if ("--mapped-attributes".equals(flag)) {
+					PGraph.mappedAttributeStore = true;
+				}
+				
+				else if (value == null) {
+					throw new IllegalArgumentException("Invalid argument: " + s);
+				}
+				
+				else if ("--output".equals(flag)) {
+					File dir = new File(value);
+					if (!dir.isDirectory() && !dir.mkdirs()) {
+						throw new IllegalArgumentException("Cannot create directory " + value);
+					}
+					r.setOutputDirectory(dir);
+				}
+				
+				else if ("--format".equals(flag)) {
+					try {
+						r.setFormat(Format.valueOf(value.toUpperCase()));
+					}
+					catch (IllegalArgumentException e) {
+						throw new IllegalArgumentException("Unsupported format: " + value);
+					}
+				}
+				
+				else if ("--size".equals(flag)) {
+					String[] a = value.toLowerCase().split("x");
+					if (a.length != 2) throw new IllegalArgumentException("Invalid size: " + value);
+					r.setSize(Integer.parseInt(a[0]), Integer.parseInt(a[1]));
+				}
+				
+				else if ("--zoom".equals(flag)) {
+					String[] a = value.split(",");
+					int[] z = new int[a.length];
+					for (int i = 0; i < a.length; i++) z[i] = Integer.parseInt(a[i].trim());
+					r.setZoomLevels(z);
+				}
+				
+				else if ("--tiles".equals(flag)) {
+					r.setTileSize(Integer.parseInt(value));
+				}
+				
+				else if ("--filter".equals(flag)) {
+					r.addFilter(value);
+				}
+				
+				else if ("--summarization".equals(flag)) {
+					if (!Document.getSummarizationAlgorithms().contains(value)) {
+						throw new IllegalArgumentException("Unknown summarization algorithm: " + value
+								+ " (supported: " + Document.getSummarizationAlgorithms() + ")");
+					}
+					r.importSettings.summarizationAlgorithm = value;
+				}
+				
+				else if ("--threads".equals(flag)) {
+					threads = Integer.parseInt(value);
+					if (threads <= 0) throw new IllegalArgumentException("Invalid number of threads: " + value);
+				}
+				
+				else {
+					throw new IllegalArgumentException("Invalid argument: " + s);
+				}
+			}
+		}
+		catch (NumberFormatException e) {
+			System.err.println("Invalid number: " + e.getMessage());
+			return 1;
+		}
+		catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			return 1;
+		}
+		
+		if (inputs.isEmpty()) {
+			usage();
+			return 1;
+		}
+		
+		
+		// Validate the filters before loading the documents
+		
+		SupportedFilters factory = new SupportedFilters();
+		for (String f : r.filters) {
+			try {
+				createFilter(factory, f);
+			}
+			catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+				return 1;
+			}
+		}
+		
+		
+		// Render
+		
+		return r.renderAll(inputs, threads) == 0 ? 0 : 2;
+	}
+}
@@ -31,8 +31,10 @@
 
 package edu.harvard.pass.orbiter;
 
+import java.util.Arrays;
 import java.util.Vector;
 
+import edu.harvard.pass.*;
 import edu.harvard.pass.orbiter.gui.*;
 import edu.harvard.util.*;
 
@@ -52,7 +54,13 @@ public class Main {
 	 */
 	public static void usage() {
 		
-		System.err.println("Usage: java -jar Orbiter.jar [INPUT_FILE]");
+		System.err.println("Usage: java -jar Orbiter.jar [OPTIONS] [INPUT_FILE]");
+		System.err.println("       java -jar Orbiter.jar --batch [BATCH_OPTIONS] INPUT_FILE...");
+		System.err.println();
+		System.err.println("Options:");
+		System.err.println("  --batch              Render the input files to images without a display;");
+		System.err.println("                       use --batch --help for the batch options");
+		System.err.println("  --mapped-attributes  Keep node attribute values in a memory-mapped file");
 	}
 
 	
@@ -64,6 +72,13 @@ public class Main {
     public static void main (String args[]) {
 		
 		
+		// Batch mode, which does not need a display
+		
+		if (args.length > 0 && "--batch".equals(args[0])) {
+			System.exit(BatchRenderer.main(Arrays.copyOfRange(args, 1, args.length)));
+		}
+		
+		
 		// Set-up platform-specific properties
 		
 		try {
@@ -120,6 +135,10 @@ public class Main {
 					return;
 				}
 				
+				else if ("--mapped-attributes".equals(s)) {
+					PGraph.mappedAttributeStore = true;
+				}
+				
 				else {
 					System.err.println("Invalid argument: " + s);
 					System.exit(1);
@@ -53,6 +53,7 @@ import java.net.URI;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.zip.*;
 
@@ -83,7 +84,12 @@ public class Document implements java.io.Serializable {
 	public static final String DESCRIPTION = "Orbiter Project";
 	public static final String EXTENSION = "orb";
 	public static final String EXTENSION_COMPRESSED = "orc";
+	public static final String EXTENSION_BINARY = "orbx";
 	public static final String DOM_ELEMENT = "orbiter-project";
+	
+	private static final int BINARY_MAGIC = 0x4F524258;					// "ORBX"
+	private static final int BINARY_VERSION = 2;
+	private static final int BINARY_SECTION_DOCUMENT = 0x444F4355;		// "DOCU"
 
 	private String name;
 	private transient File file;
@@ -95,6 +101,10 @@ public class Document implements java.io.Serializable {
 	private boolean refineSummaryUniqueInOut = false;
 	private boolean refineSummaryFileExt = false;
 	private boolean refineSummaryRandomly = false;
+	
+	private String sourceURI = null;
+	private String sourceParser = null;
+	private String sourceMark = null;
 
 
 	/**
@@ -164,6 +174,29 @@ public class Document implements java.io.Serializable {
 	}
 
 
+	/**
+	 * Determine whether the document can be updated incrementally from its
+	 * provenance source
+	 *
+	 * @return true if the source and its high-water mark are known
+	 */
+	public boolean hasIncrementalSource() {
+		return sourceURI != null && sourceParser != null && sourceMark != null;
+	}
+
+
+	/**
+	 * Determine whether the given file extension is one of the project file
+	 * formats, i.e. the binary format or the compressed or uncompressed XML
+	 * 
+	 * @param ext the file extension (can be null)
+	 * @return true if it is a project file extension
+	 */
+	public static boolean isProjectExtension(String ext) {
+		return EXTENSION.equals(ext) || EXTENSION_COMPRESSED.equals(ext) || EXTENSION_BINARY.equals(ext);
+	}
+
+
 	/**
 	 * Load the document. The import format is determined by the file
 	 * extension, and if it is not Document.EXTENSION, it is converted
@@ -187,6 +220,23 @@ public class Document implements java.io.Serializable {
 	 * @throws IOException on error
 	 */
 	public static Document load(URI uri, JobMaster master) throws IOException, JobException {
+		return load(uri, master, null);
+	}
+
+
+	/**
+	 * Load the document. The import format is determined by the file
+	 * extension, and if it is not Document.EXTENSION, it is converted
+	 * appropriately. If the import settings are specified, the document
+	 * is imported without any user interaction, which is suitable for
+	 * running without a display.
+	 *
+	 * @param uri the input URI
+	 * @param master the job master to use
+	 * @param settings the import settings, or null to ask the user using a wizard
+	 * @throws IOException on error
+	 */
+	public static Document load(URI uri, JobMaster master, ImportSettings settings) throws IOException, JobException {
 		
 		String name = uri.toString();
 		File file = null;
@@ -219,57 +269,57 @@ public class Document implements java.io.Serializable {
 			
 			// Initialize the graph layout algorithm
 			
-			GraphLayoutAlgorithm layoutAlgorithm;
-
-			try {
-				// XXX The layout algorithm choice should not be hard-coded
-				Graphviz g = new Graphviz();
-				g.setBySummaries(true);
-				g.setOptimizedForZoom(true);
-				//AbegoTreeLayout g = new AbegoTreeLayout();
-				
-				layoutAlgorithm = g;
-			}
-			catch (Exception e) {
-				throw new IOException(e.getMessage());
-			}
+			GraphLayoutAlgorithm layoutAlgorithm = createLayoutAlgorithm(settings);
+			attachLayoutCache(layoutAlgorithm, file);
 			
 			
 			// Run the Wizard
 			
-			SimpleWizard w = new SimpleWizard(null, "Import " + name, true);
-			
-			if (parser instanceof HasWizardPanelConfigGUI) {
-				List<WizardPanel> l = ((HasWizardPanelConfigGUI) parser).createConfigurationGUI();
-				if (l != null) for (WizardPanel p : l) w.addWizardPanel(p);
-			}
-			
-			SummarizationConfigPanel summarizationPanel = new SummarizationConfigPanel();
-			w.addWizardPanel(summarizationPanel);
-			
-			if (layoutAlgorithm instanceof HasWizardPanelConfigGUI) {
-				List<WizardPanel> l = ((HasWizardPanelConfigGUI) layoutAlgorithm).createConfigurationGUI();
-				if (l != null) for (WizardPanel p : l) w.addWizardPanel(p);
-			}
-			
-			FinalImportConfigPanel finalPanel = new FinalImportConfigPanel();
-			w.addWizardPanel(finalPanel);
-			
-			if (w.hasPanels()) {
-				w.setMinimumSize(new Dimension(480, 320));
-				if (w.run() != SimpleWizard.OK) throw new JobCanceledException();
+			if (settings == null) {
+				
+				SimpleWizard w = new SimpleWizard(null, "Import " + name, true);
+				
+				if (parser instanceof HasWizardPanelConfigGUI) {
+					List<WizardPanel> l = ((HasWizardPanelConfigGUI) parser).createConfigurationGUI();
+					if (l != null) for (WizardPanel p : l) w.addWizardPanel(p);
+				}
+				
+				SummarizationConfigPanel summarizationPanel = new SummarizationConfigPanel();
+				w.addWizardPanel(summarizationPanel);
+				
+				if (layoutAlgorithm instanceof HasWizardPanelConfigGUI) {
+					List<WizardPanel> l = ((HasWizardPanelConfigGUI) layoutAlgorithm).createConfigurationGUI();
+					if (l != null) for (WizardPanel p : l) w.addWizardPanel(p);
+				}
+				
+				FinalImportConfigPanel finalPanel = new FinalImportConfigPanel();
+				w.addWizardPanel(finalPanel);
+				
+				if (w.hasPanels()) {
+					w.setMinimumSize(new Dimension(480, 320));
+					if (w.run() != SimpleWizard.OK) throw new JobCanceledException();
+				}
+				
+				settings = new ImportSettings();
+				settings.summarizationAlgorithm = summarizationPanel.summarizationAlgorithm;
+				settings.refineSummaryUniqueInOut = summarizationPanel.refineSummaryUniqueInOut;
+				settings.refineSummaryFileExt = summarizationPanel.refineSummaryFileExt;
+				settings.refineSummaryRandomly = summarizationPanel.refineSummaryRandomly;
+				settings.provRank = finalPanel.provRankCheck.isSelected();
+				settings.subRank = finalPanel.subRankCheck.isSelected();
 			}
 
 
 			// Build the list of jobs
 
-			master.add(new LoadPGraphJob(uri, parser, pg));
-			if (finalPanel.provRankCheck.isSelected()) master.add(new ProvRankJob(pg));
-			if (finalPanel.subRankCheck.isSelected()) master.add(new SubRankJob(pg));
+			LoadPGraphJob loadJob = new LoadPGraphJob(uri, parser, pg);
+			master.add(loadJob);
+			if (settings.provRank) master.add(new ProvRankJob(pg));
+			if (settings.subRank) master.add(new SubRankJob(pg));
 			
 			if (!HEADLESS) {
 				Class<? extends GraphSummarizer> summarizerClass
-					= SummarizationConfigPanel.SUMMARIZATION_ALGORITHMS.get(summarizationPanel.summarizationAlgorithm);
+					= SummarizationConfigPanel.SUMMARIZATION_ALGORITHMS.get(settings.summarizationAlgorithm);
 				
 				if (summarizerClass == null) summarizerClass = NullSummarizer.class;
 				
@@ -282,16 +332,16 @@ public class Document implements java.io.Serializable {
 				}
 				
 				if (summarizerClass != NullSummarizer.class) {
-					if (summarizationPanel.refineSummaryUniqueInOut) {
+					if (settings.refineSummaryUniqueInOut) {
 						master.add(new GraphSummaryJob(new UniqueInOutSummarizer(), bpg, "Refining graph summary"));
 						master.add(new GraphSummaryJob(new UniqueInOutSummarizer(), bpg, "Refining graph summary"));
 					}
 					
-					if (summarizationPanel.refineSummaryFileExt) {
+					if (settings.refineSummaryFileExt) {
 						master.add(new GraphSummaryJob(new FileExtSummarizer(), bpg, "Refining graph summary"));
 					}
 					
-					if (summarizationPanel.refineSummaryRandomly) {
+					if (settings.refineSummaryRandomly) {
 						master.add(new GraphSummaryJob(new SmallGroupsGraphSummarizer(), bpg, "Refining graph summary"));
 					}
 				}
@@ -318,10 +368,16 @@ public class Document implements java.io.Serializable {
 			}
 			
 			Document d = new Document(name, graph, uri, file);
-			d.summarizationAlgorithm = summarizationPanel.summarizationAlgorithm;
-			d.refineSummaryUniqueInOut = summarizationPanel.refineSummaryUniqueInOut;
-			d.refineSummaryFileExt = summarizationPanel.refineSummaryFileExt;
-			d.refineSummaryRandomly = summarizationPanel.refineSummaryRandomly;
+			d.summarizationAlgorithm = settings.summarizationAlgorithm;
+			d.refineSummaryUniqueInOut = settings.refineSummaryUniqueInOut;
+			d.refineSummaryFileExt = settings.refineSummaryFileExt;
+			d.refineSummaryRandomly = settings.refineSummaryRandomly;
+			
+			if (loadJob.getHighWaterMark() != null) {
+				d.sourceURI = uri.toString();
+				d.sourceParser = parser.getClass().getName();
+				d.sourceMark = loadJob.getHighWaterMark();
+			}
 			
 			return d;
 		}
@@ -337,7 +393,7 @@ public class Document implements java.io.Serializable {
 	
 			// The project
 	
-			if (ext.equals(Document.EXTENSION) || ext.equals(Document.EXTENSION_COMPRESSED)) {
+			if (isProjectExtension(ext)) {
 	
 				LoadDocumentJob l = new LoadDocumentJob(file.getPath());
 				master.add(l);
@@ -357,6 +413,39 @@ public class Document implements java.io.Serializable {
 
 		throw new IOException("Unrecognized provenance URI " + uri);
 	}
+	
+	
+	/**
+	 * Create the layout algorithm for a newly imported graph. This is Graphviz,
+	 * unless the settings ask for the built-in layered layout
+	 * 
+	 * @param settings the import settings (can be null)
+	 * @return the graph layout algorithm
+	 * @throws IOException if the algorithm cannot be initialized
+	 */
+	public static GraphLayoutAlgorithm createLayoutAlgorithm(ImportSettings settings) throws IOException {
+		
+		// XXX The layout algorithm choice should not be hard-coded
+		
+		if (settings != null && settings.layeredLayout) {
+			LayeredLayout l = new LayeredLayout();
+			l.setBySummaries(true);
+			l.setOptimizedForZoom(true);
+			return l;
+		}
+		
+		try {
+			Graphviz g = new Graphviz();
+			g.setBySummaries(true);
+			g.setOptimizedForZoom(true);
+			//AbegoTreeLayout g = new AbegoTreeLayout();
+			
+			return g;
+		}
+		catch (Exception e) {
+			throw new IOException(e.getMessage());
+		}
+	}
 
 
 	/**
@@ -370,6 +459,8 @@ public class Document implements java.io.Serializable {
 		
 		Pointer<PGraph> pg = new Pointer<PGraph>();
 		pg.set(graph);
+		
+		attachLayoutCache(layoutAlgorithm);
 
 
 		// Build the list of jobs
@@ -381,14 +472,121 @@ public class Document implements java.io.Serializable {
 	
 	
 	/**
-	 * Add default summarization jobs to the specified job master
+	 * Append the data that were added to the provenance source since it was
+	 * last loaded, and then update ProvRank, SubRank, the summarization, and
+	 * the layout of the graph. ProvRank is computed starting from the previous
+	 * ranks, so it usually converges in a few iterations.
+	 *
+	 * @param master the job master to use
+	 * @return true if the graph was updated, false if there were no new data
+	 * @throws IOException on error
+	 * @throws JobException if a job failed
+	 */
+	public boolean updateFromSource(JobMaster master) throws IOException, JobException {
+		
+		if (!hasIncrementalSource()) {
+			throw new IOException("The document does not have an incremental provenance source");
+		}
+		
+		
+		// Instantiate the parser
+		
+		URI source;
+		IncrementalParser parser;
+		
+		try {
+			source = new URI(sourceURI);
+			parser = (IncrementalParser) Class.forName(sourceParser).newInstance();
+		}
+		catch (Exception e) {
+			throw new IOException("Cannot initialize the parser for " + sourceURI);
+		}
+		
+		try {
+			if (!parser.hasDataAfter(source, sourceMark)) return false;
+		}
+		catch (ParserException e) {
+			throw new JobException(e);
+		}
+		
+		
+		// Remember the layout algorithm, since appending discards the layouts
+		
+		GraphLayout defaultLayout = graph.getDefaultLayout();
+		GraphLayoutAlgorithm layoutAlgorithm = defaultLayout == null ? null : defaultLayout.getAlgorithm();
+		
+		
+		// Build the list of jobs
+		
+		Pointer<PGraph> pg = new Pointer<PGraph>(graph);
+		Pointer<BaseGraph> bpg = Utils.<Pointer<BaseGraph>>cast(pg);
+
+		AppendPGraphJob appendJob = new AppendPGraphJob(source, parser, sourceMark, pg);
+		master.add(appendJob);
+		
+		if (graph.wasProvRankComputed()) master.add(new ProvRankJob(pg, ProvRank.DEFAULT_TOLERANCE, true));
+		if (graph.wasSubRankComputed()) master.add(new SubRankJob(pg));
+		
+		if (!HEADLESS) {
+			addDefaultSummarizationJobs(bpg, master);
+			
+			if (layoutAlgorithm != null) {
+				attachLayoutCache(layoutAlgorithm);
+				master.add(new GraphLayoutAlgorithmJob(layoutAlgorithm, bpg, layoutAlgorithm.isZoomOptimized() ? 2 : -1));
+			}
+		}
+		
+		
+		// Run the jobs
+		
+		master.run();
+		
+		sourceMark = appendJob.getHighWaterMark();
+		
+		if (graph.getLayouts().isEmpty() && layoutAlgorithm != null) {
+			if (!HEADLESS) {
+				graph.addLayout(GraphLayout.createStub(graph, layoutAlgorithm, layoutAlgorithm.getName()));
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Attach the layout cache stored next to the given file to the graph
+	 * layout algorithm, if the algorithm supports it
 	 * 
-	 * @param graph the provenance graph
+	 * @param algorithm the graph layout algorithm
+	 * @param file the project or input file (can be null)
+	 */
+	private static void attachLayoutCache(GraphLayoutAlgorithm algorithm, File file) {
+		if (file == null || !(algorithm instanceof HasLayoutCache)) return;
+		((HasLayoutCache) algorithm).setLayoutCache(LayoutCache.forFile(file));
+	}
+	
+	
+	/**
+	 * Attach the layout cache of this document to the graph layout algorithm,
+	 * if the algorithm supports it, so that the layouts of the unchanged
+	 * summary nodes are reused
+	 * 
+	 * @param algorithm the graph layout algorithm
+	 */
+	public void attachLayoutCache(GraphLayoutAlgorithm algorithm) {
+		attachLayoutCache(algorithm, file);
+	}
+	
+	
+	/**
+	 * Add default summarization jobs to the specified job master. The graph
+	 * pointer should be the same one that is passed to the other jobs that
+	 * operate on the graph, since the jobs are ordered by the pointers they share.
+	 * 
+	 * @param bpg the pointer to the provenance graph
 	 * @param master the job master
 	 */
-	public void addDefaultSummarizationJobs(PGraph graph, JobMaster master) {
-		
-		Pointer<BaseGraph> bpg = new Pointer<BaseGraph>(graph);
+	public void addDefaultSummarizationJobs(Pointer<BaseGraph> bpg, JobMaster master) {
 		
 		Class<? extends GraphSummarizer> summarizerClass
 			= SummarizationConfigPanel.SUMMARIZATION_ALGORITHMS.get(summarizationAlgorithm);	
@@ -441,14 +639,14 @@ public class Document implements java.io.Serializable {
 	
 		String ext = Utils.getExtension(file);
 		if (ext == null) {
-			file = new File(file.getAbsoluteFile() + "." + Document.EXTENSION_COMPRESSED);
+			file = new File(file.getAbsoluteFile() + "." + Document.EXTENSION_BINARY);
 			ext = Utils.getExtension(file);
 		}
 
 
 		// The project
 
-		if (ext.equals(Document.EXTENSION) || ext.equals(Document.EXTENSION_COMPRESSED)) {
+		if (isProjectExtension(ext)) {
 			master.add(new ExportDocumentJob(file.getPath(), this));
 			master.run();
 			return;
@@ -462,7 +660,8 @@ public class Document implements java.io.Serializable {
 
 
 	/**
-	 * Write the document to a project file
+	 * Write the document to a project file. The format is determined by
+	 * the file extension
 	 * 
 	 * @param file the output file
 	 * @throws IOException on I/O error
@@ -472,6 +671,11 @@ public class Document implements java.io.Serializable {
 	public void writeToProjectFile(File file) throws IOException, TransformerConfigurationException, SAXException {
 		
 		String ext = Utils.getExtension(file);
+		if (EXTENSION_BINARY.equals(ext)) {
+			writeToBinaryProjectFile(file);
+			return;
+		}
+		
 		boolean compressed = ext.equals(Document.EXTENSION_COMPRESSED);
 
 		
@@ -509,6 +713,11 @@ public class Document implements java.io.Serializable {
 		attrs.addAttribute("", "", "summarizationRefineFileExt", "CDATA", refineSummaryFileExt ? "true" : "false");
 		attrs.addAttribute("", "", "summarizationRefineRandomly", "CDATA", refineSummaryRandomly ? "true" : "false");
 		attrs.addAttribute("", "", "summarizationRefineUniqueInOut", "CDATA", refineSummaryUniqueInOut ? "true" : "false");
+		if (hasIncrementalSource()) {
+			attrs.addAttribute("", "", "source", "CDATA", sourceURI);
+			attrs.addAttribute("", "", "sourceParser", "CDATA", sourceParser);
+			attrs.addAttribute("", "", "sourceMark", "CDATA", sourceMark);
+		}
 		hd.startElement("", "", DOM_ELEMENT, attrs);
 		
 		
@@ -529,7 +738,104 @@ public class Document implements java.io.Serializable {
 
 
 	/**
-	 * Load the document from a project file
+	 * Write the document to a project file in the binary columnar format
+	 * 
+	 * @param file the output file
+	 * @throws IOException on I/O error
+	 */
+	public void writeToBinaryProjectFile(File file) throws IOException {
+		
+		ColumnarWriter w = new ColumnarWriter(file, BINARY_MAGIC, BINARY_VERSION);
+		boolean ok = false;
+		
+		try {
+			w.beginSection(BINARY_SECTION_DOCUMENT);
+			w.writeString(name);
+			w.writeString(summarizationAlgorithm);
+			w.writeBoolean(refineSummaryFileExt);
+			w.writeBoolean(refineSummaryRandomly);
+			w.writeBoolean(refineSummaryUniqueInOut);
+			w.writeString(sourceURI);
+			w.writeString(sourceParser);
+			w.writeString(sourceMark);
+			w.writeBoolean(graph != null);
+			
+			if (graph != null) {
+				graph.writeToBinary(w);
+			}
+			
+			w.close();
+			ok = true;
+		}
+		finally {
+			if (!ok) {
+				try {
+					w.close();
+				}
+				catch (IOException e) {
+					// Nothing to do
+				}
+				file.delete();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Load the document from a project file in the binary columnar format
+	 *
+	 * @param file the input file
+	 * @return the document
+	 * @throws IOException on I/O error
+	 * @throws ParserException on format error
+	 */
+	public static Document loadFromBinaryProjectFile(File file) throws IOException, ParserException {
+		
+		ColumnarReader r = new ColumnarReader(file, BINARY_MAGIC, BINARY_VERSION);
+		
+		try {
+			r.expectSection(BINARY_SECTION_DOCUMENT);
+			String documentName = r.readString();
+			String summarizationAlgorithm = r.readString();
+			boolean refineSummaryFileExt = r.readBoolean();
+			boolean refineSummaryRandomly = r.readBoolean();
+			boolean refineSummaryUniqueInOut = r.readBoolean();
+			String sourceURI = r.readString();
+			String sourceParser = r.readString();
+			String sourceMark = r.readString();
+			boolean hasGraph = r.readBoolean();
+			
+			if (documentName == null) {
+				throw new ParserException("Document name is not specified");
+			}
+			
+			if (!hasGraph) {
+				throw new ParserException("No graph was loaded");
+			}
+			
+			Document d = new Document(documentName, PGraph.loadFromBinary(r), file.toURI(), file);
+			d.summarizationAlgorithm = summarizationAlgorithm;
+			d.refineSummaryFileExt = refineSummaryFileExt;
+			d.refineSummaryRandomly = refineSummaryRandomly;
+			d.refineSummaryUniqueInOut = refineSummaryUniqueInOut;
+			d.sourceURI = sourceURI;
+			d.sourceParser = sourceParser;
+			d.sourceMark = sourceMark;
+			
+			return d;
+		}
+		catch (RuntimeException e) {
+			throw new ParserException("Corrupted project file: " + e.getMessage(), e);
+		}
+		finally {
+			r.close();
+		}
+	}
+
+
+	/**
+	 * Load the document from a project file. The format is determined by
+	 * the file extension
 	 *
 	 * @param file the input file
 	 * @param observer the job observer
@@ -542,6 +848,10 @@ public class Document implements java.io.Serializable {
 			throws IOException, ParserException, ParserConfigurationException, SAXException {
 
 		String ext = Utils.getExtension(file);
+		if (EXTENSION_BINARY.equals(ext)) {
+			return loadFromBinaryProjectFile(file);
+		}
+		
 		boolean compressed = ext.equals(Document.EXTENSION_COMPRESSED);
 		InputStream in = null;
 		
@@ -591,11 +901,39 @@ public class Document implements java.io.Serializable {
 		d.refineSummaryFileExt = dp.refineSummaryFileExt;
 		d.refineSummaryRandomly = dp.refineSummaryRandomly;
 		d.refineSummaryUniqueInOut = dp.refineSummaryUniqueInOut;
+		d.sourceURI = dp.sourceURI;
+		d.sourceParser = dp.sourceParser;
+		d.sourceMark = dp.sourceMark;
 		
 		return d;
 	}
 	
 	
+	/**
+	 * Return the names of the supported summarization algorithms
+	 * 
+	 * @return the set of names
+	 */
+	public static Set<String> getSummarizationAlgorithms() {
+		return SummarizationConfigPanel.SUMMARIZATION_ALGORITHMS.keySet();
+	}
+	
+	
+	/**
+	 * Settings for importing a provenance graph without user interaction
+	 */
+	public static class ImportSettings {
+		
+		public String summarizationAlgorithm = "Timestamps";
+		public boolean refineSummaryUniqueInOut = true;
+		public boolean refineSummaryFileExt = true;
+		public boolean refineSummaryRandomly = false;
+		public boolean provRank = false;
+		public boolean subRank = false;
+		public boolean layeredLayout = false;
+	}
+	
+	
 	/**
 	 * SAX document parser
 	 */
@@ -612,6 +950,10 @@ public class Document implements java.io.Serializable {
 		private boolean refineSummaryFileExt = true;
 		private boolean refineSummaryRandomly = false;
 		private boolean refineSummaryUniqueInOut = false;
+		
+		private String sourceURI = null;
+		private String sourceParser = null;
+		private String sourceMark = null;
 
 		
 		/**
@@ -643,6 +985,10 @@ public class Document implements java.io.Serializable {
 					refineSummaryRandomly = "true".equalsIgnoreCase(XMLUtils.getAttribute(attributes, "summarizationRefineRandomly"));
 				if (XMLUtils.getAttribute(attributes, "summarizationRefineUniqueInOut", null) != null)
 					refineSummaryUniqueInOut = "true".equalsIgnoreCase(XMLUtils.getAttribute(attributes, "summarizationRefineUniqueInOut"));
+				
+				sourceURI = XMLUtils.getAttribute(attributes, "source", null);
+				sourceParser = XMLUtils.getAttribute(attributes, "sourceParser", null);
+				sourceMark = XMLUtils.getAttribute(attributes, "sourceMark", null);
 			}
 			
 			
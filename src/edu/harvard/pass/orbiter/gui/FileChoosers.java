@@ -69,8 +69,9 @@ public class FileChoosers {
 	 */
 	static {
 		
-		documentFilter = new FileExtensionFilter(Document.DESCRIPTION + " (*." + Document.EXTENSION + ", *."
-				+ Document.EXTENSION_COMPRESSED + ")", Document.EXTENSION, Document.EXTENSION_COMPRESSED);
+		documentFilter = new FileExtensionFilter(Document.DESCRIPTION + " (*." + Document.EXTENSION_BINARY + ", *."
+				+ Document.EXTENSION + ", *." + Document.EXTENSION_COMPRESSED + ")",
+				Document.EXTENSION_BINARY, Document.EXTENSION, Document.EXTENSION_COMPRESSED);
 		
 		twigFilter = new FileExtensionFilter("PASS Twig File (*.twig, *.twig_dump)", "twig", "twig_dump");
 		opmFilter = new FileExtensionFilter("OPM File (*.opm, *.n3, *.xml, *.rdf)", "opm", "n3", "xml", "rdf");
@@ -120,7 +121,7 @@ public class FileChoosers {
 		if (r != JFileChooser.APPROVE_OPTION) return null;
 		
 		lastChosenGraphFile = fc.getSelectedFile();
-		if (Document.EXTENSION.equals(Utils.getExtension(lastChosenGraphFile))) lastChosenDocumentFile = lastChosenGraphFile;
+		if (Document.isProjectExtension(Utils.getExtension(lastChosenGraphFile))) lastChosenDocumentFile = lastChosenGraphFile;
 		return lastChosenGraphFile;
 	}
 
@@ -437,7 +437,7 @@ public class LegendPanel extends JPanel {
 	public void resetDisplayDecorator() {
 		PASSDecorator.ColorNodesBy c = colorNodesByList.get(nodeColorComboBox.getSelectedIndex());
 		decorator.setColorNodesBy(c);
-		display.repaint();
+		display.refresh();
 	}
 
 
@@ -102,6 +102,7 @@ public class MainFrame extends JFrame implements Runnable {
 	private JMenu fileMenu;
 	private JMenuItem fileOpenMenuItem;
 	private JMenuItem fileOpenCPLMenuItem;
+	private JMenuItem fileUpdateMenuItem;
 	private JMenuItem fileSaveMenuItem;
 	private JMenuItem fileExportMenuItem;
 	private JMenuItem fileScreenshotMenuItem;
@@ -117,6 +118,7 @@ public class MainFrame extends JFrame implements Runnable {
 	private JMenuItem transformApplyNoSummarizeFilterMenuItem;
 	private JMenuItem transformHierarchicalLayoutMenuItem;
 	private JMenuItem transformSpringLayoutMenuItem;
+	private JMenuItem transformLayeredLayoutMenuItem;
 	
 	private JMenu lineageQueryMenu;
 	private JMenuItem lineageQueryAncestorsMenuItem;
@@ -288,6 +290,10 @@ public class MainFrame extends JFrame implements Runnable {
 		fileOpenCPLMenuItem.setEnabled(edu.harvard.pass.cpl.CPL.isInstalled());
 		fileMenu.add(fileOpenCPLMenuItem);
 
+		fileUpdateMenuItem = new JMenuItem("Update from Source", KeyEvent.VK_U);
+		fileUpdateMenuItem.addActionListener(handler);
+		fileMenu.add(fileUpdateMenuItem);
+
 		fileSaveMenuItem = new JMenuItem("Save...", KeyEvent.VK_S);
 		fileSaveMenuItem.addActionListener(handler);
 		fileSaveMenuItem.setAccelerator(Utils.getKeyStrokeForMenu(KeyEvent.VK_S));
@@ -388,6 +394,10 @@ public class MainFrame extends JFrame implements Runnable {
 		transformSpringLayoutMenuItem.addActionListener(handler);
 		transformMenu.add(transformSpringLayoutMenuItem);
 
+		transformLayeredLayoutMenuItem = new JMenuItem("Compute Layered Layout Without Graphviz");
+		transformLayeredLayoutMenuItem.addActionListener(handler);
+		transformMenu.add(transformLayeredLayoutMenuItem);
+		
 		transformMenu.addSeparator();
 		
 		graphDerivationTreeMenu = new JMenu("Exisiting derivations");
@@ -558,11 +568,14 @@ public class MainFrame extends JFrame implements Runnable {
 			graphDerivationTreeMenu.removeAll();
 			
 			configureComparison();
+			fileUpdateMenuItem.setEnabled(false);
 			
 			setTitle(TITLE);
 			return;
 		}
 		
+		fileUpdateMenuItem.setEnabled(doc.hasIncrementalSource());
+		
 		
 		// Initialize the time filter
 		
@@ -756,22 +769,25 @@ public class MainFrame extends JFrame implements Runnable {
 	protected GraphLayout computeGraphLayout(PGraph g, GraphLayoutAlgorithm algorithm, boolean summarize) throws JobException {
 		
 		Pointer<PGraph> pg = new Pointer<PGraph>(g);
+		Pointer<BaseGraph> bpg = Utils.<Pointer<BaseGraph>>cast(pg);
 		
 		JobMasterDialog d = new JobMasterDialog(MainFrame.this, "Recomputing the Layout");
 		if (g.getRootSummaryNode() == null) {
 			try {
 				if (summarize) {
-					getDocument().addDefaultSummarizationJobs(g, d);
+					getDocument().addDefaultSummarizationJobs(bpg, d);
 				}
 				else {
-					d.add(new GraphSummaryJob(new NullSummarizer(), Utils.<Pointer<BaseGraph>>cast(pg)));
+					d.add(new GraphSummaryJob(new NullSummarizer(), bpg));
 				}
 			}
 			catch (Exception e) {
 				throw new JobException(e);
 			}
 		}
-		GraphLayoutAlgorithmJob j = new GraphLayoutAlgorithmJob(algorithm, Utils.<Pointer<BaseGraph>>cast(pg));
+		if (document != null) document.attachLayoutCache(algorithm);
+		
+		GraphLayoutAlgorithmJob j = new GraphLayoutAlgorithmJob(algorithm, bpg);
 		d.add(j);
 		d.run();
 		
@@ -841,6 +857,7 @@ public class MainFrame extends JFrame implements Runnable {
 			
 			if (graph.getType() == PGraph.Type.COMPARISON) {
 				decorator.setColorNodesBy(PASSDecorator.ColorNodesBy.COMPARISON);
+				display.refresh();
 			}
 			else {
 				legendPanel.resetDisplayDecorator();
@@ -931,6 +948,31 @@ public class MainFrame extends JFrame implements Runnable {
 			}
 
 
+			//
+			// File / Update from Source
+			//
+
+			if (event.getSource() == fileUpdateMenuItem) {
+				
+				if (document == null || !document.hasIncrementalSource()) return;
+
+				try {
+					if (document.updateFromSource(new JobMasterDialog(MainFrame.this, "Updating the graph"))) {
+						setDocument(document);
+					}
+					else {
+						JOptionPane.showMessageDialog(MainFrame.this, "There are no new data in the source",
+								"Update from Source", JOptionPane.INFORMATION_MESSAGE);
+					}
+				}
+				catch (Throwable e) {
+					if (!(e instanceof JobCanceledException)) e.printStackTrace();
+					JOptionPane.showMessageDialog(MainFrame.this, e.getMessage(),
+						"Failed to update", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+
+
 			//
 			// File / Save
 			//
@@ -1149,6 +1191,28 @@ public class MainFrame extends JFrame implements Runnable {
 			}
 
 			
+			//
+			// Transform / Compute Layered Layout Without Graphviz
+			//
+			
+			if (event.getSource() == transformLayeredLayoutMenuItem) {
+			
+				if (document == null) return;
+				
+				try {
+					LayeredLayout g = new LayeredLayout();
+					g.setRankDir("BT");
+					graph.setDefaultLayout(computeGraphLayout(graph, g));
+					graphLayoutChanged();
+				}
+				catch (Throwable e) {
+					if (!(e instanceof JobCanceledException)) e.printStackTrace();
+					JOptionPane.showMessageDialog(MainFrame.this, e.getMessage(),
+						"Failed to recompute the layout", JOptionPane.ERROR_MESSAGE);
+				}
+			}
+			
+			
 			//
 			// Transform / Generate File Graph
 			//
@@ -1367,19 +1431,10 @@ public class MainFrame extends JFrame implements Runnable {
 
 				try {
 					HashSet<String> set = new HashSet<String>();
-					if (display.isFilteringOnOriginals()) {
-						for (PNode n : graph.getNodes()) {
-							if (display.getFilters().accept(n.getOriginal())) {
-								set.add(n.getPublicID());
-							}
-						}
-					}
-					else {
-						for (PNode n : graph.getNodes()) {
-							if (display.getFilters().accept(n)) {
-								set.add(n.getPublicID());
-							}
-						}
+					BitSet accepted = display.getFilters().evaluate(display.getFilterUniverse());
+					for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+						PNode n = graph.getNode(i);
+						if (n != null) set.add(n.getPublicID());
 					}
 					graph.setComparisonNodeSet(event.getSource() == comparisonSet1Item ? 0 : 1,
 							set, display.getFilters().toExpressionString());
@@ -1560,7 +1615,8 @@ public class MainFrame extends JFrame implements Runnable {
 					TimelineEvent<PObject> start = timelineTree.getSelectedEvent();
 					
 					timelineFilter.clear();
-					HashSet<PNode> set = new HashSet<PNode>();
+					PGraph g = start.getValue().getGraph();
+					BitSet set = new BitSet(g.getNodes().size());
 					
 					
 					// Enqueue all versions (nodes) associated with this process
@@ -1568,7 +1624,7 @@ public class MainFrame extends JFrame implements Runnable {
 					LinkedList<PNode> queue = new LinkedList<PNode>();
 					for (PNode se : start.getValue().getVersions()) {
 						queue.add(se);
-						set.add(se);
+						set.set(se.getIndex());
 					}
 					
 					
@@ -1583,13 +1639,13 @@ public class MainFrame extends JFrame implements Runnable {
 					while (!queue.isEmpty()) {
 						PNode n = queue.removeFirst();
 						
-						for (PEdge g : n.getIncomingEdges()) {
-							PEdge.Type t = g.getType();
-							if (t != PEdge.Type.VERSION && t != PEdge.Type.CONTROL) set.add(g.getFrom());
+						for (PEdge e : n.getIncomingEdges()) {
+							PEdge.Type t = e.getType();
+							if (t != PEdge.Type.VERSION && t != PEdge.Type.CONTROL) set.set(e.getFrom().getIndex());
 						}
-						for (PEdge g : n.getOutgoingEdges()) {
-							PEdge.Type t = g.getType();
-							if (t != PEdge.Type.VERSION && t != PEdge.Type.CONTROL) set.add(g.getTo());
+						for (PEdge e : n.getOutgoingEdges()) {
+							PEdge.Type t = e.getType();
+							if (t != PEdge.Type.VERSION && t != PEdge.Type.CONTROL) set.set(e.getTo().getIndex());
 						}
 						
 						for (PEdge e : n.getIncomingEdges()) {
@@ -1597,8 +1653,8 @@ public class MainFrame extends JFrame implements Runnable {
 							PEdge.Type t = e.getType();
 							
 							if (t != PEdge.Type.VERSION && t != PEdge.Type.CONTROL) continue;
-							if (!set.contains(x)) {
-								set.add(x);
+							if (!set.get(x.getIndex())) {
+								set.set(x.getIndex());
 								queue.addLast(x);
 							}
 						}
@@ -1607,7 +1663,7 @@ public class MainFrame extends JFrame implements Runnable {
 					
 					// Set the filter
 					
-					timelineFilter.set(set);
+					timelineFilter.set(g.getNodeUniverse(), set);
 				}
 				
 				display.repaint();
@@ -263,7 +263,7 @@ public class PASSDecorator extends DefaultGraphDecorator<PNode, PEdge, PSummaryN
 	 * 
 	 * @param g the graph
 	 */
-	public void setPGraph(PGraph g) {
+	public synchronized void setPGraph(PGraph g) {
 		
 		pass = g;
 		
@@ -32,37 +32,56 @@
 package edu.harvard.pass.orbiter.gui;
 
 import edu.harvard.pass.*;
+import edu.harvard.pass.filter.PASSFilter;
 import edu.harvard.util.filter.*;
 import edu.harvard.util.graph.*;
 import edu.harvard.util.gui.*;
 
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.*;
 
 import javax.swing.*;
 import javax.swing.event.*;
 
 
 /**
- * Search by attribute
+ * Search by attribute and by text. The text queries are answered from the
+ * text index of the graph, and the results are streamed into the list by
+ * a background thread.
  * 
  * @author Peter Macko
  */
 @SuppressWarnings("serial")
 public class SearchPanel extends JPanel {
 	
+	/**
+	 * The number of results added to the result list at once
+	 */
+	private static final int RESULT_CHUNK_SIZE = 1000;
+	
 	private String title;
 	
 	private FilterSet<PNode> filters;
 	private FilterFactory<PNode> factory;
 	private EventHandler handler;
 	
+	private PASSFilter.Text textFilter;
+	private Worker queryWorker;
+	private Worker resultWorker;
+	
 	private PGraph graph;
 	private GraphDisplay<PNode, PEdge, PSummaryNode, PGraph> display;
 	
 	private JLabel titleLabel;
+	private JPanel queryPanel;
+	private JTextField queryField;
+	private JCheckBox rankCheck;
 	private FilterListPanel<PNode> filterPanel;
+	private JPanel topPanel;
 	private JSplitPane splitPane;
 	
 	private JPanel resultPanel;
@@ -87,6 +106,8 @@ public class SearchPanel extends JPanel {
 		
 		this.graph = null;
 		this.handler = new EventHandler();
+		this.queryWorker = new Worker("SearchPanel query worker");
+		this.resultWorker = new Worker("SearchPanel result worker");
 		
 		
 		// Filters
@@ -97,6 +118,8 @@ public class SearchPanel extends JPanel {
 		
 		this.display.getFilters().addFilterListener(handler);
 		
+		this.textFilter = new PASSFilter.Text();
+		
 		
 		// Component basics
 		
@@ -112,11 +135,38 @@ public class SearchPanel extends JPanel {
 		}
 		
 		
+		// Text search
+		
+		queryPanel = new JPanel();
+		queryPanel.setLayout(new BorderLayout());
+		queryPanel.setOpaque(false);
+		
+		queryField = new JTextField();
+		queryField.setToolTipText("<html>Words to find in the labels, names, types, and attributes:<br>"
+				+ "<i>word</i> finds words that start with it, <i>*word</i> finds words that contain it,<br>"
+				+ "and <i>field:word</i> searches only the given field, such as <i>name:lib</i></html>");
+		queryField.addActionListener(handler);
+		queryField.getDocument().addDocumentListener(handler);
+		queryPanel.add(new JLabel("Search: "), BorderLayout.WEST);
+		queryPanel.add(queryField, BorderLayout.CENTER);
+		
+		rankCheck = new JCheckBox("Order by ProvRank");
+		rankCheck.setOpaque(false);
+		rankCheck.addActionListener(handler);
+		queryPanel.add(rankCheck, BorderLayout.SOUTH);
+		
+		
 		// Filter panel
 		
 		filterPanel = new FilterListPanel<PNode>("Search by Attribute", filters, this.factory);
 		filterPanel.setOpaque(false);
 		
+		topPanel = new JPanel();
+		topPanel.setLayout(new BorderLayout());
+		topPanel.setOpaque(false);
+		topPanel.add(queryPanel, BorderLayout.NORTH);
+		topPanel.add(filterPanel, BorderLayout.CENTER);
+		
 		
 		// Results
 		
@@ -140,7 +190,7 @@ public class SearchPanel extends JPanel {
 		
 		// Add the filter list
 		
-		splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, filterPanel, resultPanel);
+		splitPane = new JSplitPane(JSplitPane.VERTICAL_SPLIT, topPanel, resultPanel);
 		splitPane.setOneTouchExpandable(true);
 		splitPane.setDividerLocation(200);
 		splitPane.setResizeWeight(0.2);
@@ -151,28 +201,154 @@ public class SearchPanel extends JPanel {
 	
 	
 	/**
-	 * Clear the search by filters
+	 * Clear the search by filters and the text query
 	 */
 	public void clear() {
+		queryField.setText("");
 		filterPanel.clear();
 	}
 	
 	
 	/**
-	 * Set the provenance graph
+	 * Set the provenance graph, and start building its text index in the
+	 * background, so that it is ready by the time of the first query
 	 * 
 	 * @param graph the graph
 	 */
 	public void setGraph(PGraph graph) {
 		this.graph = graph;
 		clear();
+		textFilter.setPGraph(graph);
+		
+		if (graph != null) graph.buildTextIndexInBackground();
+	}
+	
+	
+	/**
+	 * Update the text filter after the query has changed. The query is
+	 * evaluated in a background thread, waiting for the text index if it is
+	 * still being built, and the filter is updated once the result is ready,
+	 * unless the query has changed again in the meantime.
+	 */
+	private void queryChanged() {
+		
+		final String query = queryField.getText().trim();
+		final PGraph g = graph;
+		
+		if (query.length() == 0 || g == null) {
+			queryWorker.submit(null);
+			filters.remove(textFilter);
+			return;
+		}
+		
+		queryWorker.submit(new Runnable() {
+			@Override
+			public void run() {
+				
+				textFilter.getResult(query);
+				
+				final Runnable task = this;
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (!queryWorker.isLatest(task) || graph != g) return;
+						textFilter.setQuery(query);
+						filters.add(textFilter);
+					}
+				});
+			}
+		});
+	}
+	
+	
+	/**
+	 * Recompute the search results. The filters are evaluated over the entire
+	 * graph at once on the event dispatch thread, and the results are then
+	 * ordered and added to the result list by the background thread in chunks.
+	 */
+	private void updateResults() {
+		
+		resultListModel.clear();
+		resultLabel.setText("Results");
+		
+		if (filters.isEmpty() || graph == null) {
+			resultWorker.submit(null);
+			return;
+		}
+		
+		BitSet accepted = filters.evaluate(graph.getNodeUniverse());
+		if (!accepted.isEmpty()) accepted.and(display.getFilters().evaluate(graph.getNodeUniverse()));
+		
+		final PGraph g = graph;
+		final int[] results = new int[accepted.cardinality()];
+		int count = 0;
+		
+		for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+			PNode n = graph.getNode(i);
+			if (n == null || !n.isVisible()) continue;
+			results[count++] = i;
+		}
+		
+		final int total = count;
+		final boolean byRank = rankCheck.isSelected() && graph.wasProvRankComputed();
+		resultLabel.setText("Results (" + total + ")");
+		
+		resultWorker.submit(new Runnable() {
+			@Override
+			public void run() {
+				
+				final Runnable task = this;
+				int[] order = results;
+				
+				
+				// Order the results by ProvRank, from the highest
+				
+				if (byRank) {
+					final double[] ranks = g.getNodeColumns().getLogProvRanks();
+					Integer[] a = new Integer[total];
+					for (int i = 0; i < total; i++) a[i] = results[i];
+					Arrays.sort(a, new Comparator<Integer>() {
+						@Override
+						public int compare(Integer x, Integer y) {
+							return Double.compare(ranks[y.intValue()], ranks[x.intValue()]);
+						}
+					});
+					order = new int[total];
+					for (int i = 0; i < total; i++) order[i] = a[i].intValue();
+				}
+				
+				
+				// Stream the results into the list
+				
+				for (int start = 0; start < total; start += RESULT_CHUNK_SIZE) {
+					if (!resultWorker.isLatest(task)) return;
+					
+					final PNode[] chunk = new PNode[Math.min(RESULT_CHUNK_SIZE, total - start)];
+					for (int i = 0; i < chunk.length; i++) chunk[i] = g.getNode(order[start + i]);
+					
+					try {
+						SwingUtilities.invokeAndWait(new Runnable() {
+							@Override
+							public void run() {
+								if (!resultWorker.isLatest(task)) return;
+								for (PNode n : chunk) resultListModel.addElement(n);
+							}
+						});
+					}
+					catch (Exception e) {
+						return;
+					}
+				}
+			}
+		});
 	}
 
 
 	/**
 	 * The event handler
 	 */
-	private class EventHandler extends MouseAdapter implements ListSelectionListener, FilterListener<PNode> {
+	private class EventHandler extends MouseAdapter implements ListSelectionListener, FilterListener<PNode>,
+			ActionListener, DocumentListener {
 
 		/**
 		 * The constructor for instances of class EventHandler
@@ -186,23 +362,49 @@ public class SearchPanel extends JPanel {
 		 * @param filter the filter
 		 */
 		public void filterChanged(Filter<PNode> filter) {
-			
-			resultListModel.clear();
-			
-			if (filters.isEmpty()) {
-				return;
+			updateResults();
+		}
+
+		/**
+		 * Callback for the query field and the ProvRank check box
+		 *
+		 * @param e the event description
+		 */
+		public void actionPerformed(ActionEvent e) {
+			if (e.getSource() == rankCheck) {
+				updateResults();
 			}
-			
-			for (PNode n : graph.getNodes()) {
-				
-				if (!n.isVisible()) continue;
-				if (!display.getFilters().accept(n)) continue;
-				if (!filters.accept(n)) continue;
-				
-				resultListModel.addElement(n);
+			else {
+				queryChanged();
 			}
 		}
 
+		/**
+		 * Callback for when text was inserted into the query field
+		 *
+		 * @param e the event description
+		 */
+		public void insertUpdate(DocumentEvent e) {
+			queryChanged();
+		}
+
+		/**
+		 * Callback for when text was removed from the query field
+		 *
+		 * @param e the event description
+		 */
+		public void removeUpdate(DocumentEvent e) {
+			queryChanged();
+		}
+
+		/**
+		 * Callback for when the attributes of the query text changed
+		 *
+		 * @param e the event description
+		 */
+		public void changedUpdate(DocumentEvent e) {
+		}
+
 		/**
 		 * Callback for table selection events
 		 *
@@ -245,6 +447,102 @@ public class SearchPanel extends JPanel {
 	}
 	
 
+	/**
+	 * A background worker that runs only the latest submitted task; the
+	 * tasks that are superseded before they start are dropped, and the
+	 * running task should check isLatest() and stop if it returns false
+	 */
+	private static class Worker {
+		
+		private String name;
+		private Thread thread;
+		private Runnable latest;
+		private Runnable pending;
+		
+		
+		/**
+		 * Create an instance of class Worker
+		 * 
+		 * @param name the name of the worker thread
+		 */
+		public Worker(String name) {
+			this.name = name;
+			this.thread = null;
+			this.latest = null;
+			this.pending = null;
+		}
+		
+		
+		/**
+		 * Submit a task, superseding all previous tasks
+		 * 
+		 * @param task the task, or null to just cancel the previous tasks
+		 */
+		public synchronized void submit(Runnable task) {
+			
+			latest = task;
+			pending = task;
+			if (task == null) return;
+			
+			if (thread == null) {
+				thread = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, name);
+				thread.setDaemon(true);
+				thread.start();
+			}
+			
+			notifyAll();
+		}
+		
+		
+		/**
+		 * Determine whether the task is the latest submitted task
+		 * 
+		 * @param task the task
+		 * @return true if it was not superseded
+		 */
+		public synchronized boolean isLatest(Runnable task) {
+			return task == latest;
+		}
+		
+		
+		/**
+		 * The main loop of the worker thread
+		 */
+		private void work() {
+			
+			while (true) {
+				Runnable task;
+				
+				synchronized (this) {
+					while (pending == null) {
+						try {
+							wait();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+					}
+					
+					task = pending;
+					pending = null;
+				}
+				
+				try {
+					task.run();
+				}
+				catch (Throwable t) {
+					t.printStackTrace();
+				}
+			}
+		}
+	}
+	
+
 	/**
 	 * List renderer for a list of PNodes
 	 * 
@@ -211,6 +211,7 @@ public class CPLParser implements Parser, HasWizardPanelConfigGUI {
 		
 		// Turn it into a provenance graph
 		
+		handler = TripleBatcher.wrap(handler);
 		handler.setMeta(PMeta.CPL());
 		handler.beginParsing();
 		
@@ -0,0 +1,76 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.parser;
+
+import java.net.URI;
+
+import edu.harvard.util.ParserException;
+
+
+/**
+ * A parser for append-only provenance sources, which can resume parsing
+ * from a high-water mark recorded by a previous parse. The format of the
+ * mark is specific to the parser (such as a file offset).
+ * 
+ * @author Peter Macko
+ */
+public interface IncrementalParser extends Parser {
+
+	/**
+	 * Return the high-water mark reached by the last call to parse() or parseFrom()
+	 * 
+	 * @return the high-water mark, or null if not available
+	 */
+	public String getHighWaterMark();
+
+	/**
+	 * Determine whether the source contains any data after the given high-water mark
+	 * 
+	 * @param uri the input URI
+	 * @param mark the high-water mark
+	 * @return true if there might be new data
+	 * @throws ParserException on error
+	 */
+	public boolean hasDataAfter(URI uri, String mark) throws ParserException;
+
+	/**
+	 * Parse only the data after the given high-water mark. The parser does not
+	 * set the metadata of the handler, which should be the same as when the
+	 * mark was recorded.
+	 * 
+	 * @param uri the input URI
+	 * @param handler the callback for parser events
+	 * @param mark the high-water mark
+	 * @throws ParserException on error, or if the source is no longer consistent with the mark
+	 */
+	public void parseFrom(URI uri, ParserHandler handler, String mark) throws ParserException;
+}
@@ -0,0 +1,588 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.parser;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+import org.openrdf.rio.ntriples.NTriplesParser;
+
+import edu.harvard.util.ParserException;
+
+
+/**
+ * A parallel reader of N-Triples files. The file is split into byte ranges
+ * at line boundaries, the ranges are parsed by multiple worker threads, and
+ * the parsed chunks are then passed to the consumer strictly in the file
+ * order, so that the result does not depend on the thread scheduling.
+ * 
+ * @author Peter Macko
+ */
+class NTriplesChunkReader {
+	
+	public static final long DEFAULT_CHUNK_SIZE = 16 << 20;
+	
+	private File file;
+	private int numThreads;
+	private long chunkSize;
+	private long start;
+	private long end;
+	
+	private long[] boundaries;
+	private Chunk[] chunks;
+	private AtomicInteger nextChunk;
+	private Semaphore window;
+	private volatile boolean abort;
+	
+	
+	/**
+	 * Create an instance of class NTriplesChunkReader
+	 * 
+	 * @param file the input file
+	 * @param numThreads the number of worker threads
+	 */
+	public NTriplesChunkReader(File file, int numThreads) {
+		this(file, numThreads, DEFAULT_CHUNK_SIZE);
+	}
+	
+	
+	/**
+	 * Create an instance of class NTriplesChunkReader
+	 * 
+	 * @param file the input file
+	 * @param numThreads the number of worker threads
+	 * @param chunkSize the approximate chunk size in bytes
+	 */
+	public NTriplesChunkReader(File file, int numThreads, long chunkSize) {
+		
+		if (numThreads <= 0) throw new IllegalArgumentException("The number of threads must be positive");
+		if (chunkSize <= 0) throw new IllegalArgumentException("The chunk size must be positive");
+		
+		this.file = file;
+		this.numThreads = numThreads;
+		this.chunkSize = chunkSize;
+		this.start = 0;
+		this.end = -1;
+	}
+	
+	
+	/**
+	 * Restrict reading to a byte range of the file. The start offset must
+	 * be at a line boundary
+	 * 
+	 * @param start the start offset
+	 * @param end the end offset (exclusive), or -1 to read until the end of the file
+	 */
+	public void setRange(long start, long end) {
+		
+		if (start < 0) throw new IllegalArgumentException("The start offset cannot be negative");
+		if (end >= 0 && end < start) throw new IllegalArgumentException("The end offset is before the start offset");
+		
+		this.start = start;
+		this.end = end;
+	}
+	
+	
+	/**
+	 * Read the file and pass the parsed chunks to the consumer in the file order
+	 * 
+	 * @param consumer the chunk consumer
+	 * @throws ParserException on error
+	 */
+	public void read(Consumer consumer) throws ParserException {
+		
+		// Split the file at the line boundaries
+		
+		try {
+			boundaries = computeBoundaries();
+		}
+		catch (IOException e) {
+			throw new ParserException("I/O Error", e);
+		}
+		
+		int numChunks = boundaries.length - 1;
+		if (numChunks == 0) return;
+		
+		
+		// Start the workers. The window bounds the number of chunks that are
+		// parsed but not yet consumed, which bounds the memory usage
+		
+		chunks = new Chunk[numChunks];
+		nextChunk = new AtomicInteger(0);
+		window = new Semaphore(2 * numThreads);
+		abort = false;
+		
+		int workers = Math.min(numThreads, numChunks);
+		Thread[] threads = new Thread[workers];
+		for (int i = 0; i < workers; i++) {
+			threads[i] = new WorkerThread();
+			threads[i].start();
+		}
+		
+		
+		// Consume the chunks in order
+		
+		try {
+			for (int i = 0; i < numChunks; i++) {
+				
+				Chunk c;
+				synchronized (chunks) {
+					while ((c = chunks[i]) == null) {
+						try {
+							chunks.wait();
+						}
+						catch (InterruptedException e) {
+							throw new ParserException("Interrupted", e);
+						}
+					}
+					chunks[i] = null;
+				}
+				
+				if (c.error != null) {
+					if (c.error instanceof ParserException) throw (ParserException) c.error;
+					if (c.error instanceof RDFParseException) throw new ParserException("RDF Parser Error", c.error);
+					if (c.error instanceof IOException) throw new ParserException("I/O Error", c.error);
+					throw new ParserException("Parser Error", c.error);
+				}
+				
+				consumer.consume(c);
+				window.release();
+			}
+		}
+		finally {
+			
+			// Stop and join the workers
+			
+			abort = true;
+			window.release(workers);
+			
+			for (Thread t : threads) {
+				while (true) {
+					try {
+						t.join();
+						break;
+					}
+					catch (InterruptedException e) {}
+				}
+			}
+			
+			chunks = null;
+		}
+	}
+	
+	
+	/**
+	 * Compute the chunk boundaries, aligning them to the line boundaries
+	 * 
+	 * @return an array of the start offsets followed by the file length
+	 * @throws IOException on I/O error
+	 */
+	private long[] computeBoundaries() throws IOException {
+		
+		long length = end >= 0 ? Math.min(end, file.length()) : file.length();
+		ArrayList<Long> l = new ArrayList<Long>();
+		l.add(start);
+		
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			long pos = start + chunkSize;
+			byte[] buffer = new byte[4096];
+			
+			while (pos < length) {
+				
+				// Find the end of the line that contains pos - 1
+				
+				f.seek(pos - 1);
+				long boundary = -1;
+				long p = pos - 1;
+				
+				while (boundary < 0) {
+					int r = f.read(buffer);
+					if (r <= 0) break;
+					for (int i = 0; i < r; i++) {
+						if (buffer[i] == '\n' || buffer[i] == '\r') {
+							boundary = p + i + 1;
+							break;
+						}
+					}
+					p += r;
+				}
+				
+				if (boundary < 0 || boundary >= length) break;
+				l.add(boundary);
+				pos = boundary + chunkSize;
+			}
+		}
+		finally {
+			f.close();
+		}
+		
+		if (length > start) l.add(length);
+		
+		long[] r = new long[l.size()];
+		for (int i = 0; i < r.length; i++) r[i] = l.get(i);
+		return r;
+	}
+	
+	
+	/**
+	 * Find the offset just past the last line terminator within the given byte
+	 * range of a file. The data after this offset is an unterminated line that
+	 * might be still in the process of being written
+	 * 
+	 * @param file the file
+	 * @param start the start offset, which must be at a line boundary
+	 * @param end the end offset (exclusive)
+	 * @return the offset past the last line terminator, or start if there is none
+	 * @throws IOException on I/O error
+	 */
+	public static long findLastLineEnd(File file, long start, long end) throws IOException {
+		
+		RandomAccessFile f = new RandomAccessFile(file, "r");
+		try {
+			byte[] buffer = new byte[4096];
+			long p = end;
+			
+			while (p > start) {
+				int n = (int) Math.min(buffer.length, p - start);
+				p -= n;
+				f.seek(p);
+				f.readFully(buffer, 0, n);
+				for (int i = n - 1; i >= 0; i--) {
+					if (buffer[i] == '\n' || buffer[i] == '\r') return p + i + 1;
+				}
+			}
+		}
+		finally {
+			f.close();
+		}
+		
+		return start;
+	}
+	
+	
+	/**
+	 * A consumer of the parsed chunks
+	 */
+	public interface Consumer {
+		
+		/**
+		 * Consume a chunk
+		 * 
+		 * @param chunk the parsed chunk
+		 * @throws ParserException on error
+		 */
+		public void consume(Chunk chunk) throws ParserException;
+	}
+	
+	
+	/**
+	 * A parsed chunk of the input file
+	 * 
+	 * @author Peter Macko
+	 */
+	public static class Chunk {
+		
+		private static final int STRING_OVERHEAD = 40;
+		
+		private int index;
+		private String[] strings;
+		private boolean[] ancestry;
+		private int size;
+		private long stringBytes;
+		private Throwable error;
+		
+		
+		/**
+		 * Create an instance of class Chunk
+		 * 
+		 * @param index the chunk index
+		 */
+		private Chunk(int index) {
+			this.index = index;
+			this.strings = new String[3 * 1024];
+			this.ancestry = new boolean[1024];
+			this.size = 0;
+			this.stringBytes = 0;
+			this.error = null;
+		}
+		
+		
+		/**
+		 * Add a triple
+		 * 
+		 * @param s_pnode the string version of a p-node
+		 * @param s_edge the string version of an edge
+		 * @param s_value the string version of a value or of the second p-node
+		 * @param anc whether this is an ancestry triple
+		 */
+		private void add(String s_pnode, String s_edge, String s_value, boolean anc) {
+			
+			if (size == ancestry.length) {
+				strings = Arrays.copyOf(strings, 6 * size);
+				ancestry = Arrays.copyOf(ancestry, 2 * size);
+			}
+			
+			strings[3 * size    ] = s_pnode;
+			strings[3 * size + 1] = s_edge;
+			strings[3 * size + 2] = s_value;
+			ancestry[size] = anc;
+			size++;
+			
+			stringBytes += 3 * STRING_OVERHEAD + 2 * (s_pnode.length() + s_edge.length() + s_value.length());
+		}
+		
+		
+		/**
+		 * Return the index of the chunk within the file
+		 * 
+		 * @return the chunk index
+		 */
+		public int getIndex() {
+			return index;
+		}
+		
+		
+		/**
+		 * Return the number of triples in the chunk
+		 * 
+		 * @return the number of triples
+		 */
+		public int size() {
+			return size;
+		}
+		
+		
+		/**
+		 * Estimate the number of bytes of the heap that the chunk occupies. This
+		 * assumes two bytes per character and that the strings are not shared,
+		 * so it errs on the side of overestimating
+		 * 
+		 * @return the estimated size in bytes
+		 */
+		public long getMemorySize() {
+			return stringBytes + 8L * strings.length + ancestry.length;
+		}
+		
+		
+		/**
+		 * Feed the triples into a parser handler
+		 * 
+		 * @param handler the parser handler
+		 * @throws ParserException on error
+		 */
+		public void feed(ParserHandler handler) throws ParserException {
+			for (int i = 0; i < size; i++) {
+				if (ancestry[i]) {
+					handler.loadTripleAncestry(strings[3 * i], strings[3 * i + 1], strings[3 * i + 2]);
+				}
+				else {
+					handler.loadTripleAttribute(strings[3 * i], strings[3 * i + 1], strings[3 * i + 2]);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * An input stream over a byte range of a file
+	 */
+	static class RangeInputStream extends InputStream {
+		
+		private RandomAccessFile file;
+		private long remaining;
+		
+		
+		/**
+		 * Create an instance of class RangeInputStream
+		 * 
+		 * @param file the file
+		 * @param start the start offset
+		 * @param end the end offset (exclusive)
+		 * @throws IOException on I/O error
+		 */
+		public RangeInputStream(RandomAccessFile file, long start, long end) throws IOException {
+			this.file = file;
+			this.remaining = end - start;
+			file.seek(start);
+		}
+		
+		
+		/**
+		 * Read a byte
+		 * 
+		 * @return the byte, or -1 on the end of the range
+		 * @throws IOException on I/O error
+		 */
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) return -1;
+			int r = file.read();
+			if (r >= 0) remaining--;
+			return r;
+		}
+		
+		
+		/**
+		 * Read an array of bytes
+		 * 
+		 * @param b the buffer
+		 * @param off the offset within the buffer
+		 * @param len the maximum number of bytes to read
+		 * @return the number of read bytes, or -1 on the end of the range
+		 * @throws IOException on I/O error
+		 */
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) return -1;
+			int r = file.read(b, off, (int) Math.min(len, remaining));
+			if (r > 0) remaining -= r;
+			return r;
+		}
+	}
+	
+	
+	/**
+	 * A collector of the parsed statements of a chunk
+	 */
+	private static class ChunkCollector extends RDFHandlerBase {
+		
+		private Chunk chunk;
+		
+		
+		/**
+		 * Create an instance of class ChunkCollector
+		 * 
+		 * @param chunk the chunk to collect the triples to
+		 */
+		public ChunkCollector(Chunk chunk) {
+			this.chunk = chunk;
+		}
+		
+		
+		/**
+		 * Handle an RDF statement
+		 * 
+		 * @param st the statement to handle
+		 * @throws RDFHandlerException on error
+		 */
+		@Override
+		public void handleStatement(Statement st) throws RDFHandlerException {
+			
+			org.openrdf.model.Value v = st.getObject();
+			boolean anc = v instanceof org.openrdf.model.URI;
+			
+			chunk.add(RDFParser.stripDefaultURI(st.getSubject().stringValue()),
+					RDFParser.stripDefaultURI(st.getPredicate().stringValue()),
+					anc ? RDFParser.stripDefaultURI(v.stringValue()) : v.stringValue(),
+					anc);
+		}
+	}
+	
+	
+	/**
+	 * A worker thread
+	 */
+	private class WorkerThread extends Thread {
+		
+		/**
+		 * Create an instance of class WorkerThread
+		 */
+		public WorkerThread() {
+			super("NTriplesChunkReader Worker");
+			setDaemon(true);
+		}
+		
+		
+		/**
+		 * Parse the chunks
+		 */
+		@Override
+		public void run() {
+			
+			RandomAccessFile f = null;
+			
+			try {
+				while (!abort) {
+					
+					// Claim the next chunk
+					
+					window.acquireUninterruptibly();
+					if (abort) break;
+					
+					int index = nextChunk.getAndIncrement();
+					if (index >= chunks.length) break;
+					
+					
+					// Parse the chunk
+					
+					Chunk c = new Chunk(index);
+					try {
+						if (f == null) f = new RandomAccessFile(file, "r");
+						
+						NTriplesParser parser = new NTriplesParser();
+						parser.setPreserveBNodeIDs(true);
+						parser.setRDFHandler(new ChunkCollector(c));
+						
+						Reader in = new InputStreamReader(new BufferedInputStream(
+								new RangeInputStream(f, boundaries[index], boundaries[index + 1]), 1 << 16));
+						parser.parse(in, RDFParser.DEFAULT_URI);
+					}
+					catch (Throwable t) {
+						c.error = t;
+					}
+					
+					
+					// Publish the result
+					
+					synchronized (chunks) {
+						chunks[index] = c;
+						chunks.notifyAll();
+					}
+					
+					if (c.error != null) break;
+				}
+			}
+			finally {
+				if (f != null) {
+					try { f.close(); } catch (IOException e) {}
+				}
+			}
+		}
+	}
+}
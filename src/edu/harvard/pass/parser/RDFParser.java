@@ -65,14 +65,25 @@ import edu.harvard.util.gui.*;
  * 
  * @author Peter Macko
  */
-public class RDFParser implements Parser, HasWizardPanelConfigGUI {
+public class RDFParser implements IncrementalParser, HasWizardPanelConfigGUI {
 	
 	public static final String DEFAULT_URI = "file://local/";
+	public static final long PARALLEL_MIN_FILE_SIZE = 8 << 20;
+	public static final int RETAIN_MEMORY_FRACTION = 8;
+	private static final long MIN_CHUNK_SIZE = 1 << 20;
 	private int numStatements;
+	private int numThreads;
 	
 	private RDFAnalyzer analyzer;
 	private PMeta meta;
 	
+	private String highWaterMark;
+	
+	private List<NTriplesChunkReader.Chunk> retainedChunks;
+	private File retainedFile;
+	private long retainedLength;
+	private long retainedModified;
+	
 	private String nameEdge;
 	private String typeEdge;
 	private String timeEdge;
@@ -86,13 +97,37 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 	 */
 	public RDFParser() {
 		numStatements = 0;
+		numThreads = Runtime.getRuntime().availableProcessors();
 		analyzer = null;
+		highWaterMark = null;
+		retainedChunks = null;
 		meta = new PMeta();
 		ancestryTypeMap = new TreeMap<String, PEdge.Type>();
 		objectTypeMap = new TreeMap<String, PObject.Type>();
 	}
 	
 	
+	/**
+	 * Set the number of threads used to parse large N-Triples files
+	 * 
+	 * @param numThreads the number of threads (1 disables parallel parsing)
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads <= 0) throw new IllegalArgumentException("The number of threads must be positive");
+		this.numThreads = numThreads;
+	}
+	
+	
+	/**
+	 * Return the number of threads used to parse large N-Triples files
+	 * 
+	 * @return the number of threads
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
+	
 	/**
 	 * Initialize the parser given an input URI. If the file has an ambiguous type (such as *.xml),
 	 * the method should check whether the file has a proper format that can be handled by the parser.
@@ -112,6 +147,7 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 		
 		meta = new PMeta();
 		analyzer = new RDFAnalyzer();
+		retainedChunks = null;
 		
 		parse(uri, analyzer);
 		
@@ -249,12 +285,21 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 		
 		if (!"file".equals(uri.getScheme())) throw new ParserFormatException();
 		File file = new File(uri);
+		boolean analyzing = handler != null && handler == analyzer;
+		if (!analyzing) highWaterMark = null;
 		
 
 		// Guess the language & get the appropriate parser
 		
 		RDFFormat format = RDFFormat.forFileName(file.getName(), RDFFormat.N3);
+		
+		
+		// A full load reads the entire file, including a last line without
+		// a terminator; only parseFrom() holds back an unterminated line
+		
+		long length = file.length();
 		org.openrdf.rio.RDFParser parser = createParser(format);
+		handler = TripleBatcher.wrap(handler);
 		parser.setRDFHandler(new MyRDFHandler(handler));
 		
 		
@@ -286,16 +331,45 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 		}
 		
 		
+		// Parse large N-Triples files in parallel
+		
+		if (handler != null && format == RDFFormat.NTRIPLES
+				&& numThreads > 1 && length >= PARALLEL_MIN_FILE_SIZE) {
+			parseParallel(file, length, handler, analyzing);
+			if (!analyzing) highWaterMark = "" + length;
+			return;
+		}
+		
+		
 		// Parse
 		
 		try {
-			FileReader reader = new FileReader(file);
+			Reader reader;
+			if (format == RDFFormat.NTRIPLES) {
+				final RandomAccessFile f = new RandomAccessFile(file, "r");
+				reader = new InputStreamReader(new BufferedInputStream(
+						new NTriplesChunkReader.RangeInputStream(f, 0, length), 1 << 16) {
+					
+					@Override
+					public void close() throws IOException {
+						f.close();
+					}
+				});
+			}
+			else {
+				reader = new FileReader(file);
+			}
 			
-			if (handler != null) handler.beginParsing();
-			numStatements = 0;
-			parser.parse(reader, DEFAULT_URI);
-			reader.close();
+			try {
+				if (handler != null) handler.beginParsing();
+				numStatements = 0;
+				parser.parse(reader, DEFAULT_URI);
+			}
+			finally {
+				reader.close();
+			}
 			if (handler != null) handler.endParsing();
+			if (!analyzing && format == RDFFormat.NTRIPLES) highWaterMark = "" + length;
 		}
 		catch (RDFParseException e) {
 			throw new ParserException("RDF Parser Error", e);
@@ -312,6 +386,219 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 	}
 	
 	
+	/**
+	 * Return the high-water mark reached by the last call to parse() or
+	 * parseFrom(), which is the file offset. This is available only for
+	 * N-Triples files, since they can be parsed starting from any line
+	 * 
+	 * @return the high-water mark, or null if not available
+	 */
+	public String getHighWaterMark() {
+		return highWaterMark;
+	}
+	
+	
+	/**
+	 * Determine whether the source contains any data after the given high-water mark
+	 * 
+	 * @param uri the input URI
+	 * @param mark the high-water mark
+	 * @return true if there might be new data
+	 * @throws ParserException on error
+	 */
+	public boolean hasDataAfter(URI uri, String mark) throws ParserException {
+		
+		if (!"file".equals(uri.getScheme())) throw new ParserFormatException();
+		File file = new File(uri);
+		long offset = parseMark(mark);
+		
+		long length = file.length();
+		if (length < offset) {
+			throw new ParserException("The file is shorter than the high-water mark");
+		}
+		if (length == offset) return false;
+		
+		try {
+			return NTriplesChunkReader.findLastLineEnd(file, offset, length) > offset;
+		}
+		catch (IOException e) {
+			throw new ParserException("I/O Error", e);
+		}
+	}
+	
+	
+	/**
+	 * Parse only the data after the given high-water mark. This is supported
+	 * only for N-Triples files
+	 * 
+	 * @param uri the input URI
+	 * @param handler the callback for parser events
+	 * @param mark the high-water mark
+	 * @throws ParserException on error, or if the source is no longer consistent with the mark
+	 */
+	public void parseFrom(URI uri, ParserHandler handler, String mark) throws ParserException {
+		
+		if (!"file".equals(uri.getScheme())) throw new ParserFormatException();
+		File file = new File(uri);
+		
+		if (RDFFormat.forFileName(file.getName(), RDFFormat.N3) != RDFFormat.NTRIPLES) {
+			throw new ParserException("Incremental loading is supported only for N-Triples files");
+		}
+		
+		long offset = parseMark(mark);
+		long length = file.length();
+		if (length < offset) {
+			throw new ParserException("The file is shorter than the high-water mark");
+		}
+		
+		
+		// Stop at the last complete line, leaving a partially written line for later
+		
+		try {
+			length = NTriplesChunkReader.findLastLineEnd(file, offset, length);
+		}
+		catch (IOException e) {
+			throw new ParserException("I/O Error", e);
+		}
+		
+		
+		// Parse the new part of the file
+		
+		final ParserHandler h = TripleBatcher.wrap(handler);
+		highWaterMark = null;
+		numStatements = 0;
+		
+		h.beginParsing();
+		
+		NTriplesChunkReader reader = new NTriplesChunkReader(file, numThreads);
+		reader.setRange(offset, length);
+		reader.read(new NTriplesChunkReader.Consumer() {
+			
+			public void consume(NTriplesChunkReader.Chunk chunk) throws ParserException {
+				numStatements += chunk.size();
+				chunk.feed(h);
+			}
+		});
+		
+		h.endParsing();
+		highWaterMark = "" + length;
+	}
+	
+	
+	/**
+	 * Parse a high-water mark
+	 * 
+	 * @param mark the high-water mark
+	 * @return the file offset
+	 * @throws ParserException if the mark is not valid
+	 */
+	private static long parseMark(String mark) throws ParserException {
+		try {
+			long offset = Long.parseLong(mark);
+			if (offset < 0) throw new NumberFormatException();
+			return offset;
+		}
+		catch (NumberFormatException e) {
+			throw new ParserException("Invalid high-water mark: " + mark);
+		}
+	}
+	
+	
+	/**
+	 * Parse an N-Triples file in parallel. If this is the analysis pass and the
+	 * parsed triples fit in a fraction of the available memory, they are
+	 * retained, so that the subsequent load does not need to parse the file
+	 * again
+	 * 
+	 * @param file the input file
+	 * @param length the number of bytes to parse, which must be at a line boundary or the end of the file
+	 * @param handler the callback for parser events
+	 * @param analyzing whether this is the analysis pass
+	 * @throws ParserException on error
+	 */
+	private void parseParallel(File file, long length, final ParserHandler handler, boolean analyzing) throws ParserException {
+		
+		numStatements = 0;
+		handler.beginParsing();
+		
+		
+		// Replay the triples retained from the analysis pass
+		
+		if (!analyzing && retainedChunks != null) {
+			List<NTriplesChunkReader.Chunk> chunks = retainedChunks;
+			retainedChunks = null;
+			
+			if (file.equals(retainedFile) && length == retainedLength
+					&& file.lastModified() == retainedModified) {
+				for (NTriplesChunkReader.Chunk c : chunks) {
+					numStatements += c.size();
+					c.feed(handler);
+				}
+				handler.endParsing();
+				return;
+			}
+		}
+		
+		
+		// Parse the file, collecting the analyzer statistics and the triples at once.
+		// The triples are retained only while their estimated heap size fits the
+		// budget, which is usually several times larger than the file itself
+		
+		final long budget = Runtime.getRuntime().maxMemory() / RETAIN_MEMORY_FRACTION;
+		final long[] retainedSize = new long[1];
+		final List<NTriplesChunkReader.Chunk> retain;
+		if (analyzing && length <= budget) {
+			retain = new ArrayList<NTriplesChunkReader.Chunk>();
+		}
+		else {
+			retain = null;
+		}
+		
+		long chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(NTriplesChunkReader.DEFAULT_CHUNK_SIZE,
+				length / (4 * numThreads)));
+		NTriplesChunkReader reader = new NTriplesChunkReader(file, numThreads, chunkSize);
+		reader.setRange(0, length);
+		reader.read(new NTriplesChunkReader.Consumer() {
+			
+			public void consume(NTriplesChunkReader.Chunk chunk) throws ParserException {
+				numStatements += chunk.size();
+				chunk.feed(handler);
+				
+				if (retain != null && retainedSize[0] >= 0) {
+					retainedSize[0] += chunk.getMemorySize();
+					if (retainedSize[0] <= budget) {
+						retain.add(chunk);
+					}
+					else {
+						retain.clear();
+						retainedSize[0] = -1;
+					}
+				}
+			}
+		});
+		
+		handler.endParsing();
+		
+		if (retain != null && retainedSize[0] >= 0) {
+			retainedChunks = retain;
+			retainedFile = file;
+			retainedLength = length;
+			retainedModified = file.lastModified();
+		}
+	}
+	
+	
+	/**
+	 * Strip the default URI prefix from an RDF value
+	 * 
+	 * @param s the string version of an RDF value
+	 * @return the value relative to the default URI
+	 */
+	static String stripDefaultURI(String s) {
+		return s.startsWith(DEFAULT_URI) ? s.substring(DEFAULT_URI.length()) : s;
+	}
+	
+	
 	/**
 	 * Determine whether the parser accepts the given URI
 	 * 
@@ -400,17 +687,12 @@ public class RDFParser implements Parser, HasWizardPanelConfigGUI {
 			
 			// Get the string versions of the SPO values
 			
-			String s_pnode = r.stringValue();
-			if (s_pnode.startsWith(DEFAULT_URI)) s_pnode = s_pnode.substring(DEFAULT_URI.length());
-			
-			String s_edge = p.stringValue();
-			if (s_edge.startsWith(DEFAULT_URI)) s_edge = s_edge.substring(DEFAULT_URI.length());
+			String s_pnode = stripDefaultURI(r.stringValue());
+			String s_edge = stripDefaultURI(p.stringValue());
 			
 			String s_value = v.stringValue();
 			boolean anc = v instanceof org.openrdf.model.URI;
-			if (anc) {
-				if (s_value.startsWith(DEFAULT_URI)) s_value = s_value.substring(DEFAULT_URI.length());
-			}
+			if (anc) s_value = stripDefaultURI(s_value);
 			
 			
 			// Feed the data into the parser
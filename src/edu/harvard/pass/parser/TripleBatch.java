@@ -0,0 +1,211 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.parser;
+
+
+/**
+ * A batch of pre-interned triples. Nodes and predicates are referred to by
+ * the handles returned by a {@link BulkParserHandler}, so that the handler
+ * does not need to resolve the same strings again for every triple.
+ * 
+ * @author Peter Macko
+ */
+public class TripleBatch {
+	
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	private int[] subjects;
+	private int[] predicates;
+	private int[] objects;
+	private String[] values;
+	private int size;
+	
+	
+	/**
+	 * Create an instance of class TripleBatch
+	 */
+	public TripleBatch() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	
+	/**
+	 * Create an instance of class TripleBatch
+	 * 
+	 * @param capacity the maximum number of triples in the batch
+	 */
+	public TripleBatch(int capacity) {
+		
+		if (capacity <= 0) throw new IllegalArgumentException("The capacity must be positive");
+		
+		subjects = new int[capacity];
+		predicates = new int[capacity];
+		objects = new int[capacity];
+		values = new String[capacity];
+		size = 0;
+	}
+	
+	
+	/**
+	 * Add an ancestry triple
+	 * 
+	 * @param subject the handle of the source node
+	 * @param predicate the handle of the predicate
+	 * @param object the handle of the target node
+	 * @throws IllegalStateException if the batch is full
+	 */
+	public void addAncestry(int subject, int predicate, int object) {
+		
+		if (size >= subjects.length) throw new IllegalStateException("The batch is full");
+		if (object < 0) throw new IllegalArgumentException("Invalid node handle");
+		
+		subjects[size] = subject;
+		predicates[size] = predicate;
+		objects[size] = object;
+		values[size] = null;
+		size++;
+	}
+	
+	
+	/**
+	 * Add an attribute triple
+	 * 
+	 * @param subject the handle of the node
+	 * @param predicate the handle of the predicate
+	 * @param value the attribute value
+	 * @throws IllegalStateException if the batch is full
+	 */
+	public void addAttribute(int subject, int predicate, String value) {
+		
+		if (size >= subjects.length) throw new IllegalStateException("The batch is full");
+		
+		subjects[size] = subject;
+		predicates[size] = predicate;
+		objects[size] = -1;
+		values[size] = value;
+		size++;
+	}
+	
+	
+	/**
+	 * Clear the batch
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) values[i] = null;
+		size = 0;
+	}
+	
+	
+	/**
+	 * Return the number of triples in the batch
+	 * 
+	 * @return the number of triples
+	 */
+	public int size() {
+		return size;
+	}
+	
+	
+	/**
+	 * Determine whether the batch is empty
+	 * 
+	 * @return true if it is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	
+	
+	/**
+	 * Determine whether the batch is full
+	 * 
+	 * @return true if no more triples can be added
+	 */
+	public boolean isFull() {
+		return size >= subjects.length;
+	}
+	
+	
+	/**
+	 * Determine whether the given triple is an ancestry triple
+	 * 
+	 * @param index the triple index
+	 * @return true if it is an ancestry triple, false if it is an attribute triple
+	 */
+	public boolean isAncestry(int index) {
+		return objects[index] >= 0;
+	}
+	
+	
+	/**
+	 * Return the subject handle of the given triple
+	 * 
+	 * @param index the triple index
+	 * @return the node handle
+	 */
+	public int getSubject(int index) {
+		return subjects[index];
+	}
+	
+	
+	/**
+	 * Return the predicate handle of the given triple
+	 * 
+	 * @param index the triple index
+	 * @return the predicate handle
+	 */
+	public int getPredicate(int index) {
+		return predicates[index];
+	}
+	
+	
+	/**
+	 * Return the object handle of the given ancestry triple
+	 * 
+	 * @param index the triple index
+	 * @return the node handle, or -1 if it is an attribute triple
+	 */
+	public int getObject(int index) {
+		return objects[index];
+	}
+	
+	
+	/**
+	 * Return the value of the given attribute triple
+	 * 
+	 * @param index the triple index
+	 * @return the value, or null if it is an ancestry triple
+	 */
+	public String getValue(int index) {
+		return values[index];
+	}
+}
@@ -0,0 +1,234 @@
+/*
+ * Provenance Aware Storage System - Java Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.pass.parser;
+
+import java.util.HashMap;
+
+import edu.harvard.pass.PMeta;
+import edu.harvard.util.ParserException;
+
+
+/**
+ * A parser handler that accumulates string triples into batches and feeds
+ * them to a {@link BulkParserHandler}. Each distinct node ID and predicate
+ * label is resolved by the target handler only once.
+ * 
+ * @author Peter Macko
+ */
+public class TripleBatcher implements ParserHandler {
+	
+	private BulkParserHandler handler;
+	private TripleBatch batch;
+	
+	private HashMap<String, Integer> nodeHandles;
+	private HashMap<String, Integer> predicateHandles;
+	
+	
+	/**
+	 * Create an instance of class TripleBatcher
+	 * 
+	 * @param handler the target handler
+	 */
+	public TripleBatcher(BulkParserHandler handler) {
+		this(handler, TripleBatch.DEFAULT_CAPACITY);
+	}
+	
+	
+	/**
+	 * Create an instance of class TripleBatcher
+	 * 
+	 * @param handler the target handler
+	 * @param capacity the batch capacity
+	 */
+	public TripleBatcher(BulkParserHandler handler, int capacity) {
+		
+		this.handler = handler;
+		this.batch = new TripleBatch(capacity);
+		
+		nodeHandles = new HashMap<String, Integer>();
+		predicateHandles = new HashMap<String, Integer>();
+	}
+	
+	
+	/**
+	 * Wrap a parser handler in a batcher if it supports bulk loading
+	 * 
+	 * @param handler the parser handler (can be null)
+	 * @return the batching handler, or the original handler if it does not support bulk loading
+	 */
+	public static ParserHandler wrap(ParserHandler handler) {
+		if (handler instanceof BulkParserHandler) {
+			return new TripleBatcher((BulkParserHandler) handler);
+		}
+		return handler;
+	}
+	
+	
+	/**
+	 * Start loading the graph
+	 * 
+	 * @throws ParserException on error
+	 */
+	public void beginParsing() throws ParserException {
+		
+		batch.clear();
+		nodeHandles.clear();
+		predicateHandles.clear();
+		
+		handler.beginParsing();
+	}
+	
+	
+	/**
+	 * Process an ancestry triple
+	 * 
+	 * @param s_pnode the string version of a p-node
+	 * @param s_edge the string version of an edge
+	 * @param s_value the string version of the second p-node
+	 * @throws ParserException on error
+	 */
+	public void loadTripleAncestry(String s_pnode, String s_edge, String s_value) throws ParserException {
+		
+		batch.addAncestry(node(s_pnode), predicate(s_edge), node(s_value));
+		if (batch.isFull()) flush();
+	}
+	
+	
+	/**
+	 * Process an attribute triple
+	 * 
+	 * @param s_pnode the string version of a p-node
+	 * @param s_edge the string version of an edge
+	 * @param s_value the string version of a value
+	 * @throws ParserException on error
+	 */
+	public void loadTripleAttribute(String s_pnode, String s_edge, String s_value) throws ParserException {
+		
+		batch.addAttribute(node(s_pnode), predicate(s_edge), s_value);
+		if (batch.isFull()) flush();
+	}
+	
+	
+	/**
+	 * Finish loading the graph
+	 * 
+	 * @throws ParserException on error
+	 */
+	public void endParsing() throws ParserException {
+		flush();
+		handler.endParsing();
+	}
+	
+	
+	/**
+	 * Push all pending triples to the target handler
+	 * 
+	 * @throws ParserException on error
+	 */
+	public void flush() throws ParserException {
+		if (batch.isEmpty()) return;
+		try {
+			handler.loadTriples(batch);
+		}
+		finally {
+			batch.clear();
+		}
+	}
+	
+	
+	/**
+	 * Set the metadata. This flushes the pending triples, since they were
+	 * interned using the old metadata
+	 * 
+	 * @param meta the new metadata
+	 */
+	public void setMeta(PMeta meta) {
+		
+		if (!batch.isEmpty()) {
+			try {
+				flush();
+			}
+			catch (ParserException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		predicateHandles.clear();
+		handler.setMeta(meta);
+	}
+	
+	
+	/**
+	 * Get the metadata
+	 * 
+	 * @return the metadata
+	 */
+	public PMeta getMeta() {
+		return handler.getMeta();
+	}
+	
+	
+	/**
+	 * Get the handle of a p-node
+	 * 
+	 * @param s_pnode the string version of a p-node
+	 * @return the node handle
+	 * @throws ParserException on error
+	 */
+	private int node(String s_pnode) throws ParserException {
+		
+		Integer h = nodeHandles.get(s_pnode);
+		if (h != null) return h.intValue();
+		
+		int x = handler.internNode(s_pnode);
+		nodeHandles.put(s_pnode, x);
+		return x;
+	}
+	
+	
+	/**
+	 * Get the handle of a predicate
+	 * 
+	 * @param s_edge the string version of an edge
+	 * @return the predicate handle
+	 * @throws ParserException on error
+	 */
+	private int predicate(String s_edge) throws ParserException {
+		
+		Integer h = predicateHandles.get(s_edge);
+		if (h != null) return h.intValue();
+		
+		int x = handler.internPredicate(s_edge);
+		predicateHandles.put(s_edge, x);
+		return x;
+	}
+}
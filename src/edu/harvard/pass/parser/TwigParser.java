@@ -43,12 +43,16 @@ import edu.harvard.util.*;
  * 
  * @author Peter Macko
  */
-public class TwigParser implements Parser {
+public class TwigParser implements IncrementalParser {
+	
+	private String highWaterMark;
+	
 	
 	/**
 	 * Create an instance of class TwigParser
 	 */
 	public TwigParser() {
+		highWaterMark = null;
 	}
 	
 	
@@ -74,12 +78,102 @@ public class TwigParser implements Parser {
 	 * @throws ParserException on error
 	 */
 	public void parse(URI uri, ParserHandler handler) throws ParserException {
+		handler.setMeta(PMeta.PASS());
+		parse(uri, handler, 0, false);
+	}
+	
+	
+	/**
+	 * Parse only the data after the given high-water mark
+	 * 
+	 * @param uri the input URI
+	 * @param handler the callback for parser events
+	 * @param mark the high-water mark
+	 * @throws ParserException on error, or if the source is no longer consistent with the mark
+	 */
+	public void parseFrom(URI uri, ParserHandler handler, String mark) throws ParserException {
+		parse(uri, handler, parseMark(mark), true);
+	}
+	
+	
+	/**
+	 * Return the high-water mark reached by the last call to parse() or parseFrom(),
+	 * which is the number of bytes of the twig_dump output that were processed
+	 * 
+	 * @return the high-water mark, or null if not available
+	 */
+	public String getHighWaterMark() {
+		return highWaterMark;
+	}
+	
+	
+	/**
+	 * Determine whether the source contains any data after the given high-water mark
+	 * 
+	 * @param uri the input URI
+	 * @param mark the high-water mark
+	 * @return true if there might be new data
+	 * @throws ParserException on error
+	 */
+	public boolean hasDataAfter(URI uri, String mark) throws ParserException {
 		
 		if (!"file".equals(uri.getScheme())) throw new ParserFormatException();
 		File file = new File(uri);
-		String ext = Utils.getExtension(file);
+		long offset = parseMark(mark);
 		
-		handler.setMeta(PMeta.PASS());
+		
+		// We cannot tell without running twig_dump
+		
+		if ("twig".equals(Utils.getExtension(file))) return true;
+		
+		long length = file.length();
+		if (length < offset) {
+			throw new ParserException("The file is shorter than the high-water mark");
+		}
+		if (length == offset) return false;
+		
+		try {
+			return NTriplesChunkReader.findLastLineEnd(file, offset, length) > offset;
+		}
+		catch (IOException e) {
+			throw new ParserException("I/O Error", e);
+		}
+	}
+	
+	
+	/**
+	 * Parse a high-water mark
+	 * 
+	 * @param mark the high-water mark
+	 * @return the number of bytes to skip
+	 * @throws ParserException if the mark is not valid
+	 */
+	private static long parseMark(String mark) throws ParserException {
+		try {
+			long offset = Long.parseLong(mark);
+			if (offset < 0) throw new NumberFormatException();
+			return offset;
+		}
+		catch (NumberFormatException e) {
+			throw new ParserException("Invalid high-water mark: " + mark);
+		}
+	}
+	
+	
+	/**
+	 * Parse an object identified by the given URI, skipping the given number of bytes
+	 * 
+	 * @param uri the input URI
+	 * @param handler the callback for parser events
+	 * @param skip the number of bytes of the twig_dump output to skip
+	 * @param incremental whether to leave an unterminated last line for later
+	 * @throws ParserException on error
+	 */
+	private void parse(URI uri, ParserHandler handler, long skip, boolean incremental) throws ParserException {
+		
+		if (!"file".equals(uri.getScheme())) throw new ParserFormatException();
+		File file = new File(uri);
+		String ext = Utils.getExtension(file);
 		
 		if ("twig".equals(ext)) {
 			
@@ -88,7 +182,7 @@ public class TwigParser implements Parser {
 				ExternalProcess p = new ExternalProcess(cmds);
 				p.start();
 				InputStream in = p.getProcessOutputStream();
-				loadFromStream(in, handler);
+				loadFromStream(in, handler, skip, incremental);
 				p.finish();
 			}
 			catch (IOException e) {
@@ -98,7 +192,7 @@ public class TwigParser implements Parser {
 		else {
 			try {
 				FileInputStream in = new FileInputStream(file);
-				loadFromStream(in, handler);
+				loadFromStream(in, handler, skip, incremental);
 				in.close();
 			}
 			catch (IOException e) {
@@ -132,16 +226,26 @@ public class TwigParser implements Parser {
 	 *
 	 * @param in the input stream
 	 * @param hadler the callback for parser events
+	 * @param skip the number of bytes to skip
+	 * @param incremental whether to leave an unterminated last line for later
 	 * @throws ParserException on error
 	 */
-	private void loadFromStream(InputStream in, ParserHandler handler) throws ParserException {
+	private void loadFromStream(InputStream in, ParserHandler handler, long skip, boolean incremental) throws ParserException {
 		
 		// Parse the graph
 		
-		BufferedReader bin = new BufferedReader(new InputStreamReader(in));
+		LineReader bin = new LineReader(in, incremental);
+		handler = TripleBatcher.wrap(handler);
+		highWaterMark = null;
 		
 		try {
 			
+			// Skip the data that has already been loaded
+			
+			if (bin.skip(skip) < skip) {
+				throw new ParserException("The input is shorter than the high-water mark");
+			}
+			
 			String l;			
 			handler.beginParsing();
 	
@@ -187,6 +291,7 @@ public class TwigParser implements Parser {
 			// Finish
 			
 			handler.endParsing();
+			highWaterMark = "" + bin.getOffset();
 		
 			//bin.close();
 		}
@@ -198,4 +303,130 @@ public class TwigParser implements Parser {
 			throw new ParserException("I/O Error", e);
 		}
 	}
+	
+	
+	/**
+	 * A line reader that keeps track of the byte offset in the input stream,
+	 * so that the parsing can be later resumed from the same place
+	 */
+	private static class LineReader {
+		
+		private InputStream in;
+		private byte[] buffer;
+		private int position;
+		private int limit;
+		private long offset;
+		private boolean holdBack;
+		private ByteArrayOutputStream line;
+		
+		
+		/**
+		 * Create an instance of class LineReader
+		 * 
+		 * @param in the input stream
+		 * @param holdBack whether to hold back an unterminated line at the end of the stream
+		 */
+		public LineReader(InputStream in, boolean holdBack) {
+			this.in = in;
+			this.holdBack = holdBack;
+			this.buffer = new byte[1 << 16];
+			this.position = 0;
+			this.limit = 0;
+			this.offset = 0;
+			this.line = new ByteArrayOutputStream(256);
+		}
+		
+		
+		/**
+		 * Fill the buffer if it is empty
+		 * 
+		 * @return false on the end of the stream
+		 * @throws IOException on I/O error
+		 */
+		private boolean fill() throws IOException {
+			if (position < limit) return true;
+			int r;
+			do {
+				r = in.read(buffer);
+			}
+			while (r == 0);
+			if (r < 0) return false;
+			position = 0;
+			limit = r;
+			return true;
+		}
+		
+		
+		/**
+		 * Skip the given number of bytes
+		 * 
+		 * @param n the number of bytes to skip
+		 * @return the number of skipped bytes
+		 * @throws IOException on I/O error
+		 */
+		public long skip(long n) throws IOException {
+			long skipped = 0;
+			while (skipped < n && fill()) {
+				int k = (int) Math.min(limit - position, n - skipped);
+				position += k;
+				skipped += k;
+			}
+			offset += skipped;
+			return skipped;
+		}
+		
+		
+		/**
+		 * Read a line. If the reader holds back unterminated lines, such a line
+		 * at the end of the stream is not returned and it does not count towards
+		 * the offset, since it might be still in the process of being written
+		 * 
+		 * @return the line without the line terminator, or null on the end of the stream
+		 * @throws IOException on I/O error
+		 */
+		public String readLine() throws IOException {
+			
+			line.reset();
+			boolean terminated = false;
+			
+			while (fill()) {
+				int start = position;
+				while (position < limit && buffer[position] != '\n') position++;
+				line.write(buffer, start, position - start);
+				if (position < limit) {
+					position++;
+					terminated = true;
+					break;
+				}
+			}
+			
+			if (!terminated && (holdBack || line.size() == 0)) return null;
+			offset += terminated ? line.size() + 1 : line.size();
+			
+			String s = line.toString();
+			if (s.endsWith("\r")) s = s.substring(0, s.length() - 1);
+			return s;
+		}
+		
+		
+		/**
+		 * Close the underlying input stream
+		 * 
+		 * @throws IOException on I/O error
+		 */
+		public void close() throws IOException {
+			in.close();
+		}
+		
+		
+		/**
+		 * Return the number of bytes consumed so far, which is at a line
+		 * boundary or at the end of the stream
+		 * 
+		 * @return the offset
+		 */
+		public long getOffset() {
+			return offset;
+		}
+	}
 }
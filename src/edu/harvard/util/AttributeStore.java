@@ -0,0 +1,488 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+
+
+/**
+ * A compact store of string attributes for a large number of owners, such as
+ * the nodes of a graph. Each owner is identified by an integer handle
+ * allocated by the store. The keys are interned, and the values are
+ * dictionary-encoded as UTF-8 in large segments that live either on the heap
+ * or in a memory-mapped temporary file. The values are decoded only when
+ * they are requested.
+ * 
+ * @author Peter Macko
+ */
+public class AttributeStore implements Serializable {
+	
+	private static final long serialVersionUID = -3215703587744325937L;
+	
+	public static final int NO_HANDLE = -1;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+	private static final int NO_ENTRY = -1;
+	private static final int NULL_VALUE = -1;
+	
+	private boolean mapped;
+	
+	
+	/*
+	 * Keys
+	 */
+	private HashMap<String, Integer> keyIDs;
+	private ArrayList<String> keys;
+	
+	
+	/*
+	 * Values: the dictionary and its hash table, which contains value IDs + 1
+	 */
+	private transient ArrayList<ByteBuffer> segments;
+	private transient RandomAccessFile file;
+	private transient long fileLength;
+	private transient long[] valueLocations;
+	private int[] valueHashes;
+	private int numValues;
+	private int[] valueTable;
+	
+	
+	/*
+	 * Entries: linked lists of (key, value, next) triples, one list per owner
+	 */
+	private int[] entries;
+	private int numEntries;
+	private int[] heads;
+	private int numOwners;
+	
+	
+	/**
+	 * Create an instance of class AttributeStore that keeps the values on the heap
+	 */
+	public AttributeStore() {
+		this(false);
+	}
+	
+	
+	/**
+	 * Create an instance of class AttributeStore
+	 * 
+	 * @param mapped true to keep the values in a memory-mapped temporary file
+	 */
+	public AttributeStore(boolean mapped) {
+		
+		this.mapped = mapped;
+		
+		keyIDs = new HashMap<String, Integer>();
+		keys = new ArrayList<String>();
+		
+		segments = new ArrayList<ByteBuffer>();
+		file = null;
+		fileLength = 0;
+		valueLocations = new long[64];
+		valueHashes = new int[64];
+		numValues = 0;
+		valueTable = new int[128];
+		
+		entries = new int[3 * 64];
+		numEntries = 0;
+		heads = new int[64];
+		numOwners = 0;
+	}
+	
+	
+	/**
+	 * Determine whether the values are stored in a memory-mapped file
+	 * 
+	 * @return true if the values are memory-mapped
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+	
+	
+	/**
+	 * Allocate a handle for a new owner of attributes
+	 * 
+	 * @return the new handle
+	 */
+	public synchronized int newHandle() {
+		
+		if (numOwners == heads.length) heads = Arrays.copyOf(heads, 2 * heads.length);
+		heads[numOwners] = NO_ENTRY;
+		
+		return numOwners++;
+	}
+	
+	
+	/**
+	 * Set an attribute
+	 * 
+	 * @param handle the owner handle
+	 * @param key the attribute name
+	 * @param value the attribute value
+	 */
+	public synchronized void put(int handle, String key, String value) {
+		
+		if (handle < 0 || handle >= numOwners) throw new IllegalArgumentException("Invalid handle");
+		
+		Integer k = keyIDs.get(key);
+		if (k == null) {
+			k = keys.size();
+			keys.add(key);
+			keyIDs.put(key, k);
+		}
+		
+		int v = internValue(value);
+		
+		
+		// Overwrite an existing value
+		
+		for (int e = heads[handle]; e != NO_ENTRY; e = entries[3 * e + 2]) {
+			if (entries[3 * e] == k.intValue()) {
+				entries[3 * e + 1] = v;
+				return;
+			}
+		}
+		
+		
+		// Add a new entry
+		
+		if (3 * numEntries == entries.length) entries = Arrays.copyOf(entries, 2 * entries.length);
+		
+		entries[3 * numEntries    ] = k.intValue();
+		entries[3 * numEntries + 1] = v;
+		entries[3 * numEntries + 2] = heads[handle];
+		heads[handle] = numEntries++;
+	}
+	
+	
+	/**
+	 * Get an attribute
+	 * 
+	 * @param handle the owner handle
+	 * @param key the attribute name
+	 * @return the value, or null if not found
+	 */
+	public synchronized String get(int handle, String key) {
+		
+		if (handle < 0 || handle >= numOwners) return null;
+		
+		Integer k = keyIDs.get(key);
+		if (k == null) return null;
+		
+		for (int e = heads[handle]; e != NO_ENTRY; e = entries[3 * e + 2]) {
+			if (entries[3 * e] == k.intValue()) {
+				return getValue(entries[3 * e + 1]);
+			}
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Get all attributes of the given owner. The returned map is a snapshot
+	 * in the order in which the attributes were first set
+	 * 
+	 * @param handle the owner handle
+	 * @return a new map of attributes
+	 */
+	public synchronized Map<String, String> getAll(int handle) {
+		
+		if (handle < 0 || handle >= numOwners || heads[handle] == NO_ENTRY) {
+			return new LinkedHashMap<String, String>();
+		}
+		
+		int count = 0;
+		for (int e = heads[handle]; e != NO_ENTRY; e = entries[3 * e + 2]) count++;
+		
+		int[] l = new int[count];
+		for (int e = heads[handle]; e != NO_ENTRY; e = entries[3 * e + 2]) l[--count] = e;
+		
+		LinkedHashMap<String, String> m = new LinkedHashMap<String, String>();
+		for (int e : l) m.put(keys.get(entries[3 * e]), getValue(entries[3 * e + 1]));
+		
+		return m;
+	}
+	
+	
+	/**
+	 * Return the number of distinct values in the dictionary
+	 * 
+	 * @return the number of values
+	 */
+	public synchronized int getNumValues() {
+		return numValues;
+	}
+	
+	
+	/**
+	 * Return the number of the distinct attribute names
+	 * 
+	 * @return the number of keys
+	 */
+	public synchronized int getNumKeys() {
+		return keys.size();
+	}
+	
+	
+	/**
+	 * Release the backing file, if any. The mapped values remain readable
+	 * until the store is garbage-collected
+	 */
+	public synchronized void close() {
+		
+		if (file != null) {
+			try {
+				file.close();
+			}
+			catch (IOException e) {
+				// Nothing to do
+			}
+			file = null;
+		}
+	}
+	
+	
+	/**
+	 * Find a value in the dictionary, adding it if necessary
+	 * 
+	 * @param value the value
+	 * @return the value ID
+	 */
+	private int internValue(String value) {
+		
+		if (value == null) return NULL_VALUE;
+		
+		byte[] b = value.getBytes(UTF8);
+		int hash = value.hashCode();
+		int mask = valueTable.length - 1;
+		
+		int i = mix(hash) & mask;
+		while (valueTable[i] != 0) {
+			int id = valueTable[i] - 1;
+			if (valueHashes[id] == hash && valueEquals(id, b)) return id;
+			i = (i + 1) & mask;
+		}
+		
+		
+		// Add the value
+		
+		int id = numValues++;
+		if (id == valueHashes.length) {
+			valueHashes = Arrays.copyOf(valueHashes, 2 * valueHashes.length);
+			valueLocations = Arrays.copyOf(valueLocations, 2 * valueLocations.length);
+		}
+		
+		valueHashes[id] = hash;
+		valueLocations[id] = appendValue(b);
+		valueTable[i] = id + 1;
+		
+		if (2 * numValues > valueTable.length) rehash();
+		
+		return id;
+	}
+	
+	
+	/**
+	 * Scramble the bits of a hash code
+	 * 
+	 * @param h the hash code
+	 * @return the new hash code
+	 */
+	private static int mix(int h) {
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+	
+	
+	/**
+	 * Grow the hash table of values
+	 */
+	private void rehash() {
+		
+		int[] t = new int[2 * valueTable.length];
+		int mask = t.length - 1;
+		
+		for (int id = 0; id < numValues; id++) {
+			int i = mix(valueHashes[id]) & mask;
+			while (t[i] != 0) i = (i + 1) & mask;
+			t[i] = id + 1;
+		}
+		
+		valueTable = t;
+	}
+	
+	
+	/**
+	 * Append an encoded value to the last segment, creating a new segment
+	 * if there is not enough room
+	 * 
+	 * @param b the encoded value
+	 * @return the location of the value (the segment index and the offset)
+	 */
+	private long appendValue(byte[] b) {
+		
+		int needed = 4 + b.length;
+		ByteBuffer s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+		
+		if (s == null || s.remaining() < needed) {
+			s = newSegment(Math.max(SEGMENT_SIZE, needed));
+			segments.add(s);
+		}
+		
+		int offset = s.position();
+		s.putInt(b.length);
+		s.put(b);
+		
+		return (((long) (segments.size() - 1)) << 32) | offset;
+	}
+	
+	
+	/**
+	 * Create a new segment
+	 * 
+	 * @param size the segment size
+	 * @return the new segment
+	 */
+	private ByteBuffer newSegment(int size) {
+		
+		if (!mapped) return ByteBuffer.allocate(size);
+		
+		try {
+			if (file == null) {
+				File f = File.createTempFile("orbiter-attributes-", ".tmp");
+				file = new RandomAccessFile(f, "rw");
+				if (!f.delete()) f.deleteOnExit();
+			}
+			
+			ByteBuffer s = file.getChannel().map(FileChannel.MapMode.READ_WRITE, fileLength, size);
+			fileLength += size;
+			return s;
+		}
+		catch (IOException e) {
+			
+			// Fall back to the heap
+			
+			mapped = false;
+			return ByteBuffer.allocate(size);
+		}
+	}
+	
+	
+	/**
+	 * Compare a stored value with an encoded string
+	 * 
+	 * @param id the value ID
+	 * @param b the encoded string
+	 * @return true if they are equal
+	 */
+	private boolean valueEquals(int id, byte[] b) {
+		
+		ByteBuffer s = segments.get((int) (valueLocations[id] >>> 32));
+		int offset = (int) valueLocations[id];
+		
+		if (s.getInt(offset) != b.length) return false;
+		for (int i = 0; i < b.length; i++) {
+			if (s.get(offset + 4 + i) != b[i]) return false;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Decode a value
+	 * 
+	 * @param id the value ID
+	 * @return the value
+	 */
+	private String getValue(int id) {
+		
+		if (id == NULL_VALUE) return null;
+		
+		ByteBuffer s = segments.get((int) (valueLocations[id] >>> 32)).duplicate();
+		int offset = (int) valueLocations[id];
+		
+		byte[] b = new byte[s.getInt(offset)];
+		s.position(offset + 4);
+		s.get(b);
+		
+		return new String(b, UTF8);
+	}
+	
+	
+	/**
+	 * Serialize the store, writing the values as strings
+	 * 
+	 * @param out the output stream
+	 * @throws IOException on error
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		
+		out.defaultWriteObject();
+		
+		for (int id = 0; id < numValues; id++) {
+			out.writeObject(getValue(id));
+		}
+	}
+	
+	
+	/**
+	 * Deserialize the store, keeping the values on the heap
+	 * 
+	 * @param in the input stream
+	 * @throws IOException on error
+	 * @throws ClassNotFoundException on error
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		
+		in.defaultReadObject();
+		
+		mapped = false;
+		segments = new ArrayList<ByteBuffer>();
+		valueLocations = new long[valueHashes.length];
+		
+		for (int id = 0; id < numValues; id++) {
+			valueLocations[id] = appendValue(((String) in.readObject()).getBytes(UTF8));
+		}
+	}
+}
@@ -139,11 +139,11 @@ public class BSpline {
 
 	
 	/**
-	 * Render the spline in the given graphics context
+	 * Compute the points on the spline, ending with the last control point
 	 * 
-	 * @param g the graphics context
+	 * @return the interleaved X and Y coordinates of the points
 	 */
-	public void render(Graphics g) {
+	public float[] getCurve() {
 		if ( _cp_x.size() <= _degree ) {
 			throw new RuntimeException( "BSpline Error: " + _cp_x.size() + " is not enough control points for a degree " + _degree + " bspline curve" );
 		}
@@ -151,48 +151,52 @@ public class BSpline {
 		createKnotVector();
 		straightenControlPoints();
 
-		int sx = 0, sy = 0, dx, dy;
-		boolean first = true;
+		float[] points = new float[2 * (_detail + 2) * (_cp_x.size() + 1)];
+		int n = 0;
 
-		double[] pos = new double[2];
+		double[] pos;
 		int num_intervals = (_knots.length-1) - 2*_degree;
 		int interval;
 		for ( interval = 0; interval < num_intervals; interval++ ) {
 			for ( double t = _knots[_degree+interval]; t < _knots[_degree+interval+1]; t += _dt ) {
 				pos = evaluateCurve( t, _degree+interval );
 				
-				if (first) {
-					sx = (int) Math.round(pos[0]);
-					sy = (int) Math.round(pos[1]);
-					first = false;
-				}
-				else {
-					dx = (int) Math.round(pos[0]);
-					dy = (int) Math.round(pos[1]);
-					
-					if ((dx - sx) * (dx - sx) + (dy - sy) * (dy - sy) >= _mindist * _mindist) {
-						g.drawLine(sx, sy, dx, dy);
-						sx = dx;
-						sy = dy;
-					}
-				}
+				if (n + 2 > points.length) points = Arrays.copyOf(points, points.length * 2);
+				points[n++] = (float) pos[0];
+				points[n++] = (float) pos[1];
 			}
 		}
 
-		pos[0] = (Double)_cp_x.get(_cp_x.size()-1);
-		pos[1] = (Double)_cp_y.get(_cp_y.size()-1);
+		if (n + 2 > points.length) points = Arrays.copyOf(points, n + 2);
+		points[n++] = (float) (double) _cp_x.get(_cp_x.size()-1);
+		points[n++] = (float) (double) _cp_y.get(_cp_y.size()-1);
 		
-		if (first) {
-			sx = (int) Math.round(pos[0]);
-			sy = (int) Math.round(pos[1]);
-			first = false;
-		}
-		else {
-			dx = (int) Math.round(pos[0]);
-			dy = (int) Math.round(pos[1]);
-			g.drawLine(sx, sy, dx, dy);
-			sx = dx;
-			sy = dy;
+		return n == points.length ? points : Arrays.copyOf(points, n);
+	}
+
+	
+	/**
+	 * Render the spline in the given graphics context
+	 * 
+	 * @param g the graphics context
+	 */
+	public void render(Graphics g) {
+		
+		float[] points = getCurve();
+
+		int sx = Math.round(points[0]);
+		int sy = Math.round(points[1]);
+		int dx, dy;
+		
+		for (int i = 2; i < points.length; i += 2) {
+			dx = Math.round(points[i]);
+			dy = Math.round(points[i + 1]);
+			
+			if (i + 2 >= points.length || (dx - sx) * (dx - sx) + (dy - sy) * (dy - sy) >= _mindist * _mindist) {
+				g.drawLine(sx, sy, dx, dy);
+				sx = dx;
+				sy = dy;
+			}
 		}
 	}
 
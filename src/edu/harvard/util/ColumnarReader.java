@@ -0,0 +1,380 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A reader for binary columnar files written by ColumnarWriter. The file is
+ * memory-mapped, and the columns are copied into primitive arrays using bulk
+ * buffer operations, so that no per-value parsing is necessary. Files larger
+ * than 2 GB are mapped as several consecutive regions.
+ * 
+ * @author Peter Macko
+ */
+public class ColumnarReader {
+	
+	private static final int TRAILER_SIZE = 12;
+	
+	/*
+	 * The mapped regions overlap by the size of the largest primitive value,
+	 * so that each value that starts in a region can be read from it whole
+	 */
+	private static final int REGION_BITS = 30;
+	private static final long REGION_SIZE = 1L << REGION_BITS;
+	private static final int REGION_OVERLAP = 8;
+	
+	private RandomAccessFile file;
+	private MappedByteBuffer[] regions;
+	private long size;
+	private long position;
+	private int version;
+	
+	private String[] strings;
+	
+	
+	/**
+	 * Create an instance of class ColumnarReader
+	 * 
+	 * @param file the input file
+	 * @param magic the expected magic number
+	 * @param maxVersion the most recent supported format version
+	 * @throws IOException on I/O error
+	 * @throws ParserException if the file is not in the expected format
+	 */
+	public ColumnarReader(File file, int magic, int maxVersion) throws IOException, ParserException {
+		
+		this.file = new RandomAccessFile(file, "r");
+		
+		try {
+			FileChannel channel = this.file.getChannel();
+			size = channel.size();
+			
+			if (size < 8 + TRAILER_SIZE) {
+				throw new ParserException("The file is too short");
+			}
+			
+			int numRegions = (int) ((size + REGION_SIZE - 1) >> REGION_BITS);
+			regions = new MappedByteBuffer[numRegions];
+			for (int i = 0; i < numRegions; i++) {
+				long start = ((long) i) << REGION_BITS;
+				long length = Math.min(size - start, REGION_SIZE + REGION_OVERLAP);
+				regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+			}
+			
+			
+			// Header and trailer
+			
+			position = size - 4;
+			int trailerMagic = readInt();
+			
+			position = 0;
+			if (readInt() != magic || trailerMagic != magic) {
+				throw new ParserException("Invalid file format");
+			}
+			
+			version = readInt();
+			if (version < 1 || version > maxVersion) {
+				throw new ParserException("Unsupported file format version " + version);
+			}
+			
+			position = size - TRAILER_SIZE;
+			long dictionaryOffset = readLong();
+			if (dictionaryOffset < 8 || dictionaryOffset > size - TRAILER_SIZE) {
+				throw new ParserException("Invalid dictionary offset");
+			}
+			
+			
+			// String dictionary
+			
+			position = dictionaryOffset;
+			int[] offsets = readInts();
+			byte[] blob = readBytes();
+			
+			strings = new String[offsets.length == 0 ? 0 : offsets.length - 1];
+			for (int i = 0; i < strings.length; i++) {
+				strings[i] = new String(blob, offsets[i], offsets[i + 1] - offsets[i], ColumnarWriter.UTF8);
+			}
+			
+			position = 8;
+		}
+		catch (IOException e) {
+			close();
+			throw e;
+		}
+		catch (ParserException e) {
+			close();
+			throw e;
+		}
+		catch (RuntimeException e) {
+			close();
+			throw new ParserException("Corrupted file: " + e.getMessage());
+		}
+	}
+	
+	
+	/**
+	 * Return the format version of the file
+	 * 
+	 * @return the version
+	 */
+	public int getVersion() {
+		return version;
+	}
+	
+	
+	/**
+	 * Prepare to read the given number of bytes at the current position
+	 * 
+	 * @param length the number of bytes, at most REGION_OVERLAP for primitive values
+	 * @return the region that contains the bytes
+	 */
+	private MappedByteBuffer region(int length) {
+		if (position + length > size) {
+			throw new BufferUnderflowException();
+		}
+		return regions[(int) (position >> REGION_BITS)];
+	}
+	
+	
+	/**
+	 * Return the offset of the current position within its region
+	 * 
+	 * @return the offset
+	 */
+	private int offset() {
+		return (int) (position & (REGION_SIZE - 1));
+	}
+	
+	
+	/**
+	 * Return a view of the region at the current position, covering
+	 * at most the given number of values
+	 * 
+	 * @param count the number of remaining values
+	 * @param valueSize the size of each value in bytes
+	 * @return a buffer positioned at the current position, which holds at least one value
+	 */
+	private ByteBuffer view(long count, int valueSize) {
+		
+		region((int) Math.min(count * valueSize, Integer.MAX_VALUE));
+		
+		int offset = offset();
+		long inRegion = (REGION_SIZE - offset + valueSize - 1) / valueSize;
+		int n = (int) Math.min(count, inRegion);
+		
+		ByteBuffer b = regions[(int) (position >> REGION_BITS)].duplicate();
+		b.position(offset);
+		b.limit(offset + n * valueSize);
+		return b.slice();
+	}
+	
+	
+	/**
+	 * Read the beginning of a section and check its tag
+	 * 
+	 * @param tag the expected section tag
+	 * @throws ParserException if the tag does not match
+	 */
+	public void expectSection(int tag) throws ParserException {
+		int t = readInt();
+		if (t != tag) {
+			throw new ParserException("Expected section 0x" + Integer.toHexString(tag)
+					+ ", found 0x" + Integer.toHexString(t));
+		}
+	}
+	
+	
+	/**
+	 * Read an integer
+	 * 
+	 * @return the value
+	 */
+	public int readInt() {
+		int v = region(4).getInt(offset());
+		position += 4;
+		return v;
+	}
+	
+	
+	/**
+	 * Read a long
+	 * 
+	 * @return the value
+	 */
+	public long readLong() {
+		long v = region(8).getLong(offset());
+		position += 8;
+		return v;
+	}
+	
+	
+	/**
+	 * Read a double
+	 * 
+	 * @return the value
+	 */
+	public double readDouble() {
+		double v = region(8).getDouble(offset());
+		position += 8;
+		return v;
+	}
+	
+	
+	/**
+	 * Read a boolean
+	 * 
+	 * @return the value
+	 */
+	public boolean readBoolean() {
+		return readInt() != 0;
+	}
+	
+	
+	/**
+	 * Read a string reference and return the string
+	 * 
+	 * @return the string, or null
+	 * @throws ParserException if the reference is invalid
+	 */
+	public String readString() throws ParserException {
+		return getString(readInt());
+	}
+	
+	
+	/**
+	 * Return a string from the dictionary
+	 * 
+	 * @param ref the string reference
+	 * @return the string, or null if the reference is ColumnarWriter.NULL_STRING
+	 * @throws ParserException if the reference is invalid
+	 */
+	public String getString(int ref) throws ParserException {
+		if (ref == ColumnarWriter.NULL_STRING) return null;
+		if (ref < 0 || ref >= strings.length) {
+			throw new ParserException("Invalid string reference " + ref);
+		}
+		return strings[ref];
+	}
+	
+	
+	/**
+	 * Read a column of integers
+	 * 
+	 * @return the array of values
+	 */
+	public int[] readInts() {
+		
+		int length = readInt();
+		int[] a = new int[length];
+		
+		for (int done = 0; done < length; ) {
+			IntBuffer b = view(length - done, 4).asIntBuffer();
+			int n = b.remaining();
+			b.get(a, done, n);
+			done += n;
+			position += 4L * n;
+		}
+		
+		return a;
+	}
+	
+	
+	/**
+	 * Read a column of doubles
+	 * 
+	 * @return the array of values
+	 */
+	public double[] readDoubles() {
+		
+		int length = readInt();
+		double[] a = new double[length];
+		
+		for (int done = 0; done < length; ) {
+			DoubleBuffer b = view(length - done, 8).asDoubleBuffer();
+			int n = b.remaining();
+			b.get(a, done, n);
+			done += n;
+			position += 8L * n;
+		}
+		
+		return a;
+	}
+	
+	
+	/**
+	 * Read a column of bytes
+	 * 
+	 * @return the array of values
+	 */
+	public byte[] readBytes() {
+		
+		int length = readInt();
+		byte[] a = new byte[length];
+		
+		for (int done = 0; done < length; ) {
+			ByteBuffer b = view(length - done, 1);
+			int n = b.remaining();
+			b.get(a, done, n);
+			done += n;
+			position += n;
+		}
+		
+		return a;
+	}
+	
+	
+	/**
+	 * Close the file
+	 */
+	public void close() {
+		
+		regions = null;
+		
+		try {
+			if (file != null) file.close();
+		}
+		catch (IOException e) {
+			// Nothing to do
+		}
+		
+		file = null;
+	}
+}
@@ -0,0 +1,278 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+
+/**
+ * A writer for binary columnar files. The file consists of a header with a
+ * magic number and a format version, a sequence of tagged sections that
+ * contain scalars and bulk arrays of primitive values (the columns), and a
+ * trailing string dictionary. Strings are never written in-line; they are
+ * interned into the dictionary and referenced by their integer index, so
+ * that repeated attribute keys, types, and labels are stored only once.
+ * All values are stored in the big-endian byte order.
+ * 
+ * @author Peter Macko
+ */
+public class ColumnarWriter {
+	
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+	public static final int NULL_STRING = -1;
+	
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	private DataOutputStream out;
+	private ByteBuffer buffer;
+	private long position;
+	private int magic;
+	
+	private HashMap<String, Integer> dictionary;
+	private ArrayList<String> strings;
+	
+	
+	/**
+	 * Create an instance of class ColumnarWriter
+	 * 
+	 * @param file the output file
+	 * @param magic the magic number that identifies the file type
+	 * @param version the format version
+	 * @throws IOException on I/O error
+	 */
+	public ColumnarWriter(File file, int magic, int version) throws IOException {
+		
+		this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		this.position = 0;
+		this.magic = magic;
+		
+		this.dictionary = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		
+		writeInt(magic);
+		writeInt(version);
+	}
+	
+	
+	/**
+	 * Intern a string into the dictionary
+	 * 
+	 * @param s the string (can be null)
+	 * @return the string reference, or NULL_STRING if the string is null
+	 */
+	public int intern(String s) {
+		
+		if (s == null) return NULL_STRING;
+		
+		Integer r = dictionary.get(s);
+		if (r != null) return r.intValue();
+		
+		int id = strings.size();
+		strings.add(s);
+		dictionary.put(s, id);
+		return id;
+	}
+	
+	
+	/**
+	 * Start a new section
+	 * 
+	 * @param tag the section tag
+	 * @throws IOException on I/O error
+	 */
+	public void beginSection(int tag) throws IOException {
+		writeInt(tag);
+	}
+	
+	
+	/**
+	 * Write an integer
+	 * 
+	 * @param v the value
+	 * @throws IOException on I/O error
+	 */
+	public void writeInt(int v) throws IOException {
+		out.writeInt(v);
+		position += 4;
+	}
+	
+	
+	/**
+	 * Write a long
+	 * 
+	 * @param v the value
+	 * @throws IOException on I/O error
+	 */
+	public void writeLong(long v) throws IOException {
+		out.writeLong(v);
+		position += 8;
+	}
+	
+	
+	/**
+	 * Write a double
+	 * 
+	 * @param v the value
+	 * @throws IOException on I/O error
+	 */
+	public void writeDouble(double v) throws IOException {
+		out.writeDouble(v);
+		position += 8;
+	}
+	
+	
+	/**
+	 * Write a boolean
+	 * 
+	 * @param v the value
+	 * @throws IOException on I/O error
+	 */
+	public void writeBoolean(boolean v) throws IOException {
+		writeInt(v ? 1 : 0);
+	}
+	
+	
+	/**
+	 * Write a reference to a string, interning it in the dictionary
+	 * 
+	 * @param s the string (can be null)
+	 * @throws IOException on I/O error
+	 */
+	public void writeString(String s) throws IOException {
+		writeInt(intern(s));
+	}
+	
+	
+	/**
+	 * Write a column of integers
+	 * 
+	 * @param a the array
+	 * @param length the number of elements to write
+	 * @throws IOException on I/O error
+	 */
+	public void writeInts(int[] a, int length) throws IOException {
+		
+		writeInt(length);
+		
+		int chunk = BUFFER_SIZE / 4;
+		for (int start = 0; start < length; start += chunk) {
+			int n = Math.min(chunk, length - start);
+			buffer.clear();
+			buffer.asIntBuffer().put(a, start, n);
+			out.write(buffer.array(), 0, n * 4);
+		}
+		
+		position += 4l * length;
+	}
+	
+	
+	/**
+	 * Write a column of doubles
+	 * 
+	 * @param a the array
+	 * @param length the number of elements to write
+	 * @throws IOException on I/O error
+	 */
+	public void writeDoubles(double[] a, int length) throws IOException {
+		
+		writeInt(length);
+		
+		int chunk = BUFFER_SIZE / 8;
+		for (int start = 0; start < length; start += chunk) {
+			int n = Math.min(chunk, length - start);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(a, start, n);
+			out.write(buffer.array(), 0, n * 8);
+		}
+		
+		position += 8l * length;
+	}
+	
+	
+	/**
+	 * Write a column of bytes
+	 * 
+	 * @param a the array
+	 * @param length the number of elements to write
+	 * @throws IOException on I/O error
+	 */
+	public void writeBytes(byte[] a, int length) throws IOException {
+		
+		writeInt(length);
+		out.write(a, 0, length);
+		position += length;
+	}
+	
+	
+	/**
+	 * Write the string dictionary and the trailer, and close the file
+	 * 
+	 * @throws IOException on I/O error
+	 */
+	public void close() throws IOException {
+		
+		long dictionaryOffset = position;
+		
+		
+		// Encode the strings
+		
+		int[] offsets = new int[strings.size() + 1];
+		ByteArrayOutputStream blob = new ByteArrayOutputStream();
+		
+		for (int i = 0; i < strings.size(); i++) {
+			offsets[i] = blob.size();
+			byte[] b = strings.get(i).getBytes(UTF8);
+			blob.write(b, 0, b.length);
+		}
+		offsets[strings.size()] = blob.size();
+		
+		
+		// Write the dictionary and the trailer
+		
+		writeInts(offsets, offsets.length);
+		writeBytes(blob.toByteArray(), blob.size());
+		
+		writeLong(dictionaryOffset);
+		writeInt(magic);
+		
+		out.close();
+		
+		dictionary = null;
+		strings = null;
+	}
+}
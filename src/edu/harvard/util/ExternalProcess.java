@@ -115,6 +115,22 @@ public class ExternalProcess implements Cancelable {
 		return p.getInputStream();
 	}
 	
+	
+	/**
+	 * Get the error stream of the process
+	 *
+	 * @return the error stream
+	 * @throws IOException if an error occurred
+	 */
+	public InputStream getProcessErrorStream() throws IOException {
+		
+		if (p == null) {
+			throw new IOException("The program is not running");
+		}
+		
+		return p.getErrorStream();
+	}
+	
 
 	/**
 	 * Finish the program started with start() - capture the output,
@@ -0,0 +1,446 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+
+/**
+ * A loose region quadtree over axis-aligned bounding boxes. Each item is
+ * stored in the smallest cell that fully contains its box, and the root
+ * grows on demand, so the extent of the indexed space does not need to be
+ * known up front.
+ * 
+ * @author Peter Macko
+ *
+ * @param <T> the item type
+ */
+public class QuadTree<T> {
+	
+	private static final int MAX_CELL_ITEMS = 16;
+	private static final int MAX_DEPTH = 24;
+	
+	private Cell<T> root;
+	private HashMap<T, Entry<T>> entries;
+	
+	
+	/**
+	 * Create an instance of class QuadTree
+	 */
+	public QuadTree() {
+		root = null;
+		entries = new HashMap<T, Entry<T>>();
+	}
+	
+	
+	/**
+	 * Return the number of items in the tree
+	 * 
+	 * @return the number of items
+	 */
+	public int size() {
+		return entries.size();
+	}
+	
+	
+	/**
+	 * Determine whether the tree is empty
+	 * 
+	 * @return true if it is empty
+	 */
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+	
+	
+	/**
+	 * Determine whether the tree contains the given item
+	 * 
+	 * @param item the item
+	 * @return true if it is in the tree
+	 */
+	public boolean contains(T item) {
+		return entries.containsKey(item);
+	}
+	
+	
+	/**
+	 * Remove all items
+	 */
+	public void clear() {
+		root = null;
+		entries.clear();
+	}
+	
+	
+	/**
+	 * Create a deep copy of the tree, which can then be modified or queried
+	 * independently of the original
+	 * 
+	 * @return the copy
+	 */
+	public QuadTree<T> copy() {
+		QuadTree<T> t = new QuadTree<T>();
+		if (root != null) t.root = root.copy(t.entries);
+		return t;
+	}
+	
+	
+	/**
+	 * Add an item, or move it if it is already in the tree
+	 * 
+	 * @param item the item
+	 * @param x1 the minimum X coordinate of the bounding box
+	 * @param y1 the minimum Y coordinate of the bounding box
+	 * @param x2 the maximum X coordinate of the bounding box
+	 * @param y2 the maximum Y coordinate of the bounding box
+	 */
+	public void add(T item, double x1, double y1, double x2, double y2) {
+		
+		if (x2 < x1) { double t = x1; x1 = x2; x2 = t; }
+		if (y2 < y1) { double t = y1; y1 = y2; y2 = t; }
+		if (Double.isNaN(x1) || Double.isNaN(y1) || Double.isNaN(x2) || Double.isNaN(y2)) {
+			throw new IllegalArgumentException("The bounding box of " + item + " is not a number");
+		}
+		
+		remove(item);
+		
+		Entry<T> e = new Entry<T>(item, x1, y1, x2, y2);
+		entries.put(item, e);
+		
+		
+		// Make sure that the root covers the box
+		
+		if (root == null) {
+			double s = Math.max(Math.max(x2 - x1, y2 - y1), 1);
+			double cx = (x1 + x2) / 2;
+			double cy = (y1 + y2) / 2;
+			root = new Cell<T>(cx - s, cy - s, cx + s, cy + s, 0);
+		}
+		
+		while (!root.covers(e)) {
+			
+			double s = root.x2 - root.x1;
+			boolean left = x1 < root.x1;
+			boolean up = y1 < root.y1;
+			
+			double nx1 = left ? root.x1 - s : root.x1;
+			double ny1 = up   ? root.y1 - s : root.y1;
+			
+			Cell<T> r = new Cell<T>(nx1, ny1, nx1 + 2 * s, ny1 + 2 * s, root.depth - 1);
+			r.createChildren();
+			r.children[(left ? 1 : 0) + (up ? 2 : 0)] = root;
+			root = r;
+		}
+		
+		
+		// Insert
+		
+		root.insert(e, root.depth);
+	}
+	
+	
+	/**
+	 * Remove an item
+	 * 
+	 * @param item the item to remove
+	 * @return true if the item was removed
+	 */
+	public boolean remove(T item) {
+		
+		Entry<T> e = entries.remove(item);
+		if (e == null) return false;
+		
+		e.cell.items.remove(e);
+		e.cell = null;
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Collect all items with bounding boxes that intersect the given rectangle
+	 * 
+	 * @param x1 the minimum X coordinate
+	 * @param y1 the minimum Y coordinate
+	 * @param x2 the maximum X coordinate
+	 * @param y2 the maximum Y coordinate
+	 * @param out the collection to add the items to
+	 * @return the number of added items
+	 */
+	public int query(double x1, double y1, double x2, double y2, Collection<? super T> out) {
+		if (root == null) return 0;
+		return root.query(x1, y1, x2, y2, out);
+	}
+	
+	
+	/**
+	 * Return all items with bounding boxes that intersect the given rectangle
+	 * 
+	 * @param x1 the minimum X coordinate
+	 * @param y1 the minimum Y coordinate
+	 * @param x2 the maximum X coordinate
+	 * @param y2 the maximum Y coordinate
+	 * @return the list of items
+	 */
+	public ArrayList<T> query(double x1, double y1, double x2, double y2) {
+		ArrayList<T> out = new ArrayList<T>();
+		query(x1, y1, x2, y2, out);
+		return out;
+	}
+	
+	
+	/**
+	 * An indexed item together with its bounding box
+	 */
+	private static class Entry<T> {
+		
+		T item;
+		double x1, y1, x2, y2;
+		Cell<T> cell;
+		
+		
+		/**
+		 * Create an instance of class Entry
+		 * 
+		 * @param item the item
+		 * @param x1 the minimum X coordinate
+		 * @param y1 the minimum Y coordinate
+		 * @param x2 the maximum X coordinate
+		 * @param y2 the maximum Y coordinate
+		 */
+		Entry(T item, double x1, double y1, double x2, double y2) {
+			this.item = item;
+			this.x1 = x1;
+			this.y1 = y1;
+			this.x2 = x2;
+			this.y2 = y2;
+			this.cell = null;
+		}
+	}
+	
+	
+	/**
+	 * A cell of the tree
+	 */
+	private static class Cell<T> {
+		
+		double x1, y1, x2, y2;
+		int depth;
+		ArrayList<Entry<T>> items;
+		Cell<T>[] children;
+		
+		
+		/**
+		 * Create an instance of class Cell
+		 * 
+		 * @param x1 the minimum X coordinate
+		 * @param y1 the minimum Y coordinate
+		 * @param x2 the maximum X coordinate
+		 * @param y2 the maximum Y coordinate
+		 * @param depth the depth of the cell relative to the original root
+		 */
+		Cell(double x1, double y1, double x2, double y2, int depth) {
+			this.x1 = x1;
+			this.y1 = y1;
+			this.x2 = x2;
+			this.y2 = y2;
+			this.depth = depth;
+			this.items = new ArrayList<Entry<T>>(4);
+			this.children = null;
+		}
+		
+		
+		/**
+		 * Create a child cell
+		 * 
+		 * @param quadrant the quadrant (bit 0 = right half, bit 1 = bottom half)
+		 * @return the new cell
+		 */
+		Cell<T> createChild(int quadrant) {
+			double mx = (x1 + x2) / 2;
+			double my = (y1 + y2) / 2;
+			return new Cell<T>((quadrant & 1) == 0 ? x1 : mx, (quadrant & 2) == 0 ? y1 : my,
+							(quadrant & 1) == 0 ? mx : x2, (quadrant & 2) == 0 ? my : y2, depth + 1);
+		}
+		
+		
+		/**
+		 * Create all four child cells
+		 */
+		void createChildren() {
+			children = Utils.cast(new Cell<?>[4]);
+			for (int i = 0; i < 4; i++) {
+				children[i] = createChild(i);
+			}
+		}
+		
+		
+		/**
+		 * Create a deep copy of the cell and its descendants
+		 * 
+		 * @param entries the map to register the copied entries in
+		 * @return the copy
+		 */
+		Cell<T> copy(HashMap<T, Entry<T>> entries) {
+			
+			Cell<T> c = new Cell<T>(x1, y1, x2, y2, depth);
+			
+			for (Entry<T> e : items) {
+				Entry<T> x = new Entry<T>(e.item, e.x1, e.y1, e.x2, e.y2);
+				x.cell = c;
+				c.items.add(x);
+				entries.put(x.item, x);
+			}
+			
+			if (children != null) {
+				c.children = Utils.cast(new Cell<?>[4]);
+				for (int i = 0; i < 4; i++) {
+					c.children[i] = children[i].copy(entries);
+				}
+			}
+			
+			return c;
+		}
+		
+		
+		/**
+		 * Determine whether the cell fully covers the given entry
+		 * 
+		 * @param e the entry
+		 * @return true if it does
+		 */
+		boolean covers(Entry<T> e) {
+			return e.x1 >= x1 && e.y1 >= y1 && e.x2 <= x2 && e.y2 <= y2;
+		}
+		
+		
+		/**
+		 * Return the child that fully covers the given entry
+		 * 
+		 * @param e the entry
+		 * @return the child, or null if the entry straddles the midlines
+		 */
+		Cell<T> childFor(Entry<T> e) {
+			double mx = (x1 + x2) / 2;
+			double my = (y1 + y2) / 2;
+			
+			int q;
+			if (e.x2 <= mx) q = 0; else if (e.x1 >= mx) q = 1; else return null;
+			if (e.y2 <= my) q |= 0; else if (e.y1 >= my) q |= 2; else return null;
+			
+			return children[q];
+		}
+		
+		
+		/**
+		 * Insert an entry to this cell or one of its descendants
+		 * 
+		 * @param e the entry
+		 * @param rootDepth the depth of the root cell
+		 */
+		void insert(Entry<T> e, int rootDepth) {
+			
+			Cell<T> c = this;
+			while (c.children != null) {
+				Cell<T> n = c.childFor(e);
+				if (n == null) break;
+				c = n;
+			}
+			
+			c.items.add(e);
+			e.cell = c;
+			
+			if (c.children == null && c.items.size() > MAX_CELL_ITEMS && c.depth - rootDepth < MAX_DEPTH) {
+				c.split(rootDepth);
+			}
+		}
+		
+		
+		/**
+		 * Split the cell and push down the entries that fit into the children
+		 * 
+		 * @param rootDepth the depth of the root cell
+		 */
+		void split(int rootDepth) {
+			
+			createChildren();
+			
+			ArrayList<Entry<T>> old = items;
+			items = new ArrayList<Entry<T>>(4);
+			
+			for (Entry<T> e : old) {
+				Cell<T> n = childFor(e);
+				if (n == null) {
+					items.add(e);
+					e.cell = this;
+				}
+				else {
+					n.insert(e, rootDepth);
+				}
+			}
+		}
+		
+		
+		/**
+		 * Collect the items that intersect the given rectangle
+		 * 
+		 * @param qx1 the minimum X coordinate
+		 * @param qy1 the minimum Y coordinate
+		 * @param qx2 the maximum X coordinate
+		 * @param qy2 the maximum Y coordinate
+		 * @param out the collection to add the items to
+		 * @return the number of added items
+		 */
+		int query(double qx1, double qy1, double qx2, double qy2, Collection<? super T> out) {
+			
+			if (qx2 < x1 || qy2 < y1 || qx1 > x2 || qy1 > y2) return 0;
+			
+			int count = 0;
+			for (Entry<T> e : items) {
+				if (qx2 < e.x1 || qy2 < e.y1 || qx1 > e.x2 || qy1 > e.y2) continue;
+				out.add(e.item);
+				count++;
+			}
+			
+			if (children != null) {
+				for (Cell<T> c : children) {
+					count += c.query(qx1, qy1, qx2, qy2, out);
+				}
+			}
+			
+			return count;
+		}
+	}
+}
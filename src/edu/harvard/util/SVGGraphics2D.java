@@ -0,0 +1,1250 @@
+/*
+ * Provenance Map Orbiter: A visualization tool for large provenance graphs
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util;
+
+import java.awt.*;
+import java.awt.font.*;
+import java.awt.geom.*;
+import java.awt.image.*;
+import java.awt.image.renderable.RenderableImage;
+import java.io.*;
+import java.text.AttributedCharacterIterator;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * A graphics context that records the drawing operations as an SVG
+ * document instead of rasterizing them. It does not need a display, so
+ * it can be used to export vector images from a headless application.
+ *
+ * Only solid colors are supported; other paints are drawn using the
+ * current color. Images are embedded as PNG, and copyArea() and the XOR
+ * mode are not supported.
+ *
+ * @author Peter Macko
+ */
+public class SVGGraphics2D extends Graphics2D {
+	
+	private Output out;
+	
+	private Color color;
+	private Color background;
+	private Paint paint;
+	private Font font;
+	private Stroke stroke;
+	private Composite composite;
+	private RenderingHints hints;
+	private AffineTransform transform;
+	
+	private Shape clip;
+	private String clipId;
+	
+	
+	/**
+	 * Create an instance of class SVGGraphics2D
+	 *
+	 * @param width the width of the image
+	 * @param height the height of the image
+	 */
+	public SVGGraphics2D(int width, int height) {
+		
+		out = new Output(width, height);
+		
+		color = Color.BLACK;
+		background = Color.WHITE;
+		paint = color;
+		font = new Font("Dialog", Font.PLAIN, 12);
+		stroke = new BasicStroke();
+		composite = AlphaComposite.SrcOver;
+		hints = new RenderingHints(null);
+		transform = new AffineTransform();
+		
+		clip = null;
+		clipId = null;
+	}
+	
+	
+	/**
+	 * Create a copy of the graphics context that writes to the same document
+	 *
+	 * @param other the other graphics context
+	 */
+	private SVGGraphics2D(SVGGraphics2D other) {
+		
+		out = other.out;
+		
+		color = other.color;
+		background = other.background;
+		paint = other.paint;
+		font = other.font;
+		stroke = other.stroke;
+		composite = other.composite;
+		hints = (RenderingHints) other.hints.clone();
+		transform = new AffineTransform(other.transform);
+		
+		clip = other.clip;
+		clipId = other.clipId;
+	}
+	
+	
+	/**
+	 * Return the complete SVG document
+	 *
+	 * @return the SVG document
+	 */
+	public String getSVGDocument() {
+		return out.header() + out.body + "</svg>\n";
+	}
+	
+	
+	/**
+	 * Write the SVG document to a stream
+	 *
+	 * @param stream the output stream
+	 * @throws IOException on I/O error
+	 */
+	public void write(OutputStream stream) throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(stream, "UTF-8"));
+		w.write(out.header());
+		w.write(out.body.toString());
+		w.write("</svg>\n");
+		w.flush();
+	}
+	
+	
+	/**
+	 * Write the SVG document to a file
+	 *
+	 * @param file the output file
+	 * @throws IOException on I/O error
+	 */
+	public void write(File file) throws IOException {
+		OutputStream stream = new FileOutputStream(file);
+		try {
+			write(stream);
+		}
+		finally {
+			stream.close();
+		}
+	}
+	
+	
+	/**
+	 * Format a number
+	 *
+	 * @param v the number
+	 * @return the string representation
+	 */
+	private static String format(double v) {
+		if (v == Math.rint(v) && Math.abs(v) < 1e15) return Long.toString((long) v);
+		return Double.toString(Math.round(v * 100) / 100.0);
+	}
+	
+	
+	/**
+	 * Format a color
+	 *
+	 * @param c the color
+	 * @return the color in the #rrggbb format
+	 */
+	private static String format(Color c) {
+		String s = Integer.toHexString(c.getRGB() & 0xffffff);
+		while (s.length() < 6) s = "0" + s;
+		return "#" + s;
+	}
+	
+	
+	/**
+	 * Escape a string for inclusion in XML
+	 *
+	 * @param s the string
+	 * @return the escaped string
+	 */
+	private static String escape(String s) {
+		StringBuilder b = new StringBuilder(s.length());
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '&': b.append("&amp;"); break;
+				case '<': b.append("&lt;"); break;
+				case '>': b.append("&gt;"); break;
+				case '"': b.append("&quot;"); break;
+				default:
+					if (c >= 0x20 || c == '\t') b.append(c);
+			}
+		}
+		return b.toString();
+	}
+	
+	
+	/**
+	 * Convert a shape in the device space to the SVG path data
+	 *
+	 * @param s the shape
+	 * @param t the transform to apply, or null
+	 * @return the path data
+	 */
+	private static String path(Shape s, AffineTransform t) {
+		
+		StringBuilder b = new StringBuilder();
+		double[] c = new double[6];
+		
+		for (PathIterator i = s.getPathIterator(t); !i.isDone(); i.next()) {
+			switch (i.currentSegment(c)) {
+				case PathIterator.SEG_MOVETO:
+					b.append('M').append(format(c[0])).append(' ').append(format(c[1]));
+					break;
+				case PathIterator.SEG_LINETO:
+					b.append('L').append(format(c[0])).append(' ').append(format(c[1]));
+					break;
+				case PathIterator.SEG_QUADTO:
+					b.append('Q').append(format(c[0])).append(' ').append(format(c[1]))
+					 .append(' ').append(format(c[2])).append(' ').append(format(c[3]));
+					break;
+				case PathIterator.SEG_CUBICTO:
+					b.append('C').append(format(c[0])).append(' ').append(format(c[1]))
+					 .append(' ').append(format(c[2])).append(' ').append(format(c[3]))
+					 .append(' ').append(format(c[4])).append(' ').append(format(c[5]));
+					break;
+				case PathIterator.SEG_CLOSE:
+					b.append('Z');
+					break;
+			}
+		}
+		
+		return b.toString();
+	}
+	
+	
+	/**
+	 * Return the opacity of the current color combined with the composite
+	 *
+	 * @return the opacity between 0 and 1
+	 */
+	private double opacity() {
+		double a = color.getAlpha() / 255.0;
+		if (composite instanceof AlphaComposite) a *= ((AlphaComposite) composite).getAlpha();
+		return a;
+	}
+	
+	
+	/**
+	 * Return the clip-path attribute for the current clip, writing out the
+	 * clip path if necessary
+	 *
+	 * @return the attribute, including a leading space, or an empty string
+	 */
+	private String clipAttribute() {
+		if (clip == null) return "";
+		if (clipId == null) {
+			clipId = "clip" + (out.nextId++);
+			out.body.append("<clipPath id=\"").append(clipId).append("\"><path d=\"")
+					.append(path(clip, null)).append("\"/></clipPath>\n");
+		}
+		return " clip-path=\"url(#" + clipId + ")\"";
+	}
+	
+	
+	/**
+	 * Return the stroke attributes for the current color and stroke
+	 *
+	 * @return the attributes, including a leading space
+	 */
+	private String strokeAttributes() {
+		
+		StringBuilder b = new StringBuilder();
+		b.append(" fill=\"none\" stroke=\"").append(format(color)).append('"');
+		
+		double a = opacity();
+		if (a < 1) b.append(" stroke-opacity=\"").append(format(a)).append('"');
+		
+		if (stroke instanceof BasicStroke) {
+			BasicStroke s = (BasicStroke) stroke;
+			double scale = Math.sqrt(Math.abs(transform.getDeterminant()));
+			
+			b.append(" stroke-width=\"").append(format(Math.max(s.getLineWidth(), 1 / scale) * scale)).append('"');
+			
+			switch (s.getEndCap()) {
+				case BasicStroke.CAP_BUTT  : b.append(" stroke-linecap=\"butt\""); break;
+				case BasicStroke.CAP_ROUND : b.append(" stroke-linecap=\"round\""); break;
+				case BasicStroke.CAP_SQUARE: b.append(" stroke-linecap=\"square\""); break;
+			}
+			
+			switch (s.getLineJoin()) {
+				case BasicStroke.JOIN_MITER: b.append(" stroke-linejoin=\"miter\""); break;
+				case BasicStroke.JOIN_ROUND: b.append(" stroke-linejoin=\"round\""); break;
+				case BasicStroke.JOIN_BEVEL: b.append(" stroke-linejoin=\"bevel\""); break;
+			}
+			
+			float[] dash = s.getDashArray();
+			if (dash != null && dash.length > 0) {
+				b.append(" stroke-dasharray=\"");
+				for (int i = 0; i < dash.length; i++) {
+					if (i > 0) b.append(',');
+					b.append(format(dash[i] * scale));
+				}
+				b.append('"');
+			}
+		}
+		
+		return b.toString();
+	}
+	
+	
+	/**
+	 * Return the fill attributes for the current color
+	 *
+	 * @param rule the winding rule
+	 * @return the attributes, including a leading space
+	 */
+	private String fillAttributes(int rule) {
+		
+		StringBuilder b = new StringBuilder();
+		b.append(" fill=\"").append(format(color)).append('"');
+		
+		double a = opacity();
+		if (a < 1) b.append(" fill-opacity=\"").append(format(a)).append('"');
+		if (rule == PathIterator.WIND_EVEN_ODD) b.append(" fill-rule=\"evenodd\"");
+		
+		return b.toString();
+	}
+	
+	
+	/**
+	 * Draw the outline of a shape
+	 *
+	 * @param s the shape
+	 */
+	@Override
+	public void draw(Shape s) {
+		
+		if (stroke instanceof BasicStroke) {
+			String c = clipAttribute();
+			out.body.append("<path d=\"").append(path(s, transform)).append('"')
+					.append(strokeAttributes()).append(c).append("/>\n");
+		}
+		else {
+			Color c = color;
+			fill(stroke.createStrokedShape(s));
+			color = c;
+		}
+	}
+	
+	
+	/**
+	 * Fill the interior of a shape
+	 *
+	 * @param s the shape
+	 */
+	@Override
+	public void fill(Shape s) {
+		
+		PathIterator i = s.getPathIterator(null);
+		int rule = i.isDone() ? PathIterator.WIND_NON_ZERO : i.getWindingRule();
+		
+		String c = clipAttribute();
+		out.body.append("<path d=\"").append(path(s, transform)).append('"')
+				.append(fillAttributes(rule)).append(c).append("/>\n");
+	}
+	
+	
+	/**
+	 * Draw a line
+	 */
+	@Override
+	public void drawLine(int x1, int y1, int x2, int y2) {
+		draw(new Line2D.Double(x1, y1, x2, y2));
+	}
+	
+	
+	/**
+	 * Draw the outline of a rectangle
+	 */
+	@Override
+	public void drawRect(int x, int y, int width, int height) {
+		if (width < 0 || height < 0) return;
+		draw(new Rectangle(x, y, width, height));
+	}
+	
+	
+	/**
+	 * Fill a rectangle
+	 */
+	@Override
+	public void fillRect(int x, int y, int width, int height) {
+		if (width <= 0 || height <= 0) return;
+		fill(new Rectangle(x, y, width, height));
+	}
+	
+	
+	/**
+	 * Clear a rectangle by filling it with the background color
+	 */
+	@Override
+	public void clearRect(int x, int y, int width, int height) {
+		Color c = color;
+		Composite m = composite;
+		color = background;
+		composite = AlphaComposite.Src;
+		fillRect(x, y, width, height);
+		color = c;
+		composite = m;
+	}
+	
+	
+	/**
+	 * Draw the outline of a round rectangle
+	 */
+	@Override
+	public void drawRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		draw(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+	}
+	
+	
+	/**
+	 * Fill a round rectangle
+	 */
+	@Override
+	public void fillRoundRect(int x, int y, int width, int height, int arcWidth, int arcHeight) {
+		fill(new RoundRectangle2D.Double(x, y, width, height, arcWidth, arcHeight));
+	}
+	
+	
+	/**
+	 * Draw the outline of an oval
+	 */
+	@Override
+	public void drawOval(int x, int y, int width, int height) {
+		draw(new Ellipse2D.Double(x, y, width, height));
+	}
+	
+	
+	/**
+	 * Fill an oval
+	 */
+	@Override
+	public void fillOval(int x, int y, int width, int height) {
+		fill(new Ellipse2D.Double(x, y, width, height));
+	}
+	
+	
+	/**
+	 * Draw an arc
+	 */
+	@Override
+	public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		draw(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.OPEN));
+	}
+	
+	
+	/**
+	 * Fill an arc
+	 */
+	@Override
+	public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+		fill(new Arc2D.Double(x, y, width, height, startAngle, arcAngle, Arc2D.PIE));
+	}
+	
+	
+	/**
+	 * Draw a sequence of connected lines
+	 */
+	@Override
+	public void drawPolyline(int[] xPoints, int[] yPoints, int nPoints) {
+		if (nPoints <= 0) return;
+		GeneralPath p = new GeneralPath();
+		p.moveTo(xPoints[0], yPoints[0]);
+		for (int i = 1; i < nPoints; i++) p.lineTo(xPoints[i], yPoints[i]);
+		draw(p);
+	}
+	
+	
+	/**
+	 * Draw the outline of a polygon
+	 */
+	@Override
+	public void drawPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		draw(new Polygon(xPoints, yPoints, nPoints));
+	}
+	
+	
+	/**
+	 * Fill a polygon
+	 */
+	@Override
+	public void fillPolygon(int[] xPoints, int[] yPoints, int nPoints) {
+		fill(new Polygon(xPoints, yPoints, nPoints));
+	}
+	
+	
+	/**
+	 * Check whether the given shape intersects the given rectangle
+	 * in the device space
+	 */
+	@Override
+	public boolean hit(Rectangle rect, Shape s, boolean onStroke) {
+		if (onStroke) s = stroke.createStrokedShape(s);
+		return transform.createTransformedShape(s).intersects(rect);
+	}
+	
+	
+	/**
+	 * Draw a string
+	 */
+	@Override
+	public void drawString(String str, int x, int y) {
+		drawString(str, (float) x, (float) y);
+	}
+	
+	
+	/**
+	 * Draw a string
+	 */
+	@Override
+	public void drawString(String str, float x, float y) {
+		
+		if (str == null || str.length() == 0) return;
+		
+		String family = font.getFamily();
+		if ("Dialog".equals(family) || "SansSerif".equals(family)) family = "sans-serif";
+		else if ("Serif".equals(family)) family = "serif";
+		else if ("Monospaced".equals(family) || "DialogInput".equals(family)) family = "monospace";
+		
+		String c = clipAttribute();
+		StringBuilder b = out.body;
+		b.append("<text x=\"").append(format(x)).append("\" y=\"").append(format(y)).append('"');
+		if (!transform.isIdentity()) {
+			double[] m = new double[6];
+			transform.getMatrix(m);
+			b.append(" transform=\"matrix(").append(format(m[0]));
+			for (int i = 1; i < 6; i++) b.append(' ').append(format(m[i]));
+			b.append(")\"");
+		}
+		b.append(" font-family=\"").append(escape(family)).append('"');
+		b.append(" font-size=\"").append(format(font.getSize2D())).append('"');
+		if (font.isBold()) b.append(" font-weight=\"bold\"");
+		if (font.isItalic()) b.append(" font-style=\"italic\"");
+		b.append(fillAttributes(PathIterator.WIND_NON_ZERO)).append(c);
+		b.append(" xml:space=\"preserve\">").append(escape(str)).append("</text>\n");
+	}
+	
+	
+	/**
+	 * Draw the text given by the iterator, ignoring its attributes
+	 */
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, int x, int y) {
+		drawString(iterator, (float) x, (float) y);
+	}
+	
+	
+	/**
+	 * Draw the text given by the iterator, ignoring its attributes
+	 */
+	@Override
+	public void drawString(AttributedCharacterIterator iterator, float x, float y) {
+		StringBuilder b = new StringBuilder();
+		for (char c = iterator.first(); c != AttributedCharacterIterator.DONE; c = iterator.next()) b.append(c);
+		drawString(b.toString(), x, y);
+	}
+	
+	
+	/**
+	 * Draw a glyph vector as a filled shape
+	 */
+	@Override
+	public void drawGlyphVector(GlyphVector g, float x, float y) {
+		fill(g.getOutline(x, y));
+	}
+	
+	
+	/**
+	 * Return the font render context
+	 *
+	 * @return the font render context
+	 */
+	@Override
+	public FontRenderContext getFontRenderContext() {
+		return out.scratch.getFontRenderContext();
+	}
+	
+	
+	/**
+	 * Return the font metrics for the given font
+	 *
+	 * @param f the font
+	 * @return the font metrics
+	 */
+	@Override
+	public FontMetrics getFontMetrics(Font f) {
+		return out.scratch.getFontMetrics(f);
+	}
+	
+	
+	/**
+	 * Convert an image to a buffered image
+	 *
+	 * @param img the image
+	 * @param bgcolor the background color, or null for transparent
+	 * @return the buffered image, or null if the image is not loaded yet
+	 */
+	private static BufferedImage toBufferedImage(Image img, Color bgcolor) {
+		
+		if (img instanceof BufferedImage && bgcolor == null) return (BufferedImage) img;
+		
+		int w = img.getWidth(null);
+		int h = img.getHeight(null);
+		if (w <= 0 || h <= 0) return null;
+		
+		BufferedImage b = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = b.createGraphics();
+		if (bgcolor != null) {
+			g.setColor(bgcolor);
+			g.fillRect(0, 0, w, h);
+		}
+		g.drawImage(img, 0, 0, null);
+		g.dispose();
+		
+		return b;
+	}
+	
+	
+	/**
+	 * Encode the data using Base64
+	 *
+	 * @param data the data
+	 * @return the encoded string
+	 */
+	private static String base64(byte[] data) {
+		
+		final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		StringBuilder b = new StringBuilder((data.length + 2) / 3 * 4);
+		
+		for (int i = 0; i < data.length; i += 3) {
+			int n = (data[i] & 0xff) << 16;
+			if (i + 1 < data.length) n |= (data[i + 1] & 0xff) << 8;
+			if (i + 2 < data.length) n |= (data[i + 2] & 0xff);
+			
+			b.append(alphabet.charAt((n >> 18) & 63));
+			b.append(alphabet.charAt((n >> 12) & 63));
+			b.append(i + 1 < data.length ? alphabet.charAt((n >> 6) & 63) : '=');
+			b.append(i + 2 < data.length ? alphabet.charAt(n & 63) : '=');
+		}
+		
+		return b.toString();
+	}
+	
+	
+	/**
+	 * Embed an image
+	 *
+	 * @param img the image
+	 * @param t the transform from the image space to the user space
+	 * @return true if the image was drawn
+	 */
+	private boolean embedImage(BufferedImage img, AffineTransform t) {
+		
+		if (img == null) return false;
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			ImageIO.write(img, "png", data);
+		}
+		catch (IOException e) {
+			return false;
+		}
+		
+		AffineTransform m = new AffineTransform(transform);
+		if (t != null) m.concatenate(t);
+		double[] a = new double[6];
+		m.getMatrix(a);
+		
+		String c = clipAttribute();
+		StringBuilder b = out.body;
+		b.append("<image width=\"").append(img.getWidth()).append("\" height=\"").append(img.getHeight()).append('"');
+		b.append(" transform=\"matrix(").append(format(a[0]));
+		for (int i = 1; i < 6; i++) b.append(' ').append(format(a[i]));
+		b.append(")\"");
+		if (composite instanceof AlphaComposite && ((AlphaComposite) composite).getAlpha() < 1) {
+			b.append(" opacity=\"").append(format(((AlphaComposite) composite).getAlpha())).append('"');
+		}
+		b.append(c);
+		b.append(" xlink:href=\"data:image/png;base64,").append(base64(data.toByteArray())).append("\"/>\n");
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Draw an image
+	 */
+	@Override
+	public boolean drawImage(Image img, AffineTransform xform, ImageObserver obs) {
+		return embedImage(toBufferedImage(img, null), xform);
+	}
+	
+	
+	/**
+	 * Draw a filtered image
+	 */
+	@Override
+	public void drawImage(BufferedImage img, BufferedImageOp op, int x, int y) {
+		embedImage(op == null ? img : op.filter(img, null), AffineTransform.getTranslateInstance(x, y));
+	}
+	
+	
+	/**
+	 * Draw a rendered image
+	 */
+	@Override
+	public void drawRenderedImage(RenderedImage img, AffineTransform xform) {
+		
+		BufferedImage b;
+		if (img instanceof BufferedImage) {
+			b = (BufferedImage) img;
+		}
+		else {
+			ColorModel cm = img.getColorModel();
+			WritableRaster r = cm.createCompatibleWritableRaster(img.getWidth(), img.getHeight());
+			img.copyData(r);
+			b = new BufferedImage(cm, r, cm.isAlphaPremultiplied(), null);
+		}
+		
+		embedImage(b, xform);
+	}
+	
+	
+	/**
+	 * Draw a renderable image
+	 */
+	@Override
+	public void drawRenderableImage(RenderableImage img, AffineTransform xform) {
+		drawRenderedImage(img.createDefaultRendering(), xform);
+	}
+	
+	
+	/**
+	 * Draw an image
+	 */
+	@Override
+	public boolean drawImage(Image img, int x, int y, ImageObserver observer) {
+		return drawImage(img, x, y, null, observer);
+	}
+	
+	
+	/**
+	 * Draw an image
+	 */
+	@Override
+	public boolean drawImage(Image img, int x, int y, Color bgcolor, ImageObserver observer) {
+		return embedImage(toBufferedImage(img, bgcolor), AffineTransform.getTranslateInstance(x, y));
+	}
+	
+	
+	/**
+	 * Draw a scaled image
+	 */
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, ImageObserver observer) {
+		return drawImage(img, x, y, width, height, null, observer);
+	}
+	
+	
+	/**
+	 * Draw a scaled image
+	 */
+	@Override
+	public boolean drawImage(Image img, int x, int y, int width, int height, Color bgcolor, ImageObserver observer) {
+		
+		BufferedImage b = toBufferedImage(img, bgcolor);
+		if (b == null) return false;
+		
+		AffineTransform t = AffineTransform.getTranslateInstance(x, y);
+		t.scale(width / (double) b.getWidth(), height / (double) b.getHeight());
+		return embedImage(b, t);
+	}
+	
+	
+	/**
+	 * Draw a part of an image
+	 */
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+			int sx1, int sy1, int sx2, int sy2, ImageObserver observer) {
+		return drawImage(img, dx1, dy1, dx2, dy2, sx1, sy1, sx2, sy2, null, observer);
+	}
+	
+	
+	/**
+	 * Draw a part of an image
+	 */
+	@Override
+	public boolean drawImage(Image img, int dx1, int dy1, int dx2, int dy2,
+			int sx1, int sy1, int sx2, int sy2, Color bgcolor, ImageObserver observer) {
+		
+		BufferedImage b = toBufferedImage(img, bgcolor);
+		if (b == null) return false;
+		
+		int x = Math.max(0, Math.min(sx1, sx2));
+		int y = Math.max(0, Math.min(sy1, sy2));
+		int w = Math.min(b.getWidth(), Math.max(sx1, sx2)) - x;
+		int h = Math.min(b.getHeight(), Math.max(sy1, sy2)) - y;
+		if (w <= 0 || h <= 0) return true;
+		
+		AffineTransform t = AffineTransform.getTranslateInstance(dx1, dy1);
+		t.scale((dx2 - dx1) / (double) (sx2 - sx1), (dy2 - dy1) / (double) (sy2 - sy1));
+		if (sx2 < sx1) t.translate(-w, 0);
+		if (sy2 < sy1) t.translate(0, -h);
+		return embedImage(b.getSubimage(x, y, w, h), t);
+	}
+	
+	
+	/**
+	 * Copy an area of the image; this is not supported
+	 */
+	@Override
+	public void copyArea(int x, int y, int width, int height, int dx, int dy) {
+	}
+	
+	
+	/**
+	 * Create a copy of this graphics context that draws into the same document
+	 *
+	 * @return the new graphics context
+	 */
+	@Override
+	public Graphics create() {
+		return new SVGGraphics2D(this);
+	}
+	
+	
+	/**
+	 * Dispose of the graphics context
+	 */
+	@Override
+	public void dispose() {
+	}
+	
+	
+	/**
+	 * Return the device configuration
+	 *
+	 * @return the device configuration of an off-screen image
+	 */
+	@Override
+	public GraphicsConfiguration getDeviceConfiguration() {
+		return out.scratch.getDeviceConfiguration();
+	}
+	
+	
+	/**
+	 * Return the current color
+	 */
+	@Override
+	public Color getColor() {
+		return color;
+	}
+	
+	
+	/**
+	 * Set the current color
+	 */
+	@Override
+	public void setColor(Color c) {
+		if (c == null) return;
+		color = c;
+		paint = c;
+	}
+	
+	
+	/**
+	 * Return the current paint
+	 */
+	@Override
+	public Paint getPaint() {
+		return paint;
+	}
+	
+	
+	/**
+	 * Set the current paint; only colors are supported
+	 */
+	@Override
+	public void setPaint(Paint p) {
+		if (p == null) return;
+		paint = p;
+		if (p instanceof Color) color = (Color) p;
+	}
+	
+	
+	/**
+	 * Set the paint mode
+	 */
+	@Override
+	public void setPaintMode() {
+	}
+	
+	
+	/**
+	 * Set the XOR mode; this is not supported
+	 */
+	@Override
+	public void setXORMode(Color c) {
+	}
+	
+	
+	/**
+	 * Return the background color
+	 */
+	@Override
+	public Color getBackground() {
+		return background;
+	}
+	
+	
+	/**
+	 * Set the background color
+	 */
+	@Override
+	public void setBackground(Color c) {
+		background = c;
+	}
+	
+	
+	/**
+	 * Return the current font
+	 */
+	@Override
+	public Font getFont() {
+		return font;
+	}
+	
+	
+	/**
+	 * Set the current font
+	 */
+	@Override
+	public void setFont(Font f) {
+		if (f != null) font = f;
+	}
+	
+	
+	/**
+	 * Return the current stroke
+	 */
+	@Override
+	public Stroke getStroke() {
+		return stroke;
+	}
+	
+	
+	/**
+	 * Set the current stroke
+	 */
+	@Override
+	public void setStroke(Stroke s) {
+		stroke = s;
+	}
+	
+	
+	/**
+	 * Return the current composite
+	 */
+	@Override
+	public Composite getComposite() {
+		return composite;
+	}
+	
+	
+	/**
+	 * Set the current composite; only the alpha of AlphaComposite is used
+	 */
+	@Override
+	public void setComposite(Composite comp) {
+		composite = comp;
+	}
+	
+	
+	/**
+	 * Return the value of a rendering hint
+	 */
+	@Override
+	public Object getRenderingHint(RenderingHints.Key hintKey) {
+		return hints.get(hintKey);
+	}
+	
+	
+	/**
+	 * Set the value of a rendering hint
+	 */
+	@Override
+	public void setRenderingHint(RenderingHints.Key hintKey, Object hintValue) {
+		hints.put(hintKey, hintValue);
+	}
+	
+	
+	/**
+	 * Return the rendering hints
+	 */
+	@Override
+	public RenderingHints getRenderingHints() {
+		return (RenderingHints) hints.clone();
+	}
+	
+	
+	/**
+	 * Replace the rendering hints
+	 */
+	@Override
+	public void setRenderingHints(Map<?, ?> h) {
+		hints.clear();
+		hints.putAll(h);
+	}
+	
+	
+	/**
+	 * Add rendering hints
+	 */
+	@Override
+	public void addRenderingHints(Map<?, ?> h) {
+		hints.putAll(h);
+	}
+	
+	
+	/**
+	 * Translate the origin
+	 */
+	@Override
+	public void translate(int x, int y) {
+		transform.translate(x, y);
+	}
+	
+	
+	/**
+	 * Translate the origin
+	 */
+	@Override
+	public void translate(double tx, double ty) {
+		transform.translate(tx, ty);
+	}
+	
+	
+	/**
+	 * Rotate the coordinate system
+	 */
+	@Override
+	public void rotate(double theta) {
+		transform.rotate(theta);
+	}
+	
+	
+	/**
+	 * Rotate the coordinate system around the given point
+	 */
+	@Override
+	public void rotate(double theta, double x, double y) {
+		transform.rotate(theta, x, y);
+	}
+	
+	
+	/**
+	 * Scale the coordinate system
+	 */
+	@Override
+	public void scale(double sx, double sy) {
+		transform.scale(sx, sy);
+	}
+	
+	
+	/**
+	 * Shear the coordinate system
+	 */
+	@Override
+	public void shear(double shx, double shy) {
+		transform.shear(shx, shy);
+	}
+	
+	
+	/**
+	 * Compose the current transform with the given transform
+	 */
+	@Override
+	public void transform(AffineTransform tx) {
+		transform.concatenate(tx);
+	}
+	
+	
+	/**
+	 * Set the transform
+	 */
+	@Override
+	public void setTransform(AffineTransform tx) {
+		transform = new AffineTransform(tx);
+	}
+	
+	
+	/**
+	 * Return a copy of the current transform
+	 */
+	@Override
+	public AffineTransform getTransform() {
+		return new AffineTransform(transform);
+	}
+	
+	
+	/**
+	 * Set the clip in the device space
+	 *
+	 * @param s the new clip, or null to remove it
+	 */
+	private void setDeviceClip(Shape s) {
+		clip = s;
+		clipId = null;
+	}
+	
+	
+	/**
+	 * Return the current clip in the user space
+	 */
+	@Override
+	public Shape getClip() {
+		if (clip == null) return null;
+		try {
+			return transform.createInverse().createTransformedShape(clip);
+		}
+		catch (NoninvertibleTransformException e) {
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Return the bounding rectangle of the current clip in the user space
+	 */
+	@Override
+	public Rectangle getClipBounds() {
+		Shape s = getClip();
+		return s == null ? null : s.getBounds();
+	}
+	
+	
+	/**
+	 * Set the clip
+	 */
+	@Override
+	public void setClip(Shape s) {
+		setDeviceClip(s == null ? null : transform.createTransformedShape(s));
+	}
+	
+	
+	/**
+	 * Set the clip to the given rectangle
+	 */
+	@Override
+	public void setClip(int x, int y, int width, int height) {
+		setClip(new Rectangle(x, y, width, height));
+	}
+	
+	
+	/**
+	 * Intersect the clip with the given shape
+	 */
+	@Override
+	public void clip(Shape s) {
+		if (s == null) {
+			setDeviceClip(null);
+			return;
+		}
+		
+		Shape t = transform.createTransformedShape(s);
+		if (clip == null) {
+			setDeviceClip(t);
+		}
+		else {
+			Area a = new Area(clip);
+			a.intersect(new Area(t));
+			setDeviceClip(a);
+		}
+	}
+	
+	
+	/**
+	 * Intersect the clip with the given rectangle
+	 */
+	@Override
+	public void clipRect(int x, int y, int width, int height) {
+		clip(new Rectangle(x, y, width, height));
+	}
+	
+	
+	/**
+	 * The document shared by a graphics context and all its copies
+	 */
+	private static class Output {
+		
+		final int width;
+		final int height;
+		final StringBuilder body;
+		final Graphics2D scratch;
+		int nextId;
+		
+		
+		/**
+		 * Create an instance of class Output
+		 *
+		 * @param width the width of the image
+		 * @param height the height of the image
+		 */
+		Output(int width, int height) {
+			this.width = width;
+			this.height = height;
+			this.body = new StringBuilder();
+			this.scratch = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+			this.nextId = 0;
+		}
+		
+		
+		/**
+		 * Return the document header
+		 *
+		 * @return the header
+		 */
+		String header() {
+			return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<svg xmlns=\"http://www.w3.org/2000/svg\" xmlns:xlink=\"http://www.w3.org/1999/xlink\""
+				+ " version=\"1.1\" width=\"" + width + "\" height=\"" + height + "\""
+				+ " viewBox=\"0 0 " + width + " " + height + "\">\n";
+		}
+	}
+}
@@ -171,6 +171,29 @@ public abstract class Filter<T> implements WithAttribute {
 	 * @return true if the value should be accepted
 	 */
 	public abstract boolean accept(T value);
+	
+	
+	/**
+	 * Evaluate the filter over all values of the given universe. The default
+	 * implementation calls accept() on each value, but filters that can be
+	 * evaluated more efficiently as a whole should override it. The bits of
+	 * the keys that do not have a value are undefined.
+	 * 
+	 * @param universe the universe of values
+	 * @return the bitset of the keys of the accepted values
+	 */
+	public BitSet evaluate(Universe<T> universe) {
+		
+		int size = universe.getUniverseSize();
+		BitSet b = new BitSet(size);
+		
+		for (int i = 0; i < size; i++) {
+			T value = universe.getUniverseElement(i);
+			if (value != null && accept(value)) b.set(i);
+		}
+		
+		return b;
+	}
 
 
 	/**
@@ -208,6 +208,57 @@ public class FilterSet<T> extends Filter<T> {
 	}
 	
 	
+	/**
+	 * Evaluate the filter over all values of the given universe by combining
+	 * the bitsets of the individual sub-filters
+	 * 
+	 * @param universe the universe of values
+	 * @return the bitset of the keys of the accepted values
+	 */
+	public BitSet evaluate(Universe<T> universe) {
+		
+		int size = universe.getUniverseSize();
+		
+		if (filters.isEmpty()) {
+			BitSet b = new BitSet();
+			if (acceptAllIfEmpty) b.set(0, size);
+			return b;
+		}
+		
+		BitSet b = null;
+		
+		switch (operator) {
+		
+		case AND:
+			for (Filter<T> f : filters) {
+				if (b == null) {
+					b = f.evaluate(universe);
+				}
+				else {
+					b.and(f.evaluate(universe));
+				}
+				if (b.isEmpty()) break;
+			}
+			return b;
+			
+		case OR:
+			for (Filter<T> f : filters) {
+				if (b == null) {
+					b = f.evaluate(universe);
+				}
+				else {
+					b.or(f.evaluate(universe));
+				}
+				if (b.nextClearBit(0) >= size) break;
+			}
+			return b;
+			
+		default:
+			throw new IllegalStateException("Invalid operator: " + operator);
+		}
+	}
+	
+	
 	/**
 	 * Return the expression represented by this filter
 	 * 
@@ -44,6 +44,11 @@ public class SetFilter<T> extends Filter<T> {
 	private Set<T> set;
 	protected boolean exclude;
 	private boolean all;
+	
+	// The bitset representation, which is used instead of the set if it is not null
+	
+	private Universe<T> universe;
+	private BitSet keys;
 
 
 	/**
@@ -59,6 +64,9 @@ public class SetFilter<T> extends Filter<T> {
 		
 		this.set = null;
 		this.all = false;
+		
+		this.universe = null;
+		this.keys = null;
 	}
 
 
@@ -78,7 +86,7 @@ public class SetFilter<T> extends Filter<T> {
 	 * @return the expression string
 	 */
 	public String toExpressionString() {
-		if (all || (exclude && (set == null || set.isEmpty()))) return "";
+		if (all || (exclude && isEmpty())) return "";
 		return (exclude ? "not in " : "in ") + name;
 	}
 
@@ -91,17 +99,66 @@ public class SetFilter<T> extends Filter<T> {
 	 */
 	public boolean accept(T value) {
 		if (all) return true;
-		if (set == null) return exclude;
-		boolean b = set.contains(value);
+		boolean b;
+		if (keys != null) {
+			int k = universe.getUniverseKey(value);
+			b = k >= 0 && keys.get(k);
+		}
+		else {
+			if (set == null) return exclude;
+			b = set.contains(value);
+		}
 		return exclude ? !b : b;
 	}
 	
 	
+	/**
+	 * Evaluate the filter over all values of the given universe. If the set
+	 * is represented as a bitset from the same universe, this is just a bitset
+	 * copy, or its complement if the elements are excluded.
+	 * 
+	 * @param universe the universe of values
+	 * @return the bitset of the keys of the accepted values
+	 */
+	public BitSet evaluate(Universe<T> universe) {
+		
+		int size = universe.getUniverseSize();
+		
+		if (all || (keys == null && set == null)) {
+			BitSet b = new BitSet();
+			if (all || exclude) b.set(0, size);
+			return b;
+		}
+		
+		if (keys == null || universe != this.universe) {
+			return super.evaluate(universe);
+		}
+		
+		BitSet b = (BitSet) keys.clone();
+		if (exclude) b.flip(0, size);
+		if (b.length() > size) b.clear(size, b.length());
+		return b;
+	}
+	
+	
+	/**
+	 * Determine whether the set is empty
+	 * 
+	 * @return true if it is empty or not set
+	 */
+	public boolean isEmpty() {
+		if (keys != null) return keys.isEmpty();
+		return set == null || set.isEmpty();
+	}
+	
+	
 	/**
 	 * Clear the set
 	 */
 	public void clear() {
 		set = null;
+		universe = null;
+		keys = null;
 		fireFilterChanged();
 	}
 	
@@ -122,6 +179,8 @@ public class SetFilter<T> extends Filter<T> {
 	public void acceptAll() {
 		all = true;
 		set = null;
+		universe = null;
+		keys = null;
 		fireFilterChanged();
 	}
 	
@@ -134,6 +193,45 @@ public class SetFilter<T> extends Filter<T> {
 	public void set(Set<T> set) {
 		this.all = false;
 		this.set = set;
+		this.universe = null;
+		this.keys = null;
+		fireFilterChanged();
+	}
+	
+	
+	/**
+	 * Set the set using its bitset representation. The filter takes the
+	 * ownership of the bitset, so it should not be modified afterwards.
+	 * 
+	 * @param universe the universe of values
+	 * @param keys the bitset of the keys of the values in the set
+	 */
+	public void set(Universe<T> universe, BitSet keys) {
+		this.all = false;
+		this.set = null;
+		this.universe = universe;
+		this.keys = keys;
 		fireFilterChanged();
 	}
+	
+	
+	/**
+	 * Return the universe of the bitset representation of the set
+	 * 
+	 * @return the universe, or null if the set is not represented as a bitset
+	 */
+	public Universe<T> getUniverse() {
+		return universe;
+	}
+	
+	
+	/**
+	 * Return the bitset representation of the set. The returned bitset
+	 * should not be modified.
+	 * 
+	 * @return the bitset of the keys, or null if the set is not represented as a bitset
+	 */
+	public BitSet getKeys() {
+		return keys;
+	}
 }
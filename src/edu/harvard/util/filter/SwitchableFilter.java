@@ -31,6 +31,8 @@
 
 package edu.harvard.util.filter;
 
+import java.util.*;
+
 
 /**
  * A filter that can be switched on and off
@@ -147,6 +149,25 @@ public class SwitchableFilter<T> extends Filter<T> {
 	}
 	
 	
+	/**
+	 * Evaluate the filter over all values of the given universe
+	 * 
+	 * @param universe the universe of values
+	 * @return the bitset of the keys of the accepted values
+	 */
+	public BitSet evaluate(Universe<T> universe) {
+		
+		if (enabled && filter != null) {
+			return filter.evaluate(universe);
+		}
+		else {
+			BitSet b = new BitSet();
+			if (acceptAllIfDisabled) b.set(0, universe.getUniverseSize());
+			return b;
+		}
+	}
+	
+	
 	/**
 	 * Return the expression represented by this filter
 	 * 
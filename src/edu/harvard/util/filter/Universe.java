@@ -0,0 +1,68 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2010
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util.filter;
+
+
+/**
+ * A universe of values, each identified by a dense integer key. Sets of
+ * values from the same universe can be represented as bitsets, and filters
+ * can be evaluated over the entire universe at once.
+ * 
+ * @author Peter Macko
+ */
+public interface Universe<T> {
+	
+	/**
+	 * Return the size of the universe, which is one more than the largest key
+	 * 
+	 * @return the number of keys
+	 */
+	public int getUniverseSize();
+	
+	
+	/**
+	 * Return the value with the given key
+	 * 
+	 * @param key the key
+	 * @return the value, or null if there is no value with the given key
+	 */
+	public T getUniverseElement(int key);
+	
+	
+	/**
+	 * Return the key of the given value
+	 * 
+	 * @param value the value
+	 * @return the key, or -1 if the value does not belong to the universe
+	 */
+	public int getUniverseKey(T value);
+}
@@ -83,6 +83,18 @@ public abstract class BaseGraph implements Serializable {
 	HashMap<String, PerNodeAttribute<?>> overlayNodeAttributes;
 	
 	
+	// Compact adjacency of the base nodes
+	
+	CompactAdjacency adjacency;
+	boolean adjacencyCompacted;
+	transient int adjacencyVersion;
+	
+	
+	// Reachability index of the base nodes
+	
+	ReachabilityIndex reachability;
+	
+	
 	// Counts of nodes, edges, and summary nodes
 	
 	int numNodes;
@@ -135,6 +147,45 @@ public abstract class BaseGraph implements Serializable {
 		
 		this.overlayNodeAttributes = new HashMap<String, PerNodeAttribute<?>>();
 		
+		this.adjacency = null;
+		this.adjacencyCompacted = false;
+		this.reachability = null;
+		
+		this.adapterJGraphT = null;
+		this.adapterJGraphTInverted = null;
+		this.adapterJGraphTUndirected = null;
+	}
+	
+	
+	/**
+	 * Remove all summary nodes, summary edges, and layouts, together with the
+	 * other data derived from the current set of nodes, such as the per-node
+	 * attribute overlays and the reachability index, so that more nodes and
+	 * edges can be added to the graph. The summarization and the layouts
+	 * need to be recomputed afterwards.
+	 */
+	protected synchronized void clearSummaries() {
+		
+		for (BaseNode n : nodes) {
+			if (n == null) continue;
+			n.parent = null;
+			n.depth = 0;
+		}
+		
+		this.summaryNodes = new Vector<BaseSummaryNode>();
+		this.summaryEdges = new Vector<BaseSummaryEdge>();
+		this.summaryEdgesMap = new HashMap<Pair<BaseNode, BaseNode>, BaseSummaryEdge>();
+		
+		this.numSummaryNodes = 0;
+		this.rootSummaryNode = null;
+		this.summarizationActive = true;
+		
+		this.layoutMap = new TreeMap<String, GraphLayout>();
+		this.defaultLayout = null;
+		
+		this.overlayNodeAttributes = new HashMap<String, PerNodeAttribute<?>>();
+		this.reachability = null;
+		
 		this.adapterJGraphT = null;
 		this.adapterJGraphTInverted = null;
 		this.adapterJGraphTUndirected = null;
@@ -160,6 +211,8 @@ public abstract class BaseGraph implements Serializable {
 			throw new IllegalStateException("Cannot add a node to the graph after summary nodes have been created");
 		}
 		
+		invalidateAdjacency();
+		
 		numNodes++;
 		node.index = nodes.size();
 		if (node.id < 0) node.id = node.index;
@@ -189,6 +242,8 @@ public abstract class BaseGraph implements Serializable {
 			throw new IllegalStateException("Cannot add a node to the graph after summary nodes have been created");
 		}
 		
+		invalidateAdjacency();
+		
 		for (int i = nodes.size(); i <= node.index; i++) nodes.add(null);
 		numNodes = nodes.size();
 		
@@ -213,6 +268,8 @@ public abstract class BaseGraph implements Serializable {
 			throw new IllegalStateException("Cannot add an edge to the graph after summary nodes have been created");
 		}
 		
+		invalidateAdjacency();
+		
 		numEdges++;
 		edge.index = edges.size(); 
 		edges.add(edge);
@@ -241,6 +298,8 @@ public abstract class BaseGraph implements Serializable {
 			throw new IllegalStateException("Cannot add an edge to the graph after summary nodes have been created");
 		}
 		
+		invalidateAdjacency();
+		
 		for (int i = edges.size(); i <= edge.index; i++) edges.add(null);
 		numEdges = edges.size();
 		edges.set(edge.index, edge);
@@ -250,6 +309,136 @@ public abstract class BaseGraph implements Serializable {
 	}
 	
 	
+	/**
+	 * Get the compact (CSR) adjacency of the base nodes, building it if necessary.
+	 * The returned structure is valid until the next node or edge is added.
+	 * 
+	 * @return the compact adjacency structure
+	 */
+	public synchronized CompactAdjacency getAdjacency() {
+		if (adjacency == null) adjacency = new CompactAdjacency(this);
+		return adjacency;
+	}
+	
+	
+	/**
+	 * Build the compact adjacency of the base nodes and release the per-node
+	 * edge lists, so that the incoming and outgoing edges of each base node
+	 * become read-only views over the compact structure. This is intended to be
+	 * called once the graph has been loaded; adding a node or an edge afterwards
+	 * is still allowed, but it restores the per-node lists first.
+	 * 
+	 * @return the compact adjacency structure
+	 */
+	public synchronized CompactAdjacency compactAdjacency() {
+		
+		if (adjacency != null && adjacencyCompacted) return adjacency;
+		
+		adjacency = new CompactAdjacency(this);
+		adjacencyCompacted = true;
+		
+		for (BaseNode n : nodes) {
+			if (n == null) continue;
+			n.outgoing = adjacency.outgoingEdgeView(n.index);
+			n.incoming = adjacency.incomingEdgeView(n.index);
+			n.outgoingNodes = adjacency.outgoingNodeView(n.index);
+			n.incomingNodes = adjacency.incomingNodeView(n.index);
+		}
+		
+		return adjacency;
+	}
+	
+	
+	/**
+	 * Get the reachability index of the base nodes, building it if necessary.
+	 * The returned index is valid until the next node or edge is added.
+	 * 
+	 * @return the reachability index
+	 */
+	public synchronized ReachabilityIndex getReachabilityIndex() {
+		if (reachability == null) reachability = new ReachabilityIndex(this);
+		return reachability;
+	}
+	
+	
+	/**
+	 * Get the reachability index of the base nodes only if it has already been
+	 * built and it is still valid, without building it
+	 * 
+	 * @return the reachability index, or null if it is not available
+	 */
+	public synchronized ReachabilityIndex getReachabilityIndexIfAvailable() {
+		return reachability;
+	}
+	
+	
+	/**
+	 * Use a previously computed reachability index, such as one that has been
+	 * loaded together with the graph
+	 * 
+	 * @param index the reachability index for the current contents of this graph
+	 */
+	public synchronized void setReachabilityIndex(ReachabilityIndex index) {
+		
+		if (index.getGraph() != this) {
+			throw new IllegalArgumentException("The reachability index belongs to a different graph");
+		}
+		
+		CompactAdjacency a = getAdjacency();
+		if (index.getNumNodes() != a.getNumNodes() || index.getNumEdges() != a.getNumEdges()) {
+			throw new IllegalArgumentException("The reachability index is out of date");
+		}
+		
+		reachability = index;
+	}
+	
+	
+	/**
+	 * Return the version of the adjacency of the base nodes, which changes
+	 * each time a node or an edge is added, so that the callers can detect
+	 * whether their cached data derived from the graph structure are stale
+	 * 
+	 * @return the adjacency version
+	 */
+	public synchronized int getAdjacencyVersion() {
+		return adjacencyVersion;
+	}
+	
+	
+	/**
+	 * Determine whether the per-node edge lists are views over the compact adjacency
+	 * 
+	 * @return true if the adjacency is compacted
+	 */
+	public boolean isAdjacencyCompacted() {
+		return adjacencyCompacted;
+	}
+	
+	
+	/**
+	 * Drop the compact adjacency, restoring the modifiable per-node edge lists if necessary
+	 */
+	private void invalidateAdjacency() {
+		
+		adjacencyVersion++;
+		reachability = null;
+		if (adjacency == null) return;
+		
+		if (adjacencyCompacted) {
+			for (BaseNode n : nodes) {
+				if (n == null) continue;
+				n.outgoing = new ArrayList<BaseEdge>(n.outgoing);
+				n.incoming = new ArrayList<BaseEdge>(n.incoming);
+				n.outgoingNodes = null;
+				n.incomingNodes = null;
+			}
+		}
+		
+		adjacency = null;
+		adjacencyCompacted = false;
+	}
+	
+	
 	/**
 	 * Add a summary node
 	 * 
@@ -60,11 +60,11 @@ public class BaseNode implements Serializable, Comparable<BaseNode> {
 	
 	// Edges
 	
-	protected ArrayList<BaseEdge> incoming;
-	protected ArrayList<BaseEdge> outgoing;
+	protected List<BaseEdge> incoming;
+	protected List<BaseEdge> outgoing;
 	
-	protected ArrayList<BaseNode> incomingNodes;
-	protected ArrayList<BaseNode> outgoingNodes;
+	protected List<BaseNode> incomingNodes;
+	protected List<BaseNode> outgoingNodes;
 	
 	
 	// Summarization
@@ -175,6 +175,19 @@ public class BaseNode implements Serializable, Comparable<BaseNode> {
 	}
 	
 	
+	/**
+	 * Get a key that identifies the node and its appearance independently of
+	 * its index, so that the same node gets the same key when the graph is
+	 * loaded again. Subclasses with a stable external identity should override
+	 * this.
+	 * 
+	 * @return the structural key
+	 */
+	public String getStructuralKey() {
+		return id + ":" + label;
+	}
+	
+	
 	/**
 	 * Get the original node, if this node is derived
 	 * 
@@ -37,6 +37,7 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 
 import edu.harvard.util.Pair;
@@ -107,10 +108,68 @@ public class BaseSummaryNode extends BaseNode implements java.io.Serializable {
 		}
 		
 		addChild(node);
+		addEdgesOfNewChild(node);
+	}
+	
+	
+	/**
+	 * Move groups of the children of this node into new summary nodes. This has
+	 * the same effect as creating a new summary node for each group and calling
+	 * moveBaseNodeFromParent() for each of its nodes, but the children are removed
+	 * from this node in a single pass.
+	 * 
+	 * @param groups the groups of children
+	 * @return the new summary nodes, in the same order as the groups
+	 */
+	public List<BaseSummaryNode> groupBaseChildren(List<? extends Collection<? extends BaseNode>> groups) {
 		
+		HashSet<BaseNode> moved = new HashSet<BaseNode>();
 		
-		// Add the appropriate edges to this summary node,
-		// and remove those that are now entirely contained in the summary node
+		for (Collection<? extends BaseNode> g : groups) {
+			for (BaseNode node : g) {
+				if (node.parent != this) {
+					throw new IllegalArgumentException("Trying to group a node that is not a child of this node");
+				}
+				if (!moved.add(node)) {
+					throw new IllegalArgumentException("Trying to add a node to more than one group");
+				}
+			}
+		}
+		
+		
+		// Create the summary nodes
+		
+		ArrayList<BaseSummaryNode> result = new ArrayList<BaseSummaryNode>(groups.size());
+		
+		for (Collection<? extends BaseNode> g : groups) {
+			BaseSummaryNode s = graph.newSummaryNode(this);
+			for (BaseNode node : g) {
+				s.addChild(node);
+				s.addEdgesOfNewChild(node);
+			}
+			result.add(s);
+		}
+		
+		
+		// Remove the grouped nodes from this node
+		
+		if (!moved.isEmpty()) {
+			if (children == null) throw new IllegalStateException();
+			children.removeAll(moved);
+			internalEdges = null;
+		}
+		
+		return result;
+	}
+	
+	
+	/**
+	 * Add the appropriate edges of a node that was just moved to this summary node
+	 * from its parent, and remove those that are now entirely contained in this node
+	 * 
+	 * @param node the new child node
+	 */
+	private void addEdgesOfNewChild(BaseNode node) {
 		
 		for (BaseEdge e : node.getIncomingBaseEdges()) {
 			BaseNode n = e.getBaseFrom();
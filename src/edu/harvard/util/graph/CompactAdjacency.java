@@ -0,0 +1,384 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.graph;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * A compact adjacency structure of the base (non-summary) nodes of a graph,
+ * stored in the compressed sparse row (CSR) format. The neighbors of node
+ * with index i are stored at positions offsets[i] to offsets[i+1] - 1 of the
+ * corresponding target and edge index arrays, which allows algorithms to
+ * iterate over the graph by indices without allocating any objects.
+ * 
+ * @author Peter Macko
+ */
+public class CompactAdjacency implements Serializable {
+
+	private static final long serialVersionUID = -2176398409315263385L;
+	
+	
+	// The graph
+	
+	private BaseGraph graph;
+	private int numNodes;
+	private int numEdges;
+	
+	
+	// Outgoing edges
+	
+	private int[] outOffsets;
+	private int[] outTargets;
+	private int[] outEdges;
+	
+	
+	// Incoming edges
+	
+	private int[] inOffsets;
+	private int[] inSources;
+	private int[] inEdges;
+	
+	
+	/**
+	 * Create an instance of class CompactAdjacency from the current contents of the graph
+	 * 
+	 * @param graph the graph
+	 */
+	CompactAdjacency(BaseGraph graph) {
+		
+		this.graph = graph;
+		this.numNodes = graph.nodes.size();
+		this.numEdges = graph.edges.size();
+		
+		
+		// Count the degrees
+		
+		outOffsets = new int[numNodes + 1];
+		inOffsets = new int[numNodes + 1];
+		int count = 0;
+		
+		for (int i = 0; i < numEdges; i++) {
+			BaseEdge e = graph.edges.get(i);
+			if (e == null) continue;
+			outOffsets[e.from.index + 1]++;
+			inOffsets[e.to.index + 1]++;
+			count++;
+		}
+		
+		for (int i = 0; i < numNodes; i++) {
+			outOffsets[i + 1] += outOffsets[i];
+			inOffsets[i + 1] += inOffsets[i];
+		}
+		
+		
+		// Fill in the edges, preserving the order in which they were added
+		
+		outTargets = new int[count];
+		outEdges = new int[count];
+		inSources = new int[count];
+		inEdges = new int[count];
+		
+		int[] outPos = new int[numNodes];
+		int[] inPos = new int[numNodes];
+		System.arraycopy(outOffsets, 0, outPos, 0, numNodes);
+		System.arraycopy(inOffsets, 0, inPos, 0, numNodes);
+		
+		for (int i = 0; i < numEdges; i++) {
+			BaseEdge e = graph.edges.get(i);
+			if (e == null) continue;
+			
+			int p = outPos[e.from.index]++;
+			outTargets[p] = e.to.index;
+			outEdges[p] = i;
+			
+			p = inPos[e.to.index]++;
+			inSources[p] = e.from.index;
+			inEdges[p] = i;
+		}
+	}
+	
+	
+	/**
+	 * Get the graph
+	 * 
+	 * @return the graph
+	 */
+	public BaseGraph getGraph() {
+		return graph;
+	}
+	
+	
+	/**
+	 * Get the number of nodes covered by the structure
+	 * 
+	 * @return the number of nodes, which is one more than the largest base node index
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}
+	
+	
+	/**
+	 * Get the number of edges covered by the structure
+	 * 
+	 * @return the number of edges
+	 */
+	public int getNumEdges() {
+		return outTargets.length;
+	}
+	
+	
+	/**
+	 * Get the out-degree of a node
+	 * 
+	 * @param node the node index
+	 * @return the number of outgoing edges
+	 */
+	public int getOutDegree(int node) {
+		return outOffsets[node + 1] - outOffsets[node];
+	}
+	
+	
+	/**
+	 * Get the in-degree of a node
+	 * 
+	 * @param node the node index
+	 * @return the number of incoming edges
+	 */
+	public int getInDegree(int node) {
+		return inOffsets[node + 1] - inOffsets[node];
+	}
+	
+	
+	/**
+	 * Get the array of offsets into the outgoing edge arrays, indexed by node
+	 * index. The array has one more element than there are nodes. Do not modify.
+	 * 
+	 * @return the array of offsets
+	 */
+	public int[] getOutOffsets() {
+		return outOffsets;
+	}
+	
+	
+	/**
+	 * Get the array of target node indices of the outgoing edges. Do not modify.
+	 * 
+	 * @return the array of node indices
+	 */
+	public int[] getOutTargets() {
+		return outTargets;
+	}
+	
+	
+	/**
+	 * Get the array of edge indices of the outgoing edges. Do not modify.
+	 * 
+	 * @return the array of edge indices
+	 */
+	public int[] getOutEdges() {
+		return outEdges;
+	}
+	
+	
+	/**
+	 * Get the array of offsets into the incoming edge arrays, indexed by node
+	 * index. The array has one more element than there are nodes. Do not modify.
+	 * 
+	 * @return the array of offsets
+	 */
+	public int[] getInOffsets() {
+		return inOffsets;
+	}
+	
+	
+	/**
+	 * Get the array of source node indices of the incoming edges. Do not modify.
+	 * 
+	 * @return the array of node indices
+	 */
+	public int[] getInSources() {
+		return inSources;
+	}
+	
+	
+	/**
+	 * Get the array of edge indices of the incoming edges. Do not modify.
+	 * 
+	 * @return the array of edge indices
+	 */
+	public int[] getInEdges() {
+		return inEdges;
+	}
+	
+	
+	/**
+	 * Get the offsets array for the given direction, where INVERTED traverses
+	 * the incoming edges. The UNDIRECTED direction is not supported here; use
+	 * both the outgoing and the incoming arrays instead.
+	 * 
+	 * @param direction the direction (DIRECTED or INVERTED)
+	 * @return the array of offsets
+	 */
+	public int[] getOffsets(GraphDirection direction) {
+		switch (direction) {
+		case DIRECTED: return outOffsets;
+		case INVERTED: return inOffsets;
+		default: throw new IllegalArgumentException();
+		}
+	}
+	
+	
+	/**
+	 * Get the neighbor array for the given direction, where INVERTED traverses
+	 * the incoming edges
+	 * 
+	 * @param direction the direction (DIRECTED or INVERTED)
+	 * @return the array of node indices
+	 */
+	public int[] getNeighbors(GraphDirection direction) {
+		switch (direction) {
+		case DIRECTED: return outTargets;
+		case INVERTED: return inSources;
+		default: throw new IllegalArgumentException();
+		}
+	}
+	
+	
+	/**
+	 * Get a view of the outgoing edges of a node
+	 * 
+	 * @param node the node index
+	 * @return the read-only list of edges
+	 */
+	List<BaseEdge> outgoingEdgeView(int node) {
+		return new EdgeView(outEdges, outOffsets[node], outOffsets[node + 1]);
+	}
+	
+	
+	/**
+	 * Get a view of the incoming edges of a node
+	 * 
+	 * @param node the node index
+	 * @return the read-only list of edges
+	 */
+	List<BaseEdge> incomingEdgeView(int node) {
+		return new EdgeView(inEdges, inOffsets[node], inOffsets[node + 1]);
+	}
+	
+	
+	/**
+	 * Get a view of the endpoints of the outgoing edges of a node
+	 * 
+	 * @param node the node index
+	 * @return the read-only list of nodes
+	 */
+	List<BaseNode> outgoingNodeView(int node) {
+		return new NodeView(outTargets, outOffsets[node], outOffsets[node + 1]);
+	}
+	
+	
+	/**
+	 * Get a view of the endpoints of the incoming edges of a node
+	 * 
+	 * @param node the node index
+	 * @return the read-only list of nodes
+	 */
+	List<BaseNode> incomingNodeView(int node) {
+		return new NodeView(inSources, inOffsets[node], inOffsets[node + 1]);
+	}
+	
+	
+	/**
+	 * A read-only list of edges backed by a range of an edge index array
+	 */
+	private class EdgeView extends AbstractList<BaseEdge> implements RandomAccess, Serializable {
+		
+		private static final long serialVersionUID = 2790152384446203845L;
+		
+		private int[] array;
+		private int start;
+		private int end;
+		
+		public EdgeView(int[] array, int start, int end) {
+			this.array = array;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public BaseEdge get(int index) {
+			if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException();
+			return graph.edges.get(array[start + index]);
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+	
+	
+	/**
+	 * A read-only list of nodes backed by a range of a node index array
+	 */
+	private class NodeView extends AbstractList<BaseNode> implements RandomAccess, Serializable {
+		
+		private static final long serialVersionUID = -6410962744196851573L;
+		
+		private int[] array;
+		private int start;
+		private int end;
+		
+		public NodeView(int[] array, int start, int end) {
+			this.array = array;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public BaseNode get(int index) {
+			if (index < 0 || index >= end - start) throw new IndexOutOfBoundsException();
+			return graph.nodes.get(array[start + index]);
+		}
+
+		@Override
+		public int size() {
+			return end - start;
+		}
+	}
+}
@@ -31,6 +31,8 @@
 
 package edu.harvard.util.graph;
 
+import edu.harvard.util.filter.Universe;
+
 import java.io.*;
 import java.util.*;
 
@@ -49,6 +51,8 @@ public class Graph<N extends Node<N, E>, E extends Edge<N>, S extends SummaryNod
 	   extends BaseGraph implements Serializable {
 	
 	private static final long serialVersionUID = -7395140102453285124L;
+	
+	private transient NodeUniverse nodeUniverse;
 
 
 	/**
@@ -132,6 +136,33 @@ public class Graph<N extends Node<N, E>, E extends Edge<N>, S extends SummaryNod
 	}
 	
 	
+	/**
+	 * Return the universe of the graph nodes, which uses the node indices as
+	 * the keys. Sets of nodes from this universe can be represented as bitsets.
+	 * 
+	 * @return the node universe
+	 */
+	public synchronized Universe<N> getNodeUniverse() {
+		if (nodeUniverse == null) nodeUniverse = new NodeUniverse();
+		return nodeUniverse;
+	}
+	
+	
+	/**
+	 * Return the index of the node in this graph that corresponds to the
+	 * given node, which is either the node itself or its original
+	 * 
+	 * @param node the node, possibly from a different graph
+	 * @return the node index, or -1 if the node does not belong to the graph
+	 */
+	protected int getCorrespondingNodeIndex(N node) {
+		if (node.getGraph() == this) return node.getIndex();
+		N original = node.getOriginal();
+		if (original.getGraph() == this) return original.getIndex();
+		return -1;
+	}
+	
+	
 	/**
 	 * Get an edge by its index
 	 * 
@@ -187,4 +218,40 @@ public class Graph<N extends Node<N, E>, E extends Edge<N>, S extends SummaryNod
 	public S newSummaryNode(BaseSummaryNode parent) {
 		throw new UnsupportedOperationException();
 	}
+
+
+	/**
+	 * The universe of the graph nodes
+	 */
+	private class NodeUniverse implements Universe<N> {
+
+		/**
+		 * Return the size of the universe
+		 * 
+		 * @return the number of keys
+		 */
+		public int getUniverseSize() {
+			return nodes.size();
+		}
+
+		/**
+		 * Return the value with the given key
+		 * 
+		 * @param key the key
+		 * @return the node, or null if there is no node with the given index
+		 */
+		public N getUniverseElement(int key) {
+			return getNode(key);
+		}
+
+		/**
+		 * Return the key of the given value
+		 * 
+		 * @param value the node
+		 * @return the node index, or -1 if the node does not belong to the graph
+		 */
+		public int getUniverseKey(N value) {
+			return getCorrespondingNodeIndex(value);
+		}
+	}
 }
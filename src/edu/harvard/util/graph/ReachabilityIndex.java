@@ -0,0 +1,935 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.graph;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import edu.harvard.util.ColumnarReader;
+import edu.harvard.util.ColumnarWriter;
+import edu.harvard.util.ParserException;
+
+
+/**
+ * A reachability index over the base nodes of a graph, which answers the
+ * ancestor and descendant queries mostly without traversing the graph. It
+ * uses the tree-cover interval labeling: the nodes are numbered in the
+ * postorder of a depth-first search, so that every DFS subtree occupies a
+ * contiguous range of positions, and each strongly connected component is
+ * labeled with a sorted list of disjoint intervals that cover the positions
+ * of the nodes reachable from it. The labels are computed bottom-up during
+ * Tarjan's algorithm by merging the intervals of the successor components
+ * into the interval of the DFS subtree.
+ * 
+ * Since the exact labels can grow large on graphs with a dense transitive
+ * closure, each label is limited to a fixed number of intervals by merging
+ * the intervals that are closest to each other. A merged interval is marked
+ * as approximate: it contains all reachable positions within its range, but
+ * possibly also some that are not reachable. The queries accept or reject
+ * most nodes directly from the labels, and they traverse the graph only
+ * through the nodes that have approximate labels, pruning every branch
+ * whose label rules out the target.
+ * 
+ * The index is built for both directions and it is valid until the next
+ * node or edge is added to the graph.
+ * 
+ * @author Peter Macko
+ */
+public class ReachabilityIndex implements Serializable {
+
+	private static final long serialVersionUID = 4271580317265240896L;
+	
+	
+	// The maximum number of intervals per label
+	
+	public static final int MAX_INTERVALS = 4;
+	
+	
+	// The graph
+	
+	private BaseGraph graph;
+	private int numNodes;
+	private int numEdges;
+	
+	
+	// The labeling in each direction
+	
+	private Labeling descendants;
+	private Labeling ancestors;
+	
+	
+	/**
+	 * Create an instance of class ReachabilityIndex from the current contents of the graph
+	 * 
+	 * @param graph the graph
+	 */
+	ReachabilityIndex(BaseGraph graph) {
+		
+		CompactAdjacency a = graph.getAdjacency();
+		
+		if (a.getNumNodes() >= 1 << 30) {
+			throw new UnsupportedOperationException("The graph is too large to be indexed");
+		}
+		
+		this.graph = graph;
+		this.numNodes = a.getNumNodes();
+		this.numEdges = a.getNumEdges();
+		
+		this.descendants = Labeling.build(numNodes, a.getOutOffsets(), a.getOutTargets(), a.getInOffsets());
+		this.ancestors = Labeling.build(numNodes, a.getInOffsets(), a.getInSources(), a.getOutOffsets());
+	}
+	
+	
+	/**
+	 * Create an instance of class ReachabilityIndex from the loaded labels
+	 * 
+	 * @param graph the graph
+	 * @param numNodes the number of nodes
+	 * @param numEdges the number of edges
+	 * @param descendants the labeling of the descendants
+	 * @param ancestors the labeling of the ancestors
+	 */
+	private ReachabilityIndex(BaseGraph graph, int numNodes, int numEdges,
+			Labeling descendants, Labeling ancestors) {
+		
+		this.graph = graph;
+		this.numNodes = numNodes;
+		this.numEdges = numEdges;
+		this.descendants = descendants;
+		this.ancestors = ancestors;
+	}
+	
+	
+	/**
+	 * Get the graph
+	 * 
+	 * @return the graph
+	 */
+	public BaseGraph getGraph() {
+		return graph;
+	}
+	
+	
+	/**
+	 * Get the number of nodes covered by the index
+	 * 
+	 * @return the number of nodes, which is one more than the largest base node index
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}
+	
+	
+	/**
+	 * Get the number of edges covered by the index
+	 * 
+	 * @return the number of edges
+	 */
+	public int getNumEdges() {
+		return numEdges;
+	}
+	
+	
+	/**
+	 * Get the labeling for the given direction
+	 * 
+	 * @param direction the direction (DIRECTED for descendants, INVERTED for ancestors)
+	 * @return the labeling
+	 */
+	private Labeling getLabeling(GraphDirection direction) {
+		switch (direction) {
+		case DIRECTED: return descendants;
+		case INVERTED: return ancestors;
+		default: throw new IllegalArgumentException();
+		}
+	}
+	
+	
+	/**
+	 * Determine whether one node is reachable from another. The graph is
+	 * traversed only through the nodes with approximate labels that do
+	 * not rule out the target.
+	 * 
+	 * @param from the index of the start node
+	 * @param to the index of the target node
+	 * @param direction the direction (DIRECTED to follow the outgoing edges, INVERTED for the incoming edges)
+	 * @return true if the target node is reachable
+	 */
+	public boolean reaches(int from, int to, GraphDirection direction) {
+		
+		if (from == to) return true;
+		
+		Labeling l = getLabeling(direction);
+		int p = l.positions[to];
+		
+		int i = l.find(l.components[from], p);
+		if (i < 0) return false;
+		if (!l.isApproximate(i)) return true;
+		
+		
+		// Search through the approximate labels
+		
+		CompactAdjacency a = graph.getAdjacency();
+		int[] offsets = a.getOffsets(direction);
+		int[] neighbors = a.getNeighbors(direction);
+		
+		BitSet visited = new BitSet(numNodes);
+		int[] stack = new int[64];
+		int top = 0;
+		
+		stack[top++] = from;
+		visited.set(from);
+		
+		while (top > 0) {
+			int x = stack[--top];
+			
+			for (int k = offsets[x]; k < offsets[x + 1]; k++) {
+				int w = neighbors[k];
+				if (w == to) return true;
+				if (visited.get(w)) continue;
+				visited.set(w);
+				
+				i = l.find(l.components[w], p);
+				if (i < 0) continue;
+				if (!l.isApproximate(i)) return true;
+				
+				if (top == stack.length) stack = Arrays.copyOf(stack, 2 * stack.length);
+				stack[top++] = w;
+			}
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Get the nodes reachable from the given node, including the node itself
+	 * 
+	 * @param node the node index
+	 * @param direction the direction (DIRECTED for descendants, INVERTED for ancestors)
+	 * @return the array of node indices
+	 */
+	public int[] getReachable(int node, GraphDirection direction) {
+		
+		Labeling l = getLabeling(direction);
+		BitSet reached = getReachablePositions(l, node, direction);
+		
+		int[] r = new int[reached.cardinality()];
+		int k = 0;
+		for (int p = reached.nextSetBit(0); p >= 0; p = reached.nextSetBit(p + 1)) {
+			r[k++] = l.order[p];
+		}
+		
+		return r;
+	}
+	
+	
+	/**
+	 * Get the set of nodes reachable from the given node, including the node itself
+	 * 
+	 * @param node the node index
+	 * @param direction the direction (DIRECTED for descendants, INVERTED for ancestors)
+	 * @return the bitset of node indices
+	 */
+	public BitSet getReachableSet(int node, GraphDirection direction) {
+		
+		Labeling l = getLabeling(direction);
+		BitSet reached = getReachablePositions(l, node, direction);
+		
+		BitSet r = new BitSet(numNodes);
+		for (int p = reached.nextSetBit(0); p >= 0; p = reached.nextSetBit(p + 1)) {
+			r.set(l.order[p]);
+		}
+		
+		return r;
+	}
+	
+	
+	/**
+	 * Get the positions of the nodes reachable from the given node. The graph
+	 * is traversed only through the nodes with approximate labels; the exact
+	 * labels are copied directly.
+	 * 
+	 * @param l the labeling for the given direction
+	 * @param node the node index
+	 * @param direction the direction
+	 * @return the bitset of positions
+	 */
+	private BitSet getReachablePositions(Labeling l, int node, GraphDirection direction) {
+		
+		
+		// Collect the positions of the reachable nodes. A position is set either
+		// if its node has already been visited or if it is in the exact label
+		// of a visited node, which then also contains everything reachable from it.
+		
+		BitSet reached = new BitSet(numNodes);
+		
+		if (!l.approximate.get(l.components[node])) {
+			l.collect(l.components[node], reached);
+		}
+		else {
+			CompactAdjacency a = graph.getAdjacency();
+			int[] offsets = a.getOffsets(direction);
+			int[] neighbors = a.getNeighbors(direction);
+			
+			int[] queue = new int[64];
+			int head = 0;
+			int tail = 0;
+			
+			queue[tail++] = node;
+			reached.set(l.positions[node]);
+			
+			while (head < tail) {
+				int x = queue[head++];
+				int c = l.components[x];
+				
+				if (!l.approximate.get(c)) {
+					l.collect(c, reached);
+					continue;
+				}
+				
+				for (int k = offsets[x]; k < offsets[x + 1]; k++) {
+					int pw = l.positions[neighbors[k]];
+					if (reached.get(pw)) continue;
+					reached.set(pw);
+					
+					if (tail == queue.length) {
+						if (head > 0) {
+							System.arraycopy(queue, head, queue, 0, tail - head);
+							tail -= head;
+							head = 0;
+						}
+						if (tail == queue.length) queue = Arrays.copyOf(queue, 2 * queue.length);
+					}
+					queue[tail++] = neighbors[k];
+				}
+			}
+		}
+		
+		return reached;
+	}
+	
+	
+	/**
+	 * Write the index to a binary columnar file
+	 * 
+	 * @param w the columnar writer
+	 * @throws IOException on I/O error
+	 */
+	public void writeToBinary(ColumnarWriter w) throws IOException {
+		
+		w.writeInt(numNodes);
+		w.writeInt(numEdges);
+		
+		for (Labeling l : new Labeling[] { descendants, ancestors }) {
+			w.writeInts(l.positions, l.positions.length);
+			w.writeInts(l.components, l.components.length);
+			w.writeInts(l.labelOffsets, l.labelOffsets.length);
+			w.writeInts(l.labels, l.labels.length);
+		}
+	}
+	
+	
+	/**
+	 * Write a placeholder for an index that has not been computed, so that the
+	 * index is rebuilt on demand after the file is loaded
+	 * 
+	 * @param w the columnar writer
+	 * @throws IOException on I/O error
+	 */
+	public static void writeMissingToBinary(ColumnarWriter w) throws IOException {
+		w.writeInt(-1);
+	}
+	
+	
+	/**
+	 * Load the index from a binary columnar file written by writeToBinary()
+	 * or writeMissingToBinary(). The index is returned only if it matches
+	 * the current contents of the graph.
+	 * 
+	 * @param graph the graph
+	 * @param r the columnar reader
+	 * @return the index, or null if it is missing or stale
+	 * @throws ParserException on error
+	 */
+	public static ReachabilityIndex loadFromBinary(BaseGraph graph, ColumnarReader r) throws ParserException {
+		
+		int numNodes = r.readInt();
+		if (numNodes < 0) return null;
+		int numEdges = r.readInt();
+		
+		Labeling[] labelings = new Labeling[2];
+		for (int i = 0; i < labelings.length; i++) {
+			
+			Labeling l = new Labeling();
+			l.positions = r.readInts();
+			l.components = r.readInts();
+			l.labelOffsets = r.readInts();
+			l.labels = r.readInts();
+			
+			if (l.positions.length != numNodes || l.components.length != numNodes
+					|| l.labelOffsets.length == 0
+					|| l.labels.length != 2 * l.labelOffsets[l.labelOffsets.length - 1]) {
+				throw new ParserException("Inconsistent reachability index");
+			}
+			
+			l.finish();
+			labelings[i] = l;
+		}
+		
+		CompactAdjacency a = graph.getAdjacency();
+		if (a.getNumNodes() != numNodes || a.getNumEdges() != numEdges) return null;
+		
+		return new ReachabilityIndex(graph, numNodes, numEdges, labelings[0], labelings[1]);
+	}
+	
+	
+	/**
+	 * The interval labeling for one direction
+	 */
+	private static class Labeling implements Serializable {
+		
+		private static final long serialVersionUID = -3546310726470186529L;
+		
+		
+		// The DFS postorder position of each node, and the node at each position
+		
+		int[] positions;
+		int[] order;
+		
+		
+		// The strongly connected component of each node
+		
+		int[] components;
+		
+		
+		// The labels of the components: the offsets into the label array (in
+		// intervals), and the intervals as pairs of the start (inclusive) and
+		// the end (exclusive) positions, where the end of an approximate
+		// interval is stored as its bitwise complement
+		
+		int[] labelOffsets;
+		int[] labels;
+		
+		
+		// The components that have at least one approximate interval
+		
+		BitSet approximate;
+		
+		
+		/**
+		 * Compute the derived fields
+		 */
+		void finish() {
+			
+			order = new int[positions.length];
+			for (int n = 0; n < positions.length; n++) order[positions[n]] = n;
+			
+			approximate = new BitSet(labelOffsets.length - 1);
+			for (int c = 0; c < labelOffsets.length - 1; c++) {
+				for (int i = labelOffsets[c]; i < labelOffsets[c + 1]; i++) {
+					if (labels[2 * i + 1] < 0) approximate.set(c);
+				}
+			}
+		}
+		
+		
+		/**
+		 * Find the interval of the label of a component that contains the given position
+		 * 
+		 * @param c the component
+		 * @param p the position
+		 * @return the interval number, or -1 if not found
+		 */
+		int find(int c, int p) {
+			
+			int lo = labelOffsets[c];
+			int hi = labelOffsets[c + 1] - 1;
+			int first = lo;
+			
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				if (labels[2 * mid] <= p) lo = mid + 1; else hi = mid - 1;
+			}
+			
+			if (hi < first) return -1;
+			int end = labels[2 * hi + 1];
+			return p < (end < 0 ? ~end : end) ? hi : -1;
+		}
+		
+		
+		/**
+		 * Determine whether an interval is approximate
+		 * 
+		 * @param i the interval number
+		 * @return true if it is approximate
+		 */
+		boolean isApproximate(int i) {
+			return labels[2 * i + 1] < 0;
+		}
+		
+		
+		/**
+		 * Add the exact intervals of the label of a component to the given set of positions
+		 * 
+		 * @param c the component
+		 * @param set the set of positions
+		 */
+		void collect(int c, BitSet set) {
+			for (int i = labelOffsets[c]; i < labelOffsets[c + 1]; i++) {
+				if (labels[2 * i + 1] >= 0) set.set(labels[2 * i], labels[2 * i + 1]);
+			}
+		}
+		
+		
+		/**
+		 * Build the labeling. The labels are computed when each component is
+		 * popped by Tarjan's algorithm, at which point all of its successors
+		 * have already been labeled.
+		 * 
+		 * @param numNodes the number of nodes
+		 * @param offsets the adjacency offsets
+		 * @param neighbors the adjacency neighbors
+		 * @param reverseOffsets the adjacency offsets in the opposite direction
+		 * @return the labeling
+		 */
+		static Labeling build(int numNodes, final int[] offsets, final int[] neighbors, int[] reverseOffsets) {
+			
+			final IntervalList labels = new IntervalList();
+			final int[] componentOffsets = new int[numNodes + 1];
+			
+			ComponentSearch search = new ComponentSearch(numNodes) {
+				
+				private long[] scratch = new long[16];
+				private int[] gaps = new int[16];
+				
+				@Override
+				protected boolean componentFinished(int c, int first, int end, int subtreeStart) {
+					
+					// Start with the DFS subtree of the root, and add the root
+					// itself if it was placed at the end
+					
+					int subtreeEnd = numPositions;
+					int numScratch = 0;
+					
+					if (subtreeStart < subtreeEnd) {
+						scratch[numScratch++] = encode(subtreeStart, subtreeEnd, false);
+					}
+					
+					int p = position[sccStack[first]];
+					if (p >= subtreeEnd) {
+						scratch[numScratch++] = encode(p, p + 1, false);
+					}
+					
+					
+					// Add the intervals of the successors that are not already
+					// covered by the DFS subtree
+					
+					for (int k = first; k < end; k++) {
+						int x = sccStack[k];
+						for (int i = offsets[x]; i < offsets[x + 1]; i++) {
+							int d = component[neighbors[i]];
+							if (d == c) continue;
+							
+							for (int j = componentOffsets[d]; j < componentOffsets[d + 1]; j++) {
+								int is = labels.start(j);
+								int ie = labels.end(j);
+								boolean ia = ie < 0;
+								if (ia) ie = ~ie;
+								if (is >= subtreeStart && ie <= subtreeEnd) continue;
+								
+								if (numScratch == scratch.length) scratch = Arrays.copyOf(scratch, 2 * scratch.length);
+								scratch[numScratch++] = encode(is, ie, ia);
+							}
+						}
+					}
+					
+					
+					// Sort and merge the overlapping and adjacent intervals
+					
+					if (numScratch > 1) Arrays.sort(scratch, 0, numScratch);
+					
+					int n = 0;
+					for (int i = 1; i < numScratch; i++) {
+						if (start(scratch[i]) <= end(scratch[n])) {
+							int e = Math.max(end(scratch[n]), end(scratch[i]));
+							scratch[n] = encode(start(scratch[n]), e, approximate(scratch[n]) || approximate(scratch[i]));
+						}
+						else {
+							scratch[++n] = scratch[i];
+						}
+					}
+					n++;
+					
+					
+					// If there are too many intervals, merge the ones separated by
+					// the smallest gaps, making them approximate
+					
+					if (n > MAX_INTERVALS) {
+						if (gaps.length < n) gaps = new int[Math.max(n, 2 * gaps.length)];
+						for (int i = 0; i < n - 1; i++) gaps[i] = start(scratch[i + 1]) - end(scratch[i]);
+						Arrays.sort(gaps, 0, n - 1);
+						
+						int toMerge = n - MAX_INTERVALS;
+						int threshold = gaps[toMerge - 1];
+						int atThreshold = toMerge;
+						for (int i = 0; i < toMerge; i++) if (gaps[i] < threshold) atThreshold--;
+						
+						int m = 0;
+						for (int i = 1; i < n; i++) {
+							int gap = start(scratch[i]) - end(scratch[m]);
+							boolean merge = gap < threshold;
+							if (gap == threshold && atThreshold > 0) {
+								atThreshold--;
+								merge = true;
+							}
+							if (merge) {
+								scratch[m] = encode(start(scratch[m]), end(scratch[i]), true);
+							}
+							else {
+								scratch[++m] = scratch[i];
+							}
+						}
+						n = m + 1;
+					}
+					
+					for (int i = 0; i < n; i++) {
+						int e = end(scratch[i]);
+						labels.add(start(scratch[i]), approximate(scratch[i]) ? ~e : e);
+					}
+					componentOffsets[c + 1] = labels.size();
+					
+					return true;
+				}
+			};
+			
+			search.run(offsets, neighbors, reverseOffsets);
+			
+			
+			// Finish
+			
+			Labeling l = new Labeling();
+			l.positions = search.position;
+			l.components = search.component;
+			l.labelOffsets = Arrays.copyOf(componentOffsets, search.numComponents + 1);
+			l.labels = labels.toArray();
+			
+			search = null;
+			l.finish();
+			
+			return l;
+		}
+		
+		
+		/**
+		 * Encode an interval for sorting
+		 * 
+		 * @param start the start position (inclusive)
+		 * @param end the end position (exclusive)
+		 * @param approximate whether the interval is approximate
+		 * @return the encoded interval
+		 */
+		private static long encode(int start, int end, boolean approximate) {
+			return ((long) start << 33) | ((long) end << 1) | (approximate ? 1 : 0);
+		}
+		
+		
+		/**
+		 * Decode the start of an interval
+		 * 
+		 * @param v the encoded interval
+		 * @return the start position
+		 */
+		private static int start(long v) {
+			return (int) (v >>> 33);
+		}
+		
+		
+		/**
+		 * Decode the end of an interval
+		 * 
+		 * @param v the encoded interval
+		 * @return the end position
+		 */
+		private static int end(long v) {
+			return (int) ((v >>> 1) & 0xffffffffL);
+		}
+		
+		
+		/**
+		 * Decode whether an interval is approximate
+		 * 
+		 * @param v the encoded interval
+		 * @return true if it is approximate
+		 */
+		private static boolean approximate(long v) {
+			return (v & 1) != 0;
+		}
+	}
+	
+	
+	/**
+	 * An iterative version of Tarjan's algorithm for the strongly connected
+	 * components, which numbers the nodes in the DFS postorder and finds the
+	 * components in the reverse topological order
+	 */
+	private static abstract class ComponentSearch {
+		
+		// The DFS state, indexed by the node index
+		
+		protected int[] index;
+		protected int[] low;
+		protected int[] component;
+		protected int[] position;
+		
+		
+		// The stack of the nodes that are not yet assigned to a component,
+		// and the DFS call stack
+		
+		protected int[] sccStack;
+		protected int[] callStack;
+		protected int[] callCursor;
+		protected int[] callStart;
+		
+		
+		// The counters
+		
+		protected int counter;
+		protected int numPositions;
+		protected int numComponents;
+		
+		
+		/**
+		 * Create an instance of class ComponentSearch
+		 * 
+		 * @param numNodes the number of nodes
+		 */
+		public ComponentSearch(int numNodes) {
+			
+			index = new int[numNodes];
+			low = new int[numNodes];
+			component = new int[numNodes];
+			position = new int[numNodes];
+			sccStack = new int[numNodes];
+			callStack = new int[numNodes];
+			callCursor = new int[numNodes];
+			callStart = new int[numNodes];
+			
+			Arrays.fill(index, -1);
+			Arrays.fill(component, -1);
+		}
+		
+		
+		/**
+		 * Callback for when a component has been found. Its nodes are stored
+		 * in the sccStack, starting with the root, and they have just been
+		 * assigned consecutive positions in the DFS postorder, unless the
+		 * component is a single node without predecessors, which has its
+		 * position at the end. The rest of the DFS subtree of the root spans
+		 * the positions from subtreeStart to the current number of positions.
+		 * All successor components have already been finished.
+		 * 
+		 * @param c the component number
+		 * @param first the position of the first node on the sccStack
+		 * @param end the position after the last node on the sccStack
+		 * @param subtreeStart the first position of the DFS subtree of the root
+		 * @return true to continue, or false to stop the search
+		 */
+		protected abstract boolean componentFinished(int c, int first, int end, int subtreeStart);
+		
+		
+		/**
+		 * Run the search. It starts from the nodes without predecessors, and
+		 * then from the nodes that have not been reached yet.
+		 * 
+		 * @param offsets the adjacency offsets
+		 * @param neighbors the adjacency neighbors
+		 * @param reverseOffsets the adjacency offsets in the opposite direction
+		 * @return true if finished, or false if stopped by the callback
+		 */
+		public boolean run(int[] offsets, int[] neighbors, int[] reverseOffsets) {
+			
+			int numNodes = index.length;
+			int sccTop = 0;
+			int callTop = 0;
+			
+			
+			// The nodes without predecessors cannot be reached from any other
+			// node, so put them at the end, where they do not split the intervals
+			
+			int numSources = 0;
+			for (int x = 0; x < numNodes; x++) {
+				if (reverseOffsets[x + 1] == reverseOffsets[x]) numSources++;
+			}
+			
+			int sourcePosition = numNodes - numSources;
+			for (int x = 0; x < numNodes; x++) {
+				if (reverseOffsets[x + 1] == reverseOffsets[x]) position[x] = sourcePosition++;
+			}
+			
+			
+			// Run the search
+			
+			for (int r = 0; r < 2 * numNodes; r++) {
+				int s = r < numNodes ? r : r - numNodes;
+				if (index[s] >= 0) continue;
+				if (r < numNodes && reverseOffsets[s + 1] > reverseOffsets[s]) continue;
+				
+				index[s] = low[s] = counter++;
+				sccStack[sccTop++] = s;
+				callStack[callTop] = s;
+				callCursor[callTop] = offsets[s];
+				callStart[callTop] = numPositions;
+				callTop++;
+				
+				while (callTop > 0) {
+					int v = callStack[callTop - 1];
+					
+					
+					// Descend to the next unvisited neighbor
+					
+					if (callCursor[callTop - 1] < offsets[v + 1]) {
+						int w = neighbors[callCursor[callTop - 1]++];
+						if (index[w] < 0) {
+							index[w] = low[w] = counter++;
+							sccStack[sccTop++] = w;
+							callStack[callTop] = w;
+							callCursor[callTop] = offsets[w];
+							callStart[callTop] = numPositions;
+							callTop++;
+						}
+						else if (component[w] < 0) {
+							if (index[w] < low[v]) low[v] = index[w];
+						}
+						continue;
+					}
+					
+					
+					// Finish the node, and if it is the root of a component, pop it
+					
+					callTop--;
+					if (callTop > 0) {
+						int u = callStack[callTop - 1];
+						if (low[v] < low[u]) low[u] = low[v];
+					}
+					if (low[v] != index[v]) continue;
+					
+					int c = numComponents++;
+					int first = sccTop;
+					do {
+						component[sccStack[--first]] = c;
+					}
+					while (sccStack[first] != v);
+					
+					for (int k = first; k < sccTop; k++) {
+						int x = sccStack[k];
+						if (reverseOffsets[x + 1] > reverseOffsets[x]) position[x] = numPositions++;
+					}
+					
+					if (!componentFinished(c, first, sccTop, callStart[callTop])) return false;
+					sccTop = first;
+				}
+			}
+			
+			return true;
+		}
+	}
+	
+	
+	/**
+	 * A growable list of intervals
+	 */
+	private static class IntervalList {
+		
+		private int[] a = new int[32];
+		private int size = 0;
+		
+		
+		/**
+		 * Append an interval
+		 * 
+		 * @param start the start (inclusive)
+		 * @param end the end (exclusive)
+		 */
+		public void add(int start, int end) {
+			if (2 * size + 2 > a.length) a = Arrays.copyOf(a, 2 * a.length);
+			a[2 * size] = start;
+			a[2 * size + 1] = end;
+			size++;
+		}
+		
+		
+		/**
+		 * Return the start of an interval
+		 * 
+		 * @param i the interval number
+		 * @return the start (inclusive)
+		 */
+		public int start(int i) {
+			return a[2 * i];
+		}
+		
+		
+		/**
+		 * Return the end of an interval
+		 * 
+		 * @param i the interval number
+		 * @return the end (exclusive)
+		 */
+		public int end(int i) {
+			return a[2 * i + 1];
+		}
+		
+		
+		/**
+		 * Return the number of intervals
+		 * 
+		 * @return the size
+		 */
+		public int size() {
+			return size;
+		}
+		
+		
+		/**
+		 * Return the intervals as pairs of the start and the end positions
+		 * 
+		 * @return a new array
+		 */
+		public int[] toArray() {
+			return Arrays.copyOf(a, 2 * size);
+		}
+	}
+}
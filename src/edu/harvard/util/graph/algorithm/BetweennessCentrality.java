@@ -1,15 +1,8 @@
 package edu.harvard.util.graph.algorithm;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Random;
 
-import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.FloydWarshallShortestPaths;
-
-import edu.harvard.util.Cancelable;
-import edu.harvard.util.graph.BaseEdge;
 import edu.harvard.util.graph.BaseGraph;
 import edu.harvard.util.graph.BaseNode;
 import edu.harvard.util.graph.GraphDirection;
@@ -21,23 +14,27 @@ import edu.harvard.util.job.JobObserver;
 
 
 /**
- * The algorithm for computing an approximation to the Betweenness Centrality.
+ * The algorithm for computing the Betweenness Centrality using Brandes'
+ * algorithm, which runs one BFS per source node and accounts for all
+ * shortest paths. The sources are processed in parallel. For very large
+ * graphs, the metric can be approximated using a random sample of pivots.
  * 
  * More info: http://en.wikipedia.org/wiki/Centrality#Betweenness_centrality
  * 
  * @author Peter Macko
  */
-public class BetweennessCentrality implements Cancelable {
+public class BetweennessCentrality extends SourceTraversal {
 	
 	public static final String ATTRIBUTE_NAME = "Betweenness Centrality";
 	public static final String ATTRIBUTE_NAME_INVERTED = "Betweenness Centrality -- Inverted";
 	public static final String ATTRIBUTE_NAME_UNDIRECTED = "Betweenness Centrality -- Undirected";
 
-	private BaseGraph graph;
-	private GraphDirection direction;
 	private String name;
 	
-	private transient volatile boolean forceCancel = false;
+	private int pivots;
+	private long seed;
+	
+	private double[] centrality;
 	
 	
 	/**
@@ -58,8 +55,10 @@ public class BetweennessCentrality implements Cancelable {
 	 */
 	public BetweennessCentrality(BaseGraph graph, GraphDirection direction) {
 		
-		this.graph = graph;
-		this.direction = direction;
+		super(graph, direction);
+		
+		this.pivots = 0;
+		this.seed = 0;
 		
 		switch (direction) {
 		case DIRECTED: name = ATTRIBUTE_NAME; break;
@@ -90,6 +89,19 @@ public class BetweennessCentrality implements Cancelable {
 	}
 	
 	
+	/**
+	 * Use the approximate algorithm, which runs the BFS only from the given
+	 * number of randomly chosen pivots and extrapolates the result
+	 * 
+	 * @param pivots the number of pivots, or 0 to compute the exact metric
+	 * @param seed the random seed used to choose the pivots
+	 */
+	public void setApproximate(int pivots, long seed) {
+		this.pivots = Math.max(0, pivots);
+		this.seed = seed;
+	}
+	
+	
 	/**
 	 * Compute the metric
 	 * 
@@ -114,122 +126,71 @@ public class BetweennessCentrality implements Cancelable {
 	 */
 	public PerNodeComparableAttribute<Double> compute(JobObserver observer) throws JobCanceledException {
 		
-		Graph<BaseNode, BaseEdge> g = graph.getBaseJGraphTAdapter(direction);
-		Collection<BaseNode> nodes = graph.getBaseNodes();
-		forceCancel = false;
-		
-		String name;
-		switch (direction) {
-		case DIRECTED: name = ATTRIBUTE_NAME; break;
-		case UNDIRECTED: name = ATTRIBUTE_NAME_UNDIRECTED; break;
-		case INVERTED: name = ATTRIBUTE_NAME_INVERTED; break;
-		default: throw new IllegalStateException("Invalid graph direction");
-		}
-		
 		PerNodeComparableAttribute<Double> result = new PerNodeComparableAttribute<Double>(name);
-
-		
-		// Initialize the shortest path algorithm
 		
 		if (observer != null) {
 			observer.makeIndeterminate();
 		}
-
-		FloydWarshallShortestPaths<BaseNode, BaseEdge> shortestPaths =
-				new FloydWarshallShortestPaths<BaseNode, BaseEdge>(g);
-		
-		int nodeCount = 0;
-		if (observer != null) {
-			observer.setRange(0, nodes.size());
-		}
 		
+		initializeAdjacency();
+		int n = liveNodes.length;
 		
-		// Get the shortest paths for each node
 		
-		// Note: This does not account for the possible existence of multiple shortest
-		// paths between two nodes
+		// Choose the source nodes among the existing nodes
 		
-		int n = graph.getBaseNodes().size();
-		boolean directed = direction != GraphDirection.UNDIRECTED;
-		double step = 1.0 / (directed ? ((n - 1) * (n - 2)) : ((n - 1) * (n - 2)) / 2.0);
+		int[] sources;
 		
-		double[] intermediate = new double[graph.getMaxNodeIndexBase() + 1];
-		for (int i = 0; i < intermediate.length; i++) intermediate[i] = Double.MIN_VALUE;
-		
-		for (BaseNode node : nodes) {
-			
-			if (forceCancel) {
-				throw new JobCanceledException();
-			}
-			
-			List<GraphPath<BaseNode, BaseEdge>> paths = shortestPaths.getShortestPaths(node);
-			for (GraphPath<BaseNode, BaseEdge> p : paths) {
-				
-				Iterator<BaseEdge> i = p.getEdgeList().iterator();
-				BaseNode last = p.getStartVertex();
-				
-				if (!i.hasNext()) continue;
-				
-				for (BaseEdge e = i.next(); i.hasNext(); e = i.next()) {
-					
-					BaseNode n1 = e.getBaseFrom();
-					BaseNode n2 = e.getBaseTo();
-					
-					BaseNode other;
-					if (n1 == last) other = n2;
-					else if (n2 == last) other = n1;
-					else if (n1 == p.getEndVertex()) other = n2;
-					else if (n2 == p.getEndVertex()) other = n1;
-					else {
-						System.err.println("Internal Error: not an endpoint");
-						System.err.println("Path from " + p.getStartVertex() + " to " + p.getEndVertex() + ":");
-						Iterator<BaseEdge> j = p.getEdgeList().iterator();
-						for (BaseEdge x = j.next(); j.hasNext(); e = j.next()) {
-							System.err.println("    " + x + (e == x ? "  <== HERE, last=" + last : ""));
-						}
-						throw new InternalError();
-					}
-					
-					if (other == p.getEndVertex() || other == p.getStartVertex()) break;
-					last = other;
-					
-					double d = intermediate[other.getIndex()];
-					
-					if (d < 0) {
-						d = step;
-					}
-					else {
-						d = d + step;
-					}
-					
-					intermediate[other.getIndex()] = d;
-				}
-			}
+		if (pivots > 0 && pivots < n) {
 			
+			// Partial Fisher-Yates shuffle to pick the pivots
 			
-			// Update the observer
+			int[] all = liveNodes.clone();
 			
-			nodeCount++;
-			if (observer != null) {
-				observer.setProgress(nodeCount);
+			Random random = new Random(seed);
+			for (int i = 0; i < pivots; i++) {
+				int j = i + random.nextInt(n - i);
+				int t = all[i]; all[i] = all[j]; all[j] = t;
 			}
+			
+			sources = new int[pivots];
+			System.arraycopy(all, 0, sources, 0, pivots);
 		}
+		else {
+			sources = liveNodes;
+		}
+		
+		
+		// Run Brandes' algorithm from each source
 		
-		for (BaseNode node : nodes) {
-			double d = intermediate[node.getIndex()] ;
-			if (d > 0) result.set(node, d);
+		centrality = new double[numNodes];
+		processSources(sources, observer);
+		
+		
+		// Normalize and extrapolate, if necessary, using the number of existing
+		// nodes. Undirected BFS counts each pair of endpoints twice, which cancels
+		// out with the normalization factor 2 / ((n-1)(n-2)) used for the undirected graphs
+		
+		double step = n <= 2 ? 0 : 1.0 / ((n - 1) * (double) (n - 2));
+		if (sources.length < n) step *= n / (double) sources.length;
+		
+		for (int i = 0; i < numNodes; i++) {
+			BaseNode node = graph.getBaseNode(i);
+			if (node != null) result.set(node, centrality[i] * step);
 		}
 		
+		centrality = null;
 		return result;
 	}
-
-
+	
+	
 	/**
-	 * Cancel the computation
+	 * Create a worker that processes sources
+	 * 
+	 * @return the new worker
 	 */
 	@Override
-	public void cancel() {
-		forceCancel = true;
+	protected Worker createWorker() {
+		return new BrandesWorker();
 	}
 	
 	
@@ -277,4 +238,119 @@ public class BetweennessCentrality implements Cancelable {
 			}
 		};
 	}
+	
+	
+	/**
+	 * A worker that runs Brandes' algorithm from one source at a time and
+	 * accumulates the dependencies in its own array
+	 */
+	private class BrandesWorker implements Worker {
+		
+		private int[] distance;
+		private double[] sigma;
+		private double[] delta;
+		private int[] order;
+		private double[] partial;
+		
+		
+		/**
+		 * Create an instance of the worker
+		 */
+		public BrandesWorker() {
+			distance = new int[numNodes];
+			sigma = new double[numNodes];
+			delta = new double[numNodes];
+			order = new int[numNodes];
+			partial = new double[numNodes];
+			Arrays.fill(distance, -1);
+		}
+		
+		
+		/**
+		 * Process one source node
+		 * 
+		 * @param source the index of the source node
+		 */
+		@Override
+		public void process(int source) {
+			
+			// BFS, counting the number of shortest paths. The order array
+			// doubles as the queue, since it records the visit order.
+			
+			int head = 0, tail = 0;
+			distance[source] = 0;
+			sigma[source] = 1;
+			order[tail++] = source;
+			
+			while (head < tail) {
+				int v = order[head++];
+				int d = distance[v] + 1;
+				double s = sigma[v];
+				
+				for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+					int w = neighbors[p];
+					if (distance[w] < 0) {
+						distance[w] = d;
+						order[tail++] = w;
+					}
+					if (distance[w] == d) sigma[w] += s;
+				}
+				
+				if (neighbors2 != null) {
+					for (int p = offsets2[v]; p < offsets2[v + 1]; p++) {
+						int w = neighbors2[p];
+						if (distance[w] < 0) {
+							distance[w] = d;
+							order[tail++] = w;
+						}
+						if (distance[w] == d) sigma[w] += s;
+					}
+				}
+			}
+			
+			
+			// Accumulate the dependencies in the order of non-increasing distance
+			
+			for (int i = tail - 1; i >= 0; i--) {
+				int v = order[i];
+				int d = distance[v] + 1;
+				double s = sigma[v];
+				double x = 0;
+				
+				for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+					int w = neighbors[p];
+					if (distance[w] == d) x += s / sigma[w] * (1 + delta[w]);
+				}
+				
+				if (neighbors2 != null) {
+					for (int p = offsets2[v]; p < offsets2[v + 1]; p++) {
+						int w = neighbors2[p];
+						if (distance[w] == d) x += s / sigma[w] * (1 + delta[w]);
+					}
+				}
+				
+				delta[v] = x;
+				if (v != source) partial[v] += x;
+			}
+			
+			
+			// Reset the state of the visited nodes
+			
+			for (int i = 0; i < tail; i++) {
+				int v = order[i];
+				distance[v] = -1;
+				sigma[v] = 0;
+				delta[v] = 0;
+			}
+		}
+		
+		
+		/**
+		 * Merge the results of the worker
+		 */
+		@Override
+		public void finish() {
+			for (int i = 0; i < numNodes; i++) centrality[i] += partial[i];
+		}
+	}
 }
@@ -1,14 +1,7 @@
 package edu.harvard.util.graph.algorithm;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.Arrays;
 
-import org.jgrapht.Graph;
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.FloydWarshallShortestPaths;
-
-import edu.harvard.util.Cancelable;
-import edu.harvard.util.graph.BaseEdge;
 import edu.harvard.util.graph.BaseGraph;
 import edu.harvard.util.graph.BaseNode;
 import edu.harvard.util.graph.GraphDirection;
@@ -21,22 +14,39 @@ import edu.harvard.util.job.JobObserver;
 
 /**
  * The algorithm for computing Dangalchev's version of the closeness centrality.
+ * Since the graph is unweighted, the algorithm needs only the hop distances,
+ * which it computes using one BFS per source node, processing the sources
+ * in parallel. For dense graphs, it can instead run a bit-parallel BFS that
+ * advances the frontiers of 64 sources at once.
  * 
  * More info: http://en.wikipedia.org/wiki/Centrality#Closeness_centrality
  * 
  * @author Peter Macko
  */
-public class DangalchevClosenessCentrality implements Cancelable {
+public class DangalchevClosenessCentrality extends SourceTraversal {
 	
 	public static final String ATTRIBUTE_NAME = "Dangalchev's Closeness Centrality";
 	public static final String ATTRIBUTE_NAME_INVERTED = "Dangalchev's Closeness Centrality -- Inverted";
 	public static final String ATTRIBUTE_NAME_UNDIRECTED = "Dangalchev's Closeness Centrality -- Undirected";
+	
+	/**
+	 * The minimum average degree for which AUTO chooses the bitset frontiers
+	 */
+	public static final double BITSET_MIN_AVERAGE_DEGREE = 8;
+	
+	
+	/**
+	 * The traversal mode
+	 */
+	public enum Mode {
+		AUTO, BFS, BITSET
+	}
 
-	private BaseGraph graph;
-	private GraphDirection direction;
 	private String name;
+	private Mode mode;
 	
-	private transient volatile boolean forceCancel = false;
+	private boolean useBitset;
+	private double[] closeness;
 	
 	
 	/**
@@ -57,8 +67,9 @@ public class DangalchevClosenessCentrality implements Cancelable {
 	 */
 	public DangalchevClosenessCentrality(BaseGraph graph, GraphDirection direction) {
 		
-		this.graph = graph;
-		this.direction = direction;
+		super(graph, direction);
+		
+		this.mode = Mode.AUTO;
 		
 		switch (direction) {
 		case DIRECTED: name = ATTRIBUTE_NAME; break;
@@ -89,6 +100,16 @@ public class DangalchevClosenessCentrality implements Cancelable {
 	}
 	
 	
+	/**
+	 * Set the traversal mode
+	 * 
+	 * @param mode the traversal mode (default = AUTO)
+	 */
+	public void setMode(Mode mode) {
+		this.mode = mode;
+	}
+	
+	
 	/**
 	 * Compute the metric
 	 * 
@@ -113,64 +134,53 @@ public class DangalchevClosenessCentrality implements Cancelable {
 	 */
 	public PerNodeComparableAttribute<Double> compute(JobObserver observer) throws JobCanceledException {
 		
-		Graph<BaseNode, BaseEdge> g = graph.getBaseJGraphTAdapter(direction);
-		Collection<BaseNode> nodes = graph.getBaseNodes();
-		forceCancel = false;
-		
 		PerNodeComparableAttribute<Double> result = new PerNodeComparableAttribute<Double>(name);
 
-		
-		// Initialize the shortest path algorithm
-		
 		if (observer != null) {
 			observer.makeIndeterminate();
 		}
-
-		FloydWarshallShortestPaths<BaseNode, BaseEdge> shortestPaths =
-				new FloydWarshallShortestPaths<BaseNode, BaseEdge>(g);
 		
-		int nodeCount = 0;
-		if (observer != null) {
-			observer.setRange(0, nodes.size());
+		initializeAdjacency();
+		int n = numNodes;
+		
+		
+		// Choose the traversal mode
+		
+		switch (mode) {
+		case BFS: useBitset = false; break;
+		case BITSET: useBitset = true; break;
+		default:
+			int edges = offsets[n] + (offsets2 == null ? 0 : offsets2[n]);
+			useBitset = n > 0 && edges / (double) n >= BITSET_MIN_AVERAGE_DEGREE;
 		}
 		
 		
-		// Get the shortest paths for each node
+		// Run the traversals; in the bitset mode, each source is a batch of 64 nodes
 		
-		for (BaseNode node : nodes) {
-			
-			if (forceCancel) {
-				throw new JobCanceledException();
-			}
-			
-			double sum = 0;
-			
-			List<GraphPath<BaseNode, BaseEdge>> paths = shortestPaths.getShortestPaths(node);
-			for (GraphPath<BaseNode, BaseEdge> p : paths) {
-				sum += Math.pow(2, -p.getEdgeList().size());
-			}
-			
-			result.set(node, sum);
-			
-			
-			// Update the observer
-			
-			nodeCount++;
-			if (observer != null) {
-				observer.setProgress(nodeCount);
-			}
+		int[] sources = new int[useBitset ? (n + 63) / 64 : n];
+		for (int i = 0; i < sources.length; i++) sources[i] = i;
+		
+		closeness = new double[n];
+		processSources(sources, observer);
+		
+		for (int i = 0; i < n; i++) {
+			BaseNode node = graph.getBaseNode(i);
+			if (node != null) result.set(node, closeness[i]);
 		}
 		
+		closeness = null;
 		return result;
 	}
-
-
+	
+	
 	/**
-	 * Cancel the computation
+	 * Create a worker that processes sources
+	 * 
+	 * @return the new worker
 	 */
 	@Override
-	public void cancel() {
-		forceCancel = true;
+	protected Worker createWorker() {
+		return useBitset ? new BitsetWorker() : new BFSWorker();
 	}
 	
 	
@@ -218,4 +228,181 @@ public class DangalchevClosenessCentrality implements Cancelable {
 			}
 		};
 	}
+	
+	
+	/**
+	 * A worker that runs a BFS from one source at a time
+	 */
+	private class BFSWorker implements Worker {
+		
+		private int[] distance;
+		private int[] queue;
+		
+		
+		/**
+		 * Create an instance of the worker
+		 */
+		public BFSWorker() {
+			distance = new int[numNodes];
+			queue = new int[numNodes];
+			Arrays.fill(distance, -1);
+		}
+		
+		
+		/**
+		 * Process one source node
+		 * 
+		 * @param source the index of the source node
+		 */
+		@Override
+		public void process(int source) {
+			
+			int head = 0, tail = 0;
+			distance[source] = 0;
+			queue[tail++] = source;
+			
+			double sum = 0;
+			
+			while (head < tail) {
+				int v = queue[head++];
+				int d = distance[v] + 1;
+				
+				for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+					int w = neighbors[p];
+					if (distance[w] < 0) {
+						distance[w] = d;
+						queue[tail++] = w;
+						sum += Math.scalb(1.0, -d);
+					}
+				}
+				
+				if (neighbors2 != null) {
+					for (int p = offsets2[v]; p < offsets2[v + 1]; p++) {
+						int w = neighbors2[p];
+						if (distance[w] < 0) {
+							distance[w] = d;
+							queue[tail++] = w;
+							sum += Math.scalb(1.0, -d);
+						}
+					}
+				}
+			}
+			
+			for (int i = 0; i < tail; i++) distance[queue[i]] = -1;
+			
+			
+			// Each source is processed by exactly one worker, so there is
+			// no need to synchronize
+			
+			closeness[source] = sum;
+		}
+		
+		
+		/**
+		 * Merge the results of the worker
+		 */
+		@Override
+		public void finish() {
+		}
+	}
+	
+	
+	/**
+	 * A worker that runs a bit-parallel BFS from a batch of 64 consecutive
+	 * source nodes at a time, so that each edge is examined once per level
+	 * for the entire batch. Each level scans all nodes, so this pays off only
+	 * for dense graphs with a small diameter.
+	 */
+	private class BitsetWorker implements Worker {
+		
+		private long[] seen;
+		private long[] frontier;
+		private long[] next;
+		
+		
+		/**
+		 * Create an instance of the worker
+		 */
+		public BitsetWorker() {
+			seen = new long[numNodes];
+			frontier = new long[numNodes];
+			next = new long[numNodes];
+		}
+		
+		
+		/**
+		 * Process one batch of source nodes
+		 * 
+		 * @param batch the index of the batch
+		 */
+		@Override
+		public void process(int batch) {
+			
+			int first = batch * 64;
+			int count = Math.min(64, numNodes - first);
+			double[] sums = new double[count];
+			
+			Arrays.fill(seen, 0);
+			Arrays.fill(frontier, 0);
+			for (int b = 0; b < count; b++) {
+				seen[first + b] = 1L << b;
+				frontier[first + b] = 1L << b;
+			}
+			
+			for (int d = 1; ; d++) {
+				
+				// Advance all frontiers by one level
+				
+				for (int v = 0; v < numNodes; v++) {
+					long f = frontier[v];
+					if (f == 0) continue;
+					
+					for (int p = offsets[v]; p < offsets[v + 1]; p++) {
+						next[neighbors[p]] |= f;
+					}
+					
+					if (neighbors2 != null) {
+						for (int p = offsets2[v]; p < offsets2[v + 1]; p++) {
+							next[neighbors2[p]] |= f;
+						}
+					}
+				}
+				
+				
+				// Keep only the newly discovered nodes
+				
+				double weight = Math.scalb(1.0, -d);
+				boolean any = false;
+				
+				for (int w = 0; w < numNodes; w++) {
+					long x = next[w] & ~seen[w];
+					next[w] = 0;
+					frontier[w] = x;
+					if (x == 0) continue;
+					
+					seen[w] |= x;
+					any = true;
+					
+					while (x != 0) {
+						sums[Long.numberOfTrailingZeros(x)] += weight;
+						x &= x - 1;
+					}
+				}
+				
+				if (!any) break;
+			}
+			
+			for (int b = 0; b < count; b++) {
+				closeness[first + b] = sums[b];
+			}
+		}
+		
+		
+		/**
+		 * Merge the results of the worker
+		 */
+		@Override
+		public void finish() {
+		}
+	}
 }
@@ -0,0 +1,258 @@
+package edu.harvard.util.graph.algorithm;
+
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.harvard.util.Cancelable;
+import edu.harvard.util.graph.BaseGraph;
+import edu.harvard.util.graph.CompactAdjacency;
+import edu.harvard.util.graph.GraphDirection;
+import edu.harvard.util.job.JobCanceledException;
+import edu.harvard.util.job.JobObserver;
+import edu.harvard.util.job.SynchronizedJobObserver;
+
+
+/**
+ * A base class for algorithms that run one traversal per source node over
+ * the compact adjacency of a graph, processing the sources in parallel
+ * 
+ * @author Peter Macko
+ */
+abstract class SourceTraversal implements Cancelable {
+	
+	protected BaseGraph graph;
+	protected GraphDirection direction;
+	
+	protected int maxWorkers;
+	
+	private transient volatile boolean forceCancel = false;
+	
+	
+	// The adjacency arrays for the chosen direction; the secondary arrays
+	// are used only for undirected traversals
+	
+	protected int numNodes;
+	protected int[] offsets;
+	protected int[] neighbors;
+	protected int[] offsets2;
+	protected int[] neighbors2;
+	
+	
+	// The indices of the existing nodes, since the node indices can have holes
+	
+	protected int[] liveNodes;
+	
+	
+	/**
+	 * Create an instance of SourceTraversal
+	 * 
+	 * @param graph the graph
+	 * @param direction the graph direction
+	 */
+	protected SourceTraversal(BaseGraph graph, GraphDirection direction) {
+		this.graph = graph;
+		this.direction = direction;
+		this.maxWorkers = Runtime.getRuntime().availableProcessors();
+	}
+	
+	
+	/**
+	 * Set the maximum number of worker threads
+	 * 
+	 * @param maxWorkers the maximum number of workers
+	 */
+	public void setMaxWorkers(int maxWorkers) {
+		this.maxWorkers = Math.max(1, maxWorkers);
+	}
+	
+	
+	/**
+	 * Take a snapshot of the adjacency of the graph
+	 */
+	protected void initializeAdjacency() {
+		
+		CompactAdjacency a = graph.getAdjacency();
+		numNodes = a.getNumNodes();
+		
+		switch (direction) {
+		case DIRECTED:
+			offsets = a.getOutOffsets(); neighbors = a.getOutTargets();
+			offsets2 = null; neighbors2 = null;
+			break;
+		case INVERTED:
+			offsets = a.getInOffsets(); neighbors = a.getInSources();
+			offsets2 = null; neighbors2 = null;
+			break;
+		case UNDIRECTED:
+			offsets = a.getOutOffsets(); neighbors = a.getOutTargets();
+			offsets2 = a.getInOffsets(); neighbors2 = a.getInSources();
+			break;
+		default:
+			throw new IllegalStateException("Invalid graph direction");
+		}
+		
+		int count = 0;
+		for (int i = 0; i < numNodes; i++) {
+			if (graph.getBaseNode(i) != null) count++;
+		}
+		
+		liveNodes = new int[count];
+		count = 0;
+		for (int i = 0; i < numNodes; i++) {
+			if (graph.getBaseNode(i) != null) liveNodes[count++] = i;
+		}
+	}
+	
+	
+	/**
+	 * Create a worker that processes sources. Each worker is used by a single thread.
+	 * 
+	 * @return the new worker
+	 */
+	protected abstract Worker createWorker();
+	
+	
+	/**
+	 * Process the given source nodes in parallel
+	 * 
+	 * @param sources the indices of the source nodes
+	 * @param observer the job observer (can be null)
+	 * @throws JobCanceledException if cancelled
+	 */
+	protected void processSources(final int[] sources, JobObserver observer) throws JobCanceledException {
+		
+		forceCancel = false;
+		
+		final SynchronizedJobObserver o = observer == null ? null : new SynchronizedJobObserver(observer);
+		if (o != null) o.setRange(0, sources.length);
+		
+		final AtomicInteger next = new AtomicInteger(0);
+		
+		
+		// Create & run the worker threads
+		
+		int numWorkers = Math.max(1, Math.min(maxWorkers, sources.length));
+		Vector<WorkerThread> workers = new Vector<WorkerThread>(numWorkers);
+		
+		for (int i = 0; i < numWorkers; i++) {
+			WorkerThread w = new WorkerThread(createWorker(), sources, next, o);
+			workers.add(w);
+			w.start();
+		}
+		
+		
+		// Wait for the results
+		
+		for (WorkerThread w : workers) {
+			try {
+				w.join();
+			}
+			catch (InterruptedException e) {
+				if (w.error == null) w.error = e;
+			}
+		}
+		
+		
+		// Process errors
+		
+		for (WorkerThread w : workers) {
+			if (w.error != null) {
+				if (w.error instanceof RuntimeException) {
+					throw ((RuntimeException) w.error);
+				}
+				else {
+					throw new RuntimeException(w.error);
+				}
+			}
+		}
+		
+		if (forceCancel) throw new JobCanceledException();
+		
+		
+		// Merge the results
+		
+		for (WorkerThread w : workers) {
+			w.worker.finish();
+		}
+	}
+
+
+	/**
+	 * Cancel the computation
+	 */
+	@Override
+	public void cancel() {
+		forceCancel = true;
+	}
+	
+	
+	/**
+	 * A per-thread worker
+	 */
+	protected interface Worker {
+		
+		/**
+		 * Process one source node
+		 * 
+		 * @param source the index of the source node
+		 */
+		public void process(int source);
+		
+		/**
+		 * Merge the results of the worker. This is called from a single
+		 * thread after all workers have finished.
+		 */
+		public void finish();
+	}
+	
+	
+	/**
+	 * A worker thread that claims the sources one by one
+	 */
+	private class WorkerThread extends Thread {
+		
+		public Worker worker;
+		public Throwable error;
+		
+		private int[] sources;
+		private AtomicInteger next;
+		private SynchronizedJobObserver observer;
+		
+		
+		/**
+		 * Create an instance of the worker thread
+		 * 
+		 * @param worker the worker
+		 * @param sources the source nodes
+		 * @param next the index of the next unclaimed source
+		 * @param observer the job observer (can be null)
+		 */
+		public WorkerThread(Worker worker, int[] sources, AtomicInteger next, SynchronizedJobObserver observer) {
+			this.worker = worker;
+			this.sources = sources;
+			this.next = next;
+			this.observer = observer;
+			this.error = null;
+		}
+		
+		
+		/**
+		 * Run the tasks
+		 */
+		@Override
+		public void run() {
+			try {
+				while (!forceCancel) {
+					int i = next.getAndIncrement();
+					if (i >= sources.length) break;
+					worker.process(sources[i]);
+					if (observer != null) observer.addProgress(1);
+				}
+			}
+			catch (Throwable t) {
+				error = t;
+				forceCancel = true;
+			}
+		}
+	}
+}
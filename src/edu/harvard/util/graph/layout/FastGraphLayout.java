@@ -129,4 +129,24 @@ public class FastGraphLayout extends GraphLayout {
 	protected void addLayoutEdgeFast(GraphLayoutEdge edge) {
 		edges.set(edge.getBaseEdge().getIndex(), edge);
 	}
+	
+	
+	/**
+	 * Remove a layout node without checking for errors
+	 * 
+	 * @param index the index of the node to remove
+	 */
+	protected void removeLayoutNodeFast(int index) {
+		nodes.set(index, null);
+	}
+	
+	
+	/**
+	 * Remove a layout edge without checking for errors
+	 * 
+	 * @param index the index of the edge to remove
+	 */
+	protected void removeLayoutEdgeFast(int index) {
+		edges.set(index, null);
+	}
 }
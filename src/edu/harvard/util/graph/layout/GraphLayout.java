@@ -261,6 +261,22 @@ public abstract class GraphLayout implements Serializable {
 	protected abstract void addLayoutEdgeFast(GraphLayoutEdge edge);
 	
 	
+	/**
+	 * Remove a layout node without checking for errors
+	 * 
+	 * @param index the index of the node to remove
+	 */
+	protected abstract void removeLayoutNodeFast(int index);
+	
+	
+	/**
+	 * Remove a layout edge without checking for errors
+	 * 
+	 * @param index the index of the edge to remove
+	 */
+	protected abstract void removeLayoutEdgeFast(int index);
+	
+	
 	/**
 	 * Add a layout node
 	 * 
@@ -312,6 +328,50 @@ public abstract class GraphLayout implements Serializable {
 	}
 	
 	
+	/**
+	 * Discard the layout of the contents of the given summary nodes, so that it
+	 * can be recomputed later using GraphLayoutAlgorithm.updateLayout(). The
+	 * layouts of the summary nodes themselves are kept.
+	 * 
+	 * @param summaryNodes the summary nodes
+	 * @return the number of removed layout nodes
+	 */
+	public int discardLayouts(Collection<? extends BaseSummaryNode> summaryNodes) {
+		
+		// Find the nodes inside the summary nodes that have a layout
+		
+		BitSet removed = new BitSet();
+		LinkedList<BaseSummaryNode> queue = new LinkedList<BaseSummaryNode>(summaryNodes);
+		
+		while (!queue.isEmpty()) {
+			BaseSummaryNode s = queue.removeFirst();
+			for (BaseNode n : s.getBaseChildren()) {
+				if (getLayoutNode(n.getIndex()) == null) continue;
+				removed.set(n.getIndex());
+				if (n instanceof BaseSummaryNode) queue.add((BaseSummaryNode) n);
+			}
+		}
+		
+		if (removed.isEmpty()) return 0;
+		
+		
+		// Remove the edges from and to these nodes, and then the nodes
+		
+		ArrayList<Integer> removedEdges = new ArrayList<Integer>();
+		for (GraphLayoutEdge e : getLayoutEdges()) {
+			if (e == null) continue;
+			if (removed.get(e.getFrom().getIndex()) || removed.get(e.getTo().getIndex())) {
+				removedEdges.add(e.getBaseEdge().getIndex());
+			}
+		}
+		
+		for (int i : removedEdges) removeLayoutEdgeFast(i);
+		for (int i = removed.nextSetBit(0); i >= 0; i = removed.nextSetBit(i + 1)) removeLayoutNodeFast(i);
+		
+		return removed.cardinality();
+	}
+	
+	
 	/**
 	 * Set the margin
 	 * 
@@ -404,6 +464,21 @@ public abstract class GraphLayout implements Serializable {
 	 * @throws IOException if an error occurred
 	 */
 	private void updateFromGraphviz(InputStream stream, JobObserver observer) throws IOException {
+		updateFromGraphviz(new PlainTokenizer(stream), observer, false);
+	}
+	
+	
+	/**
+	 * Load the Graphviz output from a tokenizer. The method stops reading right after
+	 * the "stop" statement, so that the tokenizer can be used to read more outputs
+	 * from the same stream.
+	 *
+	 * @param tokenizer the tokenizer of the plain Graphviz output
+	 * @param observer the job progress observer
+	 * @param skipEmpty whether to skip outputs that do not contain any nodes
+	 * @throws IOException if an error occurred
+	 */
+	void updateFromGraphviz(PlainTokenizer tokenizer, JobObserver observer, boolean skipEmpty) throws IOException {
 		
 		boolean loadSplines = true;
 		
@@ -426,63 +501,56 @@ public abstract class GraphLayout implements Serializable {
 
 		// Load the graph
 		
-		BufferedReader bin = new BufferedReader(new InputStreamReader(stream));
-		
-		String l;
-		String part = "";
+		PlainTokenizer t = tokenizer;
 		int count = 0;
+		int numNodes = 0;
+		boolean stopped = false;
 		
-		while ((l = bin.readLine()) != null) {
+		while (t.nextLine()) {
 			count++;
-			l = part + l;
-			part = "";
 
 			if (((count % 2500) == 0) && (observer != null)) observer.setProgress(count);
 			
-			
-			// Incomplete line
-			
-			if (l.endsWith("\\")) {
-				part = l.substring(0, l.length() - 1);
-				continue;
-			}
+			if (!t.next()) continue;
 			
 			
 			// Graph
 			
-			if (l.startsWith("graph")) {
-				String[] a = l.split(" ");
-				if (a.length != 4) {
-					throw new IOException("Invalid \"graph\" statement: " + (a.length-1) + " arguments given, 3 expected");
+			if (t.is("graph")) {
+				int n = 0;
+				double[] a = new double[3];
+				while (t.next()) {
+					if (n < a.length) a[n] = t.getDouble();
+					n++;
+				}
+				if (n != 3) {
+					throw new IOException("Invalid \"graph\" statement: " + n + " arguments given, 3 expected");
 				}
-				g_scale  = Double.parseDouble(a[1]);
-				//g_width  = Double.parseDouble(a[2]);
-				//g_height = Double.parseDouble(a[3]);
+				g_scale  = a[0];
+				//g_width  = a[1];
+				//g_height = a[2];
 				continue;
 			}
 			
 			
 			// Node
 			
-			if (l.startsWith("node")) {
-				String[] a = l.split(" ");
+			if (t.is("node")) {
 
-				String p = Utils.removeQuotes(a[1]);
-				int id = Integer.parseInt(p);
+				int id = t.nextInt();
 				if (id < 0) {
-					throw new IOException("Invalid node ID on line " + count + ": " + id);
+					throw new IOException("Invalid node ID on line " + t.getLineNumber() + ": " + id);
 				}
 				
 				BaseNode n = graph.getBaseNode(id);
 				if (n == null) {
-					throw new IOException("Nonexistent node referenced on line " + count + ": " + id);
+					throw new IOException("Nonexistent node referenced on line " + t.getLineNumber() + ": " + id);
 				}
 				
-				int d = a[2].length() == 0 ? 1 : 0;
-				double x =  Double.parseDouble(a[2 + d]) * Graphviz.IMPORT_SCALE;
-				double y = -Double.parseDouble(a[3 + d]) * Graphviz.IMPORT_SCALE;
-				double w =  Double.parseDouble(a[4 + d]) * Graphviz.IMPORT_SCALE;
-				double h =  Double.parseDouble(a[5 + d]) * Graphviz.IMPORT_SCALE;
+				double x =  t.nextDouble() * Graphviz.IMPORT_SCALE;
+				double y = -t.nextDouble() * Graphviz.IMPORT_SCALE;
+				double w =  t.nextDouble() * Graphviz.IMPORT_SCALE;
+				double h =  t.nextDouble() * Graphviz.IMPORT_SCALE;
 				
 				if (x < xMin) xMin = x;
 				if (x > xMax) xMax = x;
@@ -495,37 +563,30 @@ public abstract class GraphLayout implements Serializable {
 				ln.setSize(w, h);
 				
 				addLayoutNodeFast(ln);
+				numNodes++;
 				continue;
 			}
 			
 			
 			// DisplayableEdge
 			
-			if (l.startsWith("edge")) {
-
-				int s1 = l.indexOf(" ");
-				int s2 = l.indexOf(" ", s1 + 1);
-				int s3 = l.indexOf(" ", s2 + 1);
+			if (t.is("edge")) {
 				
-				int f = Integer.parseInt(Utils.removeQuotes(l.substring(s1+1, s2)));
-				int t = Integer.parseInt(Utils.removeQuotes(l.substring(s2+1, s3)));
+				int f = t.nextInt();
+				int to = t.nextInt();
 
 				int num = 0;
 				double[] x;
 				double[] y;
 
 				if (loadSplines) {
-					String[] a = l.split(" ");
-				
-					num = Integer.parseInt(a[3]);
+					num = t.nextInt();
 					x = new double[num + 2];
 					y = new double[num + 2];
 
-					int k = 4;
-
 					for (int i = 1; i <= num; i++) {
-						double dx =  Double.parseDouble(a[k++]);
-						double dy = -Double.parseDouble(a[k++]);
+						double dx =  t.nextDouble();
+						double dy = -t.nextDouble();
 						x[i] = dx * Graphviz.IMPORT_SCALE;
 						y[i] = dy * Graphviz.IMPORT_SCALE;
 					}
@@ -537,12 +598,12 @@ public abstract class GraphLayout implements Serializable {
 				
 				GraphLayoutNode nf = getLayoutNode(f);
 				if (nf == null) {
-					throw new IOException("Edge references nonexistent node " + f + " on line " + count + ": " + f + " -> " + t);
+					throw new IOException("Edge references nonexistent node " + f + " on line " + t.getLineNumber() + ": " + f + " -> " + to);
 				}
 				
-				GraphLayoutNode nt = getLayoutNode(t);
+				GraphLayoutNode nt = getLayoutNode(to);
 				if (nt == null) {
-					throw new IOException("Edge references nonexistent node " + t + " on line " + count + ": " + f + " -> " + t);
+					throw new IOException("Edge references nonexistent node " + to + " on line " + t.getLineNumber() + ": " + f + " -> " + to);
 				}
 				
 				x[0] = nf.getX();
@@ -553,7 +614,7 @@ public abstract class GraphLayout implements Serializable {
 				BaseEdge e = graph.getBaseEdgeExt(nf.getBaseNode(), nt.getBaseNode());
 				
 				// Should we throw an exception here or fail gracefully?
-				// if (e == null) throw new IOException("Edge references nonexistent edge on line " + count + ": " + f + " -> " + t);
+				// if (e == null) throw new IOException("Edge references nonexistent edge on line " + count + ": " + f + " -> " + to);
 				
 				if (e != null) addLayoutEdgeFast(new GraphLayoutEdge(e, nf, nt, x, y));
 				
@@ -563,12 +624,21 @@ public abstract class GraphLayout implements Serializable {
 			
 			// Stop
 			
-			if (l.startsWith("stop")) {
+			if (t.is("stop")) {
+				if (skipEmpty && numNodes == 0) {
+					g_scale = -1;
+					continue;
+				}
+				stopped = true;
 				break;
 			}
 			
 			
-			throw new IOException("Invalid Graphviz plain output\nUnexpected line: " + l);
+			throw new IOException("Invalid Graphviz plain output\nUnexpected line " + t.getLineNumber() + ": " + t.getToken() + " ...");
+		}
+		
+		if (skipEmpty && !stopped) {
+			throw new IOException("Unexpected end of the Graphviz plain output");
 		}
 		
 		if (g_scale < 0) {
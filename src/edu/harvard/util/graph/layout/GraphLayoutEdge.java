@@ -37,6 +37,7 @@ import org.w3c.dom.Element;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
+import edu.harvard.util.BSpline;
 import edu.harvard.util.ParserException;
 import edu.harvard.util.XMLUtils;
 import edu.harvard.util.graph.*;
@@ -61,6 +62,9 @@ public class GraphLayoutEdge implements java.io.Serializable {
 	protected GraphLayoutNode from;
 	protected GraphLayoutNode to;
 	
+	private transient volatile float[] curve;
+	private transient volatile double curveDeviation = -1;
+	
 	
 	/**
 	 * Constructor for objects of type GraphLayoutEdge
@@ -194,6 +198,63 @@ public class GraphLayoutEdge implements java.io.Serializable {
 	}
 	
 	
+	/**
+	 * Get the points on the B-spline through the control points. The curve is
+	 * computed on the first use and then cached until the edge is moved or scaled.
+	 * 
+	 * @return the interleaved X and Y coordinates of the points on the curve,
+	 *         relative to the first control point
+	 */
+	public float[] getCurve() {
+		
+		float[] c = curve;
+		if (c != null) return c;
+		
+		double[] x = getX();
+		double[] y = getY();
+		
+		BSpline spline = new BSpline();
+		for (int i = 0; i < x.length; i++) spline.addCP(x[i] - x[0], y[i] - y[0]);
+		if (x.length <= spline.getDegree()) spline.setDegree(x.length - 1);
+		
+		c = spline.getCurve();
+		curve = c;
+		return c;
+	}
+	
+	
+	/**
+	 * Get the largest distance of a control point from the straight line between
+	 * the end-points, which bounds how far the curve departs from the straight line
+	 * 
+	 * @return the largest distance in the layout coordinates
+	 */
+	public double getCurveDeviation() {
+		
+		double d = curveDeviation;
+		if (d >= 0) return d;
+		
+		double[] x = getX();
+		double[] y = getY();
+		int n = x.length - 1;
+		
+		double dx = x[n] - x[0];
+		double dy = y[n] - y[0];
+		double length = Math.sqrt(dx*dx + dy*dy);
+		
+		d = 0;
+		for (int i = 1; i < n; i++) {
+			double ex = x[i] - x[0];
+			double ey = y[i] - y[0];
+			double di = length == 0 ? Math.sqrt(ex*ex + ey*ey) : Math.abs(ex*dy - ey*dx) / length;
+			if (di > d) d = di;
+		}
+		
+		curveDeviation = d;
+		return d;
+	}
+	
+	
 	/**
 	 * Move the edge relatively to its current position 
 	 * 
@@ -209,6 +270,8 @@ public class GraphLayoutEdge implements java.io.Serializable {
 		if (y != null) {
 			for (int i = 0; i < y.length; i++) y[i] += dy;
 		}
+		
+		// The cached curve is relative to the first control point, so it does not change
 	}
 	
 	
@@ -229,6 +292,9 @@ public class GraphLayoutEdge implements java.io.Serializable {
 		if (y != null) {
 			for (int i = 0; i < y.length; i++) y[i] = py + (y[i] - py) * sy;
 		}
+		
+		curve = null;
+		curveDeviation = -1;
 	}
 	
 	
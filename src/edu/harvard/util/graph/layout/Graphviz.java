@@ -60,7 +60,7 @@ import org.xml.sax.helpers.AttributesImpl;
  * @author Peter Macko
  */
 public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutAlgorithm, Cloneable,
-								 HasWizardPanelConfigGUI, XMLSerializable {
+								 HasWizardPanelConfigGUI, HasLayoutCache, XMLSerializable {
 
 	public static final String[] ALGORITHMS = { "circo", "dot", "fdp", "neato", "sfdp", "twopi" };
 	public static final String[] ALGORITHMS_DIRECTED = { "dot" };
@@ -76,11 +76,17 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	
 	private static HashSet<String> verifiedAlgorithms = new HashSet<String>();
 	
+	private static final long PROCESS_HANDSHAKE_TIMEOUT = 5000;
+	private static HashMap<String, LinkedList<LayoutProcess>> processPool = new HashMap<String, LinkedList<LayoutProcess>>();
+	private static HashSet<String> algorithmsWithoutPool = new HashSet<String>();
+	
 	private String algorithm;
 	private boolean directed;
 	private boolean bySummaryNodes;
 	private boolean zoomBasedLayout;
 	private String rankdir;
+	private LayoutCache layoutCache;
+	private boolean usingProcessPool;
 	
 	private ExternalProcess currentExternalProcess;
 	private boolean running;
@@ -109,6 +115,8 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		this.bySummaryNodes = true;
 		this.zoomBasedLayout = true;
 		this.rankdir = "RL";
+		this.layoutCache = null;
+		this.usingProcessPool = true;
 		
 		
 		// Initialize the process management
@@ -122,7 +130,7 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		// Initialize the thread management
 		
 		this.taskQueue = Collections.synchronizedList(new LinkedList<RecursiveTask>());
-		this.maxWorkers = Runtime.getRuntime().availableProcessors();
+		this.maxWorkers = 0;
 		
 		
 		// Set the algorithm
@@ -180,6 +188,9 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 			g.bySummaryNodes = bySummaryNodes;
 			g.zoomBasedLayout = zoomBasedLayout;
 			g.rankdir = rankdir;
+			g.layoutCache = layoutCache;
+			g.usingProcessPool = usingProcessPool;
+			g.maxWorkers = maxWorkers;
 			return g;
 		} catch (Exception e) {
 			throw new RuntimeException("Cannot re-instantiate the algorithm", e);
@@ -281,6 +292,89 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		}
 		throw new IllegalArgumentException("Not a valid RANKDIR");
 	}
+	
+	
+	/**
+	 * Set the layout cache
+	 * 
+	 * @param cache the layout cache, or null to disable caching
+	 */
+	public void setLayoutCache(LayoutCache cache) {
+		layoutCache = cache;
+	}
+	
+	
+	/**
+	 * Get the layout cache
+	 * 
+	 * @return the layout cache, or null if none
+	 */
+	public LayoutCache getLayoutCache() {
+		return layoutCache;
+	}
+
+
+	/**
+	 * Set whether to reuse long-lived Graphviz processes for laying out summary nodes
+	 *
+	 * @param v true to use the shared pool of processes, false to start a new process for each node
+	 */
+	public void setUsingProcessPool(boolean v) {
+		usingProcessPool = v;
+	}
+
+
+	/**
+	 * Determine whether the algorithm reuses long-lived Graphviz processes
+	 *
+	 * @return true if it uses the shared pool of processes
+	 */
+	public boolean isUsingProcessPool() {
+		return usingProcessPool;
+	}
+
+
+	/**
+	 * Set the maximum number of worker threads for computing the layouts of summary nodes
+	 *
+	 * @param n the maximum number of workers, or 0 to determine it from the number of cores
+	 */
+	public void setMaxWorkers(int n) {
+		if (n < 0) throw new IllegalArgumentException("The number of workers cannot be negative");
+		maxWorkers = n;
+	}
+
+
+	/**
+	 * Get the maximum number of worker threads for computing the layouts of summary nodes
+	 *
+	 * @return the maximum number of workers, or 0 if it is determined from the number of cores
+	 */
+	public int getMaxWorkers() {
+		return maxWorkers;
+	}
+
+
+	/**
+	 * Determine the number of worker threads to use for the given number of tasks
+	 *
+	 * @param numTasks the number of tasks
+	 * @return the number of workers
+	 */
+	private int getNumWorkers(int numTasks) {
+		int n = maxWorkers > 0 ? maxWorkers : Runtime.getRuntime().availableProcessors();
+		return Math.max(1, Math.min(n, numTasks));
+	}
+
+	
+	/**
+	 * Get the description of the settings that affect the layout of a summary node
+	 * 
+	 * @return the string for the layout cache keys
+	 */
+	private String getCacheSettings() {
+		return "Graphviz " + algorithm + " " + rankdir + " " + directed;
+	}
 
 	
 	/**
@@ -449,43 +543,90 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	
 	
 	/**
-	 * Update the given layout from the given .dot file. The object must be locked
-	 * by setProcessHandle() before calling this method.
+	 * Run a new Graphviz process on the graph written by the given writer and
+	 * load the result into the given layout. The graph is streamed to the standard
+	 * input of the process, and the plain output is parsed directly from its
+	 * standard output. The object must be locked by setProcessHandle() before
+	 * calling this method.
 	 * 
 	 * @param layout the graph layout to update
-	 * @param dot the input .dot file
-	 * @param observer the job observer
+	 * @param writer the writer of the input graph
+	 * @throws IOException on error
 	 */
-	private void updateLayoutFromFile(GraphLayout layout, File dot, JobObserver observer) throws IOException {
-		
-		// Generate the layout
+	private void runProcess(GraphLayout layout, GraphvizWriter writer) throws IOException {
 		
-		File out = File.createTempFile("orbiter", ".plain");
-		out.deleteOnExit();
+		// Start Graphviz
 		
-		ExternalProcess p = createExternalProcess(dot, out);
+		String[] cmds = {algorithm, "-Tplain"};
+		ExternalProcess p = new ExternalProcess(cmds);
 		currentExternalProcess = p;
-		p.run();
-		currentExternalProcess = null;
+		PrintStream out = new PrintStream(new BufferedOutputStream(p.start()));
 		
 		if (canceled) throw new RuntimeException("Canceled");
 		
 		
-		// Load the layout
+		// Export the graph
 		
-		layout.updateFromFile(out, null);
+		writer.write(out);
+		out.close();
 		
 		if (canceled) throw new RuntimeException("Canceled");
 		
 		
-		// Cleanup
+		// Finish Graphviz and load the layout
+
+		layout.updateFromStream(p.getProcessOutputStream(), "plain", null);
+		
+		p.finish();
+		currentExternalProcess = null;
+		
+		if (canceled) throw new RuntimeException("Canceled");
+	}
+	
+	
+	/**
+	 * Compute the layout of the graph written by the given writer using a long-lived
+	 * process from the shared pool. The object must be locked by setProcessHandle()
+	 * before calling this method.
+	 * 
+	 * @param layout the graph layout to update
+	 * @param writer the writer of the input graph, which must contain at least one node
+	 * @return true if the layout was computed, or false if no process is available or if
+	 *         the process failed, in which case the layout might be partially updated
+	 */
+	private boolean runPooledProcess(GraphLayout layout, GraphvizWriter writer) {
+		
+		LayoutProcess p = LayoutProcess.acquire(algorithm);
+		if (p == null) return false;
+		
+		synchronized (this) {
+			currentExternalProcess = p.process;
+		}
 		
+		boolean ok = false;
 		try {
-			out.delete();
+			writer.write(p.in);
+			p.endGraph();
+			
+			if (canceled) throw new RuntimeException("Canceled");
+			
+			layout.updateFromGraphviz(p.out, null, true);
+			ok = true;
 		}
-		catch (Throwable t) {
-			// Silent failover
+		catch (IOException e) {
+			if (canceled) throw new RuntimeException("Canceled");
+			System.err.println("Warning: Graphviz process failed: " + e.getMessage()
+					+ (p.getLastError() == null ? "" : " (" + p.getLastError() + ")"));
 		}
+		finally {
+			synchronized (this) {
+				currentExternalProcess = null;
+			}
+			if (ok && !canceled) LayoutProcess.release(algorithm, p); else p.close();
+		}
+		
+		if (canceled) throw new RuntimeException("Canceled");
+		return ok;
 	}
 
 	
@@ -495,37 +636,18 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	 * @param layout the graph layout to update
 	 * @param observer the job observer
 	 */
-	private void updateLayout(GraphLayout layout, JobObserver observer) {
+	private void updateLayout(final GraphLayout layout, JobObserver observer) {
 		
 		setProcessHandle(true, null);
 		
 		if (observer != null) observer.makeIndeterminate();
 		
 		try {
-			
-			// Export the input graph
-			
-			File dot = File.createTempFile("orbiter", ".dot");
-			dot.deleteOnExit();
-			layout.getGraph().dumpGraphviz(dot, "graph", directed);
-			//graph.getRootBaseSummaryNode().dumpGraphviz(dot, "graph", directed);
-			
-			if (canceled) throw new RuntimeException("Canceled");
-			
-			
-			// Call Graphviz
-			
-			updateLayoutFromFile(layout, dot, observer);
-			
-			
-			// Cleanup
-			
-			try {
-				dot.delete();
-			}
-			catch (Throwable t) {
-				// Silent failover
-			}
+			runProcess(layout, new GraphvizWriter() {
+				public void write(PrintStream out) {
+					layout.getGraph().dumpGraphviz(out, "graph", directed);
+				}
+			});
 		}
 		catch (IOException e) {
 			setProcessHandle(false, null);
@@ -597,6 +719,36 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	}
 
 	
+	/**
+	 * Determine whether the given summary node has at least one visible child
+	 * 
+	 * @param node the summary node
+	 * @return true if it has a visible child
+	 */
+	private static boolean hasVisibleChildren(BaseSummaryNode node) {
+		for (BaseNode n : node.getBaseChildren()) {
+			if (n.isVisible()) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Create an empty layout object for the given summary node
+	 * 
+	 * @param node the summary node
+	 * @return the new layout
+	 */
+	private GraphLayout createLayoutForSummaryNode(BaseSummaryNode node) {
+		if (node.getGraph().getRootBaseSummaryNode() == node) {
+			return new FastGraphLayout(node.getGraph(), this, getName());
+		}
+		else {
+			return new SparseGraphLayout(node.getGraph(), this, getName());
+		}
+	}
+	
+	
 	/**
 	 * Run GraphViz only on the specified summary node and compute the layout
 	 * 
@@ -604,7 +756,7 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	 * @param layoutMap the map of the child summary nodes (only the immediate children of the node) to their layouts
 	 * @param observer the job observer
 	 */
-	private GraphLayout computeLayoutOfSummaryNode(BaseSummaryNode node, Map<BaseSummaryNode, GraphLayout> layoutMap,
+	private GraphLayout computeLayoutOfSummaryNode(final BaseSummaryNode node, final Map<BaseSummaryNode, GraphLayout> layoutMap,
 			JobObserver observer) {
 		
 		
@@ -615,50 +767,38 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		if (numChildNodes == 0) return new SparseGraphLayout(node.getGraph(), this, getName());
 		
 		
+		// Check the layout cache
+		
+		GraphLayout layout = createLayoutForSummaryNode(node);
+		
+		LayoutCache.Key key = null;
+		
+		if (layoutCache != null) {
+			key = layoutCache.createKey(node, layoutMap, getCacheSettings());
+			if (key != null && layoutCache.get(key, layout)) return layout;
+		}
+		
+		
 		// The general case
 		
 		setProcessHandle(true, null);
-		GraphLayout layout = null;
 		
 		if (observer != null) observer.makeIndeterminate();
 		
 		try {
+			GraphvizWriter writer = new GraphvizWriter() {
+				public void write(PrintStream out) {
+					printSummaryNodeToGraphviz(out, node, layoutMap);
+				}
+			};
 			
-			// Start Graphviz
-			
-			if (node.getGraph().getRootBaseSummaryNode() == node) {
-				layout = new FastGraphLayout(node.getGraph(), this, getName());
-			}
-			else {
-				layout = new SparseGraphLayout(node.getGraph(), this, getName());
+			boolean done = false;
+			if (usingProcessPool && hasVisibleChildren(node)) {
+				done = runPooledProcess(layout, writer);
+				if (!done) layout = createLayoutForSummaryNode(node);
 			}
 			
-			String[] cmds = {algorithm, "-Tplain"};
-			ExternalProcess p = new ExternalProcess(cmds);
-			currentExternalProcess = p;
-			PrintStream out = new PrintStream(p.start());
-			
-			if (canceled) throw new RuntimeException("Canceled");
-			
-			
-			// Export the summary node
-			
-			printSummaryNodeToGraphviz(out, node, layoutMap);
-			out.close();
-			
-			if (canceled) throw new RuntimeException("Canceled");
-			
-			
-			// Finish Graphviz and load the layout
-
-			layout.updateFromStream(p.getProcessOutputStream(), "plain", null);
-			
-			out.close();
-			p.finish();
-			currentExternalProcess = null;
-			
-			if (canceled) throw new RuntimeException("Canceled");
-			
+			if (!done) runProcess(layout, writer);
 		}
 		catch (IOException e) {
 			setProcessHandle(false, null);
@@ -670,6 +810,8 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		}
 		
 		setProcessHandle(false, null);
+		
+		if (key != null) layoutCache.put(key, layout);
 		return layout;
 	}
 	
@@ -785,7 +927,8 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	
 	/**
 	 * Compute the layout recursively. The object must be already locked
-	 * by calling setProcessHandle()
+	 * by calling setProcessHandle(). The layout cache keeps the structural
+	 * keys of the summary nodes only for the duration of the call.
 	 * 
 	 * @param node the summary node
 	 * @param maxDepth the maximum depth in the summary hierarchy
@@ -794,6 +937,27 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	 */
 	private GraphLayout computeLayoutRecursively(BaseSummaryNode node, int maxDepth, SynchronizedJobObserver observer) {
 		
+		if (layoutCache != null) layoutCache.invalidateStructure();
+		
+		try {
+			return computeLayoutRecursivelyHelper(node, maxDepth, observer);
+		}
+		finally {
+			if (layoutCache != null) layoutCache.invalidateStructure();
+		}
+	}
+	
+	
+	/**
+	 * Compute the layout recursively (a helper for computeLayoutRecursively)
+	 * 
+	 * @param node the summary node
+	 * @param maxDepth the maximum depth in the summary hierarchy
+	 * @param observer the job observer
+	 * @return the graph layout
+	 */
+	private GraphLayout computeLayoutRecursivelyHelper(BaseSummaryNode node, int maxDepth, SynchronizedJobObserver observer) {
+		
 		// Create the tasks recursively for all summary nodes
 		
 		taskQueue.clear();
@@ -806,8 +970,9 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 		
 		if (observer != null) observer.setRange(0, rootTask.numTasks);
 		
-		Vector<WorkerThread> workers = new Vector<WorkerThread>(maxWorkers);
-		for (int i = 0; i < maxWorkers; i++) {
+		int numWorkers = getNumWorkers(rootTask.numTasks);
+		Vector<WorkerThread> workers = new Vector<WorkerThread>(numWorkers);
+		for (int i = 0; i < numWorkers; i++) {
 			WorkerThread w = new WorkerThread();
 			workers.add(w);
 			w.start();
@@ -1095,6 +1260,219 @@ public class Graphviz implements ExternalFileConverter, Cancelable, GraphLayoutA
 	}
 	
 	
+	/**
+	 * A writer of a graph in the Graphviz format
+	 */
+	private interface GraphvizWriter {
+		
+		/**
+		 * Write the graph
+		 * 
+		 * @param out the output stream
+		 */
+		public void write(PrintStream out);
+	}
+	
+	
+	/**
+	 * A long-lived Graphviz process that lays out a sequence of graphs streamed
+	 * to its standard input. Each graph is followed by an empty graph and by
+	 * padding, so that the tool reads and lays out the real graph even if it
+	 * buffers its input or if its parser needs to look ahead. The output of the
+	 * empty graph is then skipped by the parser together with the output of the
+	 * next graph.
+	 */
+	private static class LayoutProcess {
+		
+		private static final String SYNC_GRAPH = "graph {}";
+		private static final int PADDING = 32 * 1024;
+		private static byte[] padding = null;
+		
+		public ExternalProcess process;
+		public PrintStream in;
+		public PlainTokenizer out;
+		private volatile String lastError;
+		
+		
+		/**
+		 * Start a new process
+		 * 
+		 * @param algorithm the Graphviz algorithm
+		 * @throws IOException on error
+		 */
+		public LayoutProcess(String algorithm) throws IOException {
+			
+			String[] cmds = {algorithm, "-Tplain"};
+			process = new ExternalProcess(cmds);
+			in = new PrintStream(new BufferedOutputStream(process.start()));
+			out = new PlainTokenizer(process.getProcessOutputStream());
+			lastError = null;
+			
+			
+			// Drain the error stream, so that the process does not block on it
+			
+			final BufferedReader err = new BufferedReader(new InputStreamReader(process.getProcessErrorStream()));
+			Thread t = new Thread("Graphviz Error Stream") {
+				public void run() {
+					try {
+						String l;
+						while ((l = err.readLine()) != null) lastError = l;
+						err.close();
+					}
+					catch (IOException e) {
+						// The process has terminated
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		
+		
+		/**
+		 * Get a process for the given algorithm from the pool, or start a new one
+		 * 
+		 * @param algorithm the Graphviz algorithm
+		 * @return the process, or null if the algorithm cannot be used with long-lived processes
+		 */
+		public static LayoutProcess acquire(String algorithm) {
+			
+			synchronized (processPool) {
+				if (algorithmsWithoutPool.contains(algorithm)) return null;
+				LinkedList<LayoutProcess> l = processPool.get(algorithm);
+				if (l != null && !l.isEmpty()) return l.removeFirst();
+			}
+			
+			LayoutProcess p = null;
+			try {
+				p = new LayoutProcess(algorithm);
+				if (p.handshake()) return p;
+			}
+			catch (IOException e) {
+				// Fall through
+			}
+			
+			if (p != null) p.close();
+			synchronized (processPool) {
+				if (algorithmsWithoutPool.add(algorithm)) {
+					System.err.println("Warning: Graphviz " + algorithm + " cannot lay out graphs streamed to a long-lived"
+							+ " process, so a new process will be started for each graph");
+				}
+			}
+			return null;
+		}
+		
+		
+		/**
+		 * Return an idle process to the pool
+		 * 
+		 * @param algorithm the Graphviz algorithm
+		 * @param p the process
+		 */
+		public static void release(String algorithm, LayoutProcess p) {
+			
+			synchronized (processPool) {
+				LinkedList<LayoutProcess> l = processPool.get(algorithm);
+				if (l == null) {
+					l = new LinkedList<LayoutProcess>();
+					processPool.put(algorithm, l);
+				}
+				if (l.size() < Runtime.getRuntime().availableProcessors()) {
+					l.addLast(p);
+					return;
+				}
+			}
+			
+			p.close();
+		}
+		
+		
+		/**
+		 * Lay out a trivial graph to verify that the tool processes the streamed
+		 * graphs one at a time without waiting for the end of its input
+		 * 
+		 * @return true if the process works as expected
+		 */
+		private boolean handshake() {
+			
+			final boolean[] result = new boolean[1];
+			Thread t = new Thread("Graphviz Handshake") {
+				public void run() {
+					try {
+						in.println("graph { 0 }");
+						endGraph();
+						while (out.nextLine()) {
+							if (out.next() && out.is("stop")) {
+								result[0] = true;
+								break;
+							}
+						}
+					}
+					catch (IOException e) {
+						// Fall through
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+			
+			try {
+				t.join(PROCESS_HANDSHAKE_TIMEOUT);
+			}
+			catch (InterruptedException e) {
+				// Fall through
+			}
+			
+			return !t.isAlive() && result[0];
+		}
+		
+		
+		/**
+		 * Finish writing a graph and send it to the process
+		 * 
+		 * @throws IOException on error
+		 */
+		public void endGraph() throws IOException {
+			
+			synchronized (LayoutProcess.class) {
+				if (padding == null) {
+					padding = new byte[PADDING];
+					Arrays.fill(padding, (byte) ' ');
+					padding[PADDING - 1] = (byte) '\n';
+				}
+			}
+			
+			in.println();
+			in.println(SYNC_GRAPH);
+			in.write(padding, 0, padding.length);
+			in.flush();
+			
+			if (in.checkError()) {
+				throw new IOException("Cannot write to the Graphviz process");
+			}
+		}
+		
+		
+		/**
+		 * Get the last line that the process wrote to its error stream
+		 * 
+		 * @return the last error line, or null if none
+		 */
+		public String getLastError() {
+			return lastError;
+		}
+		
+		
+		/**
+		 * Terminate the process
+		 */
+		public void close() {
+			in.close();
+			process.cancel();
+		}
+	}
+	
+	
 	/**
 	 * A recursive task with continuation
 	 */
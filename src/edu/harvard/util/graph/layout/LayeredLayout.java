@@ -0,0 +1,1884 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util.graph.layout;
+
+import edu.harvard.util.*;
+import edu.harvard.util.graph.*;
+import edu.harvard.util.gui.HasWizardPanelConfigGUI;
+import edu.harvard.util.gui.WizardPanel;
+import edu.harvard.util.job.*;
+
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.*;
+import java.util.List;
+
+import javax.swing.*;
+import javax.xml.transform.sax.TransformerHandler;
+
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+
+/**
+ * An in-process layered (Sugiyama-style) graph layout algorithm. The layout
+ * of each summary node is computed in four phases: cycle removal, layer
+ * assignment, crossing minimization, and coordinate assignment. Summary
+ * nodes are processed bottom-up by a pool of worker threads, the same way
+ * as in the Graphviz layout, but without writing temporary files or forking
+ * external processes. All distances are in Graphviz units (inches), which
+ * are then scaled by Graphviz.IMPORT_SCALE, so that the resulting layouts
+ * are interchangeable with the layouts produced by Graphviz.
+ *
+ * @author Peter Macko
+ */
+public class LayeredLayout implements Cancelable, GraphLayoutAlgorithm, Cloneable,
+									  HasWizardPanelConfigGUI, HasLayoutCache, XMLSerializable {
+	
+	public static final String DOM_ELEMENT = "layered-layout";
+	
+	public static final double NODE_SEPARATION = 0.25;
+	public static final double RANK_SEPARATION = 0.5;
+	public static final double NODE_HEIGHT = 0.5;
+	public static final double MIN_NODE_WIDTH = 0.75;
+	public static final double CHAR_WIDTH = 0.1;
+	public static final double VIRTUAL_NODE_WIDTH = 0.1;
+	
+	public static final int MAX_ORDERING_ITERATIONS = 24;
+	public static final int MAX_ORDERING_ITERATIONS_WITHOUT_IMPROVEMENT = 4;
+	public static final int COORDINATE_ITERATIONS = 8;
+	
+	private boolean bySummaryNodes;
+	private boolean zoomBasedLayout;
+	private String rankdir;
+	private LayoutCache layoutCache;
+	
+	private volatile boolean canceled;
+	private int maxWorkers;
+	
+	
+	/**
+	 * Create an instance of class LayeredLayout
+	 */
+	public LayeredLayout() {
+		
+		this.bySummaryNodes = true;
+		this.zoomBasedLayout = true;
+		this.rankdir = "RL";
+		this.layoutCache = null;
+		
+		this.canceled = false;
+		this.maxWorkers = Runtime.getRuntime().availableProcessors();
+	}
+	
+	
+	/**
+	 * Create a clone of the algorithm with the same settings
+	 *
+	 * @return the clone
+	 */
+	@Override
+	public LayeredLayout clone() {
+		LayeredLayout g = new LayeredLayout();
+		g.bySummaryNodes = bySummaryNodes;
+		g.zoomBasedLayout = zoomBasedLayout;
+		g.rankdir = rankdir;
+		g.maxWorkers = maxWorkers;
+		g.layoutCache = layoutCache;
+		return g;
+	}
+	
+	
+	/**
+	 * Get the name of the algorithm
+	 *
+	 * @return the name
+	 */
+	public String getName() {
+		return "Layered";
+	}
+	
+	
+	/**
+	 * Determine whether the layout would be computed recursively one summary node at a time
+	 *
+	 * @return true if the layout would be computed with respect to the summaries
+	 */
+	public boolean isBySummaries() {
+		return bySummaryNodes;
+	}
+	
+	
+	/**
+	 * Configure whether the layout should be computed recursively one summary node at a time
+	 *
+	 * @param v true if the layout should be computed with respect to the summaries
+	 */
+	public void setBySummaries(boolean v) {
+		bySummaryNodes = v;
+	}
+	
+	
+	/**
+	 * Determine whether the layout would be optimized for semantic zoom
+	 *
+	 * @return true if the layout would be optimized for semantic zoom
+	 */
+	public boolean isOptimizedForZoom() {
+		return zoomBasedLayout;
+	}
+	
+	
+	/**
+	 * Configure whether the layout would be optimized for semantic zoom
+	 *
+	 * @param v true if the layout would be optimized for semantic zoom
+	 */
+	public void setOptimizedForZoom(boolean v) {
+		zoomBasedLayout = v;
+	}
+	
+	
+	/**
+	 * Return the graph direction
+	 *
+	 * @return the rankdir direction
+	 */
+	public String getRankDir() {
+		return rankdir;
+	}
+	
+	
+	/**
+	 * Set the graph direction
+	 *
+	 * @param v the new graph direction (must be an element of Graphviz.RANKDIRS)
+	 */
+	public void setRankDir(String v) {
+		for (String x : Graphviz.RANKDIRS) {
+			if (x.equals(v)) {
+				this.rankdir = v;
+				return;
+			}
+		}
+		throw new IllegalArgumentException("Not a valid RANKDIR");
+	}
+	
+	
+	/**
+	 * Set the layout cache
+	 *
+	 * @param cache the layout cache, or null to disable caching
+	 */
+	public void setLayoutCache(LayoutCache cache) {
+		layoutCache = cache;
+	}
+	
+	
+	/**
+	 * Get the layout cache
+	 *
+	 * @return the layout cache, or null if none
+	 */
+	public LayoutCache getLayoutCache() {
+		return layoutCache;
+	}
+	
+	
+	/**
+	 * Get the description of the settings that affect the layout of a summary node
+	 *
+	 * @return the string for the layout cache keys
+	 */
+	private String getCacheSettings() {
+		return getName() + " " + rankdir;
+	}
+	
+	
+	/**
+	 * Set the maximum number of worker threads
+	 *
+	 * @param maxWorkers the maximum number of workers
+	 */
+	public void setMaxWorkers(int maxWorkers) {
+		this.maxWorkers = Math.max(1, maxWorkers);
+	}
+	
+	
+	/**
+	 * Determine whether the algorithm produces zoom-based (or zoom-optimized) layouts
+	 *
+	 * @return true if it produces zoom-optimized layouts
+	 */
+	public boolean isZoomOptimized() {
+		return zoomBasedLayout && bySummaryNodes;
+	}
+	
+	
+	/**
+	 * Cancel the task
+	 */
+	public void cancel() {
+		canceled = true;
+	}
+	
+	
+	/**
+	 * Throw an exception if the computation was canceled
+	 */
+	private void checkCanceled() {
+		if (canceled) throw new RuntimeException("Canceled");
+	}
+	
+	
+	/**
+	 * Determine whether the rank direction runs along the Y axis
+	 *
+	 * @return true if the ranks are stacked vertically
+	 */
+	private boolean isVertical() {
+		return "TB".equals(rankdir) || "BT".equals(rankdir);
+	}
+	
+	
+	/**
+	 * Lay out the given nodes and edges and add the result to the given graph layout
+	 *
+	 * @param layout the graph layout to update
+	 * @param nodes the nodes to lay out
+	 * @param edges the edges between the given nodes
+	 * @param layoutMap the map of the child summary nodes to their layouts (can be null)
+	 */
+	private void computeLayoutOfSubgraph(GraphLayout layout, Collection<? extends BaseNode> nodes,
+			Collection<? extends BaseEdge> edges, Map<BaseSummaryNode, GraphLayout> layoutMap) {
+		
+		BaseGraph graph = layout.getGraph();
+		boolean vertical = isVertical();
+		
+		
+		// Collect the visible nodes and their sizes
+		
+		ArrayList<BaseNode> nodeList = new ArrayList<BaseNode>(nodes.size());
+		HashMap<BaseNode, Integer> nodeMap = new HashMap<BaseNode, Integer>();
+		
+		for (BaseNode n : nodes) {
+			if (!n.isVisible()) continue;
+			nodeMap.put(n, nodeList.size());
+			nodeList.add(n);
+		}
+		
+		int n = nodeList.size();
+		double[] width = new double[n];
+		double[] height = new double[n];
+		
+		for (int i = 0; i < n; i++) {
+			BaseNode node = nodeList.get(i);
+			
+			if (node instanceof BaseSummaryNode) {
+				GraphLayout l = layoutMap == null ? null : layoutMap.get(node);
+				double w = 1;
+				double h = 0;
+				if (l == null) {
+					w += Graphviz.DEFAULT_SUMMARY_NODE_WIDTH;
+					h += Graphviz.DEFAULT_SUMMARY_NODE_HEIGHT;
+				}
+				else {
+					w += l.getWidth()  / Graphviz.IMPORT_SCALE;
+					h += l.getHeight() / Graphviz.IMPORT_SCALE;
+				}
+				width[i] = w;
+				height[i] = h;
+			}
+			else {
+				String label = node.getLabel();
+				int length = label == null ? 0 : label.length();
+				width[i] = Math.max(MIN_NODE_WIDTH, CHAR_WIDTH * (length + 6));
+				height[i] = NODE_HEIGHT;
+			}
+		}
+		
+		
+		// Collect the edges, skipping duplicates and self-loops
+		
+		HashSet<Long> edgeSet = new HashSet<Long>();
+		int[] edgeFrom = new int[edges.size()];
+		int[] edgeTo = new int[edges.size()];
+		int m = 0;
+		
+		ArrayList<BaseNode[]> selfLoops = new ArrayList<BaseNode[]>();
+		
+		for (BaseEdge e : edges) {
+			Integer f = nodeMap.get(e.getBaseFrom());
+			Integer t = nodeMap.get(e.getBaseTo());
+			if (f == null || t == null) continue;
+			if (!edgeSet.add((((long) f) << 32) | t)) continue;
+			
+			if (f.intValue() == t.intValue()) {
+				selfLoops.add(new BaseNode[] { e.getBaseFrom(), e.getBaseTo() });
+				continue;
+			}
+			
+			edgeFrom[m] = f;
+			edgeTo[m] = t;
+			m++;
+		}
+		
+		checkCanceled();
+		
+		
+		// Run the layered layout
+		
+		Engine engine = new Engine(n, vertical ? width : height, vertical ? height : width, m, edgeFrom, edgeTo);
+		engine.run();
+		
+		
+		// Create the layout nodes
+		
+		GraphLayoutNode[] layoutNodes = new GraphLayoutNode[n];
+		
+		for (int i = 0; i < n; i++) {
+			double x = toX(engine.breadthPos[i], engine.rankPos[engine.layer[i]]);
+			double y = toY(engine.breadthPos[i], engine.rankPos[engine.layer[i]]);
+			GraphLayoutNode ln = new GraphLayoutNode(nodeList.get(i), x, y);
+			ln.setSize(width[i] * Graphviz.IMPORT_SCALE, height[i] * Graphviz.IMPORT_SCALE);
+			layout.addLayoutNodeFast(ln);
+			layoutNodes[i] = ln;
+		}
+		
+		
+		// Create the layout edges with the control points routed through the virtual nodes
+		
+		for (int i = 0; i < m; i++) {
+			
+			double[][] points = engine.getEdgePoints(i);
+			double[] x = new double[points[0].length];
+			double[] y = new double[points[0].length];
+			
+			for (int k = 0; k < x.length; k++) {
+				x[k] = toX(points[0][k], points[1][k]);
+				y[k] = toY(points[0][k], points[1][k]);
+			}
+			
+			GraphLayoutNode nf = layoutNodes[edgeFrom[i]];
+			GraphLayoutNode nt = layoutNodes[edgeTo[i]];
+			
+			BaseEdge e;
+			synchronized (graph) {
+				e = graph.getBaseEdgeExt(nf.getBaseNode(), nt.getBaseNode());
+			}
+			
+			if (e != null) layout.addLayoutEdgeFast(new GraphLayoutEdge(e, nf, nt, x, y));
+		}
+		
+		for (BaseNode[] p : selfLoops) {
+			GraphLayoutNode ln = layoutNodes[nodeMap.get(p[0])];
+			
+			BaseEdge e;
+			synchronized (graph) {
+				e = graph.getBaseEdgeExt(p[0], p[1]);
+			}
+			
+			if (e != null) layout.addLayoutEdgeFast(new GraphLayoutEdge(e, ln, ln));
+		}
+	}
+	
+	
+	/**
+	 * Convert the layered coordinates to the X coordinate of the layout
+	 *
+	 * @param breadth the position within the layer
+	 * @param rank the position of the layer
+	 * @return the X coordinate
+	 */
+	private double toX(double breadth, double rank) {
+		double v;
+		if ("TB".equals(rankdir) || "BT".equals(rankdir)) {
+			v = breadth;
+		}
+		else if ("LR".equals(rankdir)) {
+			v = rank;
+		}
+		else {
+			v = -rank;
+		}
+		return v * Graphviz.IMPORT_SCALE;
+	}
+	
+	
+	/**
+	 * Convert the layered coordinates to the Y coordinate of the layout
+	 *
+	 * @param breadth the position within the layer
+	 * @param rank the position of the layer
+	 * @return the Y coordinate
+	 */
+	private double toY(double breadth, double rank) {
+		double v;
+		if ("TB".equals(rankdir)) {
+			v = rank;
+		}
+		else if ("BT".equals(rankdir)) {
+			v = -rank;
+		}
+		else {
+			v = breadth;
+		}
+		return v * Graphviz.IMPORT_SCALE;
+	}
+	
+	
+	/**
+	 * Compute the layout of the entire graph, ignoring the summary nodes
+	 *
+	 * @param graph the input graph
+	 * @return the graph layout
+	 */
+	private GraphLayout computeLayoutOfGraph(BaseGraph graph) {
+		
+		ArrayList<BaseEdge> edges = new ArrayList<BaseEdge>();
+		for (BaseNode n : graph.getBaseNodes()) {
+			edges.addAll(n.getOutgoingBaseEdges());
+		}
+		
+		GraphLayout layout = new FastGraphLayout(graph, this, getName());
+		computeLayoutOfSubgraph(layout, graph.getBaseNodes(), edges, null);
+		return layout;
+	}
+	
+	
+	/**
+	 * Compute the layout of the immediate children of the given summary node
+	 *
+	 * @param node the summary node
+	 * @param layoutMap the map of the child summary nodes (only the immediate children of the node) to their layouts
+	 * @return the graph layout
+	 */
+	private GraphLayout computeLayoutOfSummaryNode(BaseSummaryNode node, Map<BaseSummaryNode, GraphLayout> layoutMap) {
+		
+		GraphLayout layout;
+		
+		if (node.getGraph().getRootBaseSummaryNode() == node) {
+			layout = new FastGraphLayout(node.getGraph(), this, getName());
+		}
+		else {
+			layout = new SparseGraphLayout(node.getGraph(), this, getName());
+		}
+		
+		if (node.getBaseChildren().isEmpty()) return layout;
+		
+		
+		// Check the layout cache
+		
+		LayoutCache.Key key = null;
+		
+		if (layoutCache != null) {
+			key = layoutCache.createKey(node, layoutMap, getCacheSettings());
+			if (key != null && layoutCache.get(key, layout)) return layout;
+		}
+		
+		
+		// Compute the layout
+		
+		computeLayoutOfSubgraph(layout, node.getBaseChildren(), node.getInternalEdges(), layoutMap);
+		
+		if (key != null) layoutCache.put(key, layout);
+		return layout;
+	}
+	
+	
+	/**
+	 * Combine layouts for a summary node
+	 *
+	 * @param node the summary node
+	 * @param layoutMap the layouts of the child summary nodes
+	 * @return the graph layout
+	 */
+	private GraphLayout combineLayoutsForSummaryNode(BaseSummaryNode node, Map<BaseSummaryNode, GraphLayout> layoutMap) {
+		
+		// Compute the layout of the summary node
+		
+		GraphLayout layout = computeLayoutOfSummaryNode(node, layoutMap);
+		checkCanceled();
+		
+		
+		// Merge the layouts
+		
+		for (BaseNode n : node.getBaseChildren()) {
+			if (n instanceof BaseSummaryNode) {
+				
+				GraphLayout l = layoutMap.get((BaseSummaryNode) n);
+				if (l == null) continue;
+				
+				GraphLayoutNode ln = layout.getLayoutNode(n.getIndex());
+				if (ln == null) continue;
+				
+				l.centerAt(ln.getX(), ln.getY());
+				if (!zoomBasedLayout) ln.setSize(l.getWidth(), l.getHeight());
+				
+				layout.importLayout(l, false);
+			}
+		}
+		
+		
+		// Resize the layout
+		
+		if (zoomBasedLayout && !layout.getLayoutNodes().isEmpty()) {
+			double newWidth = Graphviz.DEFAULT_SUMMARY_NODE_WIDTH * Graphviz.IMPORT_SCALE;
+			double newHeight = Graphviz.DEFAULT_SUMMARY_NODE_HEIGHT * Graphviz.IMPORT_SCALE;
+			double oldWidth = layout.getWidth();
+			double oldHeight = layout.getHeight();
+			
+			double sw = newWidth / oldWidth;
+			double sh = newHeight / oldHeight;
+			double s  = Math.min(sw, sh);
+			
+			layout.scale(s);
+		}
+		
+		return layout;
+	}
+	
+	
+	/**
+	 * Create tasks for computing the layout recursively
+	 *
+	 * @param parent the parent task
+	 * @param node the summary node
+	 * @param maxDepth the maximum depth in the summary hierarchy
+	 * @param ready the list of tasks that are ready to run
+	 * @return the task that corresponds to the given summary node
+	 */
+	private RecursiveTask createTasks(RecursiveTask parent, BaseSummaryNode node, int maxDepth, List<RecursiveTask> ready) {
+		
+		RecursiveTask task = new RecursiveTask(parent, node);
+		
+		if (maxDepth > 1 || maxDepth < 0) {
+			int d = maxDepth < 0 ? -1 : (maxDepth - 1);
+			for (BaseNode n : node.getBaseChildren()) {
+				if (n instanceof BaseSummaryNode) {
+					RecursiveTask t = createTasks(task, (BaseSummaryNode) n, d, ready);
+					task.numTasks += t.numTasks;
+					task.layoutMapExpected++;
+				}
+			}
+		}
+		
+		if (task.layoutMapExpected == 0) ready.add(task);
+		return task;
+	}
+	
+	
+	/**
+	 * Compute the layout recursively, processing independent summary nodes
+	 * concurrently. The layout cache keeps the structural keys of the summary
+	 * nodes only for the duration of the call.
+	 *
+	 * @param node the summary node
+	 * @param maxDepth the maximum depth in the summary hierarchy
+	 * @param observer the job observer (can be null)
+	 * @return the graph layout
+	 */
+	private GraphLayout computeLayoutRecursively(BaseSummaryNode node, int maxDepth, JobObserver observer) {
+		
+		if (layoutCache != null) layoutCache.invalidateStructure();
+		
+		try {
+			return computeLayoutRecursivelyHelper(node, maxDepth, observer);
+		}
+		finally {
+			if (layoutCache != null) layoutCache.invalidateStructure();
+		}
+	}
+	
+	
+	/**
+	 * Compute the layout recursively (a helper for computeLayoutRecursively)
+	 *
+	 * @param node the summary node
+	 * @param maxDepth the maximum depth in the summary hierarchy
+	 * @param observer the job observer (can be null)
+	 * @return the graph layout
+	 */
+	private GraphLayout computeLayoutRecursivelyHelper(BaseSummaryNode node, int maxDepth, JobObserver observer) {
+		
+		// Create the tasks recursively for all summary nodes
+		
+		TaskQueue queue = new TaskQueue();
+		RecursiveTask rootTask = createTasks(null, node, maxDepth, queue.ready);
+		queue.remaining = rootTask.numTasks;
+		
+		SynchronizedJobObserver sjo = observer == null ? null : new SynchronizedJobObserver(observer);
+		if (sjo != null) sjo.setRange(0, rootTask.numTasks);
+		
+		
+		// Create & run the worker threads
+		
+		int numWorkers = Math.max(1, Math.min(maxWorkers, rootTask.numTasks));
+		Vector<WorkerThread> workers = new Vector<WorkerThread>(numWorkers);
+		
+		for (int i = 0; i < numWorkers; i++) {
+			WorkerThread w = new WorkerThread(queue, sjo);
+			workers.add(w);
+			w.start();
+		}
+		
+		
+		// Wait for the results
+		
+		for (WorkerThread w : workers) {
+			try {
+				w.join();
+			}
+			catch (InterruptedException e) {
+				queue.fail(e);
+			}
+		}
+		
+		
+		// Process errors
+		
+		if (queue.error != null) {
+			if (queue.error instanceof RuntimeException) {
+				throw ((RuntimeException) queue.error);
+			}
+			else {
+				throw new RuntimeException(queue.error);
+			}
+		}
+		
+		checkCanceled();
+		
+		
+		// Finish
+		
+		return rootTask.result;
+	}
+	
+	
+	/**
+	 * Initialize the graph layout for the given graph
+	 *
+	 * @param graph the input graph
+	 * @param levels the number of levels in the hierarchy of summary nodes to precompute
+	 * @param observer the job observer
+	 * @return the graph layout
+	 */
+	public GraphLayout initializeLayout(BaseGraph graph, int levels, JobObserver observer) {
+		
+		canceled = false;
+		if (observer != null) observer.makeIndeterminate();
+		
+		
+		// The simple case: ignore the summary nodes and lay out the entire graph
+		
+		if (!bySummaryNodes) {
+			GraphLayout layout = computeLayoutOfGraph(graph);
+			checkCanceled();
+			return layout;
+		}
+		
+		
+		// The complicated case: build the graph layout recursively using summary nodes
+		
+		BaseSummaryNode root = graph.getRootBaseSummaryNode();
+		if (root == null) {
+			throw new IllegalStateException("No root summary node (the graph was not summarized)");
+		}
+		
+		GraphLayout layout = computeLayoutRecursively(root, levels, observer);
+		
+		
+		// Add the root node
+		
+		GraphLayoutNode lr = new GraphLayoutNode(root, 0, 0);
+		layout.centerAt(0, 0);
+		lr.setSize(layout.getWidth(), layout.getHeight());
+		layout.addLayoutNode(lr);
+		
+		
+		// Finish
+		
+		layout.setOptimizedForZoom(isZoomOptimized());
+		return layout;
+	}
+	
+	
+	/**
+	 * Update an existing layout by incrementally expanding the given summary node
+	 *
+	 * @param layout the graph to update
+	 * @param node the summary node to expand
+	 * @param observer the job observer
+	 */
+	public void updateLayout(GraphLayout layout, BaseSummaryNode node, JobObserver observer) {
+		
+		if (!node.isVisible()) return;
+		
+		GraphLayoutNode layoutNode = layout.getLayoutNode(node.getIndex());
+		
+		
+		// In the case of root nodes, we can just make something up
+		
+		if (layoutNode == null && node == node.getGraph().getRootBaseSummaryNode()) {
+			layoutNode = new GraphLayoutNode(node, 0, 0);
+			layoutNode.setSize(Graphviz.DEFAULT_SUMMARY_NODE_WIDTH * Graphviz.IMPORT_SCALE,
+					Graphviz.DEFAULT_SUMMARY_NODE_HEIGHT * Graphviz.IMPORT_SCALE);
+			layout.addLayoutNode(layoutNode);
+		}
+		
+		
+		// If the node does not already have a layout, escalate the update one level higher
+		
+		if (layoutNode == null) {
+			updateLayout(layout, node.getParent(), observer);
+			layoutNode = layout.getLayoutNode(node.getIndex());
+			if (layoutNode == null) {
+				throw new RuntimeException("Failed to compute the layout of node " + node);
+			}
+		}
+		
+		
+		// Updating is worth it only if at least one of the children does not have a layout
+		
+		boolean okay = false;
+		
+		for (BaseNode n : node.getBaseChildren()) {
+			if (n.isVisible() && layout.getLayoutNode(n.getIndex()) == null) {
+				okay = true;
+				break;
+			}
+		}
+		
+		if (!okay) return;
+		
+		
+		// Compute the layout of the node
+		
+		canceled = false;
+		if (observer != null) observer.makeIndeterminate();
+		
+		GraphLayout l = computeLayoutRecursively(node, 1, observer);
+		
+		
+		// Resize
+		
+		double newWidth = layoutNode.getWidth();
+		double newHeight = layoutNode.getHeight();
+		double oldWidth = l.getWidth();
+		double oldHeight = l.getHeight();
+		
+		double sw = newWidth / oldWidth;
+		double sh = newHeight / oldHeight;
+		double s  = Math.min(sw, sh);
+		
+		l.scale(s);
+		
+		
+		// Center & combine
+		
+		l.centerAt(layoutNode.getX(), layoutNode.getY());
+		layout.importLayout(l, false);
+	}
+	
+	
+	/**
+	 * Compute the layout for the entire graph
+	 *
+	 * @param graph the input graph
+	 * @param observer the job observer
+	 * @return the graph layout
+	 */
+	public GraphLayout computeLayout(BaseGraph graph, JobObserver observer) {
+		return initializeLayout(graph, -1, observer);
+	}
+	
+	
+	/**
+	 * Get a configuration GUI for the algorithm
+	 *
+	 * @return a list of WizardPanel's for the GUI configuration, or null if not necessary
+	 */
+	public List<WizardPanel> createConfigurationGUI() {
+		
+		List<WizardPanel> r = new Vector<WizardPanel>();
+		
+		r.add(new ConfigPanel());
+		
+		return r;
+	}
+	
+	
+	/**
+	 * Write the object to XML
+	 *
+	 * @param hd the XML output
+	 * @throws SAXException on error
+	 */
+	public void writeToXML(TransformerHandler hd) throws SAXException {
+		
+		AttributesImpl attrs = new AttributesImpl();
+		
+		attrs.clear();
+		hd.startElement("", "", DOM_ELEMENT, attrs);
+		
+		String s = rankdir;
+		hd.startElement("", "", "rankdir", attrs);
+		hd.characters(s.toCharArray(), 0, s.length());
+		hd.endElement("", "", "rankdir");
+		
+		s = "" + bySummaryNodes;
+		hd.startElement("", "", "by-summary-nodes", attrs);
+		hd.characters(s.toCharArray(), 0, s.length());
+		hd.endElement("", "", "by-summary-nodes");
+		
+		s = "" + zoomBasedLayout;
+		hd.startElement("", "", "zoom-based", attrs);
+		hd.characters(s.toCharArray(), 0, s.length());
+		hd.endElement("", "", "zoom-based");
+		
+		hd.endElement("", "", DOM_ELEMENT);
+	}
+	
+	
+	/**
+	 * Load the object from XML
+	 *
+	 * @param element the XML DOM element
+	 * @throws SAXException on error
+	 */
+	public void loadFromXML(Element element) throws SAXException, ParserException {
+		
+		if (!element.getNodeName().equals(DOM_ELEMENT)) {
+			throw new ParserException("Expected <" + DOM_ELEMENT + ">, found <" + element.getNodeName() + ">");
+		}
+		
+		try {
+			setRankDir(XMLUtils.getTextValue(element, "rankdir"));
+		}
+		catch (IllegalArgumentException e) {
+			throw new ParserException(e);
+		}
+		
+		bySummaryNodes = Boolean.parseBoolean(XMLUtils.getTextValue(element, "by-summary-nodes"));
+		zoomBasedLayout = Boolean.parseBoolean(XMLUtils.getTextValue(element, "zoom-based"));
+	}
+	
+	
+	/**
+	 * The layered layout of a single graph. The nodes are identified by their
+	 * indices 0...n-1, and the virtual nodes that break up the long edges are
+	 * appended after them. Breadth is the extent of a node along its layer,
+	 * and depth is its extent along the rank direction.
+	 */
+	private class Engine {
+		
+		private int n;
+		private int m;
+		private int[] edgeFrom;
+		private int[] edgeTo;
+		
+		private int numNodes;
+		private double[] breadth;
+		private double[] depth;
+		
+		private boolean[] reversed;
+		private int[] chainStart;
+		private int[] chainLength;
+		
+		private int[] downOffsets;
+		private int[] downNeighbors;
+		private int[] downWeights;
+		private int[] upOffsets;
+		private int[] upNeighbors;
+		private int[] upWeights;
+		
+		private int numLayers;
+		private int[][] layers;
+		private int[] order;
+		
+		public int[] layer;
+		public double[] breadthPos;
+		public double[] rankPos;
+		
+		
+		/**
+		 * Create an instance of Engine
+		 *
+		 * @param n the number of nodes
+		 * @param breadth the extent of each node along the layer
+		 * @param depth the extent of each node along the rank direction
+		 * @param m the number of edges
+		 * @param edgeFrom the from node of each edge
+		 * @param edgeTo the to node of each edge
+		 */
+		public Engine(int n, double[] breadth, double[] depth, int m, int[] edgeFrom, int[] edgeTo) {
+			this.n = n;
+			this.m = m;
+			this.breadth = breadth;
+			this.depth = depth;
+			this.edgeFrom = edgeFrom;
+			this.edgeTo = edgeTo;
+		}
+		
+		
+		/**
+		 * Compute the layout
+		 */
+		public void run() {
+			
+			if (n == 0) {
+				layer = new int[0];
+				breadthPos = new double[0];
+				rankPos = new double[0];
+				return;
+			}
+			
+			removeCycles();
+			assignLayers();
+			checkCanceled();
+			
+			createVirtualNodes();
+			orderLayers();
+			checkCanceled();
+			
+			assignCoordinates();
+		}
+		
+		
+		/**
+		 * Get the tail of an edge after the cycles were removed
+		 *
+		 * @param e the edge
+		 * @return the tail node
+		 */
+		private int tail(int e) {
+			return reversed[e] ? edgeTo[e] : edgeFrom[e];
+		}
+		
+		
+		/**
+		 * Get the head of an edge after the cycles were removed
+		 *
+		 * @param e the edge
+		 * @return the head node
+		 */
+		private int head(int e) {
+			return reversed[e] ? edgeFrom[e] : edgeTo[e];
+		}
+		
+		
+		/**
+		 * Remove the cycles by reversing the back edges of a depth-first search.
+		 * The search starts from the nodes without incoming edges, so that
+		 * acyclic graphs are left intact.
+		 */
+		private void removeCycles() {
+			
+			reversed = new boolean[m];
+			
+			int[] offsets = new int[n + 1];
+			int[] inDegree = new int[n];
+			for (int e = 0; e < m; e++) {
+				offsets[edgeFrom[e] + 1]++;
+				inDegree[edgeTo[e]]++;
+			}
+			for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+			
+			int[] out = new int[m];
+			int[] fill = new int[n];
+			for (int e = 0; e < m; e++) {
+				int f = edgeFrom[e];
+				out[offsets[f] + fill[f]++] = e;
+			}
+			
+			
+			// Iterative DFS: 0 = not visited, 1 = on the stack, 2 = finished
+			
+			byte[] state = new byte[n];
+			int[] stackNode = new int[n];
+			int[] stackNext = new int[n];
+			
+			for (int pass = 0; pass < 2; pass++) {
+				for (int s = 0; s < n; s++) {
+					if (state[s] != 0) continue;
+					if (pass == 0 && inDegree[s] > 0) continue;
+					
+					int sp = 0;
+					stackNode[sp] = s;
+					stackNext[sp] = offsets[s];
+					sp++;
+					state[s] = 1;
+					
+					while (sp > 0) {
+						int v = stackNode[sp - 1];
+						if (stackNext[sp - 1] < offsets[v + 1]) {
+							int e = out[stackNext[sp - 1]++];
+							int w = edgeTo[e];
+							if (state[w] == 1) {
+								reversed[e] = true;
+							}
+							else if (state[w] == 0) {
+								stackNode[sp] = w;
+								stackNext[sp] = offsets[w];
+								sp++;
+								state[w] = 1;
+							}
+						}
+						else {
+							state[v] = 2;
+							sp--;
+						}
+					}
+				}
+			}
+		}
+		
+		
+		/**
+		 * Assign the layers using the longest path from the sources, and then
+		 * move the sources down next to their closest successors
+		 */
+		private void assignLayers() {
+			
+			layer = new int[n];
+			
+			int[] offsets = new int[n + 1];
+			int[] inDegree = new int[n];
+			for (int e = 0; e < m; e++) {
+				offsets[tail(e) + 1]++;
+				inDegree[head(e)]++;
+			}
+			for (int i = 0; i < n; i++) offsets[i + 1] += offsets[i];
+			
+			int[] out = new int[m];
+			int[] fill = new int[n];
+			for (int e = 0; e < m; e++) {
+				int t = tail(e);
+				out[offsets[t] + fill[t]++] = head(e);
+			}
+			
+			
+			// Topological sort
+			
+			int[] queue = new int[n];
+			int qh = 0, qt = 0;
+			int[] remaining = inDegree.clone();
+			
+			for (int i = 0; i < n; i++) {
+				if (remaining[i] == 0) queue[qt++] = i;
+			}
+			
+			while (qh < qt) {
+				int v = queue[qh++];
+				for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+					int w = out[k];
+					if (layer[v] + 1 > layer[w]) layer[w] = layer[v] + 1;
+					if (--remaining[w] == 0) queue[qt++] = w;
+				}
+			}
+			
+			
+			// Pull the sources toward their successors to shorten the edges
+			
+			for (int i = 0; i < n; i++) {
+				if (inDegree[i] > 0 || offsets[i] == offsets[i + 1]) continue;
+				int min = Integer.MAX_VALUE;
+				for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+					if (layer[out[k]] < min) min = layer[out[k]];
+				}
+				layer[i] = min - 1;
+			}
+			
+			
+			// Remove the empty leading layers left behind by the moved sources
+			
+			int minLayer = Integer.MAX_VALUE;
+			for (int i = 0; i < n; i++) {
+				if (layer[i] < minLayer) minLayer = layer[i];
+			}
+			for (int i = 0; i < n; i++) layer[i] -= minLayer;
+			
+			numLayers = 0;
+			for (int i = 0; i < n; i++) {
+				if (layer[i] + 1 > numLayers) numLayers = layer[i] + 1;
+			}
+		}
+		
+		
+		/**
+		 * Break the edges that span more than one layer by inserting chains of
+		 * virtual nodes, and build the adjacency between the consecutive layers
+		 */
+		private void createVirtualNodes() {
+			
+			chainStart = new int[m];
+			chainLength = new int[m];
+			
+			numNodes = n;
+			int numSegments = 0;
+			
+			for (int e = 0; e < m; e++) {
+				int span = layer[head(e)] - layer[tail(e)];
+				chainStart[e] = numNodes;
+				chainLength[e] = span - 1;
+				numNodes += span - 1;
+				numSegments += span;
+			}
+			
+			
+			// Extend the per-node arrays
+			
+			breadth = Arrays.copyOf(breadth, numNodes);
+			depth = Arrays.copyOf(depth, numNodes);
+			layer = Arrays.copyOf(layer, numNodes);
+			
+			for (int e = 0; e < m; e++) {
+				int l = layer[tail(e)];
+				for (int k = 0; k < chainLength[e]; k++) {
+					int v = chainStart[e] + k;
+					breadth[v] = VIRTUAL_NODE_WIDTH;
+					depth[v] = 0;
+					layer[v] = l + k + 1;
+				}
+			}
+			
+			
+			// Build the segments between the consecutive layers
+			
+			int[] segFrom = new int[numSegments];
+			int[] segTo = new int[numSegments];
+			int s = 0;
+			
+			for (int e = 0; e < m; e++) {
+				int prev = tail(e);
+				for (int k = 0; k < chainLength[e]; k++) {
+					int v = chainStart[e] + k;
+					segFrom[s] = prev;
+					segTo[s] = v;
+					s++;
+					prev = v;
+				}
+				segFrom[s] = prev;
+				segTo[s] = head(e);
+				s++;
+			}
+			
+			downOffsets = new int[numNodes + 1];
+			upOffsets = new int[numNodes + 1];
+			for (int i = 0; i < numSegments; i++) {
+				downOffsets[segFrom[i] + 1]++;
+				upOffsets[segTo[i] + 1]++;
+			}
+			for (int i = 0; i < numNodes; i++) {
+				downOffsets[i + 1] += downOffsets[i];
+				upOffsets[i + 1] += upOffsets[i];
+			}
+			
+			downNeighbors = new int[numSegments];
+			downWeights = new int[numSegments];
+			upNeighbors = new int[numSegments];
+			upWeights = new int[numSegments];
+			
+			int[] downFill = new int[numNodes];
+			int[] upFill = new int[numNodes];
+			
+			for (int i = 0; i < numSegments; i++) {
+				int f = segFrom[i];
+				int t = segTo[i];
+				
+				// Straighten the long edges by preferring the vertical segments between virtual nodes
+				
+				int w = (f >= n ? 1 : 0) + (t >= n ? 1 : 0);
+				w = w == 2 ? 8 : (w == 1 ? 2 : 1);
+				
+				int d = downOffsets[f] + downFill[f]++;
+				downNeighbors[d] = t;
+				downWeights[d] = w;
+				
+				int u = upOffsets[t] + upFill[t]++;
+				upNeighbors[u] = f;
+				upWeights[u] = w;
+			}
+		}
+		
+		
+		/**
+		 * Order the nodes within each layer to reduce the number of edge crossings
+		 * using the barycenter heuristic with alternating sweeps, keeping the best
+		 * ordering found
+		 */
+		private void orderLayers() {
+			
+			// Initial ordering by the node index
+			
+			int[] counts = new int[numLayers];
+			for (int v = 0; v < numNodes; v++) counts[layer[v]]++;
+			
+			layers = new int[numLayers][];
+			for (int l = 0; l < numLayers; l++) layers[l] = new int[counts[l]];
+			
+			order = new int[numNodes];
+			Arrays.fill(counts, 0);
+			for (int v = 0; v < numNodes; v++) {
+				int l = layer[v];
+				order[v] = counts[l];
+				layers[l][counts[l]++] = v;
+			}
+			
+			if (numLayers <= 1) return;
+			
+			
+			// Iterate
+			
+			double[] key = new double[numNodes];
+			
+			int[][] best = copyLayers();
+			long bestCrossings = Long.MAX_VALUE;
+			int withoutImprovement = 0;
+			
+			for (int iter = 0; iter < MAX_ORDERING_ITERATIONS; iter++) {
+				
+				if (iter % 2 == 0) {
+					for (int l = 1; l < numLayers; l++) {
+						sortLayer(l, upOffsets, upNeighbors, key);
+					}
+				}
+				else {
+					for (int l = numLayers - 2; l >= 0; l--) {
+						sortLayer(l, downOffsets, downNeighbors, key);
+					}
+				}
+				
+				long c = countCrossings();
+				if (c < bestCrossings) {
+					bestCrossings = c;
+					best = copyLayers();
+					withoutImprovement = 0;
+				}
+				else {
+					withoutImprovement++;
+				}
+				
+				if (bestCrossings == 0 || withoutImprovement >= MAX_ORDERING_ITERATIONS_WITHOUT_IMPROVEMENT) break;
+				checkCanceled();
+			}
+			
+			
+			// Restore the best ordering
+			
+			layers = best;
+			for (int l = 0; l < numLayers; l++) {
+				for (int i = 0; i < layers[l].length; i++) order[layers[l][i]] = i;
+			}
+		}
+		
+		
+		/**
+		 * Copy the current ordering of the layers
+		 *
+		 * @return the copy
+		 */
+		private int[][] copyLayers() {
+			int[][] r = new int[numLayers][];
+			for (int l = 0; l < numLayers; l++) r[l] = layers[l].clone();
+			return r;
+		}
+		
+		
+		/**
+		 * Reorder a layer by the barycenters of the neighbors in the adjacent layer.
+		 * Nodes without neighbors keep their current position.
+		 *
+		 * @param l the layer
+		 * @param offsets the adjacency offsets toward the fixed layer
+		 * @param neighbors the adjacency toward the fixed layer
+		 * @param key the array for the sort keys
+		 */
+		private void sortLayer(int l, int[] offsets, int[] neighbors, final double[] key) {
+			
+			int[] nodes = layers[l];
+			Integer[] a = new Integer[nodes.length];
+			
+			for (int i = 0; i < nodes.length; i++) {
+				int v = nodes[i];
+				a[i] = v;
+				
+				int d = offsets[v + 1] - offsets[v];
+				if (d == 0) {
+					key[v] = order[v];
+				}
+				else {
+					double sum = 0;
+					for (int k = offsets[v]; k < offsets[v + 1]; k++) sum += order[neighbors[k]];
+					key[v] = sum / d;
+				}
+			}
+			
+			Arrays.sort(a, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer x, Integer y) {
+					return Double.compare(key[x], key[y]);
+				}
+			});
+			
+			for (int i = 0; i < nodes.length; i++) {
+				nodes[i] = a[i];
+				order[nodes[i]] = i;
+			}
+		}
+		
+		
+		/**
+		 * Count the edge crossings between all pairs of consecutive layers using
+		 * a Fenwick tree over the positions in the lower layer
+		 *
+		 * @return the number of crossings
+		 */
+		private long countCrossings() {
+			
+			long crossings = 0;
+			
+			for (int l = 0; l + 1 < numLayers; l++) {
+				
+				int size = layers[l + 1].length;
+				int[] tree = new int[size + 1];
+				int inserted = 0;
+				
+				for (int v : layers[l]) {
+					
+					// Count the previously inserted segments that end to the right
+					
+					for (int k = downOffsets[v]; k < downOffsets[v + 1]; k++) {
+						int p = order[downNeighbors[k]];
+						int notGreater = 0;
+						for (int i = p + 1; i > 0; i -= i & -i) notGreater += tree[i];
+						crossings += inserted - notGreater;
+					}
+					
+					for (int k = downOffsets[v]; k < downOffsets[v + 1]; k++) {
+						int p = order[downNeighbors[k]];
+						for (int i = p + 1; i <= size; i += i & -i) tree[i]++;
+						inserted++;
+					}
+				}
+			}
+			
+			return crossings;
+		}
+		
+		
+		/**
+		 * Assign the coordinates. Within each layer, the nodes are repeatedly
+		 * moved toward the weighted average of their neighbors, subject to the
+		 * ordering and the minimum separation, which is a weighted isotonic
+		 * regression solved by the pool-adjacent-violators algorithm.
+		 */
+		private void assignCoordinates() {
+			
+			// Initial packing, centered around 0
+			
+			breadthPos = new double[numNodes];
+			
+			for (int l = 0; l < numLayers; l++) {
+				int[] nodes = layers[l];
+				double x = 0;
+				for (int i = 0; i < nodes.length; i++) {
+					if (i > 0) x += separation(nodes[i - 1], nodes[i]);
+					breadthPos[nodes[i]] = x;
+				}
+				for (int i = 0; i < nodes.length; i++) breadthPos[nodes[i]] -= x / 2;
+			}
+			
+			
+			// Iterate
+			
+			int maxLayerSize = 0;
+			for (int l = 0; l < numLayers; l++) maxLayerSize = Math.max(maxLayerSize, layers[l].length);
+			
+			double[] target = new double[maxLayerSize];
+			double[] weight = new double[maxLayerSize];
+			double[] offset = new double[maxLayerSize];
+			double[] blockValue = new double[maxLayerSize];
+			double[] blockWeight = new double[maxLayerSize];
+			int[] blockSize = new int[maxLayerSize];
+			
+			for (int iter = 0; iter <= COORDINATE_ITERATIONS && numLayers > 1; iter++) {
+				
+				boolean down = iter % 2 == 0;
+				boolean both = iter == COORDINATE_ITERATIONS;
+				
+				for (int j = 0; j < numLayers; j++) {
+					int l = down ? j : numLayers - 1 - j;
+					int[] nodes = layers[l];
+					
+					
+					// Compute the targets
+					
+					for (int i = 0; i < nodes.length; i++) {
+						int v = nodes[i];
+						double sum = 0;
+						double w = 0;
+						
+						if (down || both) {
+							for (int k = upOffsets[v]; k < upOffsets[v + 1]; k++) {
+								sum += upWeights[k] * breadthPos[upNeighbors[k]];
+								w += upWeights[k];
+							}
+						}
+						
+						if (!down || both) {
+							for (int k = downOffsets[v]; k < downOffsets[v + 1]; k++) {
+								sum += downWeights[k] * breadthPos[downNeighbors[k]];
+								w += downWeights[k];
+							}
+						}
+						
+						if (w == 0) {
+							target[i] = breadthPos[v];
+							weight[i] = 1;
+						}
+						else {
+							target[i] = sum / w;
+							weight[i] = w;
+						}
+						
+						offset[i] = i == 0 ? 0 : offset[i - 1] + separation(nodes[i - 1], v);
+					}
+					
+					
+					// Pool adjacent violators on the targets shifted by the cumulative separation
+					
+					int numBlocks = 0;
+					for (int i = 0; i < nodes.length; i++) {
+						blockValue[numBlocks] = target[i] - offset[i];
+						blockWeight[numBlocks] = weight[i];
+						blockSize[numBlocks] = 1;
+						numBlocks++;
+						
+						while (numBlocks > 1 && blockValue[numBlocks - 2] > blockValue[numBlocks - 1]) {
+							double w = blockWeight[numBlocks - 2] + blockWeight[numBlocks - 1];
+							blockValue[numBlocks - 2] = (blockValue[numBlocks - 2] * blockWeight[numBlocks - 2]
+									+ blockValue[numBlocks - 1] * blockWeight[numBlocks - 1]) / w;
+							blockWeight[numBlocks - 2] = w;
+							blockSize[numBlocks - 2] += blockSize[numBlocks - 1];
+							numBlocks--;
+						}
+					}
+					
+					int i = 0;
+					for (int b = 0; b < numBlocks; b++) {
+						for (int k = 0; k < blockSize[b]; k++, i++) {
+							breadthPos[nodes[i]] = blockValue[b] + offset[i];
+						}
+					}
+				}
+				
+				checkCanceled();
+			}
+			
+			
+			// Stack the layers along the rank direction
+			
+			rankPos = new double[numLayers];
+			double[] layerDepth = new double[numLayers];
+			
+			for (int v = 0; v < n; v++) {
+				if (depth[v] > layerDepth[layer[v]]) layerDepth[layer[v]] = depth[v];
+			}
+			
+			for (int l = 0; l < numLayers; l++) {
+				if (l == 0) {
+					rankPos[l] = layerDepth[l] / 2;
+				}
+				else {
+					rankPos[l] = rankPos[l - 1] + layerDepth[l - 1] / 2 + RANK_SEPARATION + layerDepth[l] / 2;
+				}
+			}
+		}
+		
+		
+		/**
+		 * Get the minimum distance between the centers of two adjacent nodes in a layer
+		 *
+		 * @param u the left node
+		 * @param v the right node
+		 * @return the minimum distance
+		 */
+		private double separation(int u, int v) {
+			return (breadth[u] + breadth[v]) / 2 + NODE_SEPARATION;
+		}
+		
+		
+		/**
+		 * Get the control points of an edge: the centers of its end points, the
+		 * points where it leaves and enters the nodes, and its virtual nodes
+		 *
+		 * @param e the edge
+		 * @return the array of the breadth coordinates and the array of the rank coordinates
+		 */
+		public double[][] getEdgePoints(int e) {
+			
+			int t = tail(e);
+			int h = head(e);
+			int k = chainLength[e];
+			
+			double[] b = new double[k + 4];
+			double[] r = new double[k + 4];
+			
+			b[0] = breadthPos[t];
+			r[0] = rankPos[layer[t]];
+			b[1] = breadthPos[t];
+			r[1] = rankPos[layer[t]] + depth[t] / 2;
+			
+			for (int i = 0; i < k; i++) {
+				int v = chainStart[e] + i;
+				b[i + 2] = breadthPos[v];
+				r[i + 2] = rankPos[layer[v]];
+			}
+			
+			b[k + 2] = breadthPos[h];
+			r[k + 2] = rankPos[layer[h]] - depth[h] / 2;
+			b[k + 3] = breadthPos[h];
+			r[k + 3] = rankPos[layer[h]];
+			
+			
+			// Reversed edges are routed the same way, but the points go from the original tail
+			
+			if (reversed[e]) {
+				for (int i = 0, j = b.length - 1; i < j; i++, j--) {
+					double x = b[i]; b[i] = b[j]; b[j] = x;
+					double y = r[i]; r[i] = r[j]; r[j] = y;
+				}
+			}
+			
+			return new double[][] { b, r };
+		}
+	}
+	
+	
+	/**
+	 * A recursive task with continuation
+	 */
+	private class RecursiveTask {
+		
+		public BaseSummaryNode node;
+		public RecursiveTask parent;
+		
+		public GraphLayout result;
+		public Map<BaseSummaryNode, GraphLayout> layoutMap;
+		public int layoutMapExpected;
+		public int numTasks;
+		
+		
+		/**
+		 * Create an instance of class RecursiveTask
+		 *
+		 * @param parent the parent task
+		 * @param node the summary node
+		 */
+		public RecursiveTask(RecursiveTask parent, BaseSummaryNode node) {
+			
+			this.node = node;
+			this.parent = parent;
+			
+			this.result = null;
+			this.layoutMap = new HashMap<BaseSummaryNode, GraphLayout>();
+			this.layoutMapExpected = 0;
+			this.numTasks = 1;
+		}
+	}
+	
+	
+	/**
+	 * The queue of the tasks that are ready to run. A task becomes ready once
+	 * all of its children finish, so the workers wait for new tasks until all
+	 * tasks are done.
+	 */
+	private class TaskQueue {
+		
+		public LinkedList<RecursiveTask> ready = new LinkedList<RecursiveTask>();
+		public int remaining;
+		public Throwable error;
+		
+		
+		/**
+		 * Get the next task, waiting if necessary
+		 *
+		 * @return the next task, or null if there is nothing more to do
+		 */
+		public synchronized RecursiveTask take() {
+			while (ready.isEmpty() && remaining > 0 && error == null && !canceled) {
+				try {
+					wait(100);
+				}
+				catch (InterruptedException e) {
+					fail(e);
+				}
+			}
+			if (error != null || canceled || ready.isEmpty()) return null;
+			return ready.removeFirst();
+		}
+		
+		
+		/**
+		 * Record the result of a task and schedule its parent if it is ready
+		 *
+		 * @param task the finished task
+		 */
+		public synchronized void finish(RecursiveTask task) {
+			remaining--;
+			RecursiveTask parent = task.parent;
+			if (parent != null) {
+				parent.layoutMap.put(task.node, task.result);
+				if (parent.layoutMap.size() >= parent.layoutMapExpected) ready.add(parent);
+			}
+			notifyAll();
+		}
+		
+		
+		/**
+		 * Record an error and stop all workers
+		 *
+		 * @param t the error
+		 */
+		public synchronized void fail(Throwable t) {
+			if (error == null) error = t;
+			notifyAll();
+		}
+	}
+	
+	
+	/**
+	 * A worker thread for recursive tasks
+	 */
+	private class WorkerThread extends Thread {
+		
+		private TaskQueue queue;
+		private SynchronizedJobObserver observer;
+		
+		
+		/**
+		 * Create an instance of the worker thread
+		 *
+		 * @param queue the task queue
+		 * @param observer the job observer (can be null)
+		 */
+		public WorkerThread(TaskQueue queue, SynchronizedJobObserver observer) {
+			this.queue = queue;
+			this.observer = observer;
+		}
+		
+		
+		/**
+		 * Run the tasks
+		 */
+		@Override
+		public void run() {
+			try {
+				RecursiveTask t;
+				while ((t = queue.take()) != null) {
+					t.result = combineLayoutsForSummaryNode(t.node, t.layoutMap);
+					if (observer != null) observer.addProgress(1);
+					queue.finish(t);
+				}
+			}
+			catch (Throwable t) {
+				queue.fail(t);
+			}
+		}
+	}
+	
+	
+	/**
+	 * Configuration panel
+	 */
+	private class ConfigPanel extends WizardPanel implements ActionListener {
+		
+		private JLabel topLabel;
+		private JLabel rankdirLabel;
+		private JComboBox<String> rankdirCombo;
+		private JCheckBox useSummariesCheck;
+		private JCheckBox semanticZoomCheck;
+		
+		
+		/**
+		 * Create an instance of ConfigPanel
+		 */
+		public ConfigPanel() {
+			super("Configure Layered Layout");
+			
+			
+			// Initialize the panel
+			
+			panel.setLayout(new GridBagLayout());
+			GridBagConstraints c = new GridBagConstraints();
+			
+			int gridy = 0;
+			
+			
+			// Header
+			
+			topLabel = new JLabel("Configure graph layout:");
+			topLabel.setBorder(BorderFactory.createEmptyBorder(10, 0, 0, 0));
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			c.weightx = 1;
+			c.weighty = 0;
+			panel.add(topLabel, c);
+			c.weightx = 0;
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			panel.add(new JLabel(" "), c);
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			
+			// Rank-direction
+			
+			rankdirLabel = new JLabel("Graph direction:   ");
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			panel.add(rankdirLabel, c);
+			
+			rankdirCombo = new JComboBox<String>(Graphviz.RANKDIRS_LONG);
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 1;
+			c.gridy = gridy;
+			panel.add(rankdirCombo, c);
+			
+			int i = 0, index = 0;
+			for (String a : Graphviz.RANKDIRS) {
+				if (a.equals(rankdir)) index = i;
+				i++;
+			}
+			
+			rankdirCombo.setSelectedIndex(index);
+			
+			gridy++;
+			
+			
+			// Use of summaries
+			
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			panel.add(new JLabel(" "), c);
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			useSummariesCheck = new JCheckBox("Compute the layout using node summaries");
+			useSummariesCheck.setSelected(bySummaryNodes);
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			panel.add(useSummariesCheck, c);
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			semanticZoomCheck = new JCheckBox("Optimize the layout for semantic zoom");
+			semanticZoomCheck.setSelected(zoomBasedLayout);
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			panel.add(semanticZoomCheck, c);
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			
+			// Finish
+			
+			c.fill = GridBagConstraints.HORIZONTAL;
+			c.gridx = 0;
+			c.gridy = gridy;
+			c.gridwidth = 2;
+			c.weighty = 1;
+			panel.add(new JLabel(" "), c);
+			c.weighty = 0;
+			c.gridwidth = 1;
+			
+			gridy++;
+			
+			useSummariesCheck.addActionListener(this);
+			
+			updateEnabled();
+		}
+		
+		
+		/**
+		 * Callback for when the next button was clicked
+		 */
+		protected void wizardNext() {
+			
+			rankdir = Graphviz.RANKDIRS[rankdirCombo.getSelectedIndex()];
+			
+			bySummaryNodes = useSummariesCheck.isSelected();
+			zoomBasedLayout = semanticZoomCheck.isSelected() && bySummaryNodes;
+		}
+		
+		
+		/**
+		 * Update the enabled properties
+		 */
+		private void updateEnabled() {
+			semanticZoomCheck.setEnabled(useSummariesCheck.isSelected());
+		}
+		
+		
+		/**
+		 * A callback for when an action has been performed
+		 *
+		 * @param e the action event
+		 */
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			updateEnabled();
+		}
+	}
+}
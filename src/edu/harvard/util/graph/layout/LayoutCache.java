@@ -0,0 +1,638 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util.graph.layout;
+
+import edu.harvard.util.graph.*;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+
+/**
+ * A persistent cache of the layouts of individual summary nodes. Each entry
+ * is the layout of the immediate children of a summary node, before the
+ * layouts of the child summary nodes are merged into it, and it is keyed by
+ * a structural hash of the summary node: the keys of its children, its
+ * internal edges, the sizes of the layouts of the child summary nodes, and
+ * the settings of the layout algorithm. The key of a child summary node is
+ * the hash of its own structure, so a summary node gets the same key in a
+ * graph that was re-imported or re-summarized, as long as its contents did
+ * not change.
+ *
+ * <p>The entries are stored as individual files in a directory, and the
+ * least recently used entries are evicted once the number of entries
+ * exceeds the limit. The last modification time of the file records the
+ * last use, so the order is preserved across sessions.</p>
+ *
+ * @author Peter Macko
+ */
+public class LayoutCache {
+	
+	public static final String DIRECTORY_SUFFIX = ".layout-cache";
+	public static final String EXTENSION = "lay";
+	public static final int DEFAULT_MAX_ENTRIES = 20000;
+	
+	private static final int MAGIC = 0x4C415943;		// "LAYC"
+	private static final int VERSION = 1;
+	
+	private static HashMap<File, LayoutCache> instances = new HashMap<File, LayoutCache>();
+	
+	private File directory;
+	private int maxEntries;
+	
+	private LinkedHashMap<String, File> index;
+	private Map<BaseSummaryNode, String> structureKeys;
+	private boolean warned;
+	
+	private int hits;
+	private int misses;
+	
+	
+	/**
+	 * Create an instance of class LayoutCache
+	 *
+	 * @param directory the cache directory (will be created if it does not exist)
+	 * @param maxEntries the maximum number of entries
+	 */
+	public LayoutCache(File directory, int maxEntries) {
+		
+		this.directory = directory;
+		this.maxEntries = Math.max(1, maxEntries);
+		
+		this.index = null;
+		this.structureKeys = new IdentityHashMap<BaseSummaryNode, String>();
+		this.warned = false;
+		
+		this.hits = 0;
+		this.misses = 0;
+	}
+	
+	
+	/**
+	 * Get the shared cache for the given project or input file. The cache is
+	 * stored in a directory next to the file.
+	 *
+	 * @param file the project or input file
+	 * @return the layout cache
+	 */
+	public static LayoutCache forFile(File file) {
+		
+		File dir = new File(file.getAbsoluteFile().getParentFile(), file.getName() + DIRECTORY_SUFFIX);
+		
+		synchronized (instances) {
+			LayoutCache c = instances.get(dir);
+			if (c == null) {
+				c = new LayoutCache(dir, DEFAULT_MAX_ENTRIES);
+				instances.put(dir, c);
+			}
+			return c;
+		}
+	}
+	
+	
+	/**
+	 * Return the cache directory
+	 *
+	 * @return the directory
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	
+	/**
+	 * Return the number of cache hits since the cache was created
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+	
+	
+	/**
+	 * Return the number of cache misses since the cache was created
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+	
+	
+	/**
+	 * Forget the memoized structural keys of the summary nodes. This must be
+	 * called before computing a layout if the summaries might have changed,
+	 * and after the layout is computed, so that the cache, which outlives the
+	 * documents, does not keep their summary nodes reachable.
+	 */
+	public synchronized void invalidateStructure() {
+		structureKeys.clear();
+	}
+	
+	
+	/**
+	 * Get the key of a node that identifies it independently of its index
+	 *
+	 * @param node the node
+	 * @return the key
+	 */
+	private String nodeKey(BaseNode node) {
+		
+		if (!(node instanceof BaseSummaryNode)) {
+			return "N" + node.getStructuralKey();
+		}
+		
+		BaseSummaryNode s = (BaseSummaryNode) node;
+		
+		synchronized (this) {
+			String k = structureKeys.get(s);
+			if (k != null) return k;
+		}
+		
+		MessageDigest md = newDigest();
+		List<BaseNode> children = getSortedChildren(s, null, md);
+		if (children == null) {
+			
+			// Ambiguous children: make the key unique, so that it never matches
+			
+			update(md, "#" + System.identityHashCode(s) + "#" + System.nanoTime());
+		}
+		
+		String k = "S" + toHex(md.digest());
+		
+		synchronized (this) {
+			structureKeys.put(s, k);
+		}
+		
+		return k;
+	}
+	
+	
+	/**
+	 * Sort the visible children of a summary node by their keys, and add the
+	 * children and the internal edges to the digest
+	 *
+	 * @param node the summary node
+	 * @param keys the list to store the child keys in the sorted order (can be null)
+	 * @param md the message digest
+	 * @return the sorted children, or null if two children have the same key
+	 */
+	private List<BaseNode> getSortedChildren(BaseSummaryNode node, List<String> keys, MessageDigest md) {
+		
+		// Sort the children
+		
+		final HashMap<BaseNode, String> map = new HashMap<BaseNode, String>();
+		ArrayList<BaseNode> children = new ArrayList<BaseNode>();
+		
+		for (BaseNode n : node.getBaseChildren()) {
+			if (!n.isVisible()) continue;
+			map.put(n, nodeKey(n));
+			children.add(n);
+		}
+		
+		Collections.sort(children, new Comparator<BaseNode>() {
+			@Override
+			public int compare(BaseNode a, BaseNode b) {
+				return map.get(a).compareTo(map.get(b));
+			}
+		});
+		
+		for (int i = 1; i < children.size(); i++) {
+			if (map.get(children.get(i - 1)).equals(map.get(children.get(i)))) return null;
+		}
+		
+		update(md, "" + children.size());
+		for (BaseNode n : children) {
+			String k = map.get(n);
+			update(md, k);
+			if (keys != null) keys.add(k);
+		}
+		
+		
+		// Add the internal edges, sorted by the keys of their end points
+		
+		ArrayList<String> edges = new ArrayList<String>();
+		for (BaseEdge e : node.getInternalEdges()) {
+			String f = map.get(e.getBaseFrom());
+			String t = map.get(e.getBaseTo());
+			if (f == null || t == null) continue;
+			edges.add(f + "\u0000" + t);
+		}
+		
+		Collections.sort(edges);
+		update(md, "" + edges.size());
+		for (String s : edges) update(md, s);
+		
+		return children;
+	}
+	
+	
+	/**
+	 * Create the cache key for the layout of the given summary node
+	 *
+	 * @param node the summary node
+	 * @param layoutMap the map of the child summary nodes to their layouts (can be null)
+	 * @param settings the string that describes the layout algorithm and its settings
+	 * @return the key, or null if the node cannot be cached
+	 */
+	public Key createKey(BaseSummaryNode node, Map<BaseSummaryNode, GraphLayout> layoutMap, String settings) {
+		
+		MessageDigest md = newDigest();
+		update(md, settings);
+		
+		List<BaseNode> children = getSortedChildren(node, null, md);
+		if (children == null) return null;
+		
+		for (BaseNode n : children) {
+			if (!(n instanceof BaseSummaryNode)) continue;
+			GraphLayout l = layoutMap == null ? null : layoutMap.get(n);
+			if (l == null) {
+				update(md, "-");
+			}
+			else {
+				update(md, Double.toString(l.getWidth()) + "x" + Double.toString(l.getHeight()));
+			}
+		}
+		
+		return new Key(toHex(md.digest()), children);
+	}
+	
+	
+	/**
+	 * Load the cache index, if it was not loaded already. The entries are
+	 * ordered by their last use.
+	 */
+	private synchronized void loadIndex() {
+		
+		if (index != null) return;
+		index = new LinkedHashMap<String, File>(16, 0.75f, true);
+		
+		File[] files = directory.listFiles();
+		if (files == null) return;
+		
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				long x = a.lastModified();
+				long y = b.lastModified();
+				return x < y ? -1 : (x == y ? 0 : 1);
+			}
+		});
+		
+		String suffix = "." + EXTENSION;
+		for (File f : files) {
+			String name = f.getName();
+			if (!name.endsWith(suffix)) continue;
+			index.put(name.substring(0, name.length() - suffix.length()), f);
+		}
+	}
+	
+	
+	/**
+	 * Look up a layout and add its nodes and edges to the given layout
+	 *
+	 * @param key the cache key
+	 * @param layout the empty layout to fill in
+	 * @return true if the layout was found, false otherwise
+	 */
+	public boolean get(Key key, GraphLayout layout) {
+		
+		File f;
+		
+		synchronized (this) {
+			loadIndex();
+			f = index.get(key.hash);
+			if (f == null) {
+				misses++;
+				return false;
+			}
+		}
+		
+		try {
+			readEntry(f, key, layout);
+			f.setLastModified(System.currentTimeMillis());
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				index.remove(key.hash);
+				misses++;
+			}
+			f.delete();
+			return false;
+		}
+		
+		synchronized (this) {
+			hits++;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Store a layout in the cache
+	 *
+	 * @param key the cache key
+	 * @param layout the layout of the summary node
+	 */
+	public void put(Key key, GraphLayout layout) {
+		
+		File f = new File(directory, key.hash + "." + EXTENSION);
+		
+		try {
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("Cannot create directory " + directory);
+			}
+			
+			File tmp = new File(directory, key.hash + "." + Thread.currentThread().getId() + ".tmp");
+			writeEntry(tmp, key, layout);
+			
+			if (!tmp.renameTo(f)) {
+				f.delete();
+				if (!tmp.renameTo(f)) {
+					tmp.delete();
+					throw new IOException("Cannot create " + f);
+				}
+			}
+		}
+		catch (IOException e) {
+			synchronized (this) {
+				if (!warned) {
+					System.err.println("Warning: Cannot write to the layout cache: " + e.getMessage());
+					warned = true;
+				}
+			}
+			return;
+		}
+		
+		
+		// Evict the least recently used entries
+		
+		synchronized (this) {
+			loadIndex();
+			index.put(key.hash, f);
+			
+			Iterator<Map.Entry<String, File>> i = index.entrySet().iterator();
+			while (index.size() > maxEntries && i.hasNext()) {
+				Map.Entry<String, File> e = i.next();
+				e.getValue().delete();
+				i.remove();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Write a cache entry
+	 *
+	 * @param file the file
+	 * @param key the cache key
+	 * @param layout the layout
+	 * @throws IOException on error
+	 */
+	private void writeEntry(File file, Key key, GraphLayout layout) throws IOException {
+		
+		HashMap<BaseNode, Integer> positions = new HashMap<BaseNode, Integer>();
+		for (int i = 0; i < key.children.size(); i++) positions.put(key.children.get(i), i);
+		
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			
+			
+			// Nodes
+			
+			out.writeInt(key.children.size());
+			for (BaseNode n : key.children) {
+				GraphLayoutNode ln = layout.getLayoutNode(n.getIndex());
+				out.writeBoolean(ln != null);
+				if (ln == null) continue;
+				out.writeDouble(ln.getX());
+				out.writeDouble(ln.getY());
+				out.writeDouble(ln.getWidth());
+				out.writeDouble(ln.getHeight());
+			}
+			
+			
+			// Edges
+			
+			ArrayList<GraphLayoutEdge> edges = new ArrayList<GraphLayoutEdge>();
+			for (GraphLayoutEdge e : layout.getLayoutEdges()) {
+				if (e == null) continue;
+				if (!positions.containsKey(e.getFrom().getBaseNode())) continue;
+				if (!positions.containsKey(e.getTo().getBaseNode())) continue;
+				edges.add(e);
+			}
+			
+			out.writeInt(edges.size());
+			for (GraphLayoutEdge e : edges) {
+				out.writeInt(positions.get(e.getFrom().getBaseNode()));
+				out.writeInt(positions.get(e.getTo().getBaseNode()));
+				
+				double[] x = e.x;
+				double[] y = e.y;
+				int num = x == null ? 0 : x.length;
+				
+				out.writeInt(num);
+				for (int i = 0; i < num; i++) {
+					out.writeDouble(x[i]);
+					out.writeDouble(y[i]);
+				}
+			}
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	
+	/**
+	 * Read a cache entry
+	 *
+	 * @param file the file
+	 * @param key the cache key
+	 * @param layout the layout to fill in
+	 * @throws IOException on error
+	 */
+	private void readEntry(File file, Key key, GraphLayout layout) throws IOException {
+		
+		BaseGraph graph = layout.getGraph();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		
+		try {
+			if (in.readInt() != MAGIC) throw new IOException("Not a layout cache entry");
+			if (in.readInt() != VERSION) throw new IOException("Unsupported layout cache entry version");
+			
+			
+			// Nodes
+			
+			int numNodes = in.readInt();
+			if (numNodes != key.children.size()) throw new IOException("The number of nodes does not match");
+			
+			GraphLayoutNode[] nodes = new GraphLayoutNode[numNodes];
+			for (int i = 0; i < numNodes; i++) {
+				if (!in.readBoolean()) continue;
+				double x = in.readDouble();
+				double y = in.readDouble();
+				double w = in.readDouble();
+				double h = in.readDouble();
+				nodes[i] = new GraphLayoutNode(key.children.get(i), x, y);
+				nodes[i].setSize(w, h);
+			}
+			
+			
+			// Edges
+			
+			int numEdges = in.readInt();
+			ArrayList<GraphLayoutEdge> edges = new ArrayList<GraphLayoutEdge>(numEdges);
+			
+			for (int i = 0; i < numEdges; i++) {
+				int f = in.readInt();
+				int t = in.readInt();
+				if (f < 0 || f >= numNodes || t < 0 || t >= numNodes || nodes[f] == null || nodes[t] == null) {
+					throw new IOException("Invalid edge");
+				}
+				
+				int num = in.readInt();
+				double[] x = num == 0 ? null : new double[num];
+				double[] y = num == 0 ? null : new double[num];
+				for (int k = 0; k < num; k++) {
+					x[k] = in.readDouble();
+					y[k] = in.readDouble();
+				}
+				
+				BaseEdge e;
+				synchronized (graph) {
+					e = graph.getBaseEdgeExt(nodes[f].getBaseNode(), nodes[t].getBaseNode());
+				}
+				if (e == null) continue;
+				
+				edges.add(num == 0 ? new GraphLayoutEdge(e, nodes[f], nodes[t])
+						: new GraphLayoutEdge(e, nodes[f], nodes[t], x, y));
+			}
+			
+			
+			// Add everything to the layout only once the entire entry was read
+			
+			for (GraphLayoutNode n : nodes) if (n != null) layout.addLayoutNodeFast(n);
+			for (GraphLayoutEdge e : edges) layout.addLayoutEdgeFast(e);
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	
+	/**
+	 * Create a new message digest
+	 *
+	 * @return the message digest
+	 */
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new InternalError("SHA-1 is not available");
+		}
+	}
+	
+	
+	/**
+	 * Add a string to the digest
+	 *
+	 * @param md the message digest
+	 * @param s the string
+	 */
+	private static void update(MessageDigest md, String s) {
+		try {
+			md.update(s.getBytes("UTF-8"));
+			md.update((byte) 0);
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new InternalError("UTF-8 is not supported");
+		}
+	}
+	
+	
+	/**
+	 * Convert bytes to a hexadecimal string
+	 *
+	 * @param b the bytes
+	 * @return the hexadecimal string
+	 */
+	private static String toHex(byte[] b) {
+		StringBuilder sb = new StringBuilder(b.length * 2);
+		for (byte x : b) {
+			sb.append(Character.forDigit((x >> 4) & 0xf, 16));
+			sb.append(Character.forDigit(x & 0xf, 16));
+		}
+		return sb.toString();
+	}
+	
+	
+	/**
+	 * A cache key, which also remembers the order of the children of the
+	 * summary node, in which the nodes are stored in the cache entry
+	 */
+	public static class Key {
+		
+		private String hash;
+		private List<BaseNode> children;
+		
+		
+		/**
+		 * Create an instance of class Key
+		 *
+		 * @param hash the hash
+		 * @param children the visible children in the order of their keys
+		 */
+		private Key(String hash, List<BaseNode> children) {
+			this.hash = hash;
+			this.children = children;
+		}
+		
+		
+		/**
+		 * Return the hash
+		 *
+		 * @return the hexadecimal string of the hash
+		 */
+		public String getHash() {
+			return hash;
+		}
+	}
+}
@@ -0,0 +1,404 @@
+/*
+ * Provenance Map Orbiter: A visualization tool for large provenance graphs
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.graph.layout;
+
+import edu.harvard.util.graph.*;
+
+import java.util.*;
+
+
+/**
+ * A background service that computes the layouts of summary nodes before
+ * they are expanded, so that expanding them does not have to wait for the
+ * layout algorithm. The summary nodes are processed in the order in which
+ * they were requested, followed by their descendants up to the given depth.
+ * 
+ * The number of layout nodes computed by the prefetcher is bounded. When the
+ * limit is reached, the layouts of the least recently requested summary nodes
+ * are discarded, except for the summary nodes that are expanded or pinned, or
+ * that were requested most recently.
+ * 
+ * All updates of the layout are synchronized on the layout object.
+ * 
+ * @author Peter Macko
+ */
+public class LayoutPrefetcher {
+	
+	private GraphLayout layout;
+	
+	private int maxPrefetchedNodes;
+	private int depth;
+	
+	private LinkedList<Task> queue;
+	private HashSet<BaseSummaryNode> requested;
+	private HashSet<BaseSummaryNode> pinned;
+	private LinkedHashMap<BaseSummaryNode, Integer> prefetched;
+	private int prefetchedNodes;
+	
+	private int generation;
+	private boolean canceled;
+	private Thread worker;
+	
+	
+	/**
+	 * Create an instance of class LayoutPrefetcher
+	 * 
+	 * @param layout the layout to complete in the background
+	 */
+	public LayoutPrefetcher(GraphLayout layout) {
+		
+		this.layout = layout;
+		
+		this.maxPrefetchedNodes = 100000;
+		this.depth = 2;
+		
+		this.queue = new LinkedList<Task>();
+		this.requested = new HashSet<BaseSummaryNode>();
+		this.pinned = new HashSet<BaseSummaryNode>();
+		this.prefetched = new LinkedHashMap<BaseSummaryNode, Integer>(16, 0.75f, true);
+		this.prefetchedNodes = 0;
+		
+		this.generation = 0;
+		this.canceled = false;
+		this.worker = null;
+	}
+	
+	
+	/**
+	 * Return the layout
+	 * 
+	 * @return the layout completed by the prefetcher
+	 */
+	public GraphLayout getLayout() {
+		return layout;
+	}
+	
+	
+	/**
+	 * Set the maximum number of layout nodes computed by the prefetcher
+	 * 
+	 * @param max the maximum number of nodes
+	 */
+	public synchronized void setMaxPrefetchedNodes(int max) {
+		this.maxPrefetchedNodes = max;
+	}
+	
+	
+	/**
+	 * Get the maximum number of layout nodes computed by the prefetcher
+	 * 
+	 * @return the maximum number of nodes
+	 */
+	public synchronized int getMaxPrefetchedNodes() {
+		return maxPrefetchedNodes;
+	}
+	
+	
+	/**
+	 * Set how many levels of summary nodes to compute for each requested node
+	 * 
+	 * @param depth the number of levels, starting with the children of the requested node
+	 */
+	public synchronized void setDepth(int depth) {
+		this.depth = depth;
+	}
+	
+	
+	/**
+	 * Get how many levels of summary nodes are computed for each requested node
+	 * 
+	 * @return the number of levels, starting with the children of the requested node
+	 */
+	public synchronized int getDepth() {
+		return depth;
+	}
+	
+	
+	/**
+	 * Get the number of layout nodes currently computed by the prefetcher
+	 * 
+	 * @return the number of nodes
+	 */
+	public synchronized int getPrefetchedNodeCount() {
+		return prefetchedNodes;
+	}
+	
+	
+	/**
+	 * Request the layouts of the contents of the given summary nodes, replacing
+	 * the previous requests
+	 * 
+	 * @param nodes the summary nodes, the most important first
+	 * @param expanded the summary nodes that are currently expanded (their layouts will not be discarded)
+	 */
+	public synchronized void request(List<? extends BaseSummaryNode> nodes, Collection<? extends BaseSummaryNode> expanded) {
+		
+		if (canceled) return;
+		
+		generation++;
+		queue.clear();
+		requested.clear();
+		pinned.clear();
+		pinned.addAll(expanded);
+		
+		for (BaseSummaryNode n : nodes) {
+			if (requested.add(n)) queue.add(new Task(n, depth));
+		}
+		
+		if (queue.isEmpty()) return;
+		
+		
+		// Start the worker thread if it is not running yet
+		
+		if (worker == null) {
+			worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work();
+				}
+			}, "Layout prefetcher");
+			worker.setDaemon(true);
+			worker.setPriority(Thread.NORM_PRIORITY - 1);
+			worker.start();
+		}
+		
+		notifyAll();
+	}
+	
+	
+	/**
+	 * Pin a summary node and its ancestors, so that the layouts of their contents
+	 * are not discarded until the next request. This should be called before the
+	 * node is expanded.
+	 * 
+	 * @param node the summary node
+	 */
+	public synchronized void pin(BaseSummaryNode node) {
+		for (BaseSummaryNode n = node; n != null; n = n.getParent()) {
+			if (!pinned.add(n)) break;
+		}
+	}
+	
+	
+	/**
+	 * Stop the prefetcher. The layout that is being computed is finished.
+	 */
+	public synchronized void cancel() {
+		canceled = true;
+		queue.clear();
+		notifyAll();
+	}
+	
+	
+	/**
+	 * The main loop of the worker thread
+	 */
+	private void work() {
+		
+		while (true) {
+			
+			// Get the next task
+			
+			Task t;
+			int g;
+			
+			synchronized (this) {
+				while (queue.isEmpty() && !canceled) {
+					try {
+						wait();
+					}
+					catch (InterruptedException e) {
+						return;
+					}
+				}
+				
+				if (canceled) return;
+				t = queue.removeFirst();
+				g = generation;
+			}
+			
+			
+			// Compute the layout
+			
+			BaseSummaryNode s = t.node;
+			if (!s.isVisible()) continue;
+			
+			try {
+				if (!prefetch(s)) continue;
+			}
+			catch (Throwable e) {
+				e.printStackTrace();
+				continue;
+			}
+			
+			
+			// Continue with the next level
+			
+			if (t.depth > 1) {
+				synchronized (this) {
+					if (g != generation) continue;
+					for (BaseNode n : s.getBaseChildren()) {
+						if (n instanceof BaseSummaryNode && n.isVisible()) {
+							queue.add(new Task((BaseSummaryNode) n, t.depth - 1));
+						}
+					}
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Compute the layout of the contents of a summary node, if it is missing
+	 * 
+	 * @param s the summary node
+	 * @return true if the contents of the node have a layout, false if it could not be computed
+	 */
+	private boolean prefetch(BaseSummaryNode s) {
+		
+		synchronized (layout) {
+			
+			// Compute the layout only for the nodes that are already laid out
+			
+			if (layout.getLayoutNode(s.getIndex()) == null) return false;
+			
+			int missing = 0;
+			for (BaseNode n : s.getBaseChildren()) {
+				if (n.isVisible() && layout.getLayoutNode(n.getIndex()) == null) missing++;
+			}
+			
+			if (missing == 0) {
+				synchronized (this) {
+					prefetched.get(s);
+				}
+				return true;
+			}
+			
+			
+			// Make room for the new nodes
+			
+			synchronized (this) {
+				if (!makeRoom(missing)) return false;
+			}
+			
+			
+			// Compute the layout
+			
+			layout.getAlgorithm().updateLayout(layout, s, null);
+			
+			int count = 0;
+			for (BaseNode n : s.getBaseChildren()) {
+				if (n.isVisible() && layout.getLayoutNode(n.getIndex()) != null) count++;
+			}
+			
+			synchronized (this) {
+				Integer old = prefetched.put(s, count);
+				prefetchedNodes += count - (old == null ? 0 : old.intValue());
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Discard the least recently requested layouts to make room for the given
+	 * number of nodes. The caller must hold the locks on both the layout and
+	 * the prefetcher, in this order.
+	 * 
+	 * @param needed the number of nodes
+	 * @return true if there is enough room
+	 */
+	private boolean makeRoom(int needed) {
+		
+		if (prefetchedNodes + needed <= maxPrefetchedNodes) return true;
+		
+		
+		// Choose the layouts to discard
+		
+		HashSet<BaseSummaryNode> victims = new HashSet<BaseSummaryNode>();
+		int freed = 0;
+		
+		for (Map.Entry<BaseSummaryNode, Integer> e : prefetched.entrySet()) {
+			if (prefetchedNodes - freed + needed <= maxPrefetchedNodes) break;
+			
+			BaseSummaryNode s = e.getKey();
+			if (pinned.contains(s) || requested.contains(s)) continue;
+			
+			victims.add(s);
+			freed += e.getValue();
+		}
+		
+		if (prefetchedNodes - freed + needed > maxPrefetchedNodes) return false;
+		
+		
+		// Discard them, together with any prefetched layouts inside of them
+		
+		layout.discardLayouts(victims);
+		
+		for (Iterator<Map.Entry<BaseSummaryNode, Integer>> i = prefetched.entrySet().iterator(); i.hasNext(); ) {
+			Map.Entry<BaseSummaryNode, Integer> e = i.next();
+			for (BaseSummaryNode n = e.getKey(); n != null; n = n.getParent()) {
+				if (victims.contains(n)) {
+					prefetchedNodes -= e.getValue();
+					i.remove();
+					break;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * A request to compute the layout of the contents of a summary node
+	 */
+	private static class Task {
+		
+		final BaseSummaryNode node;
+		final int depth;
+		
+		
+		/**
+		 * Create an instance of class Task
+		 * 
+		 * @param node the summary node
+		 * @param depth the number of levels to compute
+		 */
+		Task(BaseSummaryNode node, int depth) {
+			this.node = node;
+			this.depth = depth;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+/*
+ * Provenance Map Orbiter: A visualization tool for large provenance graphs
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+package edu.harvard.util.graph.layout;
+
+import java.io.*;
+
+
+/**
+ * A tokenizer for the Graphviz plain output format. It reads the input
+ * stream through a reusable buffer and parses numbers directly from the
+ * bytes, so that it does not allocate per line or per token. Lines that
+ * end with a backslash are joined with the following line, and quoted
+ * tokens are returned without the quotes.
+ *
+ * The tokenizer never reads past the end of the current line unless it
+ * has to, so it can be used to read several consecutive outputs from the
+ * same long-lived process.
+ *
+ * @author Peter Macko
+ */
+final class PlainTokenizer {
+	
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	private InputStream in;
+	private byte[] buffer;
+	private int position;
+	private int limit;
+	private int pushback;
+	
+	private byte[] token;
+	private int tokenLength;
+	
+	private boolean endOfLine;
+	private int line;
+	
+	
+	/**
+	 * Create an instance of class PlainTokenizer
+	 *
+	 * @param in the input stream
+	 */
+	public PlainTokenizer(InputStream in) {
+		
+		this.in = in;
+		this.buffer = new byte[64 * 1024];
+		this.position = 0;
+		this.limit = 0;
+		this.pushback = -2;
+		
+		this.token = new byte[256];
+		this.tokenLength = 0;
+		
+		this.endOfLine = true;
+		this.line = 0;
+	}
+	
+	
+	/**
+	 * Read the next raw byte
+	 *
+	 * @return the byte, or -1 on the end of the stream
+	 * @throws IOException on I/O error
+	 */
+	private int readRaw() throws IOException {
+		
+		if (pushback != -2) {
+			int c = pushback;
+			pushback = -2;
+			return c;
+		}
+		
+		if (position >= limit && !fill()) return -1;
+		return buffer[position++] & 0xff;
+	}
+	
+	
+	/**
+	 * Refill the buffer if it is empty
+	 *
+	 * @return true if there is more input, or false on the end of the stream
+	 * @throws IOException on I/O error
+	 */
+	private boolean fill() throws IOException {
+		
+		if (position < limit) return true;
+		
+		limit = in.read(buffer, 0, buffer.length);
+		position = 0;
+		if (limit <= 0) {
+			limit = 0;
+			return false;
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Read the next byte, skipping line continuations
+	 *
+	 * @return the byte, or -1 on the end of the stream
+	 * @throws IOException on I/O error
+	 */
+	private int read() throws IOException {
+		
+		while (true) {
+			int c = readRaw();
+			if (c != '\\') return c;
+			
+			int d = readRaw();
+			if (d == '\n') continue;
+			if (d == '\r') {
+				int e = readRaw();
+				if (e == '\n') continue;
+				pushback = e;
+				return c;
+			}
+			
+			pushback = d;
+			return c;
+		}
+	}
+	
+	
+	/**
+	 * Move to the beginning of the next line, skipping the rest of the current line
+	 *
+	 * @return true if there is a next line, or false on the end of the stream
+	 * @throws IOException on I/O error
+	 */
+	public boolean nextLine() throws IOException {
+		
+		if (!endOfLine) {
+			int c;
+			do {
+				c = read();
+			}
+			while (c != '\n' && c != -1);
+			if (c == -1) return false;
+		}
+		
+		if (pushback == -1) return false;
+		if (pushback == -2 && !fill()) return false;
+		
+		endOfLine = false;
+		line++;
+		return true;
+	}
+	
+	
+	/**
+	 * Read the next token on the current line
+	 *
+	 * @return true if there is a token, or false on the end of the line
+	 * @throws IOException on I/O error
+	 */
+	public boolean next() throws IOException {
+		
+		tokenLength = 0;
+		if (endOfLine) return false;
+		
+		
+		// Skip whitespace
+		
+		int c;
+		do {
+			c = read();
+		}
+		while (c == ' ' || c == '\t' || c == '\r');
+		
+		if (c == '\n' || c == -1) {
+			endOfLine = true;
+			return false;
+		}
+		
+		
+		// Quoted token
+		
+		if (c == '"') {
+			while (true) {
+				c = read();
+				if (c == -1 || c == '\n') {
+					endOfLine = true;
+					break;
+				}
+				if (c == '"') break;
+				if (c == '\\') {
+					int d = read();
+					if (d == -1 || d == '\n') {
+						endOfLine = true;
+						break;
+					}
+					if (d != '"' && d != '\\') append(c);
+					c = d;
+				}
+				append(c);
+			}
+			return true;
+		}
+		
+		
+		// Simple token
+		
+		while (true) {
+			append(c);
+			c = read();
+			if (c == ' ' || c == '\t' || c == '\r') break;
+			if (c == '\n' || c == -1) {
+				endOfLine = true;
+				break;
+			}
+		}
+		
+		return true;
+	}
+	
+	
+	/**
+	 * Append a byte to the current token
+	 *
+	 * @param c the byte
+	 */
+	private void append(int c) {
+		if (tokenLength >= token.length) {
+			byte[] b = new byte[token.length * 2];
+			System.arraycopy(token, 0, b, 0, tokenLength);
+			token = b;
+		}
+		token[tokenLength++] = (byte) c;
+	}
+	
+	
+	/**
+	 * Determine whether the current token is equal to the given ASCII string
+	 *
+	 * @param s the string
+	 * @return true if they are equal
+	 */
+	public boolean is(String s) {
+		if (s.length() != tokenLength) return false;
+		for (int i = 0; i < tokenLength; i++) {
+			if (token[i] != s.charAt(i)) return false;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Return the current token as a string
+	 *
+	 * @return the token
+	 */
+	public String getToken() {
+		try {
+			return new String(token, 0, tokenLength, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e) {
+			throw new InternalError();
+		}
+	}
+	
+	
+	/**
+	 * Return the current line number
+	 *
+	 * @return the line number, starting at 1
+	 */
+	public int getLineNumber() {
+		return line;
+	}
+	
+	
+	/**
+	 * Parse the current token as an integer
+	 *
+	 * @return the integer
+	 * @throws IOException if the token is not an integer
+	 */
+	public int getInt() throws IOException {
+		
+		int i = 0;
+		boolean negative = false;
+		if (tokenLength > 0 && token[0] == '-') {
+			negative = true;
+			i++;
+		}
+		
+		if (i >= tokenLength || tokenLength - i > 9) {
+			throw new IOException("Invalid integer on line " + line + ": " + getToken());
+		}
+		
+		int v = 0;
+		for ( ; i < tokenLength; i++) {
+			int d = token[i] - '0';
+			if (d < 0 || d > 9) throw new IOException("Invalid integer on line " + line + ": " + getToken());
+			v = v * 10 + d;
+		}
+		
+		return negative ? -v : v;
+	}
+	
+	
+	/**
+	 * Parse the current token as a floating point number. The common case of a
+	 * plain decimal number with at most 15 significant digits is parsed directly,
+	 * which gives the same result as Double.parseDouble().
+	 *
+	 * @return the number
+	 * @throws IOException if the token is not a number
+	 */
+	public double getDouble() throws IOException {
+		
+		int i = 0;
+		boolean negative = false;
+		if (tokenLength > 0 && (token[i] == '-' || token[i] == '+')) {
+			negative = token[i] == '-';
+			i++;
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		boolean simple = false;
+		
+		for ( ; i < tokenLength; i++) {
+			int c = token[i];
+			if (c == '.' && decimals < 0) {
+				decimals = 0;
+				continue;
+			}
+			int d = c - '0';
+			if (d < 0 || d > 9 || digits >= 15) {
+				simple = false;
+				break;
+			}
+			if (mantissa != 0 || d != 0) digits++;
+			mantissa = mantissa * 10 + d;
+			if (decimals >= 0) decimals++;
+			simple = true;
+		}
+		
+		if (simple) {
+			double v = mantissa;
+			if (decimals > 0) {
+				if (decimals >= POWERS_OF_TEN.length) simple = false; else v /= POWERS_OF_TEN[decimals];
+			}
+			if (simple) return negative ? -v : v;
+		}
+		
+		try {
+			return Double.parseDouble(getToken());
+		}
+		catch (NumberFormatException e) {
+			throw new IOException("Invalid number on line " + line + ": " + getToken());
+		}
+	}
+	
+	
+	/**
+	 * Read the next token and parse it as an integer
+	 *
+	 * @return the integer
+	 * @throws IOException if the token is missing or if it is not an integer
+	 */
+	public int nextInt() throws IOException {
+		if (!next()) throw new IOException("Unexpected end of line " + line);
+		return getInt();
+	}
+	
+	
+	/**
+	 * Read the next token and parse it as a floating point number
+	 *
+	 * @return the number
+	 * @throws IOException if the token is missing or if it is not a number
+	 */
+	public double nextDouble() throws IOException {
+		if (!next()) throw new IOException("Unexpected end of line " + line);
+		return getDouble();
+	}
+}
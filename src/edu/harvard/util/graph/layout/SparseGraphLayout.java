@@ -124,4 +124,24 @@ public class SparseGraphLayout extends GraphLayout {
 	protected void addLayoutEdgeFast(GraphLayoutEdge edge) {
 		edges.put(edge.getBaseEdge().getIndex(), edge);
 	}
+	
+	
+	/**
+	 * Remove a layout node without checking for errors
+	 * 
+	 * @param index the index of the node to remove
+	 */
+	protected void removeLayoutNodeFast(int index) {
+		nodes.remove(index);
+	}
+	
+	
+	/**
+	 * Remove a layout edge without checking for errors
+	 * 
+	 * @param index the index of the edge to remove
+	 */
+	protected void removeLayoutEdgeFast(int index) {
+		edges.remove(index);
+	}
 }
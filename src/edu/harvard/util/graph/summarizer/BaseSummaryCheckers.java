@@ -51,7 +51,7 @@ public class BaseSummaryCheckers {
 	 * 
 	 * @author Peter Macko
 	 */
-	public static class Hash implements BaseSummaryChecker {
+	public static class Hash implements BaseSummaryKeyedChecker {
 		
 		private int constant;
 		
@@ -81,6 +81,16 @@ public class BaseSummaryCheckers {
 		public boolean canGroup(BaseNode a, BaseNode b) {
 			return a.getIndex() % constant == b.getIndex() % constant;
 		}
+		
+		/**
+		 * Get the grouping key of the given node
+		 * 
+		 * @param node the node
+		 * @return the key
+		 */
+		public Object getGroupKey(BaseNode node) {
+			return node.getIndex() % constant;
+		}
 	}
 	
 	
@@ -90,7 +100,7 @@ public class BaseSummaryCheckers {
 	 * 
 	 * @author Peter Macko
 	 */
-	public static class ConsecutiveIndex implements BaseSummaryChecker {
+	public static class ConsecutiveIndex implements BaseSummaryKeyedChecker {
 		
 		private int size;
 		
@@ -120,6 +130,16 @@ public class BaseSummaryCheckers {
 		public boolean canGroup(BaseNode a, BaseNode b) {
 			return a.getIndex() / size == b.getIndex() / size;
 		}
+		
+		/**
+		 * Get the grouping key of the given node
+		 * 
+		 * @param node the node
+		 * @return the key
+		 */
+		public Object getGroupKey(BaseNode node) {
+			return node.getIndex() / size;
+		}
 	}
 	
 	
@@ -128,7 +148,7 @@ public class BaseSummaryCheckers {
 	 * 
 	 * @author Peter Macko
 	 */
-	public static class SameConnectedNodes implements BaseSummaryChecker {
+	public static class SameConnectedNodes implements BaseSummaryKeyedChecker {
 		
 		/**
 		 * Determine whether the given two nodes can be merged into one summary node (group)
@@ -142,25 +162,99 @@ public class BaseSummaryCheckers {
 			if (a.getIncomingBaseEdges().size() != b.getIncomingBaseEdges().size()) return false;
 			if (a.getOutgoingBaseEdges().size() != b.getOutgoingBaseEdges().size()) return false;
 			
-			// XXX Too slow
+			if (!Arrays.equals(getNeighbors(a, true), getNeighbors(b, true))) return false;
+			if (!Arrays.equals(getNeighbors(a, false), getNeighbors(b, false))) return false;
 			
-			HashSet<BaseNode> sa = new HashSet<BaseNode>();
-			for (BaseEdge e : a.getIncomingBaseEdges()) sa.add(e.getBaseFrom());
+			return true;
+		}
+		
+		/**
+		 * Get the grouping key of the given node, which consists of the numbers
+		 * of its incoming and outgoing edges and of the sets of its neighbors
+		 * 
+		 * @param node the node
+		 * @return the key
+		 */
+		public Object getGroupKey(BaseNode node) {
+			return new NeighborKey(node.getIncomingBaseEdges().size(), node.getOutgoingBaseEdges().size(),
+					getNeighbors(node, true), getNeighbors(node, false));
+		}
+		
+		/**
+		 * Get the sorted indices of the distinct nodes connected to the given node
+		 * 
+		 * @param node the node
+		 * @param incoming true for the sources of the incoming edges, false for the targets of the outgoing edges
+		 * @return the sorted array of node indices
+		 */
+		private static int[] getNeighbors(BaseNode node, boolean incoming) {
 			
-			HashSet<BaseNode> sb = new HashSet<BaseNode>();
-			for (BaseEdge e : b.getIncomingBaseEdges()) sb.add(e.getBaseFrom());
+			List<BaseEdge> edges = incoming ? node.getIncomingBaseEdges() : node.getOutgoingBaseEdges();
+			int[] a = new int[edges.size()];
 			
-			if (!sa.equals(sb)) return false;
+			int i = 0;
+			for (BaseEdge e : edges) a[i++] = (incoming ? e.getBaseFrom() : e.getBaseTo()).getIndex();
+			Arrays.sort(a);
 			
-			sa.clear();
-			for (BaseEdge e : a.getOutgoingBaseEdges()) sa.add(e.getBaseTo());
+			int n = 0;
+			for (i = 0; i < a.length; i++) {
+				if (n == 0 || a[n - 1] != a[i]) a[n++] = a[i];
+			}
 			
-			sb.clear();
-			for (BaseEdge e : b.getOutgoingBaseEdges()) sb.add(e.getBaseTo());
+			return n == a.length ? a : Arrays.copyOf(a, n);
+		}
+		
+		/**
+		 * The grouping key of a node
+		 */
+		private static final class NeighborKey {
 			
-			if (!sa.equals(sb)) return false;
+			private final int numIncoming;
+			private final int numOutgoing;
+			private final int[] incoming;
+			private final int[] outgoing;
+			private final int hash;
 			
-			return true;
+			/**
+			 * Create an instance of class NeighborKey
+			 * 
+			 * @param numIncoming the number of incoming edges
+			 * @param numOutgoing the number of outgoing edges
+			 * @param incoming the sorted indices of the sources of the incoming edges
+			 * @param outgoing the sorted indices of the targets of the outgoing edges
+			 */
+			NeighborKey(int numIncoming, int numOutgoing, int[] incoming, int[] outgoing) {
+				this.numIncoming = numIncoming;
+				this.numOutgoing = numOutgoing;
+				this.incoming = incoming;
+				this.outgoing = outgoing;
+				this.hash = ((numIncoming * 31 + numOutgoing) * 31 + Arrays.hashCode(incoming)) * 31
+						+ Arrays.hashCode(outgoing);
+			}
+			
+			/**
+			 * Return the hash code of the object
+			 * 
+			 * @return the hash code
+			 */
+			@Override
+			public int hashCode() {
+				return hash;
+			}
+			
+			/**
+			 * Indicates whether some other object is "equal to" this one
+			 * 
+			 * @param obj the reference object with which to compare
+			 * @return true if this object is the same as the obj argument
+			 */
+			@Override
+			public boolean equals(Object obj) {
+				if (!(obj instanceof NeighborKey)) return false;
+				NeighborKey k = (NeighborKey) obj;
+				return k.hash == hash && k.numIncoming == numIncoming && k.numOutgoing == numOutgoing
+						&& Arrays.equals(k.incoming, incoming) && Arrays.equals(k.outgoing, outgoing);
+			}
 		}
 	}
 	
@@ -170,7 +264,7 @@ public class BaseSummaryCheckers {
 	 * 
 	 * @author Peter Macko
 	 */
-	public static class RegEx implements BaseSummaryChecker, BaseSummaryLabeler {
+	public static class RegEx implements BaseSummaryKeyedChecker, BaseSummaryLabeler {
 		
 		private Pattern pattern;
 		private String label;
@@ -202,6 +296,16 @@ public class BaseSummaryCheckers {
 			return false;
 		}
 		
+		/**
+		 * Get the grouping key of the given node
+		 * 
+		 * @param node the node
+		 * @return the key, or null if the node does not match the pattern
+		 */
+		public Object getGroupKey(BaseNode node) {
+			return pattern.matcher(node.getLabel()).matches() ? Boolean.TRUE : null;
+		}
+		
 		/**
 		 * Label the given summary node
 		 * 
@@ -40,7 +40,9 @@ import edu.harvard.util.job.JobObserver;
 
 
 /**
- * A generic group builder: robust, but slow -- on the order of O(n^2) per pass
+ * A generic group builder: robust, but slow -- on the order of O(n^2) per pass,
+ * unless the checker provides grouping keys, in which case the nodes are compared
+ * only with the other nodes that have the same key
  * 
  * @author Peter Macko
  */
@@ -124,40 +126,56 @@ public class GenericGraphSummarizer implements ObservableGraphSummarizer, Cancel
 			
 			int groupsCreated = 1;
 			while (groupsCreated > 0) {
-				groupsCreated = 0;
 	
 				nodes.clear();
 				nodes.addAll(sn.getBaseChildren());
 				
+				int[] next = partition(nodes);
+				boolean[] grouped = new boolean[nodes.size()];
+				ArrayList<ArrayList<BaseNode>> groups = new ArrayList<ArrayList<BaseNode>>();
 				
-				// Compare every node with every other node
+				
+				// Compare every node with every other node that follows it in the same partition
 				
 				for (int i = 0; i < nodes.size(); i++) {
 					BaseNode pivot = nodes.get(i);
+					if (grouped[i]) continue;
 					if (!pivot.isVisible()) continue;
-					BaseSummaryNode group = null;
+					ArrayList<BaseNode> group = null;
 					
 					if (canceled) throw new RuntimeException(new JobCanceledException());
 					
-					for (int j = i + 1; j < nodes.size(); j++) {
+					for (int prev = i, j = next[i]; j >= 0; j = next[j]) {
 						BaseNode n = nodes.get(j);
-						if (n.getParent() != sn) continue;
-						if (!n.isVisible()) continue;
+						if (grouped[j] || !n.isVisible()) {
+							next[prev] = next[j];
+							continue;
+						}
 						
 						if (checker.canGroup(pivot, n)) {
 							if (group == null) {
-								groupsCreated++;
-								group = graph.newSummaryNode(sn);
-								group.moveBaseNodeFromParent(pivot);
+								group = new ArrayList<BaseNode>();
+								group.add(pivot);
+								grouped[i] = true;
+								groups.add(group);
 							}
-							group.moveBaseNodeFromParent(n);
+							group.add(n);
+							grouped[j] = true;
+							next[prev] = next[j];
+						}
+						else {
+							prev = j;
 						}
 					}
-					
-					
-					// Label
-					
-					if (group != null && checker instanceof BaseSummaryLabeler) {
+				}
+				
+				
+				// Create the groups and label them
+				
+				groupsCreated = groups.size();
+				
+				for (BaseSummaryNode group : sn.groupBaseChildren(groups)) {
+					if (checker instanceof BaseSummaryLabeler) {
 						((BaseSummaryLabeler) checker).label(group);
 					}
 				}
@@ -171,6 +189,44 @@ public class GenericGraphSummarizer implements ObservableGraphSummarizer, Cancel
 	}
 
 	
+	/**
+	 * Partition the nodes by their grouping keys, linking each node to the next
+	 * node with the same key. If the checker does not provide the keys, all nodes
+	 * are linked together.
+	 * 
+	 * @param nodes the list of nodes
+	 * @return the index of the next node in the same partition for each node, or -1 if none
+	 */
+	private int[] partition(List<BaseNode> nodes) {
+		
+		int[] next = new int[nodes.size()];
+		
+		if (!(checker instanceof BaseSummaryKeyedChecker)) {
+			for (int i = 0; i < next.length; i++) next[i] = i + 1;
+			if (next.length > 0) next[next.length - 1] = -1;
+			return next;
+		}
+		
+		BaseSummaryKeyedChecker keyedChecker = (BaseSummaryKeyedChecker) checker;
+		HashMap<Object, Integer> last = new HashMap<Object, Integer>();
+		
+		for (int i = 0; i < next.length; i++) {
+			next[i] = -1;
+			
+			BaseNode n = nodes.get(i);
+			if (!n.isVisible()) continue;
+			
+			Object key = keyedChecker.getGroupKey(n);
+			if (key == null) continue;
+			
+			Integer l = last.put(key, i);
+			if (l != null) next[l] = i;
+		}
+		
+		return next;
+	}
+
+	
 	/**
 	 * Cancel all computations
 	 */
@@ -37,7 +37,9 @@ import java.awt.Color;
 
 
 /**
- * A graph decorator
+ * A graph decorator. The methods can be called concurrently from the
+ * background threads that render the tiles of GraphDisplay, so a decorator
+ * that changes its configuration should be followed by GraphDisplay.refresh().
  * 
  * @author Peter Macko
  *
@@ -39,6 +39,7 @@ import edu.harvard.util.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -72,6 +73,18 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	private static final double CLIP_MARGIN = 1000;
 	private static final int ZOOM_BUTTON_SIZE = 20;
 	
+	private static final int TILE_SIZE = 256;
+	private static final int MAX_TILES = 192;
+	private static final int TILE_PLACEHOLDER_ZOOM_LEVELS = 4;
+	private static final double TILE_CLIP_MARGIN = 1 << 20;
+	
+	private static final double INCREMENTAL_UPDATE_MAX_FRACTION = 0.25;
+	
+	private static final int MIN_CURVE_SEGMENT = 3;
+	private static final int MIN_EDGE_BUNDLE_CELL_SIZE = 4;
+	
+	private static final int MAX_LAYOUT_PREFETCH_REQUESTS = 64;
+	
 	
 	// Debugging
 
@@ -128,15 +141,21 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	private int arrowMinLength;
 	private int pointSize;
 	
+	private boolean edgeLevelOfDetail;
+	private int maxDetailedEdges;
+	
 	
 	// Flags affecting the behavior
 	
 	private boolean semanticZoom;
+	private boolean asyncSemanticZoom;
+	private boolean prefetchLayouts;
 	private int semanticZoomSizeThreshold;
 	private boolean reconfigureBasedOnLayout;
 	private boolean autoManageSelection;
 	
 	private boolean filterOnOriginals;
+	private boolean useTileCache;
 
 	
 	// Font
@@ -154,7 +173,28 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	private HashSet<BaseSummaryNode> expandedSummaryNodes;
 	private HashSet<GraphLayoutNode> highlightedNodes;
 	private HashSet<GraphLayoutNode> selectedLayoutNodes;
+	private BitSet acceptedNodes;
 	private String longestLabel;
+	
+	
+	// Spatial indices over the graph cache, in layout coordinates
+	
+	private QuadTree<GraphLayoutNode> nodeIndex;
+	private QuadTree<GraphLayoutEdge> edgeIndex;
+	private QuadTree<GraphLayoutNode> summaryNodeIndex;
+	
+	
+	// The tiled render cache and the snapshot of the graph cache it renders (null if stale)
+	
+	private TileCache tileCache;
+	private RenderState renderState;
+	
+	
+	// The background planner of the semantic zoom, and the prefetcher of the layouts of summary nodes
+	
+	private SemanticZoomPlanner semanticZoomPlanner;
+	private LayoutPrefetcher layoutPrefetcher;
+	private BaseNode hoveredNode;
 
 	
 	/**
@@ -190,15 +230,21 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		arrowMinLength = 15;
 		pointSize = 6;
 		
+		edgeLevelOfDetail = true;
+		maxDetailedEdges = 20000;
+		
 		
 		// Flags affecting the behavior
 		
 		semanticZoom = false;
+		asyncSemanticZoom = true;
+		prefetchLayouts = true;
 		semanticZoomSizeThreshold = 45;
 		reconfigureBasedOnLayout = true;
 		autoManageSelection = true;
 		
 		filterOnOriginals = true;
+		useTileCache = true;
 		
 		
 		// The graph cache
@@ -209,6 +255,17 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		expandedSummaryNodes = new HashSet<BaseSummaryNode>();
 		highlightedNodes = new HashSet<GraphLayoutNode>();
 		
+		nodeIndex = new QuadTree<GraphLayoutNode>();
+		edgeIndex = new QuadTree<GraphLayoutEdge>();
+		summaryNodeIndex = new QuadTree<GraphLayoutNode>();
+		
+		tileCache = new TileCache();
+		renderState = null;
+		
+		semanticZoomPlanner = new SemanticZoomPlanner();
+		layoutPrefetcher = null;
+		hoveredNode = null;
+		
 		
 		// Font
 		
@@ -273,12 +330,14 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		this.layout = layout;
 		baseScale = 1;
 		
+		semanticZoomPlanner.reset();
 		selectedNodes.clear();
 		expandedSummaryNodes.clear();
+		hoveredNode = null;
 		
 		if (graph == null || layout == null) {
-			nodes.clear();
-			edges.clear();
+			startLayoutPrefetcher();
+			clearGraphCache();
 			repaint();
 			return;
 		}
@@ -306,6 +365,8 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		expandedSummaryNodes.add(graph.getRootBaseSummaryNode());
 		if (!semanticZoom) graph.getRootBaseSummaryNode().collectBaseSummaryNodes(expandedSummaryNodes);
 		
+		startLayoutPrefetcher();
+		
 		
 		// Finish
 		
@@ -564,6 +625,88 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	}
 	
 	
+	/**
+	 * Set whether to render through the tiled off-screen cache. The tiles are
+	 * shared between views, so the edges with end-points outside of the display
+	 * are not shaded when the cache is used.
+	 * 
+	 * @param use true to use the tile cache
+	 */
+	public void setUsingTileCache(boolean use) {
+		this.useTileCache = use;
+		repaint();
+	}
+	
+	
+	/**
+	 * Determine whether the component renders through the tiled off-screen cache
+	 * 
+	 * @return true if it uses the tile cache
+	 */
+	public boolean isUsingTileCache() {
+		return this.useTileCache;
+	}
+	
+	
+	/**
+	 * Set whether to plan the semantic zoom in the background when rendering
+	 * through the tile cache. The summary nodes are then expanded and collapsed
+	 * shortly after the view changes instead of while painting.
+	 * 
+	 * @param async true to plan the semantic zoom in the background
+	 */
+	public void setAsynchronousSemanticZoom(boolean async) {
+		this.asyncSemanticZoom = async;
+		semanticZoomPlanner.reset();
+		startLayoutPrefetcher();
+		repaint();
+	}
+	
+	
+	/**
+	 * Determine whether the semantic zoom is planned in the background
+	 * 
+	 * @return true if it is planned in the background
+	 */
+	public boolean isAsynchronousSemanticZoom() {
+		return this.asyncSemanticZoom;
+	}
+	
+	
+	/**
+	 * Set whether to compute the layouts of the summary nodes near the view in
+	 * the background, so that they can be expanded without waiting for them.
+	 * This applies only to the semantic zoom planned in the background.
+	 * 
+	 * @param prefetch true to prefetch the layouts
+	 */
+	public void setPrefetchingLayouts(boolean prefetch) {
+		this.prefetchLayouts = prefetch;
+		startLayoutPrefetcher();
+		requestLayoutPrefetch();
+	}
+	
+	
+	/**
+	 * Determine whether the layouts of the summary nodes are prefetched in the background
+	 * 
+	 * @return true if the layouts are prefetched
+	 */
+	public boolean isPrefetchingLayouts() {
+		return this.prefetchLayouts;
+	}
+	
+	
+	/**
+	 * Discard the cached rendering and repaint the component, such as after
+	 * the decorator was reconfigured
+	 */
+	public void refresh() {
+		renderState = null;
+		repaint();
+	}
+	
+	
 	/**
 	 * Determine whether to draw splines
 	 * 
@@ -571,6 +714,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	 */
 	public void setDrawingSplines(boolean splines) {
 		this.drawSplines = splines;
+		renderState = null;
 	}
 	
 	
@@ -591,6 +735,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	 */
 	public void setDrawingArrows(boolean arrows) {
 		this.drawArrows = arrows;
+		renderState = null;
 	}
 	
 	
@@ -604,6 +749,54 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	}
 	
 	
+	/**
+	 * Set whether to aggregate the edges that are too short or too many to be drawn
+	 * individually into bundles between grid cells of the screen, and the edges within
+	 * a single cell into a density map. The size of the cells is derived from the
+	 * semantic zoom threshold. The edges incident to the selected nodes are always
+	 * drawn individually.
+	 * 
+	 * @param lod true to enable the level of detail for edges
+	 */
+	public void setEdgeLevelOfDetail(boolean lod) {
+		this.edgeLevelOfDetail = lod;
+		renderState = null;
+	}
+	
+	
+	/**
+	 * Determine whether the component aggregates edges depending on the zoom level
+	 * 
+	 * @return true if the level of detail for edges is enabled
+	 */
+	public boolean isEdgeLevelOfDetail() {
+		return this.edgeLevelOfDetail;
+	}
+	
+	
+	/**
+	 * Set the maximum number of visible edges to draw individually when the level
+	 * of detail for edges is enabled. If there are more edges in the visible region,
+	 * all of them are aggregated.
+	 * 
+	 * @param max the maximum number of edges
+	 */
+	public void setMaxDetailedEdges(int max) {
+		this.maxDetailedEdges = max;
+		renderState = null;
+	}
+	
+	
+	/**
+	 * Return the maximum number of visible edges to draw individually
+	 * 
+	 * @return the maximum number of edges
+	 */
+	public int getMaxDetailedEdges() {
+		return this.maxDetailedEdges;
+	}
+	
+	
 	/**
 	 * Set whether to draw nodes as points
 	 * 
@@ -611,6 +804,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	 */
 	public void setDrawingNodesAsPoints(boolean asPoints) {
 		this.drawNodesAsPoints = asPoints;
+		renderState = null;
 	}
 	
 	
@@ -741,7 +935,9 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		if (DEBUG_PERFORMANCE && s.getInternalEdges().size() >= 4000) {
 			System.err.println("Too many edges: " + s.getInternalEdges().size() + " in " + s.getLabel());
 		}
-		layout.getAlgorithm().updateLayout(layout, s, null);
+		synchronized (layout) {
+			if (layout.getLayoutNode(index) == null) layout.getAlgorithm().updateLayout(layout, s, null);
+		}
 		
 		long t_end = 0;
 		if (DEBUG_PERFORMANCE) {
@@ -801,9 +997,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			
 			// Check if the target node is visible in the filtered graph
 			
-			if (target.isVisible()
-					&& nodeFilters.accept(!filterOnOriginals ? Utils.<N>cast(target)
-							: Utils.<N>cast(target).getOriginal())) {
+			if (isAccepted(target)) {
 				visited.add(target);
 				
 				
@@ -846,7 +1040,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					
 					// Add the edge
 					
-					if (l != null) edges.add(l);
+					if (l != null) addEdgeToCache(l);
 				}
 				else {
 					
@@ -861,7 +1055,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					
 					// Create a default layout for the edge
 					
-					edges.add(new GraphLayoutEdge(se, start, lt));
+					addEdgeToCache(new GraphLayoutEdge(se, start, lt));
 				}
 				
 				count++;
@@ -882,6 +1076,234 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	}
 
 	
+	/**
+	 * Clear the graph cache together with its spatial indices
+	 */
+	private void clearGraphCache() {
+		
+		nodes.clear();
+		edges.clear();
+		summaryNodes.clear();
+		
+		nodeIndex.clear();
+		edgeIndex.clear();
+		summaryNodeIndex.clear();
+		
+		acceptedNodes = null;
+		renderState = null;
+	}
+	
+	
+	/**
+	 * Add a node to the bounding box index. The box is wide enough to include
+	 * the node also when it is drawn as a point with the label on its right.
+	 * 
+	 * @param index the index
+	 * @param n the layout node
+	 */
+	private static void indexNode(QuadTree<GraphLayoutNode> index, GraphLayoutNode n) {
+		double hw = n.getWidth () / 2;
+		double hh = n.getHeight() / 2;
+		index.add(n, n.getX() - hw, n.getY() - hh, n.getX() + 2 * hw, n.getY() + hh);
+	}
+	
+	
+	/**
+	 * Add a node to the set of visible nodes in the graph cache
+	 * 
+	 * @param n the layout node
+	 * @return true if the node was not already in the cache
+	 */
+	private boolean addNodeToCache(GraphLayoutNode n) {
+		if (!nodes.add(n)) return false;
+		indexNode(nodeIndex, n);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Remove a node from the set of visible nodes in the graph cache
+	 * 
+	 * @param n the layout node
+	 * @return true if the node was in the cache
+	 */
+	private boolean removeNodeFromCache(GraphLayoutNode n) {
+		if (!nodes.remove(n)) return false;
+		nodeIndex.remove(n);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Add a node to the set of expanded summary nodes in the graph cache
+	 * 
+	 * @param n the layout node
+	 * @return true if the node was not already in the cache
+	 */
+	private boolean addSummaryNodeToCache(GraphLayoutNode n) {
+		if (!summaryNodes.add(n)) return false;
+		indexNode(summaryNodeIndex, n);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Remove a node from the set of expanded summary nodes in the graph cache
+	 * 
+	 * @param n the layout node
+	 * @return true if the node was in the cache
+	 */
+	private boolean removeSummaryNodeFromCache(GraphLayoutNode n) {
+		if (!summaryNodes.remove(n)) return false;
+		summaryNodeIndex.remove(n);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Add an edge to the graph cache. The bounding box covers both end-points
+	 * and all control points, and hence also the spline drawn through them.
+	 * 
+	 * @param e the layout edge
+	 * @return true if the edge was not already in the cache
+	 */
+	private boolean addEdgeToCache(GraphLayoutEdge e) {
+		
+		if (!edges.add(e)) return false;
+		
+		double x1 = Math.min(e.getFrom().getX(), e.getTo().getX());
+		double y1 = Math.min(e.getFrom().getY(), e.getTo().getY());
+		double x2 = Math.max(e.getFrom().getX(), e.getTo().getX());
+		double y2 = Math.max(e.getFrom().getY(), e.getTo().getY());
+		
+		double[] x = e.getX();
+		double[] y = e.getY();
+		for (int i = 0; i < x.length; i++) {
+			if (x[i] < x1) x1 = x[i];
+			if (x[i] > x2) x2 = x[i];
+			if (y[i] < y1) y1 = y[i];
+			if (y[i] > y2) y2 = y[i];
+		}
+		
+		edgeIndex.add(e, x1, y1, x2, y2);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Remove an edge from the graph cache
+	 * 
+	 * @param e the layout edge
+	 * @return true if the edge was in the cache
+	 */
+	private boolean removeEdgeFromCache(GraphLayoutEdge e) {
+		if (!edges.remove(e)) return false;
+		edgeIndex.remove(e);
+		renderState = null;
+		return true;
+	}
+	
+	
+	/**
+	 * Return the universe over which the node filters are evaluated. Its keys
+	 * are the indices of the nodes of the displayed graph, and its values are
+	 * either the nodes themselves or their originals, depending on whether
+	 * the filters run on the original nodes.
+	 * 
+	 * @return the universe of the filtered values
+	 */
+	public Universe<N> getFilterUniverse() {
+		
+		if (!filterOnOriginals) return graph.getNodeUniverse();
+		
+		
+		// The nodes of a graph that is not derived are their own originals
+		
+		for (N node : graph.getNodes()) {
+			if (node == null) continue;
+			if (node.getOriginal() == node) return graph.getNodeUniverse();
+			break;
+		}
+		
+		return new OriginalsUniverse();
+	}
+	
+	
+	/**
+	 * Evaluate the node filters on all nodes of the graph
+	 * 
+	 * @return the set of indices of the visible nodes that pass the filters
+	 */
+	private BitSet computeAcceptedNodes() {
+		
+		BitSet accepted = nodeFilters.evaluate(getFilterUniverse());
+		
+		for (int i = accepted.nextSetBit(0); i >= 0; i = accepted.nextSetBit(i + 1)) {
+			N node = i < graph.getNodes().size() ? graph.getNode(i) : null;
+			if (node == null || !node.isVisible()) accepted.clear(i);
+		}
+		
+		return accepted;
+	}
+	
+	
+	/**
+	 * Determine whether a node is visible and passes the node filters. For
+	 * a node, this uses the state as of the last time the graph cache was
+	 * computed or updated. A summary node is checked against the filters
+	 * directly, and it passes if at least one of its descendants does
+	 * 
+	 * @param node the node or the summary node
+	 * @return true if it passes
+	 */
+	private boolean isAccepted(BaseNode node) {
+		
+		if (node instanceof SummaryNode<?, ?, ?, ?>) {
+			return node.isVisible() && Utils.<S>cast(node).checkFilter(nodeFilters);
+		}
+		
+		return acceptedNodes != null && acceptedNodes.get(node.getIndex());
+	}
+	
+	
+	/**
+	 * Determine whether a node or a summary node contains at least one node
+	 * that is visible and passes the node filters
+	 * 
+	 * @param node the node or the summary node
+	 * @return true if it contains an accepted node
+	 */
+	private boolean containsAccepted(BaseNode node) {
+		
+		if (!(node instanceof BaseSummaryNode)) return isAccepted(node);
+		
+		for (BaseNode n : ((BaseSummaryNode) node).getBaseChildren()) {
+			if (containsAccepted(n)) return true;
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Return the region of the layout that is currently displayed
+	 * 
+	 * @param scale the scale level
+	 * @param width the image width
+	 * @param height the image height
+	 * @param margin the extra margin in pixels
+	 * @return the region in layout coordinates
+	 */
+	protected Rectangle2D getVisibleLayoutRegion(double scale, int width, int height, double margin) {
+		return new View(scale, offsetX, offsetY, width, height, CLIP_MARGIN).getLayoutRegion(margin);
+	}
+
+	
 	/**
 	 * Compute the graph cache - which nodes and edges are visible
 	 */
@@ -890,9 +1312,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		
 		// Clear the cache
 		
-		nodes.clear();
-		edges.clear();
-		summaryNodes.clear();
+		clearGraphCache();
 		
 		if (graph == null || layout == null) return;
 		
@@ -910,18 +1330,14 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		longestLabel = "";
 		BaseSummaryNode root = graph.getRootBaseSummaryNode();
 		
+		acceptedNodes = computeAcceptedNodes();
+		
 		
 		// Get the list of visible nodes
 		
 		for (N node : graph.getNodes()) {
 
-			if (!node.isVisible()) continue;
-			if (filterOnOriginals) {
-				if (!nodeFilters.accept(node.getOriginal())) continue;
-			}
-			else { 
-				if (!nodeFilters.accept(node)) continue;
-			}
+			if (!acceptedNodes.get(node.getIndex())) continue;
 			
 			
 			// Add the corresponding summary node
@@ -934,7 +1350,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				if (n.getIncomingBaseEdges().isEmpty() && n.getOutgoingBaseEdges().isEmpty()) continue;
 				throw new IllegalStateException("There is no layout information for node " + n);
 			}
-			nodes.add(ln);
+			addNodeToCache(ln);
 			
 			
 			// Compute the longest node label
@@ -948,7 +1364,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			for (BaseSummaryNode s = n.getParent(); s != root && s != null; s = s.getParent()) {
 				GraphLayoutNode ls = getLayoutNode(s.getIndex());
 				if (ls != null) {
-					if (!summaryNodes.add(ls)) break;
+					if (!addSummaryNodeToCache(ls)) break;
 				}
 			}
 		}
@@ -956,7 +1372,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		if (drawRootSummaryNode) {
 			GraphLayoutNode ls = getLayoutNode(root.getIndex());
 			if (ls != null) {
-				summaryNodes.add(ls);
+				addSummaryNodeToCache(ls);
 			}
 		}
 		
@@ -994,38 +1410,58 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 
 	
 	/**
-	 * Compute the cache of which nodes are highlighted
+	 * Update the graph cache after the node filters changed. Only the nodes
+	 * whose acceptance changed are considered: the displayed nodes that they
+	 * map to are added or removed, and the edges are rerouted only from the
+	 * displayed nodes that can reach them through nodes that are hidden either
+	 * before or after the change. Falls back to computeGraphCache() if there
+	 * is no previous state or if too much has changed.
 	 */
-	protected void computeHighlightCache() {
+	protected void updateGraphCache() {
 		
+		if (graph == null || layout == null || acceptedNodes == null) {
+			computeGraphCache();
+			return;
+		}
 		
-		// Clear the cache
 		
-		highlightedNodes.clear();
+		// Initialize the timer
 		
-		if (graph == null || layout == null) return;
-		if (nodeHighlightFilters.isEmpty()) return;
+		long t_start = 0;
+		if (DEBUG_PERFORMANCE) {
+			t_start = System.currentTimeMillis();
+		}
 		
 		
-		// Check if a node is supposed to be highlighted
+		// Find the nodes whose acceptance changed
 		
-		for (N node : graph.getNodes()) {
-
-			if (!node.isVisible()) continue;
-			if (filterOnOriginals) {
-				if (!nodeFilters.accept(node.getOriginal())) continue;
-				if (!nodeHighlightFilters.accept(node.getOriginal())) continue;
-			}
-			else { 
-				if (!nodeFilters.accept(node)) continue;
-				if (!nodeHighlightFilters.accept(node)) continue;
-			}
-			
-			
-			// Add the corresponding summary node
+		BitSet oldAccepted = acceptedNodes;
+		BitSet newAccepted = computeAcceptedNodes();
+		
+		BitSet changed = (BitSet) newAccepted.clone();
+		changed.xor(oldAccepted);
+		
+		if (changed.isEmpty()) return;
+		
+		int numChanged = changed.cardinality();
+		if (numChanged > INCREMENTAL_UPDATE_MAX_FRACTION * graph.getNodes().size()) {
+			computeGraphCache();
+			return;
+		}
+		
+		acceptedNodes = newAccepted;
+		
+		
+		// Find the displayed nodes that need to be added or removed
+		
+		HashSet<GraphLayoutNode> added = new HashSet<GraphLayoutNode>();
+		HashSet<GraphLayoutNode> removed = new HashSet<GraphLayoutNode>();
+		HashSet<GraphLayoutNode> kept = new HashSet<GraphLayoutNode>();
+		
+		for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
 			
-			BaseNode n = map(node);
-			if (!n.isVisible()) continue;
+			BaseNode n = map(graph.getBaseNode(i));
+			if (n == null || !n.isVisible()) continue;
 			
 			GraphLayoutNode ln = getLayoutNode(n.getIndex());
 			if (ln == null) {
@@ -1033,17 +1469,202 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				throw new IllegalStateException("There is no layout information for node " + n);
 			}
 			
-			highlightedNodes.add(ln);
+			if (newAccepted.get(i)) {
+				if (!nodes.contains(ln)) added.add(ln);
+			}
+			else {
+				if (!nodes.contains(ln) || removed.contains(ln) || kept.contains(ln)) continue;
+				if (containsAccepted(n)) kept.add(ln); else removed.add(ln);
+			}
 		}
-	}
-	
-	
-	/**
-	 * Compute the cache of which nodes are selected
-	 */
+		
+		
+		// Find the displayed nodes with edges that could be routed through the changed
+		// nodes, walking back over the nodes that are hidden before or after the change.
+		// The summary nodes that enclose the changed nodes are included, since the edges
+		// to them are accepted depending on their descendants
+		
+		BaseSummaryNode root = graph.getRootBaseSummaryNode();
+		
+		HashSet<GraphLayoutNode> sources = new HashSet<GraphLayoutNode>(added);
+		HashSet<BaseNode> seen = new HashSet<BaseNode>();
+		LinkedList<BaseNode> queue = new LinkedList<BaseNode>();
+		
+		for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+			BaseNode n = graph.getBaseNode(i);
+			seen.add(n);
+			queue.add(n);
+			
+			for (BaseSummaryNode p = n.getParent(); p != root && p != null; p = p.getParent()) {
+				if (!seen.add(p)) break;
+				queue.add(p);
+			}
+		}
+		
+		while (!queue.isEmpty()) {
+			BaseNode n = queue.removeFirst();
+			
+			for (BaseEdge e : n.getIncomingBaseEdges()) {
+				BaseNode p = e.getBaseFrom();
+				if (!seen.add(p)) continue;
+				
+				BaseNode m = map(p);
+				if (m != null) {
+					GraphLayoutNode lm = layout.getLayoutNode(m.getIndex());
+					if (lm != null && nodes.contains(lm)) sources.add(lm);
+				}
+				
+				if (!oldAccepted.get(p.getIndex()) || !newAccepted.get(p.getIndex())) queue.add(p);
+			}
+		}
+		
+		sources.removeAll(removed);
+		
+		
+		// Remove the edges from the affected nodes and from and to the removed nodes
+		
+		ArrayList<GraphLayoutEdge> edgesToRemove = new ArrayList<GraphLayoutEdge>();
+		for (GraphLayoutEdge le : edges) {
+			if (sources.contains(le.getFrom()) || removed.contains(le.getFrom()) || removed.contains(le.getTo())) {
+				edgesToRemove.add(le);
+			}
+		}
+		
+		for (GraphLayoutEdge le : edgesToRemove) removeEdgeFromCache(le);
+		
+		
+		// Update the displayed nodes
+		
+		for (GraphLayoutNode ln : removed) {
+			removeNodeFromCache(ln);
+		}
+		
+		for (GraphLayoutNode ln : added) {
+			addNodeToCache(ln);
+			
+			String label = ln.getBaseNode().getLabel();
+			if (label.length() > longestLabel.length()) longestLabel = label;
+		}
+		
+		
+		// Update the summary nodes that enclose the displayed nodes
+		
+		if (!removed.isEmpty()) {
+			HashSet<GraphLayoutNode> needed = new HashSet<GraphLayoutNode>();
+			for (GraphLayoutNode ln : nodes) {
+				for (BaseSummaryNode s = ln.getBaseNode().getParent(); s != root && s != null; s = s.getParent()) {
+					GraphLayoutNode ls = getLayoutNode(s.getIndex());
+					if (ls != null) {
+						if (!needed.add(ls)) break;
+					}
+				}
+			}
+			
+			if (drawRootSummaryNode) {
+				GraphLayoutNode ls = getLayoutNode(root.getIndex());
+				if (ls != null) needed.add(ls);
+			}
+			
+			for (GraphLayoutNode ls : new ArrayList<GraphLayoutNode>(summaryNodes)) {
+				if (!needed.contains(ls)) removeSummaryNodeFromCache(ls);
+			}
+			for (GraphLayoutNode ls : needed) {
+				addSummaryNodeToCache(ls);
+			}
+		}
+		else {
+			for (GraphLayoutNode ln : added) {
+				for (BaseSummaryNode s = ln.getBaseNode().getParent(); s != root && s != null; s = s.getParent()) {
+					GraphLayoutNode ls = getLayoutNode(s.getIndex());
+					if (ls != null) {
+						if (!addSummaryNodeToCache(ls)) break;
+					}
+				}
+			}
+		}
+		
+		
+		// Reroute the edges from the affected nodes
+		
+		HashSet<BaseNode> visited = new HashSet<BaseNode>();
+		for (GraphLayoutNode n : sources) {
+			visited.clear();
+			if (n.getBaseNode().isVisible()) createSummaryGraphHelper(n.getBaseNode(), n, visited, null);
+		}
+		
+		
+		// Highlight & selection
+		
+		computeHighlightCache();
+		computeSelectionCache();
+		
+		
+		// Finish
+		
+		long t_end = 0;
+		if (DEBUG_PERFORMANCE) {
+			t_end = System.currentTimeMillis();
+			long t = t_end - t_start;
+			
+			if (t > 100) {
+				System.err.println("Graph cache updated in " + t + " ms:");
+				System.err.println("  " + numChanged + " changed nodes, " + added.size() + " added, "
+										+ removed.size() + " removed, " + sources.size() + " rerouted");
+				System.err.println();
+			}
+		}
+	}
+
+	
+	/**
+	 * Compute the cache of which nodes are highlighted
+	 */
+	protected void computeHighlightCache() {
+		
+		
+		// Clear the cache
+		
+		highlightedNodes.clear();
+		renderState = null;
+		
+		if (graph == null || layout == null) return;
+		if (nodeHighlightFilters.isEmpty()) return;
+		
+		
+		// Check if a node is supposed to be highlighted
+		
+		BitSet highlighted = nodeHighlightFilters.evaluate(getFilterUniverse());
+		
+		for (int i = highlighted.nextSetBit(0); i >= 0; i = highlighted.nextSetBit(i + 1)) {
+			
+			N node = i < graph.getNodes().size() ? graph.getNode(i) : null;
+			if (node == null || !isAccepted(node)) continue;
+			
+			
+			// Add the corresponding summary node
+			
+			BaseNode n = map(node);
+			if (!n.isVisible()) continue;
+			
+			GraphLayoutNode ln = getLayoutNode(n.getIndex());
+			if (ln == null) {
+				if (n.getIncomingBaseEdges().isEmpty() && n.getOutgoingBaseEdges().isEmpty()) continue;
+				throw new IllegalStateException("There is no layout information for node " + n);
+			}
+			
+			highlightedNodes.add(ln);
+		}
+	}
+	
+	
+	/**
+	 * Compute the cache of which nodes are selected
+	 */
 	protected void computeSelectionCache() {
 		
 		selectedLayoutNodes.clear();
+		renderState = null;
+		
 		for (BaseNode node : selectedNodes) {
 			
 			BaseNode n = map(node);
@@ -1075,6 +1696,8 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		BaseSummaryNode s = (BaseSummaryNode) node;
 		if (expandedSummaryNodes.contains(s)) return false;
 		
+		if (layoutPrefetcher != null) layoutPrefetcher.pin(s);
+		
 		GraphLayoutNode ls = getLayoutNode(s.getIndex());
 		if (ls == null) return false;
 		
@@ -1131,10 +1754,10 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		
 		// Move the node from the set of nodes to the set of expanded summary nodes
 		
-		if (!nodes.remove(ls)) return false;
+		if (!removeNodeFromCache(ls)) return false;
 		
 		if (!expandedSummaryNodes.add(s)) return false;
-		summaryNodes.add(ls);
+		addSummaryNodeToCache(ls);
 		
 		highlightedNodes.remove(ls);
 		
@@ -1144,7 +1767,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		for (GraphLayoutNode ln : toExpand) {
 			BaseNode n = ln.getBaseNode();
 			
-			nodes.add(ln);
+			addNodeToCache(ln);
 						
 			
 			// Check whether the node should be highlighted
@@ -1170,12 +1793,14 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			
 			if (le.getTo() == ls) {
 				ile.remove();
+				edgeIndex.remove(le);
 				toExpand.add(le.getFrom());
 				continue;
 			}
 			
 			if (le.getFrom() == ls) {
 				ile.remove();
+				edgeIndex.remove(le);
 				continue;
 			}
 		}
@@ -1250,7 +1875,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				throw new IllegalStateException("There is no layout information for node " + n);
 			}
 			
-			nodes.remove(ln);
+			removeNodeFromCache(ln);
 			removed.add(ln);
 			
 			highlightedNodes.remove(ln);
@@ -1261,8 +1886,8 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		
 		// Move the node from set of expanded summary nodes to the set of regular nodes
 		
-		if (!nodes.add(ls)) return;
-		summaryNodes.remove(ls);
+		if (!addNodeToCache(ls)) return;
+		removeSummaryNodeFromCache(ls);
 		
 		
 		// Check whether the node should be highlighted
@@ -1282,12 +1907,14 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			
 			if (removed.contains(le.getTo())) {
 				ile.remove();
+				edgeIndex.remove(le);
 				if (!removed.contains(le.getFrom())) toExpand.add(le.getFrom());
 				continue;
 			}
 			
 			if (removed.contains(le.getFrom())) {
 				ile.remove();
+				edgeIndex.remove(le);
 				continue;
 			}
 		}
@@ -1385,37 +2012,35 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	 * Get the node bounds
 	 * 
 	 * @param n the layout node
-	 * @param scale the scale level
-	 * @param width the image width
-	 * @param height the image height
+	 * @param v the view
 	 * @param out the output rectangle to modify (would be modified only if the method returns true)
 	 * @return true if any part of the node is visible
 	 */
-	protected boolean getNodeBounds(GraphLayoutNode n, double scale, int width, int height, Rectangle out) {
+	private boolean getNodeBounds(GraphLayoutNode n, View v, Rectangle out) {
 		
 		boolean base = n.getBaseNode() instanceof BaseSummaryNode;
 		
-		int sx = translateX(n.getX(), scale, width);
-		int sy = translateY(n.getY(), scale, height);
-		int sx1 = translateX(n.getX() - n.getWidth () / 2, scale, width);
-		int sy1 = translateY(n.getY() - n.getHeight() / 2, scale, height);
-		int sx2 = translateX(n.getX() + n.getWidth () / 2, scale, width);
-		int sy2 = translateY(n.getY() + n.getHeight() / 2, scale, height);
+		int sx = v.x(n.getX());
+		int sy = v.y(n.getY());
+		int sx1 = v.x(n.getX() - n.getWidth () / 2);
+		int sy1 = v.y(n.getY() - n.getHeight() / 2);
+		int sx2 = v.x(n.getX() + n.getWidth () / 2);
+		int sy2 = v.y(n.getY() + n.getHeight() / 2);
 		int hw  = (sx2 - sx1) / 2;
 		int hh  = (sy2 - sy1) / 2;
 		
 		if (!base) {
 			if (hh > 24 * FONT_SCALE) hh = (int) (24 * FONT_SCALE);
 			if (drawNodesAsPoints) {
-				double hnw = scale * n.getWidth () / 2;
+				double hnw = v.scale * n.getWidth () / 2;
 				sx1 = sx;
 				sx2 = sx1 + (int) (hnw * 2);
 				sx  = sx1 + (int)  hnw;
 			}
 		}
 		
-		if (sx2 < 0 || sy2 < 0 || sx1 > width || sy1 > height) return false;
-		if (sx < -hw || sy < -hh || sx > width + hw || sy > height + hh) return false;
+		if (sx2 < 0 || sy2 < 0 || sx1 > v.width || sy1 > v.height) return false;
+		if (sx < -hw || sy < -hh || sx > v.width + hw || sy > v.height + hh) return false;
 		
 		
 		// Adjust for the label
@@ -1428,7 +2053,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			
 			if (ideal_hw < hw) {
 				hw = ideal_hw;
-				if (sx < -hw || sx > width + hw) return false;
+				if (sx < -hw || sx > v.width + hw) return false;
 			}
 		}
 		
@@ -1460,6 +2085,21 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	}
 	
 	
+	/**
+	 * Get the node bounds
+	 * 
+	 * @param n the layout node
+	 * @param scale the scale level
+	 * @param width the image width
+	 * @param height the image height
+	 * @param out the output rectangle to modify (would be modified only if the method returns true)
+	 * @return true if any part of the node is visible
+	 */
+	protected boolean getNodeBounds(GraphLayoutNode n, double scale, int width, int height, Rectangle out) {
+		return getNodeBounds(n, new View(scale, offsetX, offsetY, width, height, CLIP_MARGIN), out);
+	}
+	
+	
 	/**
 	 * Get the node bounds
 	 * 
@@ -1484,6 +2124,19 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	}
 
 
+	/**
+	 * Notify the component that it has been removed from its parent. This
+	 * stops the background threads of the display, so that they do not keep
+	 * it reachable; they are started again when they are next needed.
+	 */
+	@Override
+	public void removeNotify() {
+		tileCache.shutdown();
+		semanticZoomPlanner.shutdown();
+		super.removeNotify();
+	}
+
+
 	/**
 	 * Paint the component
 	 * 
@@ -1499,7 +2152,12 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		
 		// Render
 		
-		render(g, width, height);
+		if (useTileCache && graph != null && layout != null) {
+			renderTiled(g, width, height);
+		}
+		else {
+			render(g, width, height);
+		}
 		
 		
 		// Render the UI overlay
@@ -1509,166 +2167,259 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		GraphicUtils.drawText(g, "+", ZOOM_BUTTON_SIZE / 2, ZOOM_BUTTON_SIZE / 2, GraphicUtils.TextJustify.CENTER);
 		GraphicUtils.drawText(g, "-", ZOOM_BUTTON_SIZE + ZOOM_BUTTON_SIZE / 2, ZOOM_BUTTON_SIZE / 2, GraphicUtils.TextJustify.CENTER);
 	}
-
-
+	
+	
 	/**
-	 * Render the graph onto a graphics context
+	 * Expand and collapse summary nodes based on their size on the screen. This
+	 * technically does not belong to rendering, but it depends on the image size.
 	 * 
-	 * @param g the graphics object
+	 * @param scale the scale level
 	 * @param width the image width
 	 * @param height the image height
 	 */
-	public void render(Graphics g, int width, int height) {
-
-		// Initialize
-		
-		long t_start = 0;
-		long t_last = 0;
-		if (DEBUG_PERFORMANCE) {
-			t_start = System.currentTimeMillis();
-			t_last = t_start;
-		}
-		
-		double scale = getScale(); 
-		Graphics2D g2 = (Graphics2D) g;
-		
-		Stroke selectionStroke = new BasicStroke(3);
-		Stroke edgeSelectionStroke = new BasicStroke(2);
-		Stroke stroke = g2.getStroke();
-		
-		
-		// Font
-		
-		Font orgFont = g.getFont();
-		g.setFont(defaultFont);
-		
-		
-		// Clear the panel
-
-		Color bg = decorator.getBackgroundColor();
-		g.setColor(bg);
-		
-		Rectangle clip = new Rectangle(0, 0, width, height);
-		g.setClip(clip);
-		
-		g.fillRect(0, 0, width, height);
-		if (graph == null || layout == null) return;
-		
-		
-		// Support for semantic zoom
+	protected void updateSemanticZoom(double scale, int width, int height) {
 		
-		// NOTE This technically does not belong here, but then we need stuff like max_hw and max_hh,
-		// for which we need the graphics context g.
+		// Consider the expanded summary nodes for collapse
 		
-		if (semanticZoom) {
+		boolean done = false;
+		while (!done) {
+			done = true;
 			
-			// Consider the expanded summary nodes for collapse
+			HashSet<GraphLayoutNode> summaryNodesCopy = Utils.cast(summaryNodes.clone());
 			
-			boolean done = false;
-			while (!done) {
-				done = true;
+			for (GraphLayoutNode n : summaryNodesCopy) {
+				BaseNode node = n.getBaseNode();
+				if (!(node instanceof BaseSummaryNode)) continue;
+				if (!expandedSummaryNodes.contains((BaseSummaryNode) node)) continue;
 				
-				HashSet<GraphLayoutNode> summaryNodesCopy = Utils.cast(summaryNodes.clone());
+				boolean b = false;
 				
-				for (GraphLayoutNode n : summaryNodesCopy) {
-					BaseNode node = n.getBaseNode();
-					if (!(node instanceof BaseSummaryNode)) continue;
-					if (!expandedSummaryNodes.contains((BaseSummaryNode) node)) continue;
-					
-					boolean b = false;
-					
-					int sx1 = translateX(n.getX() - n.getWidth () / 2, scale, width);
-					int sy1 = translateY(n.getY() - n.getHeight() / 2, scale, height);
-					int sx2 = translateX(n.getX() + n.getWidth () / 2, scale, width);
-					int sy2 = translateY(n.getY() + n.getHeight() / 2, scale, height);
-					int hw  = (sx2 - sx1) / 2;
-					int hh  = (sy2 - sy1) / 2;
-		
-					if (sx2 < 0 || sy2 < 0 || sx1 > width || sy1 > height) {
-						b = true;
-					}
-					
-					if (hh < semanticZoomSizeThreshold || hw < semanticZoomSizeThreshold) {
-						b = true;
-					}
-					
-					if (b) {
-						if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Collapse: " + n.getBaseNode().getLabel());
-						collapseNode(node);
-						done = false;
-					}
+				int sx1 = translateX(n.getX() - n.getWidth () / 2, scale, width);
+				int sy1 = translateY(n.getY() - n.getHeight() / 2, scale, height);
+				int sx2 = translateX(n.getX() + n.getWidth () / 2, scale, width);
+				int sy2 = translateY(n.getY() + n.getHeight() / 2, scale, height);
+				int hw  = (sx2 - sx1) / 2;
+				int hh  = (sy2 - sy1) / 2;
+	
+				if (sx2 < 0 || sy2 < 0 || sx1 > width || sy1 > height) {
+					b = true;
+				}
+				
+				if (hh < semanticZoomSizeThreshold || hw < semanticZoomSizeThreshold) {
+					b = true;
+				}
+				
+				if (b) {
+					if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Collapse: " + n.getBaseNode().getLabel());
+					collapseNode(node);
+					done = false;
 				}
 			}
+		}
+		
+		
+		// Consider the collapsed summary nodes for expansion (only those in the visible region)
+		
+		Rectangle2D view = getVisibleLayoutRegion(scale, width, height, 0);
+		
+		done = false;
+		while (!done) {
+			done = true;
 			
+			ArrayList<GraphLayoutNode> nodesCopy = nodeIndex.query(view.getMinX(), view.getMinY(),
+					view.getMaxX(), view.getMaxY());
 			
-			// Consider the collapsed summary nodes for expansion
-			
-			done = false;
-			while (!done) {
-				done = true;
+			for (GraphLayoutNode n : nodesCopy) {
+				BaseNode node = n.getBaseNode();
+				if (!(node instanceof BaseSummaryNode)) continue;
+				if (expandedSummaryNodes.contains((BaseSummaryNode) node)) continue;
+				
+				int sx1 = translateX(n.getX() - n.getWidth () / 2, scale, width);
+				int sy1 = translateY(n.getY() - n.getHeight() / 2, scale, height);
+				int sx2 = translateX(n.getX() + n.getWidth () / 2, scale, width);
+				int sy2 = translateY(n.getY() + n.getHeight() / 2, scale, height);
+				int hw  = (sx2 - sx1) / 2;
+				int hh  = (sy2 - sy1) / 2;
+	
+				if (sx2 < 0 || sy2 < 0 || sx1 > width || sy1 > height) {
+					continue;
+				}
 				
-				HashSet<GraphLayoutNode> nodesCopy = Utils.cast(nodes.clone());
+				if (hh < semanticZoomSizeThreshold || hw < semanticZoomSizeThreshold) {
+					continue;
+				}
 				
-				for (GraphLayoutNode n : nodesCopy) {
-					BaseNode node = n.getBaseNode();
-					if (!(node instanceof BaseSummaryNode)) continue;
-					if (expandedSummaryNodes.contains((BaseSummaryNode) node)) continue;
-					
-					int sx1 = translateX(n.getX() - n.getWidth () / 2, scale, width);
-					int sy1 = translateY(n.getY() - n.getHeight() / 2, scale, height);
-					int sx2 = translateX(n.getX() + n.getWidth () / 2, scale, width);
-					int sy2 = translateY(n.getY() + n.getHeight() / 2, scale, height);
-					int hw  = (sx2 - sx1) / 2;
-					int hh  = (sy2 - sy1) / 2;
-		
-					if (sx2 < 0 || sy2 < 0 || sx1 > width || sy1 > height) {
-						continue;
-					}
-					
-					if (hh < semanticZoomSizeThreshold || hw < semanticZoomSizeThreshold) {
-						continue;
-					}
-					
-					if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Expand  : " + n.getBaseNode().getLabel());
-					if (expandNode(node)) {
-						done = false;
-					}
+				if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Expand  : " + n.getBaseNode().getLabel());
+				if (expandNode(node)) {
+					done = false;
 				}
 			}
 		}
+	}
+	
+	
+	/**
+	 * Request the semantic zoom to be updated for the current view. If it is
+	 * planned in the background, the summary nodes are expanded and collapsed
+	 * later on the event dispatch thread, otherwise they are updated right away.
+	 * 
+	 * @param scale the scale level
+	 * @param width the image width
+	 * @param height the image height
+	 */
+	protected void requestSemanticZoom(double scale, int width, int height) {
 		
-		long t_semantic_zoom = 0;
-		if (DEBUG_PERFORMANCE) {
-			long t = System.currentTimeMillis();
-			t_semantic_zoom = t - t_last;
-			t_last = t;
+		// The planner computes the missing layouts in the background, which is safe
+		// only if the layout can be read while it is being updated
+		
+		if (!asyncSemanticZoom || !(layout instanceof FastGraphLayout)) {
+			updateSemanticZoom(scale, width, height);
+			return;
 		}
 		
+		semanticZoomPlanner.request(new View(scale, offsetX, offsetY, width, height, CLIP_MARGIN));
+	}
+	
+	
+	/**
+	 * Expand and collapse summary nodes so that the expanded nodes match the
+	 * given plan. Only the nodes that are currently displayed are expanded.
+	 * 
+	 * @param plan the summary nodes to be expanded, parents before children
+	 */
+	private void applySemanticZoom(Collection<BaseSummaryNode> plan) {
 		
-		// Useful common variables
+		boolean changed = false;
 		
-		Rectangle r = new Rectangle();
-		Line2D l = new Line2D.Double();
 		
-		Set<GraphLayoutNode> immutable_nodes = Collections.unmodifiableSet(Utils.<Set<GraphLayoutNode>>cast(nodes));
-		Set<GraphLayoutEdge> immutable_edges = Collections.unmodifiableSet(Utils.<Set<GraphLayoutEdge>>cast(edges));
-		Set<GraphLayoutNode> immutable_summaryNodes = Collections.unmodifiableSet(Utils.<Set<GraphLayoutNode>>cast(summaryNodes));
+		// Expand the planned nodes
 		
+		for (BaseSummaryNode s : plan) {
+			if (expandedSummaryNodes.contains(s)) continue;
+			
+			GraphLayoutNode ls = layout.getLayoutNode(s.getIndex());
+			if (ls == null || !nodes.contains(ls)) continue;
+			
+			if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Expand  : " + s.getLabel());
+			if (expandNode(s)) changed = true;
+		}
 		
-		// Check how many nodes are visible
 		
-		boolean drawNodesThisTime = drawNodes;
+		// Collapse the rest, including the nodes expanded automatically above
 		
-		if (drawNodes) {
-			double vnThreshold = 10 * (width * height / 10000.0);	// Units per 100x100 px area
-			int visibleNodes = 0;
-
-			for (GraphLayoutNode n : immutable_nodes) {
-				
-				// Check the position
-				
-				int sx = translateX(n.getX(), scale, width);
-				int sy = translateY(n.getY(), scale, height);
+		BaseSummaryNode root = graph.getRootBaseSummaryNode();
+		HashSet<BaseSummaryNode> planned = new HashSet<BaseSummaryNode>(plan);
+		ArrayList<BaseSummaryNode> toCollapse = new ArrayList<BaseSummaryNode>();
+		
+		for (BaseSummaryNode s : expandedSummaryNodes) {
+			if (s != root && !planned.contains(s)) toCollapse.add(s);
+		}
+		
+		for (BaseSummaryNode s : toCollapse) {
+			if (!expandedSummaryNodes.contains(s)) continue;
+			if (DEBUG_SEMANTIC_ZOOM) System.err.println("[Zoom " + zoom + "] Collapse: " + s.getLabel());
+			collapseNode(s);
+			changed = true;
+		}
+		
+		requestLayoutPrefetch();
+		if (changed) repaint();
+	}
+	
+	
+	/**
+	 * Start the layout prefetcher for the current layout if it should be
+	 * running, and stop the previous one
+	 */
+	private void startLayoutPrefetcher() {
+		
+		if (layoutPrefetcher != null) {
+			layoutPrefetcher.cancel();
+			layoutPrefetcher = null;
+		}
+		
+		if (graph != null && prefetchLayouts && semanticZoom && asyncSemanticZoom
+				&& layout instanceof FastGraphLayout) {
+			layoutPrefetcher = new LayoutPrefetcher(layout);
+		}
+	}
+	
+	
+	/**
+	 * Request the layouts of the collapsed summary nodes near the view to be
+	 * computed in the background, starting with the node under the mouse
+	 * pointer and then from the center of the view outwards
+	 */
+	private void requestLayoutPrefetch() {
+		
+		if (layoutPrefetcher == null) return;
+		
+		
+		// Get the collapsed summary nodes in the view and within one view around it
+		
+		int width = getWidth();
+		int height = getHeight();
+		Rectangle2D view = getVisibleLayoutRegion(getScale(), width, height, Math.max(width, height));
+		
+		ArrayList<GraphLayoutNode> candidates = new ArrayList<GraphLayoutNode>();
+		for (GraphLayoutNode n : nodeIndex.query(view.getMinX(), view.getMinY(), view.getMaxX(), view.getMaxY())) {
+			if (n.getBaseNode() instanceof BaseSummaryNode) candidates.add(n);
+		}
+		
+		
+		// Order them by the distance from the center of the view
+		
+		final double cx = view.getCenterX();
+		final double cy = view.getCenterY();
+		
+		Collections.sort(candidates, new Comparator<GraphLayoutNode>() {
+			@Override
+			public int compare(GraphLayoutNode a, GraphLayoutNode b) {
+				double da = (a.getX() - cx) * (a.getX() - cx) + (a.getY() - cy) * (a.getY() - cy);
+				double db = (b.getX() - cx) * (b.getX() - cx) + (b.getY() - cy) * (b.getY() - cy);
+				return Double.compare(da, db);
+			}
+		});
+		
+		ArrayList<BaseSummaryNode> requested = new ArrayList<BaseSummaryNode>();
+		if (hoveredNode instanceof BaseSummaryNode) requested.add((BaseSummaryNode) hoveredNode);
+		
+		for (GraphLayoutNode n : candidates) {
+			if (requested.size() >= MAX_LAYOUT_PREFETCH_REQUESTS) break;
+			requested.add((BaseSummaryNode) n.getBaseNode());
+		}
+		
+		layoutPrefetcher.request(requested, expandedSummaryNodes);
+	}
+	
+	
+	/**
+	 * Determine whether the nodes should be drawn, which is not the case if there
+	 * are too many of them on the screen
+	 * 
+	 * @param scale the scale level
+	 * @param width the image width
+	 * @param height the image height
+	 * @return true if the nodes should be drawn
+	 */
+	protected boolean isDrawingNodesAt(double scale, int width, int height) {
+		
+		// Check how many nodes are visible
+		
+		boolean drawNodesThisTime = drawNodes;
+		
+		if (drawNodes) {
+			double vnThreshold = 10 * (width * height / 10000.0);	// Units per 100x100 px area
+			int visibleNodes = 0;
+
+			Rectangle2D view = getVisibleLayoutRegion(scale, width, height, 0);
+			
+			for (GraphLayoutNode n : nodeIndex.query(view.getMinX(), view.getMinY(), view.getMaxX(), view.getMaxY())) {
+				
+				// Check the position
+				
+				int sx = translateX(n.getX(), scale, width);
+				int sy = translateY(n.getY(), scale, height);
 				
 				if (sx < 0 || sy < 0 || sx > width || sy > height) continue;
 				
@@ -1698,7 +2449,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				System.err.println("Scale : " + scale);
 				System.err.println();
 				
-				for (GraphLayoutNode n : immutable_nodes) {
+				for (GraphLayoutNode n : nodes) {
 					
 					int sx = translateX(n.getX(), scale, width);
 					int sy = translateY(n.getY(), scale, height);
@@ -1719,23 +2470,300 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			}
 		}
 		
+		return drawNodesThisTime;
+	}
+
+
+	/**
+	 * Render the graph onto a graphics context
+	 * 
+	 * @param g the graphics object
+	 * @param width the image width
+	 * @param height the image height
+	 */
+	public void render(Graphics g, int width, int height) {
+
+		// Initialize
+		
+		long t_start = 0;
+		if (DEBUG_PERFORMANCE) {
+			t_start = System.currentTimeMillis();
+		}
+		
+		double scale = getScale(); 
+		
+		
+		// Clear the panel if there is nothing to draw
+		
+		if (graph == null || layout == null) {
+			g.setColor(decorator.getBackgroundColor());
+			g.fillRect(0, 0, width, height);
+			return;
+		}
+		
+		
+		// Support for semantic zoom
+		
+		if (semanticZoom) updateSemanticZoom(scale, width, height);
+		
+		long t_semantic_zoom = 0;
+		if (DEBUG_PERFORMANCE) {
+			t_semantic_zoom = System.currentTimeMillis() - t_start;
+		}
+		
+		
+		// Render
+		
+		boolean drawNodesThisTime = isDrawingNodesAt(scale, width, height);
+		
+		renderGraph(g, new RenderState(false), new View(scale, offsetX, offsetY, width, height, CLIP_MARGIN),
+				drawNodesThisTime, drawShadedEdgesOutsideOfDisplay);
+		
+		if (DEBUG_PERFORMANCE) {
+			long t = System.currentTimeMillis() - t_start;
+			if (t > 100) {
+				System.err.println("Total rendering time   :   " + t + " ms");
+				System.err.println("Semantic zoom          :   " + t_semantic_zoom + " ms");
+				System.err.println();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Render the graph onto the screen from the tile cache. The missing tiles are
+	 * requested from the background renderers and drawn in the meantime from the
+	 * tiles of the neighboring zoom levels or from before the last change.
+	 * 
+	 * @param g the graphics object
+	 * @param width the image width
+	 * @param height the image height
+	 */
+	protected void renderTiled(Graphics g, int width, int height) {
+		
+		double scale = getScale();
+		Graphics2D g2 = (Graphics2D) g;
+		
+		
+		// Clear the panel
+		
+		g.setColor(decorator.getBackgroundColor());
+		g.setClip(0, 0, width, height);
+		g.fillRect(0, 0, width, height);
+		
+		
+		// Support for semantic zoom
+		
+		if (semanticZoom) requestSemanticZoom(scale, width, height);
+		boolean drawNodesThisTime = isDrawingNodesAt(scale, width, height);
+		
+		
+		// Take a snapshot of the graph cache if it changed
+		
+		if (renderState == null) {
+			renderState = new RenderState(true);
+			tileCache.reset(renderState);
+		}
+		
+		
+		// Draw the tiles, the screen coordinate being the global pixel coordinate plus (dx, dy)
+		
+		long dx = Math.round(offsetX * scale + width  / 2);
+		long dy = Math.round(offsetY * scale + height / 2);
+		
+		long tx1 = Math.floorDiv(-dx, TILE_SIZE);
+		long ty1 = Math.floorDiv(-dy, TILE_SIZE);
+		long tx2 = Math.floorDiv(width  - 1 - dx, TILE_SIZE);
+		long ty2 = Math.floorDiv(height - 1 - dy, TILE_SIZE);
+		
+		ArrayList<TileKey> missing = new ArrayList<TileKey>();
+		
+		for (long ty = ty1; ty <= ty2; ty++) {
+			for (long tx = tx1; tx <= tx2; tx++) {
+				
+				TileKey k = new TileKey(scale, drawNodesThisTime, tx, ty);
+				int sx = (int) (tx * TILE_SIZE + dx);
+				int sy = (int) (ty * TILE_SIZE + dy);
+				
+				BufferedImage img = tileCache.get(k);
+				if (img != null) {
+					g.drawImage(img, sx, sy, null);
+				}
+				else {
+					missing.add(k);
+					g2.setClip(sx, sy, TILE_SIZE, TILE_SIZE);
+					g2.clipRect(0, 0, width, height);
+					drawTilePlaceholder(g2, k, sx, sy, dx, dy);
+					g2.setClip(0, 0, width, height);
+				}
+			}
+		}
+		
+		
+		// Request the missing tiles, starting from the center of the screen
+		
+		if (!missing.isEmpty()) {
+			final double cx = (width  / 2 - dx) / (double) TILE_SIZE - 0.5;
+			final double cy = (height / 2 - dy) / (double) TILE_SIZE - 0.5;
+			Collections.sort(missing, new Comparator<TileKey>() {
+				@Override
+				public int compare(TileKey a, TileKey b) {
+					double da = (a.x - cx) * (a.x - cx) + (a.y - cy) * (a.y - cy);
+					double db = (b.x - cx) * (b.x - cx) + (b.y - cy) * (b.y - cy);
+					return Double.compare(da, db);
+				}
+			});
+		}
+		
+		tileCache.request(missing);
+		
+		
+		// Finish
+		
+		g.setClip(null);
+	}
+	
+	
+	/**
+	 * Draw a coarse version of a missing tile, either from before the last change
+	 * of the graph cache, or scaled from the nearby zoom levels
+	 * 
+	 * @param g the graphics object, clipped to the tile
+	 * @param k the key of the missing tile
+	 * @param sx the screen X coordinate of the tile
+	 * @param sy the screen Y coordinate of the tile
+	 * @param dx the X offset of the screen from the global pixel coordinates
+	 * @param dy the Y offset of the screen from the global pixel coordinates
+	 */
+	private void drawTilePlaceholder(Graphics2D g, TileKey k, int sx, int sy, long dx, long dy) {
+		
+		BufferedImage img = tileCache.getStale(k);
+		if (img != null) {
+			g.drawImage(img, sx, sy, null);
+			return;
+		}
+		
+		
+		// Try the other zoom levels, the farthest first so that the nearest end up on top
+		
+		for (int d = TILE_PLACEHOLDER_ZOOM_LEVELS; d >= 1; d--) {
+			for (int sign = -1; sign <= 1; sign += 2) {
+				
+				double s = baseScale * Math.pow(zoomToScale, zoom + sign * d);
+				double f = k.scale / s;
+				double size = TILE_SIZE * f;
+				
+				long i1 = (long) Math.floor((sx - dx) / size);
+				long j1 = (long) Math.floor((sy - dy) / size);
+				long i2 = (long) Math.floor((sx + TILE_SIZE - 1 - dx) / size);
+				long j2 = (long) Math.floor((sy + TILE_SIZE - 1 - dy) / size);
+				if ((i2 - i1 + 1) * (j2 - j1 + 1) > 16) continue;
+				
+				for (long j = j1; j <= j2; j++) {
+					for (long i = i1; i <= i2; i++) {
+						TileKey o = new TileKey(s, k.drawNodes, i, j);
+						img = tileCache.get(o);
+						if (img == null) img = tileCache.getStale(o);
+						if (img == null) continue;
+						
+						int x = (int) Math.floor(i * size + dx);
+						int y = (int) Math.floor(j * size + dy);
+						int w = (int) Math.ceil(size) + 1;
+						g.drawImage(img, x, y, w, w, null);
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Render the graph
+	 * 
+	 * @param g the graphics object
+	 * @param state the state of the graph cache to render
+	 * @param v the view
+	 * @param drawNodesThisTime whether to draw the nodes
+	 * @param shadeOutside whether to shade the edges with end-points outside of the view
+	 */
+	private void renderGraph(Graphics g, RenderState state, View v, boolean drawNodesThisTime, boolean shadeOutside) {
+
+		// Initialize
+		
+		long t_start = 0;
+		long t_last = 0;
+		if (DEBUG_PERFORMANCE) {
+			t_start = System.currentTimeMillis();
+			t_last = t_start;
+		}
+		
+		double scale = v.scale;
+		int width = v.width;
+		int height = v.height;
+		Graphics2D g2 = (Graphics2D) g;
+		
+		Stroke selectionStroke = new BasicStroke(3);
+		Stroke edgeSelectionStroke = new BasicStroke(2);
+		Stroke stroke = g2.getStroke();
+		
+		
+		// Font
+		
+		Font orgFont = g.getFont();
+		g.setFont(defaultFont);
+		
+		
+		// Clear the panel
+
+		Color bg = state.decorator.getBackgroundColor();
+		g.setColor(bg);
+		
+		Rectangle clip = new Rectangle(0, 0, width, height);
+		g.setClip(clip);
+		
+		g.fillRect(0, 0, width, height);
+		
+		
+		// Useful common variables
+		
+		Rectangle r = new Rectangle();
+		Line2D l = new Line2D.Double();
+		
+		
+		// Get the nodes and edges that intersect the visible region, with enough margin for
+		// the arrow heads, points, and labels that extend past the bounding boxes
+		
+		Rectangle2D view = v.getLayoutRegion(Math.max(arrowHeadSize, pointSize) + 4);
+		double vx1 = view.getMinX(), vy1 = view.getMinY(), vx2 = view.getMaxX(), vy2 = view.getMaxY();
+		
+		ArrayList<GraphLayoutNode> visible_nodes = state.nodeIndex.query(vx1, vy1, vx2, vy2);
+		ArrayList<GraphLayoutEdge> visible_edges = state.edgeIndex.query(vx1, vy1, vx2, vy2);
+		ArrayList<GraphLayoutNode> visible_summaryNodes = state.summaryNodeIndex.query(vx1, vy1, vx2, vy2);
+		
+		long t_query = 0;
+		if (DEBUG_PERFORMANCE) {
+			long t = System.currentTimeMillis();
+			t_query = t - t_last;
+			t_last = t;
+		}
+		
 		
 		// Draw fills of expanded summary nodes
 		
 		if (drawExpandedNodes) {
-			for (GraphLayoutNode n : immutable_summaryNodes) {
+			for (GraphLayoutNode n : visible_summaryNodes) {
 				
-				if (!getNodeBounds(n, scale, width, height, r)) continue;
+				if (!getNodeBounds(n, v, r)) continue;
 				
 				S node = Utils.<S>cast(n.getBaseNode());
-				boolean highlighted = highlightedNodes.contains(n);
-				boolean selected = selectedLayoutNodes.contains(n);
+				boolean highlighted = state.highlightedNodes.contains(n);
+				boolean selected = state.selectedLayoutNodes.contains(n);
 				
 				int selectionLevel = GraphDecorator.NONE;
 				if (highlighted) selectionLevel = GraphDecorator.HIGHLIGHTED;
 				if (selected) selectionLevel = GraphDecorator.SELECTED;
 				
-				Color c = decorator.getSummaryNodeColor(node, true, selectionLevel);
+				Color c = state.decorator.getSummaryNodeColor(node, true, selectionLevel);
 				if (c != null) {
 					g.setColor(c);
 					g.fillRect(r.x, r.y, r.width, r.height);
@@ -1758,28 +2786,75 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		}
 		
 
+		// Aggregate the edges that are too short or too many to be drawn individually
+		
+		ArrayList<GraphLayoutEdge> detailed_edges = visible_edges;
+		int numAggregatedEdges = 0;
+		
+		if (edgeLevelOfDetail) {
+			
+			// If there are too many edges, make the cells larger, so that the number of bundles
+			// grows only with the size of the view and not with the number of edges
+			
+			double cellSize = Math.max(MIN_EDGE_BUNDLE_CELL_SIZE, semanticZoomSizeThreshold / 4);
+			boolean aggregateAll = visible_edges.size() > maxDetailedEdges;
+			if (aggregateAll) cellSize *= Math.sqrt(visible_edges.size() / (double) Math.max(1, maxDetailedEdges));
+			
+			EdgeAggregator aggregator = new EdgeAggregator(cellSize / scale);
+			detailed_edges = new ArrayList<GraphLayoutEdge>();
+			boolean anySelected = !state.selectedEndpoints.isEmpty();
+			
+			for (GraphLayoutEdge e : visible_edges) {
+				
+				if (anySelected && (state.selectedEndpoints.contains(e.getFrom()) || state.selectedEndpoints.contains(e.getTo()))) {
+					detailed_edges.add(e);
+					continue;
+				}
+				
+				if (!aggregateAll) {
+					double dx = Math.abs(e.getTo().getX() - e.getFrom().getX()) * scale;
+					double dy = Math.abs(e.getTo().getY() - e.getFrom().getY()) * scale;
+					if (dx >= cellSize || dy >= cellSize) {
+						detailed_edges.add(e);
+						continue;
+					}
+				}
+				
+				int x1 = v.x(e.getFrom().getX());
+				int y1 = v.y(e.getFrom().getY());
+				int x2 = v.x(e.getTo()  .getX());
+				int y2 = v.y(e.getTo()  .getY());
+				
+				boolean inside1 = !shadeOutside || (x1 >= 0 && y1 >= 1 && x1 < width && y1 < height);
+				boolean inside2 = !shadeOutside || (x2 >= 0 && y2 >= 1 && x2 < width && y2 < height);
+				
+				aggregator.add(e, getEdgeColor(state, e, bg, GraphDecorator.NONE, GraphDecorator.NONE, inside1, inside2));
+				numAggregatedEdges++;
+			}
+			
+			aggregator.render(g2, v, cellSize);
+			g2.setStroke(stroke);
+		}
+		
+		
 		// Draw edges
 		
-		BSpline spline = new BSpline();
 		boolean edgeClipTo = drawNodesThisTime && !drawNodesAsPoints;
 
 		for (int pass = 0; pass < 3; pass++) {
-			for (GraphLayoutEdge e : immutable_edges) {
-				E edge = e.getBaseEdge() instanceof Edge<?> ? Utils.<E>cast(e.getBaseEdge()) : null;
-				
-				
+			for (GraphLayoutEdge e : detailed_edges) {
 				// Get the end-points coordinates
 				
-				int x1 = translateX(e.getFrom().getX(), scale, width);
-				int y1 = translateY(e.getFrom().getY(), scale, height);
-				int x2 = translateX(e.getTo()  .getX(), scale, width);
-				int y2 = translateY(e.getTo()  .getY(), scale, height);
+				int x1 = v.x(e.getFrom().getX());
+				int y1 = v.y(e.getFrom().getY());
+				int x2 = v.x(e.getTo()  .getX());
+				int y2 = v.y(e.getTo()  .getY());
 				
 				
 				// Determine which pass the edges should be drawn in and ensure it
 				
-				boolean inside1 = x1 >= 0 && y1 >= 1 && x1 < width && y1 < height;
-				boolean inside2 = x2 >= 0 && y2 >= 1 && x2 < width && y2 < height;
+				boolean inside1 = !shadeOutside || (x1 >= 0 && y1 >= 1 && x1 < width && y1 < height);
+				boolean inside2 = !shadeOutside || (x2 >= 0 && y2 >= 1 && x2 < width && y2 < height);
 				boolean none = !inside1 && !inside2;
 				boolean both =  inside1 &&  inside2;
 				boolean one  = (inside1 ||  inside2) && !both;
@@ -1796,37 +2871,17 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				
 				// TODO Consider also highlighted edges
 				
-				for (BaseNode n : selectedNodes) {
-					if (getLayoutNode(map(n).getIndex()) == e.getFrom()) {
-						fromSelectionLevel = GraphDecorator.SELECTED;
-					}
-					if (getLayoutNode(map(n).getIndex()) == e.getTo()) {
-						toSelectionLevel = GraphDecorator.SELECTED;
-					}
+				if (state.selectedEndpoints.contains(e.getFrom())) {
+					fromSelectionLevel = GraphDecorator.SELECTED;
+				}
+				if (state.selectedEndpoints.contains(e.getTo())) {
+					toSelectionLevel = GraphDecorator.SELECTED;
 				}
 
 				
 				// Color
 				
-				Color c;
-				if (e.getBaseEdge() instanceof BaseSummaryEdge) {
-					c = decorator.getSummaryEdgeColor((BaseSummaryEdge) e.getBaseEdge(), fromSelectionLevel, toSelectionLevel);
-				}
-				else {
-					c = decorator.getEdgeColor(edge, fromSelectionLevel, toSelectionLevel);
-				}
-				if (drawShadedEdgesOutsideOfDisplay && !both) {
-					double f = one ? 0.5f : 0.125f;
-					if (fromSelectionLevel == GraphDecorator.SELECTED
-							|| toSelectionLevel == GraphDecorator.SELECTED) {
-						f = one ? 0.75f : 0.5f;
-					}
-					int cr = (int)(bg.getRed  () + f * (c.getRed  () - bg.getRed  ()));
-					int cg = (int)(bg.getGreen() + f * (c.getGreen() - bg.getGreen()));
-					int cb = (int)(bg.getBlue () + f * (c.getBlue () - bg.getBlue ()));
-					c = new Color(cr, cg, cb);
-				}
-				g.setColor(c);
+				g.setColor(getEdgeColor(state, e, bg, fromSelectionLevel, toSelectionLevel, inside1, inside2));
 				
 				
 				// Stroke
@@ -1843,20 +2898,18 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					
 				// Draw the edge
 				
-				if (drawSplines && e.sizeCP() > 2) {
+				if (drawSplines && e.sizeCP() > 2 && e.getCurveDeviation() * scale >= 1) {
 			
-					double[] x = e.getX();
-					double[] y = e.getY();
+					float[] p = e.getCurve();
+					double x0 = e.getX()[0];
+					double y0 = e.getY()[0];
 					
-					spline.clearCP();
-
 					
 					// Get the first point
 					
-					int xl, yl, xt, yt, xa, ya;
-					xa = xt = xl = translateX(x[0], scale, width);
-					ya = yt = yl = translateY(y[0], scale, height);
-					spline.addCP(xl, yl);
+					int xs, ys, xl, yl, xt, yt, xa, ya;
+					xa = xt = xl = xs = v.x(x0 + p[0]);
+					ya = yt = yl = ys = v.y(y0 + p[1]);
 
 					
 					// Prepare for clipping by the target node
@@ -1865,7 +2918,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					Ellipse2D s = null;
 					
 					if (edgeClipTo) {
-						clipToNow = getNodeBounds(e.getTo(), scale, width, height, r);
+						clipToNow = getNodeBounds(e.getTo(), v, r);
 						if (r.getHeight() <= 3) clipToNow = false;
 						if (clipToNow && !(e.getTo().getBaseNode() instanceof BaseSummaryNode)) {
 							s = new Ellipse2D.Double(r.getX(), r.getY(), r.getWidth(), r.getHeight());
@@ -1873,15 +2926,12 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					}
 					
 					
-					// Add the control point of each segment
+					// Draw the segments of the cached curve, skipping the ones that are too short
 					
-					for (int i = 1; i < x.length; i++) {
-						
-						xa = xl;
-						ya = yl;
+					for (int i = 2; i < p.length; i += 2) {
 						
-						xt = translateX(x[i], scale, width);
-						yt = translateY(y[i], scale, height);
+						xt = v.x(x0 + p[i]);
+						yt = v.y(y0 + p[i + 1]);
 						
 						
 						// Check clipping
@@ -1901,44 +2951,32 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 							if (b) {
 								xt = (int) l.getX1();
 								yt = (int) l.getY1();
-								spline.addCP(xt, yt);
+								g.drawLine(xl, yl, xt, yt);
+								xa = xl;
+								ya = yl;
 								break;
 							}
 						}
 						
 						
-						// Add the control point
+						// Draw the segment
 						
-						spline.addCP(xt, yt);
+						int ls = (xt-xl) * (xt-xl) + (yt-yl) * (yt-yl);
+						if (ls < MIN_CURVE_SEGMENT * MIN_CURVE_SEGMENT && i + 2 < p.length) continue;
 						
+						g.drawLine(xl, yl, xt, yt);
+						
+						xa = xl;
+						ya = yl;
 						xl = xt;
 						yl = yt;
 					}
 					
 					
-					// Render the spline
-					
-					if (spline.sizeCP() <= 2) {
-						int xs = translateX(x[0], scale, width);
-						int ys = translateY(y[0], scale, height);
-						g.drawLine(xs, ys, xt, yt);
-					}
-					else {
-						int d = spline.getDegree();
-						if (spline.sizeCP() <= d) {
-							spline.setDegree(spline.sizeCP() - 1);
-						}
-						spline.render(g);
-						spline.setDegree(d);
-					}
-					
-					
 					// Arrow
 					
 					if (drawArrows) {
 						
-						int xs = translateX(x[0], scale, width);
-						int ys = translateY(y[0], scale, height);
 						int les = (xs-xt) * (xs-xt) + (ys-yt) * (ys-yt);
 						
 						if (les > arrowMinLength*arrowMinLength) {
@@ -1951,13 +2989,13 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					// Get the line
 					
 					l.setLine(e.getFrom().getX(), e.getFrom().getY(), e.getTo().getX(), e.getTo().getY());
-					translateLine(l, scale, width, height);
+					v.line(l);
 					
 					
 					// Clip by the destination node
 					
 					if (edgeClipTo) {
-						if (getNodeBounds(e.getTo(), scale, width, height, r)) {
+						if (getNodeBounds(e.getTo(), v, r)) {
 							if (r.getHeight() > 3) {
 								
 								Line2D l2 = Utils.cast(l.clone());
@@ -2006,19 +3044,19 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		g2.setStroke(stroke);
 		
 		if (drawExpandedNodes) {
-			for (GraphLayoutNode n : immutable_summaryNodes) {
+			for (GraphLayoutNode n : visible_summaryNodes) {
 				
-				if (!getNodeBounds(n, scale, width, height, r)) continue;
+				if (!getNodeBounds(n, v, r)) continue;
 				
 				S node = Utils.<S>cast(n.getBaseNode());
-				boolean highlighted = highlightedNodes.contains(n);
-				boolean selected = selectedLayoutNodes.contains(n);
+				boolean highlighted = state.highlightedNodes.contains(n);
+				boolean selected = state.selectedLayoutNodes.contains(n);
 				
 				int selectionLevel = GraphDecorator.NONE;
 				if (highlighted) selectionLevel = GraphDecorator.HIGHLIGHTED;
 				if (selected) selectionLevel = GraphDecorator.SELECTED;
 				
-				g.setColor(decorator.getSummaryNodeOutlineColor(node, true, selectionLevel));
+				g.setColor(state.decorator.getSummaryNodeOutlineColor(node, true, selectionLevel));
 				if (selected) g2.setStroke(selectionStroke);
 				g.drawRect(r.x, r.y, r.width, r.height);
 				g2.setStroke(stroke);
@@ -2039,9 +3077,9 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 
 		if (drawNodesThisTime) {
 
-			for (GraphLayoutNode n : immutable_nodes) {
+			for (GraphLayoutNode n : visible_nodes) {
 				
-				if (!getNodeBounds(n, scale, width, height, r)) continue;
+				if (!getNodeBounds(n, v, r)) continue;
 				
 				int sx = (int) r.getCenterX();
 				int sy = (int) r.getCenterY();
@@ -2066,8 +3104,8 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 				
 				// Highlight & selection
 				
-				boolean highlighted = highlightedNodes.contains(n);
-				boolean selected = selectedLayoutNodes.contains(n);
+				boolean highlighted = state.highlightedNodes.contains(n);
+				boolean selected = state.selectedLayoutNodes.contains(n);
 				
 				int selectionLevel = GraphDecorator.NONE;
 				if (highlighted) selectionLevel = GraphDecorator.HIGHLIGHTED;
@@ -2092,16 +3130,16 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					
 					S s = Utils.<S>cast(n.getBaseNode());
 					
-					g.setColor(decorator.getSummaryNodeColor(s, false, selectionLevel));
+					g.setColor(state.decorator.getSummaryNodeColor(s, false, selectionLevel));
 					g.fillRect(r.x, r.y, r.width, r.height);
 					
-					g.setColor(decorator.getSummaryNodeOutlineColor(s, false, selectionLevel));
+					g.setColor(state.decorator.getSummaryNodeOutlineColor(s, false, selectionLevel));
 					if (selected) g2.setStroke(selectionStroke);
 					g.drawRect(r.x, r.y, r.width, r.height);
 					g2.setStroke(stroke);
 					
 					if (drawLabel) {
-						g.setColor(decorator.getSummaryNodeTextColor(s, false, selectionLevel));
+						g.setColor(state.decorator.getSummaryNodeTextColor(s, false, selectionLevel));
 						GraphicUtils.drawText(g, label, sx, sy, GraphicUtils.TextJustify.CENTER);
 					}
 				}
@@ -2114,9 +3152,9 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 					
 					// Node color
 					
-					Color colorFill = decorator.getNodeColor(node, selectionLevel);
-					Color colorOutline = decorator.getNodeOutlineColor(node, selectionLevel);
-					Color colorText = decorator.getNodeTextColor(node, selectionLevel);
+					Color colorFill = state.decorator.getNodeColor(node, selectionLevel);
+					Color colorOutline = state.decorator.getNodeOutlineColor(node, selectionLevel);
+					Color colorText = state.decorator.getNodeTextColor(node, selectionLevel);
 					
 					
 					// Draw the node
@@ -2150,7 +3188,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 						}
 						
 						if (drawLabel) {
-							g.setColor(decorator.getBackgroundColor());
+							g.setColor(state.decorator.getBackgroundColor());
 							GraphicUtils.drawText(g, label, r.x + pointSize + 1, sy + 1, GraphicUtils.TextJustify.LEFT);
 							g.setColor(colorText);
 							GraphicUtils.drawText(g, label, r.x + pointSize, sy, GraphicUtils.TextJustify.LEFT);
@@ -2183,20 +3221,65 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 			long t = t_end - t_start;
 			
 			if (t > 100) {
-				System.err.println("Total rendering time   :   " + t + " ms");
-				System.err.println("Semantic zoom          :   " + t_semantic_zoom + " ms");
+				System.err.println("Graph rendering time   :   " + t + " ms");
+				System.err.println("Spatial index query    :   " + t_query + " ms");
 				System.err.println("Expanded nodes, part 1 :   " + t_draw_expanded_nodes_1 + " ms");
 				System.err.println("Edges                  :   " + t_draw_edges + " ms");
 				System.err.println("Expanded nodes, part 2 :   " + t_draw_expanded_nodes_2 + " ms");
 				System.err.println("Nodes                  :   " + t_draw_nodes + " ms");
-				System.err.println("(" + immutable_nodes.size() + " nodes, " + immutable_summaryNodes.size() + " expanded nodes, "
-									   + immutable_edges.size() + " edges)");
+				System.err.println("(" + visible_nodes.size() + " nodes, " + visible_summaryNodes.size() + " expanded nodes, "
+									   + visible_edges.size() + " edges in the visible region, "
+									   + numAggregatedEdges + " of them aggregated)");
 				System.err.println();
 			}
 		}
 	}
 
 	
+	/**
+	 * Get the color of an edge, blended with the background if any of its end-points
+	 * are outside of the view
+	 * 
+	 * @param state the state of the graph cache
+	 * @param e the layout edge
+	 * @param bg the background color
+	 * @param fromSelectionLevel the selection level of the from end-point
+	 * @param toSelectionLevel the selection level of the to end-point
+	 * @param inside1 whether the from end-point is inside the view
+	 * @param inside2 whether the to end-point is inside the view
+	 * @return the color
+	 */
+	private Color getEdgeColor(RenderState state, GraphLayoutEdge e, Color bg,
+			int fromSelectionLevel, int toSelectionLevel, boolean inside1, boolean inside2) {
+		
+		boolean both = inside1 && inside2;
+		boolean one  = (inside1 || inside2) && !both;
+		
+		Color c;
+		if (e.getBaseEdge() instanceof BaseSummaryEdge) {
+			c = state.decorator.getSummaryEdgeColor((BaseSummaryEdge) e.getBaseEdge(), fromSelectionLevel, toSelectionLevel);
+		}
+		else {
+			E edge = e.getBaseEdge() instanceof Edge<?> ? Utils.<E>cast(e.getBaseEdge()) : null;
+			c = state.decorator.getEdgeColor(edge, fromSelectionLevel, toSelectionLevel);
+		}
+		
+		if (!both) {
+			double f = one ? 0.5f : 0.125f;
+			if (fromSelectionLevel == GraphDecorator.SELECTED
+					|| toSelectionLevel == GraphDecorator.SELECTED) {
+				f = one ? 0.75f : 0.5f;
+			}
+			int cr = (int)(bg.getRed  () + f * (c.getRed  () - bg.getRed  ()));
+			int cg = (int)(bg.getGreen() + f * (c.getGreen() - bg.getGreen()));
+			int cb = (int)(bg.getBlue () + f * (c.getBlue () - bg.getBlue ()));
+			c = new Color(cr, cg, cb);
+		}
+		
+		return c;
+	}
+
+	
 	/**
 	 * Center the graph
 	 */
@@ -2247,197 +3330,1187 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 	 */
 	public BaseNode getNodeByPosition(int x, int y) {
 		
-		if (!drawNodes) return null;
+		if (!drawNodes) return null;
+			
+		Rectangle r = new Rectangle();
+			
+		int width = getWidth();
+		int height = getHeight();
+		double scale = getScale(); 
+		
+		
+		// Get the candidates from the spatial index, allowing for rounding to pixels
+		
+		double lx = (x - width  / 2) / scale - offsetX;
+		double ly = (y - height / 2) / scale - offsetY;
+		double d  = 2 / scale;
+		
+		for (GraphLayoutNode n : nodeIndex.query(lx - d, ly - d, lx + d, ly + d)) {
+				
+			if (!getNodeBounds(n, scale, width, height, r)) continue;
+			if (!r.contains(x, y)) continue;
+			
+			BaseNode node = n.getBaseNode();
+
+			if (node instanceof BaseSummaryNode) {
+				return node;
+			}
+			else {
+				
+				// Check whether the point is inside the ellipse inscribed in the bounds
+				
+				double ex = (x - r.getCenterX()) / (r.width  / 2.0);
+				double ey = (y - r.getCenterY()) / (r.height / 2.0);
+				if (ex * ex + ey * ey < 1) return node;
+			}
+		}
+		
+		return null;
+	}
+	
+	
+	/**
+	 * Export to Graphviz with formatting
+	 * 
+	 * @param file the file to write to
+	 * @param all true to export all nodes, false to export only from the current zoom level
+	 * @throws IOException on I/O error
+	 */
+	public void exportToGraphvizWithFormatting(File file, boolean all) throws IOException {
+		PrintWriter out = new PrintWriter(file);
+		exportToGraphvizWithFormatting(out, all);
+		out.close();
+	}
+	
+	
+	/**
+	 * Export to Graphviz with formatting
+	 * 
+	 * @param out the writer to write to
+	 * @param all true to export all nodes, false to export only from the current zoom level
+	 */
+	public void exportToGraphvizWithFormatting(PrintWriter out, boolean all) {
+		
+		// Start
+		
+		out.println("digraph \"Graph\" {");
+		if (layout.getAlgorithm() instanceof Graphviz) {
+			out.println("  rankdir=" + ((Graphviz) layout.getAlgorithm()).getRankDir() + ";");
+		}
+		if (layout.getAlgorithm() instanceof LayeredLayout) {
+			out.println("  rankdir=" + ((LayeredLayout) layout.getAlgorithm()).getRankDir() + ";");
+		}
+		
+		boolean nodesAsPoints = drawNodesAsPoints && false;	// Change to true for Graphviz 11/2011 or later
+		
+		
+		// Gather all nodes
+		
+		Collection<BaseNode> nodes; 
+		if (all) {
+			nodes = this.graph.getBaseNodes();
+		}
+		else {
+			nodes = new ArrayList<BaseNode>(this.nodes.size());
+			for (GraphLayoutNode n : this.nodes) nodes.add(n.getBaseNode());
+		}
+		
+		
+		// Export all nodes
+		
+		final String ELLIPSE = "ellipse";
+		
+		for (BaseNode n : nodes) {
+			if (!n.isVisible()) continue;
+				
+			String label = n.getLabel();
+			if (label == null || " ".equals(label)) label = "";
+
+			String shape;
+			Color fillColor;
+			Color textColor;
+			Color outlineColor;
+			
+			if (n instanceof BaseSummaryNode) {
+				shape = "box";
+				fillColor = decorator.getSummaryNodeColor(Utils.<S>cast(n),
+						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
+				textColor = decorator.getSummaryNodeTextColor(Utils.<S>cast(n),
+						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
+				outlineColor = decorator.getSummaryNodeOutlineColor(Utils.<S>cast(n),
+						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
+			}
+			else {
+				shape = nodesAsPoints ? "point" : ("".equals(label) ? "circle" : ELLIPSE);
+				fillColor = decorator.getNodeColor(Utils.<N>cast(n), GraphDecorator.NONE);
+				textColor = decorator.getNodeTextColor(Utils.<N>cast(n), GraphDecorator.NONE);
+				outlineColor = decorator.getNodeOutlineColor(Utils.<N>cast(n), GraphDecorator.NONE);
+				if (nodesAsPoints) {
+					outlineColor = fillColor;
+				}
+			}
+			
+			String style;
+			if (shape != ELLIPSE) {
+				style = "shape=" + shape + ",";
+			}
+			else {
+				style = "";
+			}
+			if (fillColor == null) {
+				style += "style=solid";
+			}
+			else {
+				style += "style=filled,fillcolor="
+						+ String.format("\"#%02x%02x%02x\"", fillColor.getRed(), fillColor.getGreen(), fillColor.getBlue());
+			}
+			if (textColor != Color.BLACK) {
+				style += ",fontcolor="
+						+ String.format("\"#%02x%02x%02x\"", textColor.getRed(), textColor.getGreen(), textColor.getBlue());
+			}
+			if (textColor != Color.BLACK) {
+				style += ",color="
+						+ String.format("\"#%02x%02x%02x\"", outlineColor.getRed(), outlineColor.getGreen(), outlineColor.getBlue());
+			}
+			
+			String labelType = nodesAsPoints ? "xlabel" : "label";			
+			out.println("  \"" + n.getIndex() + "\" [" + style + "," + labelType + "=\"" + Utils.escapeSimple(label) + "\"];");
+		}
+		
+		
+		// Gather all edges
+		
+		Collection<BaseEdge> edges; 
+		if (all) {
+			edges = this.graph.getBaseEdges();
+		}
+		else {
+			edges = new ArrayList<BaseEdge>(this.edges.size());
+			for (GraphLayoutEdge n : this.edges) {
+				if (n.getBaseEdge() == null) {
+					throw new RuntimeException("Base edge is null");
+				}
+				edges.add(n.getBaseEdge());
+			}
+		}
+		
+		
+		// Export all edges
+		
+		for (BaseEdge e : edges) {
+			if (!e.getBaseFrom().isVisible() || !e.getBaseTo().isVisible()) continue;
+			
+			Color color;
+			if (e instanceof BaseSummaryEdge) {
+				color = decorator.getSummaryEdgeColor((BaseSummaryEdge) e,
+						GraphDecorator.NONE, GraphDecorator.NONE);
+			}
+			else {
+				color = decorator.getEdgeColor(Utils.<E>cast(e),
+						GraphDecorator.NONE, GraphDecorator.NONE);
+			}
+			
+			String style;
+			if (color == Color.BLACK && drawArrows) {
+				style = "";
+			}
+			else {
+				style = " [";
+				if (!drawArrows) {
+					style += "arrowhead=none";
+				}
+				if (color != Color.BLACK) {
+					if (!drawArrows) style += ",";
+					style += "color="
+							+ String.format("\"#%02x%02x%02x\"", color.getRed(), color.getGreen(), color.getBlue());
+				}
+				style += "]";
+			}
+			
+			out.println("  \"" + e.getBaseFrom().getIndex() + "\" -> \"" + e.getBaseTo().getIndex() + "\""
+					+ style + ";");
+		}
+		
+		
+		// Finish
+		
+		out.println("}");
+	}
+	
+	
+	/**
+	 * A mapping from the layout coordinates to the coordinates of an image
+	 */
+	private static final class View {
+		
+		final double scale;
+		final double offsetX;
+		final double offsetY;
+		final int width;
+		final int height;
+		final double clipMargin;
+		
+		
+		/**
+		 * Create an instance of class View
+		 * 
+		 * @param scale the scale level
+		 * @param offsetX the X offset in the layout coordinates
+		 * @param offsetY the Y offset in the layout coordinates
+		 * @param width the image width
+		 * @param height the image height
+		 * @param clipMargin how far outside of the image to clip the coordinates
+		 */
+		View(double scale, double offsetX, double offsetY, int width, int height, double clipMargin) {
+			this.scale = scale;
+			this.offsetX = offsetX;
+			this.offsetY = offsetY;
+			this.width = width;
+			this.height = height;
+			this.clipMargin = clipMargin;
+		}
+		
+		
+		/**
+		 * Translate an X coordinate
+		 * 
+		 * @param x the original coordinate
+		 * @return the translated version
+		 */
+		int x(double x) {
+			
+			double dx = (x + offsetX) * scale + width / 2;
+			
+			if (dx < -clipMargin) dx = -clipMargin;
+			if (dx > width + clipMargin) dx = width + clipMargin;
+			
+			return (int) Math.round(dx);
+		}
+		
+		
+		/**
+		 * Translate a Y coordinate
+		 * 
+		 * @param y the original coordinate
+		 * @return the translated version
+		 */
+		int y(double y) {
+			
+			double dy = (y + offsetY) * scale + height / 2;
+			
+			if (dy < -clipMargin) dy = -clipMargin;
+			if (dy > height + clipMargin) dy = height + clipMargin;
+			
+			return (int) Math.round(dy);
+		}
+		
+		
+		/**
+		 * Translate a line
+		 *
+		 * @param line the line (will be modified)
+		 * @return true if the line is within the clipped region
+		 */
+		boolean line(Line2D line) {
+			
+			Rectangle2D r = new Rectangle2D.Double(-clipMargin, -clipMargin,
+								width + clipMargin * 2, height + clipMargin * 2);
+			
+			line.setLine((line.getX1() + offsetX) * scale + width  / 2,
+					     (line.getY1() + offsetY) * scale + height / 2,
+					     (line.getX2() + offsetX) * scale + width  / 2,
+					     (line.getY2() + offsetY) * scale + height / 2);
+			
+			return GraphicUtils.clipLine(line, r);
+		}
+		
+		
+		/**
+		 * Return the region of the layout that is displayed in the image
+		 * 
+		 * @param margin the extra margin in pixels
+		 * @return the region in layout coordinates
+		 */
+		Rectangle2D getLayoutRegion(double margin) {
+			
+			double x1 = (-margin - width  / 2) / scale - offsetX;
+			double y1 = (-margin - height / 2) / scale - offsetY;
+			double x2 = (width  + margin - width  / 2) / scale - offsetX;
+			double y2 = (height + margin - height / 2) / scale - offsetY;
+			
+			return new Rectangle2D.Double(x1, y1, x2 - x1, y2 - y1);
+		}
+	}
+	
+	
+	/**
+	 * An aggregation of edges into bundles between the cells of a grid aligned with
+	 * the layout coordinates, and into a density map of the edges within single cells
+	 */
+	private static final class EdgeAggregator {
+		
+		final double cellSize;
+		final HashMap<CellPair, EdgeBundle> bundles;
+		final CellPair probe;
+		
+		
+		/**
+		 * Create an instance of class EdgeAggregator
+		 * 
+		 * @param cellSize the size of a grid cell in the layout coordinates
+		 */
+		EdgeAggregator(double cellSize) {
+			this.cellSize = cellSize;
+			this.bundles = new HashMap<CellPair, EdgeBundle>();
+			this.probe = new CellPair();
+		}
+		
+		
+		/**
+		 * Get the grid coordinate of the given layout coordinate
+		 * 
+		 * @param x the layout coordinate
+		 * @return the grid coordinate
+		 */
+		long cell(double x) {
+			return (long) Math.floor(x / cellSize);
+		}
+		
+		
+		/**
+		 * Add an edge
+		 * 
+		 * @param e the layout edge
+		 * @param c the color of the edge
+		 */
+		void add(GraphLayoutEdge e, Color c) {
+			
+			double fx = e.getFrom().getX();
+			double fy = e.getFrom().getY();
+			double tx = e.getTo().getX();
+			double ty = e.getTo().getY();
+			
+			probe.fx = cell(fx);
+			probe.fy = cell(fy);
+			probe.tx = cell(tx);
+			probe.ty = cell(ty);
+			
+			EdgeBundle b = bundles.get(probe);
+			if (b == null) {
+				b = new EdgeBundle();
+				bundles.put(new CellPair(probe), b);
+			}
+			
+			b.count++;
+			b.fx += fx;
+			b.fy += fy;
+			b.tx += tx;
+			b.ty += ty;
+			b.red   += c.getRed();
+			b.green += c.getGreen();
+			b.blue  += c.getBlue();
+		}
+		
+		
+		/**
+		 * Render the density map and then the bundles, from the smallest to the largest
+		 * 
+		 * @param g the graphics context
+		 * @param v the view
+		 * @param cellPixels the size of a grid cell in pixels
+		 */
+		void render(Graphics2D g, View v, double cellPixels) {
+			
+			// The density map of the edges within single cells
+			
+			ArrayList<EdgeBundle> lines = new ArrayList<EdgeBundle>();
+			
+			for (Map.Entry<CellPair, EdgeBundle> entry : bundles.entrySet()) {
+				CellPair k = entry.getKey();
+				EdgeBundle b = entry.getValue();
+				
+				if (k.fx != k.tx || k.fy != k.ty) {
+					lines.add(b);
+					continue;
+				}
+				
+				int x1 = v.x(k.fx * cellSize);
+				int y1 = v.y(k.fy * cellSize);
+				int x2 = v.x((k.fx + 1) * cellSize);
+				int y2 = v.y((k.fy + 1) * cellSize);
+				
+				g.setColor(b.getColor((int) Math.min(255, 64 + 48 * Math.log(b.count) / Math.log(2))));
+				g.fillRect(x1, y1, Math.max(1, x2 - x1), Math.max(1, y2 - y1));
+			}
+			
+			
+			// The bundles between different cells
+			
+			Collections.sort(lines);
+			float maxWidth = (float) Math.max(1, cellPixels / 2);
+			
+			for (EdgeBundle b : lines) {
+				float w = (float) Math.min(maxWidth, 1 + Math.log(b.count) / Math.log(2));
+				g.setStroke(new BasicStroke(w, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+				g.setColor(b.getColor(255));
+				g.drawLine(v.x(b.fx / b.count), v.y(b.fy / b.count), v.x(b.tx / b.count), v.y(b.ty / b.count));
+			}
+		}
+	}
+	
+	
+	/**
+	 * A pair of grid cells containing the end-points of aggregated edges
+	 */
+	private static final class CellPair {
+		
+		long fx, fy, tx, ty;
+		
+		
+		/**
+		 * Create an instance of class CellPair
+		 */
+		CellPair() {
+		}
+		
+		
+		/**
+		 * Create a copy of a CellPair
+		 * 
+		 * @param other the pair to copy
+		 */
+		CellPair(CellPair other) {
+			fx = other.fx;
+			fy = other.fy;
+			tx = other.tx;
+			ty = other.ty;
+		}
+		
+		
+		/**
+		 * Calculate the hash code
+		 * 
+		 * @return the hash code
+		 */
+		@Override
+		public int hashCode() {
+			long h = fx;
+			h = h * 31 + fy;
+			h = h * 31 + tx;
+			h = h * 31 + ty;
+			return (int) (h ^ (h >>> 32));
+		}
+		
+		
+		/**
+		 * Indicates whether some other object is "equal to" this one
+		 * 
+		 * @param obj the other object
+		 * @return true if the two are equal
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CellPair)) return false;
+			CellPair p = (CellPair) obj;
+			return fx == p.fx && fy == p.fy && tx == p.tx && ty == p.ty;
+		}
+	}
+	
+	
+	/**
+	 * A bundle of aggregated edges: their number, and the sums of their end-point
+	 * coordinates and color components
+	 */
+	private static final class EdgeBundle implements Comparable<EdgeBundle> {
+		
+		int count;
+		double fx, fy, tx, ty;
+		long red, green, blue;
+		
+		
+		/**
+		 * Get the average color of the edges
+		 * 
+		 * @param alpha the alpha component
+		 * @return the color
+		 */
+		Color getColor(int alpha) {
+			return new Color((int) (red / count), (int) (green / count), (int) (blue / count), alpha);
+		}
+		
+		
+		/**
+		 * Compare to another bundle by the number of edges
+		 * 
+		 * @param other the other bundle
+		 * @return the result of the comparison
+		 */
+		public int compareTo(EdgeBundle other) {
+			return count < other.count ? -1 : (count == other.count ? 0 : 1);
+		}
+	}
+	
+	
+	/**
+	 * The state of the graph cache needed for rendering, either referring to the
+	 * live cache, or a snapshot that can be rendered from background threads
+	 */
+	private class RenderState {
+		
+		final QuadTree<GraphLayoutNode> nodeIndex;
+		final QuadTree<GraphLayoutEdge> edgeIndex;
+		final QuadTree<GraphLayoutNode> summaryNodeIndex;
+		final Set<GraphLayoutNode> highlightedNodes;
+		final Set<GraphLayoutNode> selectedLayoutNodes;
+		final Set<GraphLayoutNode> selectedEndpoints;
+		final GraphDecorator<N, E, S, G> decorator;
+		
+		
+		/**
+		 * Create an instance of class RenderState
+		 * 
+		 * @param snapshot true to copy the graph cache, false to refer to it
+		 */
+		RenderState(boolean snapshot) {
+			
+			if (snapshot) {
+				nodeIndex = GraphDisplay.this.nodeIndex.copy();
+				edgeIndex = GraphDisplay.this.edgeIndex.copy();
+				summaryNodeIndex = GraphDisplay.this.summaryNodeIndex.copy();
+				highlightedNodes = new HashSet<GraphLayoutNode>(GraphDisplay.this.highlightedNodes);
+				selectedLayoutNodes = new HashSet<GraphLayoutNode>(GraphDisplay.this.selectedLayoutNodes);
+			}
+			else {
+				nodeIndex = GraphDisplay.this.nodeIndex;
+				edgeIndex = GraphDisplay.this.edgeIndex;
+				summaryNodeIndex = GraphDisplay.this.summaryNodeIndex;
+				highlightedNodes = GraphDisplay.this.highlightedNodes;
+				selectedLayoutNodes = GraphDisplay.this.selectedLayoutNodes;
+			}
+			
+			decorator = GraphDisplay.this.decorator;
+			
+			
+			// The layout nodes the selected nodes map to, for highlighting the incident edges
+			
+			selectedEndpoints = new HashSet<GraphLayoutNode>();
+			for (BaseNode n : selectedNodes) {
+				BaseNode m = map(n);
+				if (m == null) continue;
+				GraphLayoutNode ln = getLayoutNode(m.getIndex());
+				if (ln != null) selectedEndpoints.add(ln);
+			}
+		}
+	}
+	
+	
+	/**
+	 * The key of a render tile: the scale, whether the nodes are drawn, and the
+	 * tile coordinates in the grid of global pixel coordinates at the given scale
+	 */
+	private static final class TileKey {
+		
+		final double scale;
+		final boolean drawNodes;
+		final long x;
+		final long y;
+		
+		
+		/**
+		 * Create an instance of class TileKey
+		 * 
+		 * @param scale the scale level
+		 * @param drawNodes whether the nodes are drawn
+		 * @param x the X tile coordinate
+		 * @param y the Y tile coordinate
+		 */
+		TileKey(double scale, boolean drawNodes, long x, long y) {
+			this.scale = scale;
+			this.drawNodes = drawNodes;
+			this.x = x;
+			this.y = y;
+		}
+		
+		
+		/**
+		 * Return the hash code of the object
+		 * 
+		 * @return the hash code
+		 */
+		@Override
+		public int hashCode() {
+			long h = Double.doubleToLongBits(scale);
+			h = h * 31 + x;
+			h = h * 31 + y;
+			return (int) (h ^ (h >>> 32)) ^ (drawNodes ? 1 : 0);
+		}
+		
+		
+		/**
+		 * Indicates whether some other object is "equal to" this one
+		 * 
+		 * @param obj the reference object with which to compare
+		 * @return true if this object is the same as the obj argument
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof TileKey)) return false;
+			TileKey k = (TileKey) obj;
+			return k.x == x && k.y == y && k.drawNodes == drawNodes
+					&& Double.doubleToLongBits(k.scale) == Double.doubleToLongBits(scale);
+		}
+	}
+	
+	
+	/**
+	 * The tile cache together with the pool of background threads that render
+	 * the requested tiles. The tiles from before the last reset are kept aside
+	 * to be displayed as placeholders until they are rendered again.
+	 */
+	private class TileCache {
+		
+		private LinkedHashMap<TileKey, BufferedImage> tiles;
+		private LinkedHashMap<TileKey, BufferedImage> stale;
+		private LinkedList<TileKey> queue;
+		private HashSet<TileKey> rendering;
+		
+		private RenderState state;
+		private int generation;
+		private Thread[] workers;
+		
+		
+		/**
+		 * Create an instance of class TileCache
+		 */
+		TileCache() {
+			tiles = createMap();
+			stale = createMap();
+			queue = new LinkedList<TileKey>();
+			rendering = new HashSet<TileKey>();
+			state = null;
+			generation = 0;
+			workers = null;
+		}
+		
+		
+		/**
+		 * Create an LRU map of tiles
+		 * 
+		 * @return the new map
+		 */
+		private LinkedHashMap<TileKey, BufferedImage> createMap() {
+			return new LinkedHashMap<TileKey, BufferedImage>(MAX_TILES, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<TileKey, BufferedImage> eldest) {
+					return size() > MAX_TILES;
+				}
+			};
+		}
+		
+		
+		/**
+		 * Get a tile
+		 * 
+		 * @param k the tile key
+		 * @return the tile, or null if it is not in the cache
+		 */
+		synchronized BufferedImage get(TileKey k) {
+			return tiles.get(k);
+		}
+		
+		
+		/**
+		 * Get a tile rendered before the last reset
+		 * 
+		 * @param k the tile key
+		 * @return the tile, or null if it is not available
+		 */
+		synchronized BufferedImage getStale(TileKey k) {
+			return stale.get(k);
+		}
+		
+		
+		/**
+		 * Discard all tiles and start rendering from a new snapshot
+		 * 
+		 * @param state the new render state
+		 */
+		synchronized void reset(RenderState state) {
+			
+			if (!tiles.isEmpty()) {
+				stale = tiles;
+				tiles = createMap();
+			}
+			
+			queue.clear();
+			rendering.clear();
+			
+			this.state = state;
+			generation++;
+		}
+		
+		
+		/**
+		 * Request tiles to be rendered, replacing the previous requests
+		 * 
+		 * @param keys the keys of the tiles in the order in which to render them
+		 */
+		synchronized void request(Collection<TileKey> keys) {
+			
+			queue.clear();
+			for (TileKey k : keys) {
+				if (!tiles.containsKey(k) && !rendering.contains(k)) queue.add(k);
+			}
+			if (queue.isEmpty()) return;
+			
+			
+			// Start the worker threads if they are not running yet
+			
+			if (workers == null) {
+				int n = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+				workers = new Thread[n];
+				for (int i = 0; i < n; i++) {
+					workers[i] = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							work();
+						}
+					}, "GraphDisplay tile renderer " + (i + 1));
+					workers[i].setDaemon(true);
+					workers[i].setPriority(Thread.NORM_PRIORITY - 1);
+					workers[i].start();
+				}
+			}
+			
+			notifyAll();
+		}
+		
+		
+		/**
+		 * Stop the worker threads. They are started again by the next request.
+		 */
+		synchronized void shutdown() {
+			
+			if (workers != null) {
+				for (Thread t : workers) t.interrupt();
+				workers = null;
+			}
+			
+			queue.clear();
+			rendering.clear();
+			generation++;
+		}
+		
+		
+		/**
+		 * The main loop of a worker thread
+		 */
+		private void work() {
+			
+			while (true) {
+				
+				// Get the next request, unless the thread has been stopped
+				
+				TileKey k;
+				RenderState s;
+				int g;
+				
+				synchronized (this) {
+					if (Thread.currentThread().isInterrupted()) return;
+					while (queue.isEmpty()) {
+						try {
+							wait();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+					}
+					
+					k = queue.removeFirst();
+					rendering.add(k);
+					s = state;
+					g = generation;
+				}
+				
+				
+				// Render the tile
+				
+				BufferedImage img = null;
+				try {
+					img = renderTile(k, s);
+				}
+				catch (Throwable t) {
+					t.printStackTrace();
+				}
+				
+				
+				// Store it unless the cache was reset in the meantime
+				
+				synchronized (this) {
+					rendering.remove(k);
+					if (img == null || g != generation) continue;
+					tiles.put(k, img);
+				}
+				
+				repaint();
+			}
+		}
+		
+		
+		/**
+		 * Render a tile
+		 * 
+		 * @param k the tile key
+		 * @param s the render state
+		 * @return the rendered tile
+		 */
+		private BufferedImage renderTile(TileKey k, RenderState s) {
 			
-		Rectangle r = new Rectangle();
+			double ox = -(k.x * (double) TILE_SIZE + TILE_SIZE / 2) / k.scale;
+			double oy = -(k.y * (double) TILE_SIZE + TILE_SIZE / 2) / k.scale;
+			View v = new View(k.scale, ox, oy, TILE_SIZE, TILE_SIZE, TILE_CLIP_MARGIN);
 			
-		int width = getWidth();
-		int height = getHeight();
-		double scale = getScale(); 
+			BufferedImage img = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = img.createGraphics();
+			g.setFont(getFont());
 			
-		for (GraphLayoutNode n : nodes) {
-				
-			if (!getNodeBounds(n, scale, width, height, r)) continue;
-			if (!r.contains(x, y)) continue;
+			renderGraph(g, s, v, k.drawNodes, false);
 			
-			BaseNode node = n.getBaseNode();
-
-			if (node instanceof BaseSummaryNode) {
-				return node;
-			}
-			else {
-				Ellipse2D e = new Ellipse2D.Double(r.x, r.y, r.width, r.height);
-				if (e.contains(x, y)) return node;
-			}
+			g.dispose();
+			return img;
 		}
-		
-		return null;
 	}
 	
 	
 	/**
-	 * Export to Graphviz with formatting
-	 * 
-	 * @param file the file to write to
-	 * @param all true to export all nodes, false to export only from the current zoom level
-	 * @throws IOException on I/O error
+	 * The universe of the original nodes of a derived graph, keyed by the
+	 * indices of the corresponding nodes in the displayed graph
 	 */
-	public void exportToGraphvizWithFormatting(File file, boolean all) throws IOException {
-		PrintWriter out = new PrintWriter(file);
-		exportToGraphvizWithFormatting(out, all);
-		out.close();
+	private class OriginalsUniverse implements Universe<N> {
+		
+		private Map<N, Integer> keys = null;
+
+		/**
+		 * Return the size of the universe
+		 * 
+		 * @return the number of keys
+		 */
+		public int getUniverseSize() {
+			return graph.getNodes().size();
+		}
+
+		/**
+		 * Return the value with the given key
+		 * 
+		 * @param key the key
+		 * @return the original node, or null if there is no node with the given index
+		 */
+		public N getUniverseElement(int key) {
+			N node = graph.getNode(key);
+			return node == null ? null : node.getOriginal();
+		}
+
+		/**
+		 * Return the key of the given value. The reverse mapping is built
+		 * on the first call.
+		 * 
+		 * @param value the original node
+		 * @return the index of the derived node, or -1 if there is none
+		 */
+		public int getUniverseKey(N value) {
+			if (keys == null) {
+				keys = new IdentityHashMap<N, Integer>();
+				for (N node : graph.getNodes()) {
+					if (node != null) keys.put(node.getOriginal(), node.getIndex());
+				}
+			}
+			Integer k = keys.get(value);
+			return k == null ? -1 : k.intValue();
+		}
 	}
 	
 	
 	/**
-	 * Export to Graphviz with formatting
-	 * 
-	 * @param out the writer to write to
-	 * @param all true to export all nodes, false to export only from the current zoom level
+	 * The planner of the semantic zoom, which determines in a background thread
+	 * which summary nodes should be expanded in the requested view, computing
+	 * the missing layouts along the way, and then applies the plan on the event
+	 * dispatch thread. Only the latest request is planned, so that the requests
+	 * made during a zoom or a pan gesture are coalesced.
 	 */
-	public void exportToGraphvizWithFormatting(PrintWriter out, boolean all) {
+	private class SemanticZoomPlanner {
 		
-		// Start
+		private Request requested;
+		private Request pending;
+		private int generation;
+		private Thread worker;
 		
-		out.println("digraph \"Graph\" {");
-		if (layout.getAlgorithm() instanceof Graphviz) {
-			out.println("  rankdir=" + ((Graphviz) layout.getAlgorithm()).getRankDir() + ";");
+		
+		/**
+		 * Create an instance of class SemanticZoomPlanner
+		 */
+		SemanticZoomPlanner() {
+			requested = null;
+			pending = null;
+			generation = 0;
+			worker = null;
 		}
 		
-		boolean nodesAsPoints = drawNodesAsPoints && false;	// Change to true for Graphviz 11/2011 or later
 		
+		/**
+		 * Forget the pending request and the plans in progress, such as after
+		 * the graph has changed
+		 */
+		synchronized void reset() {
+			requested = null;
+			pending = null;
+			generation++;
+		}
 		
-		// Gather all nodes
 		
-		Collection<BaseNode> nodes; 
-		if (all) {
-			nodes = this.graph.getBaseNodes();
+		/**
+		 * Stop the worker thread. It is started again by the next request.
+		 */
+		synchronized void shutdown() {
+			reset();
+			if (worker != null) {
+				worker.interrupt();
+				worker = null;
+			}
 		}
-		else {
-			nodes = new ArrayList<BaseNode>(this.nodes.size());
-			for (GraphLayoutNode n : this.nodes) nodes.add(n.getBaseNode());
+		
+		
+		/**
+		 * Request a plan for the given view, unless it was already requested.
+		 * This must be called from the event dispatch thread.
+		 * 
+		 * @param v the view
+		 */
+		synchronized void request(View v) {
+			
+			Request r = new Request(v);
+			if (requested != null && requested.isSameAs(r)) return;
+			
+			requested = r;
+			pending = r;
+			
+			
+			// Start the worker thread if it is not running yet
+			
+			if (worker == null) {
+				worker = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "GraphDisplay semantic zoom planner");
+				worker.setDaemon(true);
+				worker.start();
+			}
+			
+			notifyAll();
 		}
 		
 		
-		// Export all nodes
+		/**
+		 * Determine whether the given request is no longer the latest one
+		 * 
+		 * @param r the request
+		 * @return true if there is a newer request or if the planner was reset
+		 */
+		private synchronized boolean isSuperseded(Request r) {
+			return pending != null || r.generation != generation;
+		}
 		
-		final String ELLIPSE = "ellipse";
 		
-		for (BaseNode n : nodes) {
-			if (!n.isVisible()) continue;
-				
-			String label = n.getLabel();
-			if (label == null || " ".equals(label)) label = "";
-
-			String shape;
-			Color fillColor;
-			Color textColor;
-			Color outlineColor;
+		/**
+		 * The main loop of the worker thread
+		 */
+		private void work() {
 			
-			if (n instanceof BaseSummaryNode) {
-				shape = "box";
-				fillColor = decorator.getSummaryNodeColor(Utils.<S>cast(n),
-						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
-				textColor = decorator.getSummaryNodeTextColor(Utils.<S>cast(n),
-						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
-				outlineColor = decorator.getSummaryNodeOutlineColor(Utils.<S>cast(n),
-						expandedSummaryNodes.contains(n), GraphDecorator.NONE);
-			}
-			else {
-				shape = nodesAsPoints ? "point" : ("".equals(label) ? "circle" : ELLIPSE);
-				fillColor = decorator.getNodeColor(Utils.<N>cast(n), GraphDecorator.NONE);
-				textColor = decorator.getNodeTextColor(Utils.<N>cast(n), GraphDecorator.NONE);
-				outlineColor = decorator.getNodeOutlineColor(Utils.<N>cast(n), GraphDecorator.NONE);
-				if (nodesAsPoints) {
-					outlineColor = fillColor;
+			while (true) {
+				
+				// Get the latest request
+				
+				final Request r;
+				
+				synchronized (this) {
+					if (Thread.currentThread().isInterrupted()) return;
+					while (pending == null) {
+						try {
+							wait();
+						}
+						catch (InterruptedException e) {
+							return;
+						}
+					}
+					
+					r = pending;
+					pending = null;
+				}
+				
+				
+				// Plan, and apply the plan unless the graph has changed in the meantime
+				
+				final Collection<BaseSummaryNode> plan;
+				try {
+					plan = plan(r);
 				}
+				catch (Throwable t) {
+					t.printStackTrace();
+					continue;
+				}
+				if (plan == null) continue;
+				
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						synchronized (SemanticZoomPlanner.this) {
+							if (r.generation != generation) return;
+						}
+						if (graph != r.graph || layout != r.layout) return;
+						applySemanticZoom(plan);
+					}
+				});
 			}
+		}
+		
+		
+		/**
+		 * Determine which summary nodes should be expanded. A summary node is
+		 * expanded if its parent is expanded and if it is large enough and at
+		 * least partially visible in the view.
+		 * 
+		 * @param r the request
+		 * @return the summary nodes to expand, parents before children, or null if the request was superseded
+		 */
+		private Collection<BaseSummaryNode> plan(Request r) {
 			
-			String style;
-			if (shape != ELLIPSE) {
-				style = "shape=" + shape + ",";
-			}
-			else {
-				style = "";
-			}
-			if (fillColor == null) {
-				style += "style=solid";
-			}
-			else {
-				style += "style=filled,fillcolor="
-						+ String.format("\"#%02x%02x%02x\"", fillColor.getRed(), fillColor.getGreen(), fillColor.getBlue());
-			}
-			if (textColor != Color.BLACK) {
-				style += ",fontcolor="
-						+ String.format("\"#%02x%02x%02x\"", textColor.getRed(), textColor.getGreen(), textColor.getBlue());
-			}
-			if (textColor != Color.BLACK) {
-				style += ",color="
-						+ String.format("\"#%02x%02x%02x\"", outlineColor.getRed(), outlineColor.getGreen(), outlineColor.getBlue());
+			LinkedHashSet<BaseSummaryNode> plan = new LinkedHashSet<BaseSummaryNode>();
+			LinkedList<BaseSummaryNode> queue = new LinkedList<BaseSummaryNode>();
+			
+			BaseSummaryNode root = r.graph.getRootBaseSummaryNode();
+			plan.add(root);
+			queue.add(root);
+			
+			while (!queue.isEmpty()) {
+				if (isSuperseded(r)) return null;
+				BaseSummaryNode s = queue.removeFirst();
+				
+				for (BaseNode n : s.getBaseChildren()) {
+					if (!(n instanceof BaseSummaryNode)) continue;
+					if (!n.isVisible()) continue;
+					if (!containsAccepted(n, r.accepted)) continue;
+					
+					GraphLayoutNode ln = prefetchLayoutNode(r.layout, n);
+					if (ln == null) continue;
+					
+					View v = r.view;
+					int sx1 = v.x(ln.getX() - ln.getWidth () / 2);
+					int sy1 = v.y(ln.getY() - ln.getHeight() / 2);
+					int sx2 = v.x(ln.getX() + ln.getWidth () / 2);
+					int sy2 = v.y(ln.getY() + ln.getHeight() / 2);
+					
+					if (sx2 < 0 || sy2 < 0 || sx1 > v.width || sy1 > v.height) continue;
+					if ((sx2 - sx1) / 2 < r.threshold || (sy2 - sy1) / 2 < r.threshold) continue;
+					
+					plan.add((BaseSummaryNode) n);
+					queue.add((BaseSummaryNode) n);
+				}
 			}
 			
-			String labelType = nodesAsPoints ? "xlabel" : "label";			
-			out.println("  \"" + n.getIndex() + "\" [" + style + "," + labelType + "=\"" + Utils.escapeSimple(label) + "\"];");
+			return plan;
 		}
 		
 		
-		// Gather all edges
-		
-		Collection<BaseEdge> edges; 
-		if (all) {
-			edges = this.graph.getBaseEdges();
-		}
-		else {
-			edges = new ArrayList<BaseEdge>(this.edges.size());
-			for (GraphLayoutEdge n : this.edges) {
-				if (n.getBaseEdge() == null) {
-					throw new RuntimeException("Base edge is null");
+		/**
+		 * Determine whether a node or a summary node contains at least one node
+		 * from the given set of accepted nodes
+		 * 
+		 * @param node the node or the summary node
+		 * @param accepted the accepted nodes, or null to accept all
+		 * @return true if it contains an accepted node
+		 */
+		private boolean containsAccepted(BaseNode node, BitSet accepted) {
+			
+			if (accepted == null) return true;
+			
+			if (node instanceof BaseSummaryNode) {
+				for (BaseNode n : ((BaseSummaryNode) node).getBaseChildren()) {
+					if (containsAccepted(n, accepted)) return true;
 				}
-				edges.add(n.getBaseEdge());
+				return false;
 			}
+			
+			return accepted.get(node.getIndex());
 		}
 		
 		
-		// Export all edges
-		
-		for (BaseEdge e : edges) {
-			if (!e.getBaseFrom().isVisible() || !e.getBaseTo().isVisible()) continue;
+		/**
+		 * Get the layout of a node, computing the layout of its parent if it is missing
+		 * 
+		 * @param layout the graph layout
+		 * @param node the node
+		 * @return the layout node, or null if it is not available
+		 */
+		private GraphLayoutNode prefetchLayoutNode(GraphLayout layout, BaseNode node) {
 			
-			Color color;
-			if (e instanceof BaseSummaryEdge) {
-				color = decorator.getSummaryEdgeColor((BaseSummaryEdge) e,
-						GraphDecorator.NONE, GraphDecorator.NONE);
-			}
-			else {
-				color = decorator.getEdgeColor(Utils.<E>cast(e),
-						GraphDecorator.NONE, GraphDecorator.NONE);
-			}
+			GraphLayoutNode l = layout.getLayoutNode(node.getIndex());
+			if (l != null) return l;
 			
-			String style;
-			if (color == Color.BLACK && drawArrows) {
-				style = "";
-			}
-			else {
-				style = " [";
-				if (!drawArrows) {
-					style += "arrowhead=none";
-				}
-				if (color != Color.BLACK) {
-					if (!drawArrows) style += ",";
-					style += "color="
-							+ String.format("\"#%02x%02x%02x\"", color.getRed(), color.getGreen(), color.getBlue());
+			synchronized (layout) {
+				l = layout.getLayoutNode(node.getIndex());
+				if (l == null) {
+					layout.getAlgorithm().updateLayout(layout, node.getParent(), null);
+					l = layout.getLayoutNode(node.getIndex());
 				}
-				style += "]";
 			}
 			
-			out.println("  \"" + e.getBaseFrom().getIndex() + "\" -> \"" + e.getBaseTo().getIndex() + "\""
-					+ style + ";");
+			return l;
 		}
 		
 		
-		// Finish
-		
-		out.println("}");
+		/**
+		 * A request for a plan, together with the state it should be planned for
+		 */
+		private class Request {
+			
+			final View view;
+			final G graph;
+			final GraphLayout layout;
+			final BitSet accepted;
+			final int threshold;
+			final int generation;
+			
+			
+			/**
+			 * Create an instance of class Request from the current state of the display
+			 * 
+			 * @param view the view
+			 */
+			Request(View view) {
+				this.view = view;
+				this.graph = GraphDisplay.this.graph;
+				this.layout = GraphDisplay.this.layout;
+				this.accepted = GraphDisplay.this.acceptedNodes;
+				this.threshold = semanticZoomSizeThreshold;
+				this.generation = SemanticZoomPlanner.this.generation;
+			}
+			
+			
+			/**
+			 * Determine whether this request would result in the same plan as another request
+			 * 
+			 * @param r the other request
+			 * @return true if the view and the state of the display are the same
+			 */
+			boolean isSameAs(Request r) {
+				return view.scale == r.view.scale && view.offsetX == r.view.offsetX
+						&& view.offsetY == r.view.offsetY && view.width == r.view.width
+						&& view.height == r.view.height && graph == r.graph && layout == r.layout
+						&& accepted == r.accepted && threshold == r.threshold
+						&& generation == r.generation;
+			}
+		}
 	}
 	
 	
@@ -2546,6 +4619,16 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		 * @param e the mouse event object
 		 */
 		public void mouseMoved(MouseEvent e) {
+			
+			// Prefetch the layout of the summary node under the mouse pointer first
+			
+			if (graph == null || layoutPrefetcher == null) return;
+			
+			BaseNode n = getNodeByPosition(e.getX(), e.getY());
+			if (n == hoveredNode) return;
+			
+			hoveredNode = n;
+			if (n instanceof BaseSummaryNode) requestLayoutPrefetch();
 		}
 		
 		
@@ -2640,7 +4723,7 @@ public class GraphDisplay<N extends Node<N, E>, E extends Edge<N>, S extends Sum
 		public void filterChanged(Filter<N> filter) {
 			
 			if (filter == nodeFilters) {
-				computeGraphCache();
+				updateGraphCache();
 			}
 			
 			if (filter == nodeHighlightFilters) {
@@ -65,7 +65,10 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 	private boolean okay;
 	private boolean running;
 	private JobException error;
-	private Job current;
+	private JobScheduler scheduler;
+	private HashSet<Job> active;
+	private HashSet<Job> finished;
+	private HashSet<Job> failed;
 
 	
 	/**
@@ -83,7 +86,10 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 		running = false;
 		okay = true;
 		error = null;
-		current = null;
+		scheduler = null;
+		active = new HashSet<Job>();
+		finished = new HashSet<Job>();
+		failed = new HashSet<Job>();
 	
 		handler = new EventHandler();
 		
@@ -133,33 +139,32 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 	private void updateTasksLabel() {
 		String label = "<html><body>";
 		int i = 0;
-		boolean seenActive = false;
 		
 		for (Job j : jobs) {
 			
 			boolean hasFont = false;
+			boolean current = active.contains(j) || failed.contains(j);
 			String l = "";
 			
-			if (j != current || !current.isMinor()) {
+			if (!current || !j.isMinor()) {
 				i++;
 			}
 			
 			
 			// Set font and determine status
 			
-			if (!seenActive && j != current) {
+			if (finished.contains(j)) {
 				hasFont = true;
 				l += "<font color=\"green\">";
 			}
-			if (j == current) {
-				if (!okay) {
+			if (current) {
+				if (failed.contains(j)) {
 					l += "<font color=\"red\">";
 				}
 				else {
 					l += "<font color=\"blue\">";
 				}
 				l += "<b>";
-				seenActive = true;
 				hasFont = true;
 			}
 			
@@ -174,8 +179,8 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 			
 			// Finish
 			
-			if (j == current) {
-				if (!okay) l += " - failed";
+			if (current) {
+				if (failed.contains(j)) l += " - failed";
 				l += "</b>";
 			}
 			
@@ -185,7 +190,7 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 			
 			// Add to the list
 			
-			if (j != current || !current.isMinor()) {
+			if (!current || !j.isMinor()) {
 				label += l;
 			}
 		}
@@ -206,7 +211,9 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 		okay = true;
 		running = false;
 		error = null;
-		current = null;
+		active.clear();
+		finished.clear();
+		failed.clear();
 		if (jobs.size() < 1) return;
 
 		running = true;
@@ -307,46 +314,51 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 	
 	
 	/**
-	 * The task thread
+	 * Set a short status message that describes the progress in more detail
+	 * 
+	 * @param status the status message, or null to clear it
 	 */
-	private class OneTaskThread implements Runnable {
-		
-		private Job job;
-		private JobException e;
-		
+	public void setStatus(String status) {
+		progress.setString(status);
+		progress.setStringPainted(status != null);
+	}
+	
+	
+	/**
+	 * The listener for the job scheduler
+	 */
+	private class SchedulerListener implements JobScheduler.Listener {
 		
 		/**
-		 * Constructor for class OneTaskThread
+		 * Callback for when a job is started
 		 * 
-		 * @param job the job to run
+		 * @param job the job
 		 */
-		public OneTaskThread(Job job) {
-			this.job = job;
-			this.e = null;
+		public void jobStarted(Job job) {
+			active.add(job);
+			updateTasksLabel();
+			cancelButton.setEnabled(scheduler.isCancelable());
+			repaint();
 		}
 		
 		
 		/**
-		 * Run the thread
+		 * Callback for when a job finishes
+		 * 
+		 * @param job the job
+		 * @param e the exception if the job failed or was canceled, or null if it succeeded
 		 */
-		public void run() {
-			try {
-				e = null;
-				job.run();
+		public void jobFinished(Job job, JobException e) {
+			active.remove(job);
+			if (e == null) {
+				finished.add(job);
 			}
-			catch (JobException e) {
-				this.e = e;
+			else {
+				failed.add(job);
 			}
-		}
-		
-		
-		/**
-		 * Get the error
-		 * 
-		 * @return the error, or null if none
-		 */
-		public JobException getException() {
-			return e;
+			updateTasksLabel();
+			cancelButton.setEnabled(scheduler.isCancelable());
+			repaint();
 		}
 	}
 	
@@ -373,65 +385,32 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 			while (!isVisible()) Thread.yield();
 			
 
-			// Start running the jobs
+			// Run the jobs, allowing the independent ones to run concurrently
 			
-			for (Job j : jobs) {
-				current = j;
-				
-				
-				// Update the dialog window
-				
+			scheduler = new JobScheduler(jobs, JobMasterDialog.this);
+			scheduler.setListener(new SchedulerListener());
+			
+			try {
+				scheduler.run();
+			}
+			catch (JobException e) {
+				okay = false;
+				error = e;
 				updateTasksLabel();
-				progress.setIndeterminate(true);
-				cancelButton.setEnabled(j.isCancelable());
-				
-				repaint();
-				try {
-					Thread.sleep(50);
-				}
-				catch (InterruptedException e) {
-				}
-
-				
-				// Run the thread
-				
-				j.setJobObserver(JobMasterDialog.this);
-				OneTaskThread ott = new OneTaskThread(j);
-				Thread t = new Thread(ott);
-				t.start();
-				
-				try {
-					t.join();
-				}
-				catch (Exception e) {
-					okay = false;
-					error = new JobException(e);
-					updateTasksLabel();
-					break;
-				}
-				
-				
-				// Handle errors
-				
-				if (ott.getException() != null) {
-					okay = false;
-					error = ott.getException();
-					updateTasksLabel();
-					break;
-				}
 			}
 			
 			
 			// Finished
 			
 			running = false;
-			current = null;
+			active.clear();
 			
 			cancelButton.setText("Close");
 			cancelButton.setEnabled(true);
 
 			progress.setEnabled(false);
 			progress.setIndeterminate(false);
+			setStatus(null);
 			progress.setMinimum(0);
 			progress.setMaximum(1);
 			progress.setValue(0);
@@ -461,7 +440,7 @@ public class JobMasterDialog extends JDialog implements JobMaster, JobObserver {
 			if (event.getSource() == cancelButton) {
 				
 				if (running) {
-					if (current.isCancelable()) current.cancel();
+					if (scheduler != null) scheduler.cancel();
 				}
 				else {
 					setVisible(false);
@@ -0,0 +1,64 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.job;
+
+import java.util.*;
+
+
+/**
+ * A job that declares which shared objects it reads and writes, so that
+ * a scheduler can run it concurrently with other jobs that do not conflict
+ * with it. Jobs that do not implement this interface act as barriers.
+ * 
+ * @author Peter Macko
+ */
+public interface DataflowJob extends Job {
+	
+	/**
+	 * Get the objects read by the job. The elements can be either plain
+	 * objects, such as the pointers shared between jobs, or JobResource
+	 * instances that name just a facet of an object.
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs();
+	
+	/**
+	 * Get the objects modified by the job. The elements can be either plain
+	 * objects, such as the pointers shared between jobs, or JobResource
+	 * instances that name just a facet of an object.
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs();
+}
@@ -53,17 +53,14 @@ public class DefaultJobMaster implements JobMaster, JobObserver {
 	
 	
 	/**
-	 * Run the jobs
+	 * Run the jobs. Jobs that do not depend on each other might run
+	 * concurrently; see JobScheduler for details.
 	 * 
 	 * @throws JobException if one of the jobs failed
 	 * @throws JobCanceledException if one of the jobs was canceled
 	 */
 	public void run() throws JobException {
-
-		for (Job j : jobs) {
-			j.setJobObserver(this);
-			j.run();
-		}
+		new JobScheduler(jobs, this).run();
 	}
 
 	
@@ -101,4 +98,13 @@ public class DefaultJobMaster implements JobMaster, JobObserver {
 	 */
 	public void makeIndeterminate() {
 	}
+	
+	
+	/**
+	 * Set a short status message that describes the progress in more detail
+	 * 
+	 * @param status the status message, or null to clear it
+	 */
+	public void setStatus(String status) {
+	}
 }
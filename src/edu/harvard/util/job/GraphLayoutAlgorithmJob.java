@@ -36,13 +36,15 @@ import edu.harvard.util.Pointer;
 import edu.harvard.util.graph.layout.*;
 import edu.harvard.util.graph.*;
 
+import java.util.*;
+
 
 /**
  * The job to compute a graph layout
  * 
  * @author Peter Macko
  */
-public class GraphLayoutAlgorithmJob extends AbstractJob {
+public class GraphLayoutAlgorithmJob extends AbstractJob implements DataflowJob {
 
 	private Pointer<BaseGraph> input;
 	private GraphLayout result;
@@ -150,4 +152,24 @@ public class GraphLayoutAlgorithmJob extends AbstractJob {
 			// Silent failover
 		}
 	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Arrays.<Object>asList(input, JobResource.of(input, JobResource.GRAPH_SUMMARY));
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		return Collections.<Object>singletonList(JobResource.of(input, JobResource.GRAPH_LAYOUT));
+	}
 }
@@ -35,13 +35,15 @@ import edu.harvard.util.*;
 import edu.harvard.util.graph.*;
 import edu.harvard.util.graph.summarizer.*;
 
+import java.util.*;
+
 
 /**
  * The job to compute a graph summary
  * 
  * @author Peter Macko
  */
-public class GraphSummaryJob extends AbstractJob {
+public class GraphSummaryJob extends AbstractJob implements DataflowJob {
 
 	private Pointer<BaseGraph> input;
 	private GraphSummarizer summarizer;
@@ -130,4 +132,25 @@ public class GraphSummaryJob extends AbstractJob {
 			// Silent failover
 		}
 	}
+	
+	
+	/**
+	 * Get the objects read by the job
+	 * 
+	 * @return the collection of inputs
+	 */
+	public Collection<Object> getInputs() {
+		return Collections.<Object>singletonList(input);
+	}
+	
+	
+	/**
+	 * Get the objects modified by the job
+	 * 
+	 * @return the collection of outputs
+	 */
+	public Collection<Object> getOutputs() {
+		return Arrays.<Object>asList(JobResource.of(input, JobResource.GRAPH_SUMMARY),
+				JobResource.of(input, JobResource.GRAPH_SCRATCH));
+	}
 }
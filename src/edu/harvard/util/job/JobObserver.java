@@ -58,4 +58,11 @@ public interface JobObserver {
 	 * Set the progress as indeterminate
 	 */
 	public void makeIndeterminate();
+	
+	/**
+	 * Set a short status message that describes the progress in more detail
+	 * 
+	 * @param status the status message, or null to clear it
+	 */
+	public void setStatus(String status);
 }
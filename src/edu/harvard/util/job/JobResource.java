@@ -0,0 +1,149 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.job;
+
+
+/**
+ * A shared object, or a facet of a shared object, accessed by a job. Owners
+ * are compared by identity, since the same pointer is usually passed to all
+ * jobs that operate on the same data. A resource without a facet refers to
+ * the primary contents of the object, such as the nodes and edges of a graph,
+ * while each facet names a separate piece of derived state, such as the graph
+ * summary. Two resources conflict only if they are equal, so a job that
+ * modifies the whole object must list the affected facets explicitly.
+ * 
+ * @author Peter Macko
+ */
+public final class JobResource {
+	
+	public static final String GRAPH_SUMMARY = "summary";
+	public static final String GRAPH_LAYOUT = "layout";
+	public static final String GRAPH_SCRATCH = "scratch";		// per-node values used by graph algorithms
+	
+	private Object owner;
+	private String facet;
+	
+	
+	/**
+	 * Constructor of class JobResource
+	 * 
+	 * @param owner the owner object
+	 * @param facet the facet, or null for the primary contents of the object
+	 */
+	private JobResource(Object owner, String facet) {
+		if (owner == null) throw new NullPointerException();
+		this.owner = owner;
+		this.facet = facet;
+	}
+	
+	
+	/**
+	 * Create a resource that refers to the primary contents of an object
+	 * 
+	 * @param owner the owner object
+	 * @return the resource
+	 */
+	public static JobResource of(Object owner) {
+		if (owner instanceof JobResource) return (JobResource) owner;
+		return new JobResource(owner, null);
+	}
+	
+	
+	/**
+	 * Create a resource that refers to a facet of an object
+	 * 
+	 * @param owner the owner object
+	 * @param facet the facet
+	 * @return the resource
+	 */
+	public static JobResource of(Object owner, String facet) {
+		return new JobResource(owner, facet);
+	}
+	
+	
+	/**
+	 * Get the owner object
+	 * 
+	 * @return the owner
+	 */
+	public Object getOwner() {
+		return owner;
+	}
+	
+	
+	/**
+	 * Get the facet
+	 * 
+	 * @return the facet, or null if the resource refers to the primary contents
+	 */
+	public String getFacet() {
+		return facet;
+	}
+	
+	
+	/**
+	 * Determine whether the object is equal to this resource
+	 * 
+	 * @param obj the other object
+	 * @return true if they are equal
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof JobResource)) return false;
+		JobResource r = (JobResource) obj;
+		if (owner != r.owner) return false;
+		return facet == null ? r.facet == null : facet.equals(r.facet);
+	}
+	
+	
+	/**
+	 * Compute the hash code
+	 * 
+	 * @return the hash code
+	 */
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(owner) ^ (facet == null ? 0 : facet.hashCode());
+	}
+	
+	
+	/**
+	 * Return a string version of the object
+	 * 
+	 * @return the string representation
+	 */
+	@Override
+	public String toString() {
+		return facet == null ? owner.toString() : owner + "#" + facet;
+	}
+}
@@ -0,0 +1,493 @@
+/*
+ * A Collection of Miscellaneous Utilities
+ *
+ * Copyright 2011
+ *      The President and Fellows of Harvard College.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ * 3. Neither the name of the University nor the names of its contributors
+ *    may be used to endorse or promote products derived from this software
+ *    without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE UNIVERSITY AND CONTRIBUTORS ``AS IS'' AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE UNIVERSITY OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ */
+
+
+package edu.harvard.util.job;
+
+import java.util.*;
+
+
+/**
+ * A scheduler that runs a list of jobs, executing independent jobs
+ * concurrently. Two jobs depend on each other if they are both instances of
+ * DataflowJob and one writes a resource that the other reads or writes, or
+ * if either of them is not a DataflowJob. Dependencies always point from
+ * the earlier job to the later job in the list, so running the jobs with
+ * a single thread gives the same order as running them sequentially.
+ * 
+ * @author Peter Macko
+ */
+public class JobScheduler {
+	
+	private static final int SCALE = 1000;
+	
+	private ArrayList<Job> jobs;
+	private int numThreads;
+	private JobObserver observer;
+	private Listener listener;
+	
+	private int[][] predecessors;
+	private int[] state;
+	private JobProgress[] progress;
+	private int numRunning;
+	private boolean determinate;
+	private boolean canceled;
+	private JobException error;
+	
+	private static final int PENDING = 0;
+	private static final int RUNNING = 1;
+	private static final int FINISHED = 2;
+	private static final int FAILED = 3;
+	
+	
+	/**
+	 * Constructor of class JobScheduler
+	 * 
+	 * @param jobs the list of jobs in the order in which they were submitted
+	 * @param observer the job observer for the aggregate progress (can be null)
+	 */
+	public JobScheduler(List<Job> jobs, JobObserver observer) {
+		this.jobs = new ArrayList<Job>(jobs);
+		this.observer = observer;
+		this.listener = null;
+		this.numThreads = Runtime.getRuntime().availableProcessors();
+		this.canceled = false;
+		this.error = null;
+		this.numRunning = 0;
+	}
+	
+	
+	/**
+	 * Set the maximum number of jobs that can run at the same time
+	 * 
+	 * @param numThreads the number of threads
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = Math.max(1, numThreads);
+	}
+	
+	
+	/**
+	 * Set the listener to be notified when jobs start and finish
+	 * 
+	 * @param listener the listener, or null to clear it
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+	
+	
+	/**
+	 * Get the list of jobs
+	 * 
+	 * @return the list of jobs
+	 */
+	public List<Job> getJobs() {
+		return jobs;
+	}
+	
+	
+	/**
+	 * Determine whether there is at least one running job that can be canceled
+	 * 
+	 * @return true if cancel() will cancel at least one running job
+	 */
+	public synchronized boolean isCancelable() {
+		if (state == null) return false;
+		for (int i = 0; i < state.length; i++) {
+			if (state[i] == RUNNING && jobs.get(i).isCancelable()) return true;
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Cancel the execution. The running jobs are canceled if possible,
+	 * and no other jobs will be started.
+	 */
+	public synchronized void cancel() {
+		canceled = true;
+		cancelRunning();
+		notifyAll();
+	}
+	
+	
+	/**
+	 * Cancel all running jobs that can be canceled
+	 */
+	private void cancelRunning() {
+		if (state == null) return;
+		for (int i = 0; i < state.length; i++) {
+			Job j = jobs.get(i);
+			if (state[i] == RUNNING && j.isCancelable()) j.cancel();
+		}
+	}
+	
+	
+	/**
+	 * Compute the dependencies between the jobs
+	 */
+	private void computeDependencies() {
+		
+		int n = jobs.size();
+		ArrayList<ArrayList<JobResource>> inputs = new ArrayList<ArrayList<JobResource>>(n);
+		ArrayList<ArrayList<JobResource>> outputs = new ArrayList<ArrayList<JobResource>>(n);
+		
+		for (Job j : jobs) {
+			if (j instanceof DataflowJob) {
+				inputs.add(toResources(((DataflowJob) j).getInputs()));
+				outputs.add(toResources(((DataflowJob) j).getOutputs()));
+			}
+			else {
+				inputs.add(null);
+				outputs.add(null);
+			}
+		}
+		
+		predecessors = new int[n][];
+		int[] tmp = new int[n];
+		
+		for (int i = 0; i < n; i++) {
+			int count = 0;
+			for (int k = 0; k < i; k++) {
+				if (inputs.get(i) == null || inputs.get(k) == null
+						|| conflict(outputs.get(k), inputs.get(i))
+						|| conflict(outputs.get(k), outputs.get(i))
+						|| conflict(inputs.get(k), outputs.get(i))) {
+					tmp[count++] = k;
+				}
+			}
+			predecessors[i] = Arrays.copyOf(tmp, count);
+		}
+	}
+	
+	
+	/**
+	 * Convert a collection of declared inputs or outputs to resources
+	 * 
+	 * @param c the collection (can be null)
+	 * @return the list of resources
+	 */
+	private static ArrayList<JobResource> toResources(Collection<Object> c) {
+		ArrayList<JobResource> l = new ArrayList<JobResource>();
+		if (c == null) return l;
+		for (Object o : c) {
+			if (o != null) l.add(JobResource.of(o));
+		}
+		return l;
+	}
+	
+	
+	/**
+	 * Determine whether two sets of resources overlap
+	 * 
+	 * @param a the first list
+	 * @param b the second list
+	 * @return true if they overlap
+	 */
+	private static boolean conflict(List<JobResource> a, List<JobResource> b) {
+		for (JobResource x : a) {
+			for (JobResource y : b) {
+				if (x.equals(y)) return true;
+			}
+		}
+		return false;
+	}
+	
+	
+	/**
+	 * Determine whether the job is ready to run
+	 * 
+	 * @param index the job index
+	 * @return true if all its predecessors finished
+	 */
+	private boolean isReady(int index) {
+		for (int p : predecessors[index]) {
+			if (state[p] != FINISHED) return false;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Run the jobs
+	 * 
+	 * @throws JobException if one of the jobs failed
+	 * @throws JobCanceledException if one of the jobs was canceled
+	 */
+	public void run() throws JobException {
+		
+		synchronized (this) {
+			
+			int n = jobs.size();
+			computeDependencies();
+			state = new int[n];
+			progress = new JobProgress[n];
+			numRunning = 0;
+			determinate = false;
+			error = null;
+			
+			
+			// Start the jobs as soon as their predecessors finish
+			
+			while (true) {
+				
+				if (!canceled && error == null) {
+					for (int i = 0; i < n && numRunning < numThreads; i++) {
+						if (state[i] == PENDING && isReady(i)) start(i);
+					}
+				}
+				
+				if (numRunning == 0) break;
+				
+				try {
+					wait();
+				}
+				catch (InterruptedException e) {
+					canceled = true;
+					cancelRunning();
+				}
+			}
+		}
+		
+		
+		// Finish
+		
+		if (error != null) throw error;
+		if (canceled) throw new JobCanceledException();
+	}
+	
+	
+	/**
+	 * Start a job. The caller must hold the lock.
+	 * 
+	 * @param index the job index
+	 */
+	private void start(final int index) {
+		
+		final Job job = jobs.get(index);
+		state[index] = RUNNING;
+		numRunning++;
+		
+		progress[index] = new JobProgress();
+		job.setJobObserver(progress[index]);
+		if (observer != null) {
+			observer.setStatus(null);
+			observer.makeIndeterminate();
+			determinate = false;
+		}
+		updateProgress();
+		
+		if (listener != null) listener.jobStarted(job);
+		
+		Thread t = new Thread(new Runnable() {
+			public void run() {
+				JobException e = null;
+				try {
+					job.run();
+				}
+				catch (JobException ex) {
+					e = ex;
+				}
+				catch (Throwable ex) {
+					e = new JobException(ex);
+				}
+				finished(index, e);
+			}
+		}, "Job: " + job.getName());
+		t.start();
+	}
+	
+	
+	/**
+	 * Record that a job finished
+	 * 
+	 * @param index the job index
+	 * @param e the exception, or null if the job succeeded
+	 */
+	private synchronized void finished(int index, JobException e) {
+		
+		Job job = jobs.get(index);
+		state[index] = e == null ? FINISHED : FAILED;
+		numRunning--;
+		
+		if (e != null && error == null && !(canceled && e instanceof JobCanceledException)) {
+			error = e;
+			cancelRunning();
+		}
+		
+		if (listener != null) listener.jobFinished(job, e);
+		updateProgress();
+		notifyAll();
+	}
+	
+	
+	/**
+	 * Forward the aggregate progress of the running jobs to the observer.
+	 * The caller must hold the lock.
+	 */
+	private void updateProgress() {
+		
+		if (observer == null) return;
+		
+		int count = 0;
+		long sum = 0;
+		
+		for (int i = 0; i < state.length; i++) {
+			if (state[i] != RUNNING) continue;
+			JobProgress p = progress[i];
+			if (p.indeterminate) continue;
+			count++;
+			sum += p.getScaled();
+		}
+		
+		if (count == 0) {
+			if (determinate) observer.makeIndeterminate();
+			determinate = false;
+		}
+		else {
+			if (!determinate) observer.setRange(0, SCALE);
+			determinate = true;
+			observer.setProgress((int) (sum / count));
+		}
+	}
+	
+	
+	/**
+	 * The listener for the scheduler events
+	 */
+	public interface Listener {
+		
+		/**
+		 * Callback for when a job is started
+		 * 
+		 * @param job the job
+		 */
+		public void jobStarted(Job job);
+		
+		/**
+		 * Callback for when a job finishes
+		 * 
+		 * @param job the job
+		 * @param e the exception if the job failed or was canceled, or null if it succeeded
+		 */
+		public void jobFinished(Job job, JobException e);
+	}
+	
+	
+	/**
+	 * The progress of a single job
+	 */
+	private class JobProgress implements JobObserver {
+		
+		private int min, max, value;
+		private boolean indeterminate;
+		
+		
+		/**
+		 * Constructor of class JobProgress
+		 */
+		public JobProgress() {
+			min = 0;
+			max = 1;
+			value = 0;
+			indeterminate = true;
+		}
+		
+		
+		/**
+		 * Get the progress scaled to the range 0..SCALE
+		 * 
+		 * @return the scaled progress
+		 */
+		public int getScaled() {
+			if (max <= min) return 0;
+			long v = Math.max(min, Math.min(max, value)) - (long) min;
+			return (int) (v * SCALE / (max - (long) min));
+		}
+		
+		
+		/**
+		 * Set the range of progress values
+		 *
+		 * @param min the minimum value
+		 * @param max the maximum value
+		 */
+		public void setRange(int min, int max) {
+			synchronized (JobScheduler.this) {
+				this.min = min;
+				this.max = max;
+				this.value = min;
+				this.indeterminate = false;
+				updateProgress();
+			}
+		}
+		
+		
+		/**
+		 * Set the progress value
+		 *
+		 * @param value the progress value
+		 */
+		public void setProgress(int value) {
+			synchronized (JobScheduler.this) {
+				int old = getScaled();
+				boolean wasIndeterminate = indeterminate;
+				this.value = value;
+				this.indeterminate = false;
+				if (wasIndeterminate || old != getScaled()) updateProgress();
+			}
+		}
+		
+		
+		/**
+		 * Set the progress as indeterminate
+		 */
+		public void makeIndeterminate() {
+			synchronized (JobScheduler.this) {
+				indeterminate = true;
+				updateProgress();
+			}
+		}
+		
+		
+		/**
+		 * Set a short status message that describes the progress in more detail
+		 * 
+		 * @param status the status message, or null to clear it
+		 */
+		public void setStatus(String status) {
+			synchronized (JobScheduler.this) {
+				if (observer != null) observer.setStatus(status);
+			}
+		}
+	}
+}
@@ -101,6 +101,16 @@ public class SynchronizedJobObserver implements JobObserver {
 	}
 	
 	
+	/**
+	 * Set a short status message that describes the progress in more detail
+	 * 
+	 * @param status the status message, or null to clear it
+	 */
+	public synchronized void setStatus(String status) {
+		if (observer != null) observer.setStatus(status);
+	}
+	
+	
 	/**
 	 * Add to the progress value
 	 *